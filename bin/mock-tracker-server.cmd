@@ -0,0 +1,31 @@
+@echo off
+rem
+rem Licensed to the Apache Software Foundation (ASF) under one or more
+rem contributor license agreements.  See the NOTICE file distributed with
+rem this work for additional information regarding copyright ownership.
+rem The ASF licenses this file to you under the Apache License, Version 2.0
+rem (the "License"); you may not use this file except in compliance with
+rem the License.  You may obtain a copy of the License at
+rem
+rem http://www.apache.org/licenses/LICENSE-2.0
+rem
+rem Unless required by applicable law or agreed to in writing, software
+rem distributed under the License is distributed on an "AS IS" BASIS,
+rem WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+rem See the License for the specific language governing permissions and
+rem limitations under the License.
+rem
+
+rem   Run the mock tracker ingest server in non-GUI mode
+rem   P1 = port to use (default 5055), run with -? for all options
+
+setlocal
+
+rem On NT/2K grab all arguments at once
+set JMETER_CMD_LINE_ARGS=%*
+
+cd /D %~dp0
+
+java -cp "..\lib\*;..\lib\ext\*" org.apache.jmeter.protocol.tcp.mock.MockTrackerServer %JMETER_CMD_LINE_ARGS%
+
+pause
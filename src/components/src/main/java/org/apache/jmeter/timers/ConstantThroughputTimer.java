@@ -23,6 +23,7 @@ import java.beans.Introspector;
 import java.util.ResourceBundle;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.apache.jmeter.gui.GUIMenuSortOrder;
 import org.apache.jmeter.gui.TestElementMetadata;
@@ -53,8 +54,8 @@ public class ConstantThroughputTimer extends AbstractTestElement implements Time
     private static final long serialVersionUID = 4;
 
     private static class ThroughputInfo{
-        final Object MUTEX = new Object();
-        long lastScheduledTime = 0;
+        // updated without a lock, so that contended threads never block, which would pin virtual threads
+        final AtomicLong lastScheduledTime = new AtomicLong();
     }
     private static final Logger log = LoggerFactory.getLogger(ConstantThroughputTimer.class);
 
@@ -215,23 +216,17 @@ public class ConstantThroughputTimer extends AbstractTestElement implements Time
 
     private long calculateSharedDelay(ThroughputInfo info, long milliSecPerRequest) {
         final long now = System.currentTimeMillis();
-        final long calculatedDelay;
-
-        //Synchronize on the info object's MUTEX to ensure
-        //Multiple threads don't update the scheduled time simultaneously
-        synchronized (info.MUTEX) {
-            final long nextRequestTime = info.lastScheduledTime + milliSecPerRequest;
-            info.lastScheduledTime = Math.max(now, nextRequestTime);
-            calculatedDelay = info.lastScheduledTime - now;
-        }
 
-        return Math.max(calculatedDelay, 0);
+        //Compare and set to ensure
+        //multiple threads don't update the scheduled time simultaneously
+        final long scheduledTime = info.lastScheduledTime.accumulateAndGet(milliSecPerRequest,
+                (lastScheduledTime, delay) -> Math.max(now, lastScheduledTime + delay));
+
+        return Math.max(scheduledTime - now, 0);
     }
 
     private void reset() {
-        synchronized (allThreadsInfo.MUTEX) {
-            allThreadsInfo.lastScheduledTime = 0;
-        }
+        allThreadsInfo.lastScheduledTime.set(0);
         threadGroupsInfoMap.clear();
         // no need to sync as one per instance
         previousTime = 0;
@@ -0,0 +1,84 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.jmeter.visualizers;
+
+import org.apache.jmeter.samplers.SampleResult;
+import org.apache.jmeter.util.JMeterUtils;
+
+/**
+ * Renders the response bytes as a hex dump, for binary protocols.
+ */
+public class RenderAsHex extends SamplerResultTab implements ResultRenderer {
+
+    private static final int BYTES_PER_LINE = 16;
+
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray(); // $NON-NLS-1$
+
+    /** {@inheritDoc} */
+    @Override
+    public void renderResult(SampleResult sampleResult) {
+        results.setContentType("text/plain"); // $NON-NLS-1$
+        setTextOptimized(hexDump(sampleResult.getResponseData()));
+        results.setCaretPosition(0);
+        resultsScrollPane.setViewportView(results);
+        resultsScrollPane.setPreferredSize(resultsScrollPane.getMinimumSize());
+        results.revalidate();
+    }
+
+    /**
+     * Format bytes as lines holding the offset, 16 bytes in hex and their printable ASCII characters.
+     *
+     * @param data the bytes to format
+     * @return the hex dump
+     */
+    static String hexDump(byte[] data) {
+        StringBuilder sb = new StringBuilder((data.length / BYTES_PER_LINE + 1) * 78);
+        for (int offset = 0; offset < data.length; offset += BYTES_PER_LINE) {
+            appendHex(sb, offset, 8);
+            sb.append("  "); // $NON-NLS-1$
+            int end = Math.min(offset + BYTES_PER_LINE, data.length);
+            for (int i = offset; i < offset + BYTES_PER_LINE; i++) {
+                if (i < end) {
+                    appendHex(sb, data[i] & 0xFF, 2);
+                    sb.append(' ');
+                } else {
+                    sb.append("   "); // $NON-NLS-1$
+                }
+            }
+            sb.append(" |"); // $NON-NLS-1$
+            for (int i = offset; i < end; i++) {
+                char c = (char) (data[i] & 0xFF);
+                sb.append(c >= 0x20 && c < 0x7F ? c : '.');
+            }
+            sb.append("|\n"); // $NON-NLS-1$
+        }
+        return sb.toString();
+    }
+
+    private static void appendHex(StringBuilder sb, int value, int digits) {
+        for (int i = digits - 1; i >= 0; i--) {
+            sb.append(HEX_DIGITS[(value >>> (4 * i)) & 0xF]);
+        }
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public String toString() {
+        return JMeterUtils.getResString("view_results_render_hex"); // $NON-NLS-1$
+    }
+}
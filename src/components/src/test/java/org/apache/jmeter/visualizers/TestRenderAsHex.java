@@ -0,0 +1,41 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.jmeter.visualizers;
+
+import static org.junit.Assert.assertEquals;
+
+import java.nio.charset.StandardCharsets;
+
+import org.junit.jupiter.api.Test;
+
+public class TestRenderAsHex {
+
+    @Test
+    public void testHexDump() {
+        byte[] data = "#BCE#\r\n0123456789ABCDEF".getBytes(StandardCharsets.US_ASCII);
+        assertEquals(
+                "00000000  23 42 43 45 23 0d 0a 30 31 32 33 34 35 36 37 38  |#BCE#..012345678|\n"
+                + "00000010  39 41 42 43 44 45 46                             |9ABCDEF|\n",
+                RenderAsHex.hexDump(data));
+    }
+
+    @Test
+    public void testEmpty() {
+        assertEquals("", RenderAsHex.hexDump(new byte[0]));
+    }
+}
@@ -112,8 +112,9 @@ public class TransactionSampler extends AbstractSampler {
             transactionSampleResult.setSuccessful(false);
             noFailingSamples++;
         }
-        // Add the sub result to the transaction result
-        transactionSampleResult.addSubResult(res, false);
+        // Add a copy of the sub result to the transaction result, as adding it sets its thread name
+        // and parent while the sample may already be queued for the asynchronous listeners
+        transactionSampleResult.addSubResult((SampleResult) res.clone(), false);
         // Add current time to total for later use (exclude pause time)
         totalTime += res.getTime();
         totalConnectTime += res.getConnectTime();
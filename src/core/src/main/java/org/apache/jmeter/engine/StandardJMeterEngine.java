@@ -36,6 +36,7 @@ import org.apache.jmeter.threads.AbstractThreadGroup;
 import org.apache.jmeter.threads.JMeterContextService;
 import org.apache.jmeter.threads.ListenerNotifier;
 import org.apache.jmeter.threads.PostThreadGroup;
+import org.apache.jmeter.threads.SampleEventDispatcher;
 import org.apache.jmeter.threads.SetupThreadGroup;
 import org.apache.jmeter.threads.TestCompiler;
 import org.apache.jmeter.util.JMeterUtils;
@@ -490,6 +491,7 @@ public class StandardJMeterEngine implements JMeterEngine, Runnable {
             waitThreadsStopped(); // wait for Post threads to stop
         }
 
+        SampleEventDispatcher.drain(); // deliver the samples queued for asynchronous listeners
         notifyTestListenersOfEnd(testListeners);
         JMeterContextService.endTest();
         if (JMeter.isNonGUI() && SYSTEM_EXIT_FORCED) {
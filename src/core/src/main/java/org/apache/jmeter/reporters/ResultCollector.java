@@ -29,17 +29,20 @@ import java.io.OutputStreamWriter;
 import java.io.PrintWriter;
 import java.io.RandomAccessFile;
 import java.io.Serializable;
+import java.io.StringWriter;
+import java.io.Writer;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
 
 import org.apache.jmeter.engine.util.NoThreadClone;
 import org.apache.jmeter.gui.GuiPackage;
+import org.apache.jmeter.samplers.AsyncSampleListener;
 import org.apache.jmeter.samplers.Clearable;
 import org.apache.jmeter.samplers.Remoteable;
 import org.apache.jmeter.samplers.SampleEvent;
-import org.apache.jmeter.samplers.SampleListener;
 import org.apache.jmeter.samplers.SampleResult;
 import org.apache.jmeter.samplers.SampleSaveConfiguration;
 import org.apache.jmeter.save.CSVSaveService;
@@ -58,7 +61,7 @@ import org.slf4j.LoggerFactory;
  * This class handles all saving of samples.
  * The class must be thread-safe because it is shared between threads (NoThreadClone).
  */
-public class ResultCollector extends AbstractListenerElement implements SampleListener, Clearable, Serializable,
+public class ResultCollector extends AbstractListenerElement implements AsyncSampleListener, Clearable, Serializable,
         TestStateListener, Remoteable, NoThreadClone {
     /**
      * Keep track of the file writer and the configuration,
@@ -68,12 +71,84 @@ public class ResultCollector extends AbstractListenerElement implements SampleLi
     private static class FileEntry{
         final PrintWriter pw;
         final SampleSaveConfiguration config;
-        FileEntry(PrintWriter printWriter, SampleSaveConfiguration sampleSaveConfiguration){
+        /** The writer wrapped by pw, which has no buffer of its own */
+        private final Writer writer;
+        /**
+         * Serialises the samples written to the file. A lock rather than the monitor of pw,
+         * as writing must not pin the carrier of a virtual thread.
+         */
+        private final ReentrantLock lock = new ReentrantLock();
+        FileEntry(PrintWriter printWriter, Writer writer, SampleSaveConfiguration sampleSaveConfiguration){
             this.pw = printWriter;
+            this.writer = writer;
             this.config = sampleSaveConfiguration;
         }
+
+        /**
+         * Append the lines of samples formatted beforehand.
+         */
+        void write(char[] lines, int length) throws IOException {
+            lock.lock();
+            try {
+                writer.write(lines, 0, length);
+                if (SAVING_AUTOFLUSH) {
+                    writer.flush();
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        void flush() {
+            lock.lock();
+            try {
+                pw.flush();
+            } finally {
+                lock.unlock();
+            }
+        }
     }
 
+    /**
+     * Formats the samples of a thread, reused so saving a sample does not allocate writers.
+     */
+    private static final class LineBuffer {
+        private final StringWriter lines = new StringWriter();
+        private final PrintWriter writer = new PrintWriter(lines);
+        private char[] chars = new char[1024];
+
+        /**
+         * @return the writer of the lines, emptied of the lines of a sample which failed
+         */
+        PrintWriter start() {
+            lines.getBuffer().setLength(0);
+            return writer;
+        }
+
+        /**
+         * @return number of chars of the lines written, copied to {@link #chars}
+         */
+        int drain() {
+            StringBuffer buffer = lines.getBuffer();
+            int length = buffer.length();
+            if (chars.length < length) {
+                chars = new char[Math.max(length, 2 * chars.length)];
+            }
+            buffer.getChars(0, length, chars, 0);
+            buffer.setLength(0);
+            return length;
+        }
+
+        boolean isOversized() {
+            return chars.length > MAX_LINE_BUFFER;
+        }
+    }
+
+    /** Buffers grown beyond this, e.g. by a large response saved, are not kept by the thread */
+    private static final int MAX_LINE_BUFFER = 64 * 1024;
+
+    private static final ThreadLocal<LineBuffer> LINE_BUFFERS = ThreadLocal.withInitial(LineBuffer::new);
+
     private static final class ShutdownHook implements Runnable {
 
         @Override
@@ -138,7 +213,7 @@ public class ResultCollector extends AbstractListenerElement implements SampleLi
     private static int instanceCount; // Keep track of how many instances are active
 
     // Instance variables (guarded by volatile)
-    private transient volatile PrintWriter out;
+    private transient volatile FileEntry out;
 
     /**
      * Is a test running ?
@@ -321,7 +396,7 @@ public class ResultCollector extends AbstractListenerElement implements SampleLi
                 if (out == null) {
                     try {
                         // Note: getFileWriter ignores a null filename
-                        out = getFileWriter(getFilename(), getSaveConfig());
+                        out = getFileEntry(getFilename(), getSaveConfig());
                     } catch (FileNotFoundException e) {
                         out = null;
                     }
@@ -436,7 +511,7 @@ public class ResultCollector extends AbstractListenerElement implements SampleLi
         }
     }
 
-    private static PrintWriter getFileWriter(final String pFilename, SampleSaveConfiguration saveConfig)
+    private static FileEntry getFileEntry(final String pFilename, SampleSaveConfiguration saveConfig)
             throws IOException {
         if (pFilename == null || pFilename.length() == 0) {
             return null;
@@ -447,7 +522,6 @@ public class ResultCollector extends AbstractListenerElement implements SampleLi
         String filename = FileServer.resolveBaseRelativeName(pFilename);
         filename = new File(filename).getCanonicalPath(); // try to ensure uniqueness (Bug 60822)
         FileEntry fe = files.get(filename);
-        PrintWriter writer = null;
         boolean trimmed = true;
 
         if (fe == null) {
@@ -470,20 +544,19 @@ public class ResultCollector extends AbstractListenerElement implements SampleLi
                     log.warn("Error creating directories for {}", pdir);
                 }
             }
-            writer = new PrintWriter(new OutputStreamWriter(new BufferedOutputStream(new FileOutputStream(filename,
-                    trimmed)), SaveService.getFileEncoding(StandardCharsets.UTF_8.name())), SAVING_AUTOFLUSH);
+            Writer writer = new OutputStreamWriter(new BufferedOutputStream(new FileOutputStream(filename,
+                    trimmed)), SaveService.getFileEncoding(StandardCharsets.UTF_8.name()));
+            fe = new FileEntry(new PrintWriter(writer, SAVING_AUTOFLUSH), writer, saveConfig);
             if(log.isDebugEnabled()) {
                 log.debug("Opened file: {} in thread {}", filename, Thread.currentThread().getName());
             }
-            files.put(filename, new FileEntry(writer, saveConfig));
-        } else {
-            writer = fe.pw;
+            files.put(filename, fe);
         }
         if (!trimmed) {
             log.debug("Writing header to file: {}", filename);
-            writeFileStart(writer, saveConfig);
+            writeFileStart(fe.pw, saveConfig);
         }
-        return writer;
+        return fe;
     }
 
     // returns false if the file did not contain the terminator
@@ -544,17 +617,27 @@ public class ResultCollector extends AbstractListenerElement implements SampleLi
 
         if (isSampleWanted(result.isSuccessful())) {
             sendToVisualizer(result);
-            if (out != null && !isResultMarked(result) && !this.isStats) {
+            FileEntry fe = out;
+            if (fe != null && !isResultMarked(result) && !this.isStats) {
                 SampleSaveConfiguration config = getSaveConfig();
                 result.setSaveConfig(config);
+                LineBuffer buffer = LINE_BUFFERS.get();
                 try {
+                    // formatted outside the file lock, which is only held to append the lines
+                    PrintWriter lines = buffer.start();
                     if (config.saveAsXml()) {
-                        SaveService.saveSampleResult(event, out);
+                        SaveService.saveSampleResult(event, lines);
                     } else { // !saveAsXml
-                        CSVSaveService.saveSampleResult(event, out);
+                        CSVSaveService.saveSampleResult(event, lines);
                     }
+                    int length = buffer.drain();
+                    fe.write(buffer.chars, length);
                 } catch (Exception err) {
                     log.error("Error trying to record a sample", err); // should throw exception back to caller
+                } finally {
+                    if (buffer.isOversized()) {
+                        LINE_BUFFERS.remove();
+                    }
                 }
             }
         }
@@ -584,9 +667,10 @@ public class ResultCollector extends AbstractListenerElement implements SampleLi
      * Flush PrintWriter to synchronize file contents
      */
     public void flushFile() {
-        if (out != null) {
+        FileEntry fe = out;
+        if (fe != null) {
             log.info("forced flush through ResultCollector#flushFile");
-            out.flush();
+            fe.flush();
         }
     }
 
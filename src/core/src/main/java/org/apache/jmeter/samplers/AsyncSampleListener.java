@@ -0,0 +1,53 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.apache.jmeter.samplers;
+
+import java.util.List;
+
+/**
+ * A {@link SampleListener} which can receive the samples on a dispatcher thread, after
+ * the sampling thread has moved on, when <code>jmeter.listeners.async</code> is enabled.
+ * <p>
+ * By implementing it, the listener declares that it is thread safe, as it may be called
+ * by several dispatcher threads at once, and that it does not depend on the context of the
+ * sampling thread: its variables, or its TestBean properties, which are not prepared
+ * before the samples are dispatched.
+ * <p>
+ * The samples of a sampling thread are delivered in the order they occurred, by a single
+ * dispatcher thread; the samples of different sampling threads may be delivered in any order.
+ *
+ * @see org.apache.jmeter.threads.SampleEventDispatcher
+ */
+public interface AsyncSampleListener extends SampleListener {
+    /**
+     * A batch of samples has started and stopped.
+     * <p>
+     * The default implementation calls {@link #sampleOccurred(SampleEvent)} for each of them,
+     * listeners which can process a batch at once should override it.
+     *
+     * @param events
+     *            the {@link SampleEvent}s, in the order they occurred in each sampling thread;
+     *            the list is reused after the call
+     */
+    default void samplesOccurred(List<SampleEvent> events) {
+        for (SampleEvent event : events) {
+            sampleOccurred(event);
+        }
+    }
+}
@@ -33,6 +33,7 @@ import java.util.ArrayDeque;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.locks.ReentrantLock;
 
 import org.apache.commons.io.input.BOMInputStream;
 import org.apache.jmeter.gui.JMeterFileFilter;
@@ -75,6 +76,12 @@ public class FileServer {
 
     private final Map<String, FileEntry> files = new HashMap<>();
 
+    /**
+     * Guards the files and the base directory. Unlike a monitor, it does not pin the carrier of a
+     * virtual thread reading or writing a file while holding it.
+     */
+    private final ReentrantLock lock = new ReentrantLock();
+
     private static final FileServer server = new FileServer();
 
     // volatile needed to ensure safe publication
@@ -96,10 +103,15 @@ public class FileServer {
     /**
      * Resets the current base to DEFAULT_BASE.
      */
-    public synchronized void resetBase() {
-        checkForOpenFiles();
-        base = new File(DEFAULT_BASE);
-        log.info("Reset base to '{}'", base);
+    public void resetBase() {
+        lock.lock();
+        try {
+            checkForOpenFiles();
+            base = new File(DEFAULT_BASE);
+            log.info("Reset base to '{}'", base);
+        } finally {
+            lock.unlock();
+        }
     }
 
     /**
@@ -110,15 +122,20 @@ public class FileServer {
      * @param basedir the path to set, or {@code null} if the GUI is being cleared
      * @throws IllegalStateException if files are still open
      */
-    public synchronized void setBasedir(String basedir) {
-        checkForOpenFiles(); // TODO should this be called if basedir == null?
-        if (basedir != null) {
-            File newBase = new File(basedir);
-            if (!newBase.isDirectory()) {
-                newBase = newBase.getParentFile();
+    public void setBasedir(String basedir) {
+        lock.lock();
+        try {
+            checkForOpenFiles(); // TODO should this be called if basedir == null?
+            if (basedir != null) {
+                File newBase = new File(basedir);
+                if (!newBase.isDirectory()) {
+                    newBase = newBase.getParentFile();
+                }
+                base = newBase;
+                log.info("Set new base='{}'", base);
             }
-            base = newBase;
-            log.info("Set new base='{}'", base);
+        } finally {
+            lock.unlock();
         }
     }
 
@@ -131,13 +148,18 @@ public class FileServer {
      * @throws IllegalStateException if files are still open
      * @throws IllegalArgumentException if scriptPath parameter is null
      */
-    public synchronized void setBaseForScript(File scriptPath) {
-        if (scriptPath == null){
-            throw new IllegalArgumentException("scriptPath must not be null");
+    public void setBaseForScript(File scriptPath) {
+        lock.lock();
+        try {
+            if (scriptPath == null){
+                throw new IllegalArgumentException("scriptPath must not be null");
+            }
+            setScriptName(scriptPath.getName());
+            // getParentFile() may not work on relative paths
+            setBase(scriptPath.getAbsoluteFile().getParentFile());
+        } finally {
+            lock.unlock();
         }
-        setScriptName(scriptPath.getName());
-        // getParentFile() may not work on relative paths
-        setBase(scriptPath.getAbsoluteFile().getParentFile());
     }
 
     /**
@@ -147,13 +169,18 @@ public class FileServer {
      * @throws IllegalStateException if files are still open
      * @throws IllegalArgumentException if {@code basepath} is null
      */
-    public synchronized void setBase(File jmxBase) {
-        if (jmxBase == null) {
-            throw new IllegalArgumentException("jmxBase must not be null");
+    public void setBase(File jmxBase) {
+        lock.lock();
+        try {
+            if (jmxBase == null) {
+                throw new IllegalArgumentException("jmxBase must not be null");
+            }
+            checkForOpenFiles();
+            base = jmxBase;
+            log.info("Set new base='{}'", base);
+        } finally {
+            lock.unlock();
         }
-        checkForOpenFiles();
-        base = jmxBase;
-        log.info("Set new base='{}'", base);
     }
 
     /**
@@ -171,8 +198,13 @@ public class FileServer {
         files.clear(); // tidy up any unused entries
     }
 
-    public synchronized String getBaseDir() {
-        return base.getAbsolutePath();
+    public String getBaseDir() {
+        lock.lock();
+        try {
+            return base.getAbsolutePath();
+        } finally {
+            lock.unlock();
+        }
     }
 
     public static String getDefaultBase(){
@@ -185,26 +217,31 @@ public class FileServer {
      *
      * @return the relative path, or {@code "."} if the path cannot be determined
      */
-    public synchronized File getBaseDirRelative() {
-        // Must first convert to absolute path names to ensure parents are available
-        File parent = new File(DEFAULT_BASE).getAbsoluteFile();
-        File f = base.getAbsoluteFile();
-        ArrayDeque<String> l = new ArrayDeque<>();
-        while (f != null) {
-            if (f.equals(parent)){
-                if (l.isEmpty()){
-                    break;
-                }
-                File rel = new File(l.pop());
-                while(!l.isEmpty()) {
-                    rel = new File(rel, l.pop());
+    public File getBaseDirRelative() {
+        lock.lock();
+        try {
+            // Must first convert to absolute path names to ensure parents are available
+            File parent = new File(DEFAULT_BASE).getAbsoluteFile();
+            File f = base.getAbsoluteFile();
+            ArrayDeque<String> l = new ArrayDeque<>();
+            while (f != null) {
+                if (f.equals(parent)){
+                    if (l.isEmpty()){
+                        break;
+                    }
+                    File rel = new File(l.pop());
+                    while(!l.isEmpty()) {
+                        rel = new File(rel, l.pop());
+                    }
+                    return rel;
                 }
-                return rel;
+                l.push(f.getName());
+                f = f.getParentFile();
             }
-            l.push(f.getName());
-            f = f.getParentFile();
+            return new File(".");
+        } finally {
+            lock.unlock();
         }
-        return new File(".");
     }
 
     /**
@@ -251,38 +288,43 @@ public class FileServer {
      * @return the header line; may be null
      * @throws IllegalArgumentException if header could not be read or filename is null or empty
      */
-    public synchronized String reserveFile(String filename, String charsetName, String alias, boolean hasHeader) {
-        if (filename == null || filename.isEmpty()){
-            throw new IllegalArgumentException("Filename must not be null or empty");
-        }
-        if (alias == null){
-            throw new IllegalArgumentException("Alias must not be null");
-        }
-        FileEntry fileEntry = files.get(alias);
-        if (fileEntry == null) {
-            fileEntry = new FileEntry(resolveFileFromPath(filename), null, charsetName);
-            if (filename.equals(alias)){
-                log.info("Stored: {}", filename);
-            } else {
-                log.info("Stored: {} Alias: {}", filename, alias);
+    public String reserveFile(String filename, String charsetName, String alias, boolean hasHeader) {
+        lock.lock();
+        try {
+            if (filename == null || filename.isEmpty()){
+                throw new IllegalArgumentException("Filename must not be null or empty");
+            }
+            if (alias == null){
+                throw new IllegalArgumentException("Alias must not be null");
             }
-            files.put(alias, fileEntry);
-            if (hasHeader) {
-                try {
-                    fileEntry.headerLine = readLine(alias, false);
-                    if (fileEntry.headerLine == null) {
-                        fileEntry.exception = new EOFException("File is empty: " + fileEntry.file);
+            FileEntry fileEntry = files.get(alias);
+            if (fileEntry == null) {
+                fileEntry = new FileEntry(resolveFileFromPath(filename), null, charsetName);
+                if (filename.equals(alias)){
+                    log.info("Stored: {}", filename);
+                } else {
+                    log.info("Stored: {} Alias: {}", filename, alias);
+                }
+                files.put(alias, fileEntry);
+                if (hasHeader) {
+                    try {
+                        fileEntry.headerLine = readLine(alias, false);
+                        if (fileEntry.headerLine == null) {
+                            fileEntry.exception = new EOFException("File is empty: " + fileEntry.file);
+                        }
+                    } catch (IOException | IllegalArgumentException e) {
+                        fileEntry.exception = e;
                     }
-                } catch (IOException | IllegalArgumentException e) {
-                    fileEntry.exception = e;
                 }
             }
+            if (hasHeader && fileEntry.headerLine == null) {
+                throw new IllegalArgumentException("Could not read file header line for file " + filename,
+                        fileEntry.exception);
+            }
+            return fileEntry.headerLine;
+        } finally {
+            lock.unlock();
         }
-        if (hasHeader && fileEntry.headerLine == null) {
-            throw new IllegalArgumentException("Could not read file header line for file " + filename,
-                    fileEntry.exception);
-        }
-        return fileEntry.headerLine;
     }
 
     /**
@@ -332,31 +374,36 @@ public class FileServer {
      * @return String containing the next line in the file (null if EOF reached and not recycle)
      * @throws IOException when reading of the file fails, or the file was not reserved properly
      */
-    public synchronized String readLine(String filename, boolean recycle,
+    public String readLine(String filename, boolean recycle,
             boolean ignoreFirstLine) throws IOException {
-        FileEntry fileEntry = files.get(filename);
-        if (fileEntry != null) {
-            if (fileEntry.inputOutputObject == null) {
-                fileEntry.inputOutputObject = createBufferedReader(fileEntry);
-            } else if (!(fileEntry.inputOutputObject instanceof Reader)) {
-                throw new IOException("File " + filename + " already in use");
-            }
-            BufferedReader reader = (BufferedReader) fileEntry.inputOutputObject;
-            String line = reader.readLine();
-            if (line == null && recycle) {
-                reader.close();
-                reader = createBufferedReader(fileEntry);
-                fileEntry.inputOutputObject = reader;
-                if (ignoreFirstLine) {
-                    // read first line and forget
-                    reader.readLine();//NOSONAR
+        lock.lock();
+        try {
+            FileEntry fileEntry = files.get(filename);
+            if (fileEntry != null) {
+                if (fileEntry.inputOutputObject == null) {
+                    fileEntry.inputOutputObject = createBufferedReader(fileEntry);
+                } else if (!(fileEntry.inputOutputObject instanceof Reader)) {
+                    throw new IOException("File " + filename + " already in use");
+                }
+                BufferedReader reader = (BufferedReader) fileEntry.inputOutputObject;
+                String line = reader.readLine();
+                if (line == null && recycle) {
+                    reader.close();
+                    reader = createBufferedReader(fileEntry);
+                    fileEntry.inputOutputObject = reader;
+                    if (ignoreFirstLine) {
+                        // read first line and forget
+                        reader.readLine();//NOSONAR
+                    }
+                    line = reader.readLine();
                 }
-                line = reader.readLine();
+                log.debug("Read:{}", line);
+                return line;
             }
-            log.debug("Read:{}", line);
-            return line;
+            throw new IOException("File never reserved: "+filename);
+        } finally {
+            lock.unlock();
         }
-        throw new IOException("File never reserved: "+filename);
     }
 
     /**
@@ -368,9 +415,14 @@ public class FileServer {
      * @return the parsed line, will be empty if the file is at EOF
      * @throws IOException when reading of the aliased file fails, or the file was not reserved properly
      */
-    public synchronized String[] getParsedLine(String alias, boolean recycle, boolean ignoreFirstLine, char delim) throws IOException {
-        BufferedReader reader = getReader(alias, recycle, ignoreFirstLine);
-        return CSVSaveService.csvReadFile(reader, delim);
+    public String[] getParsedLine(String alias, boolean recycle, boolean ignoreFirstLine, char delim) throws IOException {
+        lock.lock();
+        try {
+            BufferedReader reader = getReader(alias, recycle, ignoreFirstLine);
+            return CSVSaveService.csvReadFile(reader, delim);
+        } finally {
+            lock.unlock();
+        }
     }
 
     /**
@@ -439,19 +491,24 @@ public class FileServer {
         return new BufferedReader(isr);
     }
 
-    public synchronized void write(String filename, String value) throws IOException {
-        FileEntry fileEntry = files.get(filename);
-        if (fileEntry != null) {
-            if (fileEntry.inputOutputObject == null) {
-                fileEntry.inputOutputObject = createBufferedWriter(fileEntry);
-            } else if (!(fileEntry.inputOutputObject instanceof Writer)) {
-                throw new IOException("File " + filename + " already in use");
+    public void write(String filename, String value) throws IOException {
+        lock.lock();
+        try {
+            FileEntry fileEntry = files.get(filename);
+            if (fileEntry != null) {
+                if (fileEntry.inputOutputObject == null) {
+                    fileEntry.inputOutputObject = createBufferedWriter(fileEntry);
+                } else if (!(fileEntry.inputOutputObject instanceof Writer)) {
+                    throw new IOException("File " + filename + " already in use");
+                }
+                BufferedWriter writer = (BufferedWriter) fileEntry.inputOutputObject;
+                log.debug("Write:{}", value);
+                writer.write(value);
+            } else {
+                throw new IOException("File never reserved: "+filename);
             }
-            BufferedWriter writer = (BufferedWriter) fileEntry.inputOutputObject;
-            log.debug("Write:{}", value);
-            writer.write(value);
-        } else {
-            throw new IOException("File never reserved: "+filename);
+        } finally {
+            lock.unlock();
         }
     }
 
@@ -470,20 +527,30 @@ public class FileServer {
         return new BufferedWriter(osw);
     }
 
-    public synchronized void closeFiles() throws IOException {
-        for (Map.Entry<String, FileEntry> me : files.entrySet()) {
-            closeFile(me.getKey(),me.getValue() );
+    public void closeFiles() throws IOException {
+        lock.lock();
+        try {
+            for (Map.Entry<String, FileEntry> me : files.entrySet()) {
+                closeFile(me.getKey(),me.getValue() );
+            }
+            files.clear();
+        } finally {
+            lock.unlock();
         }
-        files.clear();
     }
 
     /**
      * @param name the name or alias of the file to be closed
      * @throws IOException when closing of the aliased file fails
      */
-    public synchronized void closeFile(String name) throws IOException {
-        FileEntry fileEntry = files.get(name);
-        closeFile(name, fileEntry);
+    public void closeFile(String name) throws IOException {
+        lock.lock();
+        try {
+            FileEntry fileEntry = files.get(name);
+            closeFile(name, fileEntry);
+        } finally {
+            lock.unlock();
+        }
     }
 
     private void closeFile(String name, FileEntry fileEntry) throws IOException {
@@ -28,6 +28,7 @@ import java.util.Map;
 import java.util.Set;
 
 import org.apache.jmeter.gui.Searchable;
+import org.apache.jmeter.testelement.property.AbstractProperty;
 import org.apache.jmeter.testelement.property.BooleanProperty;
 import org.apache.jmeter.testelement.property.CollectionProperty;
 import org.apache.jmeter.testelement.property.IntegerProperty;
@@ -74,7 +75,14 @@ public abstract class AbstractTestElement implements TestElement, Serializable,
 
             PropertyIterator iter = propertyIterator();
             while (iter.hasNext()) {
-                clonedElement.setProperty(iter.next().clone());
+                JMeterProperty prop = iter.next();
+                if (runningVersion && !isTemporary(prop)
+                        && prop instanceof AbstractProperty && ((AbstractProperty) prop).share()) {
+                    // Unmodified immutable values are shared by all the clones, see ownProperty()
+                    clonedElement.setProperty(prop);
+                } else {
+                    clonedElement.setProperty(prop.clone());
+                }
             }
             clonedElement.setRunningVersion(runningVersion);
             return clonedElement;
@@ -177,6 +185,9 @@ public abstract class AbstractTestElement implements TestElement, Serializable,
     /**
      * Get the named property. If it doesn't exist, a new NullProperty object is
      * created with the same name and returned.
+     * <p>
+     * The properties of a running element may be shared with its clones:
+     * change them with {@link #setProperty(JMeterProperty)}, not through the returned instance.
      */
     @Override
     public JMeterProperty getProperty(String key) {
@@ -197,6 +208,31 @@ public abstract class AbstractTestElement implements TestElement, Serializable,
         return propMap.get(key);
     }
 
+    private static boolean isShared(JMeterProperty prop) {
+        return prop instanceof AbstractProperty && ((AbstractProperty) prop).isShared();
+    }
+
+    /**
+     * Replace a property shared with the other clones of this element by a private copy,
+     * which can then be modified.
+     *
+     * @param prop property of this element
+     * @return the property itself if it is not shared, the copy otherwise
+     */
+    private JMeterProperty ownProperty(JMeterProperty prop) {
+        if (!isShared(prop)) {
+            return prop;
+        }
+        // the clone keeps the saved value of the shared property, which is the same as its value
+        JMeterProperty copy = prop.clone();
+        propMap.put(copy.getName(), copy);
+        if (isTemporary(prop)) {
+            clearTemporary(prop);
+            setTemporary(copy);
+        }
+        return copy;
+    }
+
     @Override
     public void traverse(TestElementTraverser traverser) {
         PropertyIterator iter = propertyIterator();
@@ -347,10 +383,11 @@ public abstract class AbstractTestElement implements TestElement, Serializable,
     @Override
     public void setProperty(JMeterProperty property) {
         if (isRunningVersion()) {
-            if (getProperty(property.getName()) instanceof NullProperty) {
+            JMeterProperty prop = getProperty(property.getName());
+            if (prop instanceof NullProperty) {
                 addProperty(property);
             } else {
-                getProperty(property.getName()).setObjectValue(property.getObjectValue());
+                ownProperty(prop).setObjectValue(property.getObjectValue());
             }
         } else {
             propMap.put(property.getName(), property);
@@ -491,9 +528,16 @@ public abstract class AbstractTestElement implements TestElement, Serializable,
     @Override
     public void setRunningVersion(boolean runningVersion) {
         this.runningVersion = runningVersion;
-        PropertyIterator iter = propertyIterator();
-        while (iter.hasNext()) {
-            iter.next().setRunningVersion(runningVersion);
+        for (Map.Entry<String, JMeterProperty> entry : propMap.entrySet()) {
+            JMeterProperty prop = entry.getValue();
+            if (isShared(prop)) {
+                if (runningVersion) {
+                    continue; // already saved, and never modified
+                }
+                prop = prop.clone();
+                entry.setValue(prop);
+            }
+            prop.setRunningVersion(runningVersion);
         }
     }
 
@@ -509,7 +553,7 @@ public abstract class AbstractTestElement implements TestElement, Serializable,
             if (isTemporary(prop)) {
                 iter.remove();
                 clearTemporary(prop);
-            } else {
+            } else if (!isShared(prop)) {
                 prop.recoverRunningVersion(this);
             }
         }
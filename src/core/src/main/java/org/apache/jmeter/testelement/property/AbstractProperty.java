@@ -34,6 +34,9 @@ public abstract class AbstractProperty implements JMeterProperty {
 
     private transient boolean runningVersion = false;
 
+    /** Set once the clones of a running test element share the property, which is no longer modified then */
+    private transient boolean shared = false;
+
     protected AbstractProperty(String name) {
         if (name == null) {
             throw new IllegalArgumentException("Name cannot be null");
@@ -76,6 +79,39 @@ public abstract class AbstractProperty implements JMeterProperty {
         this.runningVersion = runningVersion;
     }
 
+    /**
+     * Share the property between the clones of the running test element holding it, instead of
+     * cloning it for each of them.
+     * A shared property must not be modified any more: the test elements replace it by a private
+     * copy before they modify it.
+     *
+     * @return <code>true</code> if the property is shared, <code>false</code> if it must be cloned
+     */
+    public boolean share() {
+        if (!shared && runningVersion && isShareable()) {
+            shared = true;
+        }
+        return shared;
+    }
+
+    /**
+     * @return <code>true</code> if the property is shared by the clones of a running test element
+     * @see #share()
+     */
+    public boolean isShared() {
+        return shared;
+    }
+
+    /**
+     * Default implementation returns <code>false</code>.
+     *
+     * @return <code>true</code> if the value is immutable and was not modified since
+     *         the running version was set, so that recovering it would not change it
+     */
+    protected boolean isShareable() {
+        return false;
+    }
+
     protected PropertyIterator getIterator(Collection<JMeterProperty> values) {
         return new PropertyIteratorImpl(values);
     }
@@ -87,6 +123,7 @@ public abstract class AbstractProperty implements JMeterProperty {
             AbstractProperty prop = (AbstractProperty) super.clone();
             prop.name = name;
             prop.runningVersion = runningVersion;
+            prop.shared = false;
             return prop;
         } catch (CloneNotSupportedException e) {
             throw new AssertionError(e); // clone should never return null
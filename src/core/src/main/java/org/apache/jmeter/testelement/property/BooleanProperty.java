@@ -94,4 +94,12 @@ public class BooleanProperty extends AbstractProperty {
         value = savedValue;
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected boolean isShareable() {
+        return value == savedValue;
+    }
+
 }
@@ -0,0 +1,309 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.jmeter.testelement.property;
+
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.jmeter.engine.util.CompoundVariable;
+import org.apache.jmeter.testelement.TestElement;
+import org.apache.jorphan.util.JOrphanUtils;
+
+/**
+ * Property holding binary data, such as the payload of a binary protocol.
+ * <p>
+ * It is saved as hex-encoded text, in which variables and functions such as
+ * <code>${imei}</code> may be used in place of bytes. The text is decoded once, when it is set,
+ * and the clones of the property share the decoded bytes; {@link #getBytes()} then only
+ * evaluates the variables and splices their hex-encoded values at the byte offsets they were
+ * declared at.
+ * Unlike a {@link StringProperty}, the variables are not replaced by a {@link FunctionProperty}
+ * before the test runs.
+ */
+public class ByteArrayProperty extends AbstractProperty {
+    private static final long serialVersionUID = 240L;
+
+    private static final byte[] EMPTY = new byte[0];
+
+    private String value;
+
+    /** Decoded value, shared by the clones as it is never modified; <code>null</code> if the value is invalid */
+    private transient Template template;
+
+    private transient String savedValue;
+
+    private transient Template savedTemplate;
+
+    public ByteArrayProperty(String name, String hexValue) {
+        super(name);
+        setValue(hexValue);
+    }
+
+    public ByteArrayProperty(String name, byte[] value) {
+        super(name);
+        setValue(value);
+    }
+
+    public ByteArrayProperty() {
+        super();
+        setValue(""); //$NON-NLS-1$
+    }
+
+    /**
+     * Sets the value.
+     *
+     * @param hexValue
+     *            hex-encoded bytes, with optional variable references
+     */
+    public void setValue(String hexValue) {
+        this.value = hexValue == null ? "" : hexValue; //$NON-NLS-1$
+        try {
+            this.template = Template.compile(value);
+        } catch (IllegalArgumentException e) {
+            // reported by getBytes()
+            this.template = null;
+        }
+    }
+
+    /**
+     * Sets the value.
+     *
+     * @param bytes
+     *            the bytes, which are copied
+     */
+    public void setValue(byte[] bytes) {
+        this.value = JOrphanUtils.baToHexString(bytes);
+        this.template = new Template(bytes.clone(), new int[0], new CompoundVariable[0]);
+    }
+
+    /**
+     * Get the bytes, with the current values of the variables.
+     * <p>
+     * Without variables, the same array is returned by every call: it must not be modified.
+     *
+     * @return the bytes
+     * @throws IllegalArgumentException if the value, or the value of a variable, is not valid hex
+     */
+    public byte[] getBytes() {
+        return getTemplate().evaluate();
+    }
+
+    /**
+     * @return <code>true</code> if the value references variables or functions
+     * @throws IllegalArgumentException if the value is not valid hex
+     */
+    public boolean isDynamic() {
+        return getTemplate().variables.length > 0;
+    }
+
+    private Template getTemplate() {
+        if (template == null) {
+            // throws the reason why the value is invalid
+            template = Template.compile(value);
+        }
+        return template;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void setObjectValue(Object v) {
+        if (v instanceof byte[]) {
+            setValue((byte[]) v);
+        } else {
+            setValue(v.toString());
+        }
+    }
+
+    /**
+     * @see JMeterProperty#getStringValue()
+     */
+    @Override
+    public String getStringValue() {
+        return value;
+    }
+
+    /**
+     * @see JMeterProperty#getObjectValue()
+     */
+    @Override
+    public Object getObjectValue() {
+        return value;
+    }
+
+    /**
+     * @see JMeterProperty#setRunningVersion(boolean)
+     */
+    @Override
+    public void setRunningVersion(boolean runningVersion) {
+        super.setRunningVersion(runningVersion);
+        if (runningVersion) {
+            savedValue = value;
+            savedTemplate = template;
+        } else {
+            savedValue = null;
+            savedTemplate = null;
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void recoverRunningVersion(TestElement owner) {
+        if (savedValue != null) {
+            value = savedValue;
+            template = savedTemplate;
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public ByteArrayProperty clone() {
+        ByteArrayProperty prop = (ByteArrayProperty) super.clone();
+        prop.value = value;
+        prop.template = template;
+        return prop;
+    }
+
+    /**
+     * Decode hex digits, ignoring whitespace.
+     */
+    private static byte[] decode(String hex, int start, int end) {
+        byte[] bytes = new byte[(end - start) / 2];
+        int count = 0;
+        int high = -1;
+        for (int i = start; i < end; i++) {
+            char c = hex.charAt(i);
+            int nibble = JOrphanUtils.hexDigit(c);
+            if (nibble == -1) {
+                if (Character.isWhitespace(c)) {
+                    continue;
+                }
+                throw new IllegalArgumentException(
+                        "Hex-encoded binary string contains an invalid hex digit '" + c + "'");
+            }
+            if (high == -1) {
+                high = nibble;
+            } else {
+                bytes[count++] = (byte) ((high << 4) | nibble);
+                high = -1;
+            }
+        }
+        if (high != -1) {
+            throw new IllegalArgumentException("Hex-encoded binary string contains an uneven no. of digits");
+        }
+        return count == bytes.length ? bytes : Arrays.copyOf(bytes, count);
+    }
+
+    /**
+     * Bytes decoded from the text, with the variables to insert at their offsets.
+     */
+    private static final class Template {
+        private final byte[] bytes;
+
+        /** Offset in {@link #bytes} of each variable, in ascending order */
+        private final int[] offsets;
+
+        private final CompoundVariable[] variables;
+
+        private Template(byte[] bytes, int[] offsets, CompoundVariable[] variables) {
+            this.bytes = bytes;
+            this.offsets = offsets;
+            this.variables = variables;
+        }
+
+        private static Template compile(String text) {
+            if (text.indexOf("${") < 0) { //$NON-NLS-1$
+                return new Template(decode(text, 0, text.length()), new int[0], new CompoundVariable[0]);
+            }
+            ByteArrayOutputStream literal = new ByteArrayOutputStream(text.length() / 2);
+            List<Integer> offsets = new ArrayList<>();
+            List<CompoundVariable> variables = new ArrayList<>();
+            int position = 0;
+            while (position < text.length()) {
+                int start = text.indexOf("${", position); //$NON-NLS-1$
+                if (start < 0) {
+                    start = text.length();
+                }
+                byte[] segment = decode(text, position, start);
+                literal.write(segment, 0, segment.length);
+                if (start == text.length()) {
+                    break;
+                }
+                position = findEnd(text, start);
+                offsets.add(literal.size());
+                variables.add(new CompoundVariable(text.substring(start, position)));
+            }
+            int[] offsetArray = new int[offsets.size()];
+            for (int i = 0; i < offsetArray.length; i++) {
+                offsetArray[i] = offsets.get(i);
+            }
+            return new Template(literal.toByteArray(), offsetArray, variables.toArray(new CompoundVariable[0]));
+        }
+
+        /**
+         * @return index after the closing brace of the reference starting at <code>start</code>
+         */
+        private static int findEnd(String text, int start) {
+            int depth = 0;
+            for (int i = start + 1; i < text.length(); i++) {
+                char c = text.charAt(i);
+                if (c == '\\') {
+                    i++;
+                } else if (c == '{') {
+                    depth++;
+                } else if (c == '}' && --depth == 0) {
+                    return i + 1;
+                }
+            }
+            throw new IllegalArgumentException("Unterminated variable reference in '" + text.substring(start) + "'");
+        }
+
+        private byte[] evaluate() {
+            if (variables.length == 0) {
+                return bytes;
+            }
+            byte[][] values = new byte[variables.length][];
+            int length = bytes.length;
+            for (int i = 0; i < variables.length; i++) {
+                String hex = variables[i].execute();
+                values[i] = hex.isEmpty() ? EMPTY : decode(hex, 0, hex.length());
+                length += values[i].length;
+            }
+            byte[] result = new byte[length];
+            int from = 0;
+            int to = 0;
+            for (int i = 0; i < variables.length; i++) {
+                int literalLength = offsets[i] - from;
+                System.arraycopy(bytes, from, result, to, literalLength);
+                to += literalLength;
+                System.arraycopy(values[i], 0, result, to, values[i].length);
+                to += values[i].length;
+                from = offsets[i];
+            }
+            System.arraycopy(bytes, from, result, to, bytes.length - from);
+            return result;
+        }
+    }
+}
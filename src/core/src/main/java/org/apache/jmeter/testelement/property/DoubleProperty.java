@@ -138,4 +138,12 @@ public class DoubleProperty extends NumberProperty {
     public void recoverRunningVersion(TestElement owner) {
         value = savedValue;
     }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected boolean isShareable() {
+        return value == savedValue;
+    }
 }
@@ -53,6 +53,14 @@ public class FloatProperty extends NumberProperty {
         value = savedValue;
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected boolean isShareable() {
+        return value == savedValue;
+    }
+
     public void setValue(float value) {
         this.value = value;
     }
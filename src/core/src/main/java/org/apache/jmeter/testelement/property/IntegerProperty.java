@@ -50,6 +50,14 @@ public class IntegerProperty extends NumberProperty {
         value = savedValue;
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected boolean isShareable() {
+        return value == savedValue;
+    }
+
     public IntegerProperty(String name) {
         super(name);
     }
@@ -54,6 +54,14 @@ public class LongProperty extends NumberProperty {
         value = savedValue;
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected boolean isShareable() {
+        return value == savedValue;
+    }
+
     public void setValue(int value) {
         this.value = value;
     }
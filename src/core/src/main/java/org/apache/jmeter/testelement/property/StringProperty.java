@@ -103,4 +103,12 @@ public class StringProperty extends AbstractProperty {
             value = savedValue;
         }
     }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected boolean isShareable() {
+        return savedValue == null || savedValue.equals(value);
+    }
 }
@@ -150,8 +150,8 @@ public abstract class AbstractThreadGroup extends AbstractTestElement
     @Override
     public void initialize() {
         Controller c = getSamplerController();
+        c.setName(getName()); // Copy our name into that of the controller
         JMeterProperty property = c.getProperty(TestElement.NAME);
-        property.setObjectValue(getName()); // Copy our name into that of the controller
         property.setRunningVersion(property.isRunningVersion());// otherwise name reverts
         c.initialize();
     }
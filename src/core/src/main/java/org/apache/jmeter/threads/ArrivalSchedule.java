@@ -0,0 +1,159 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.apache.jmeter.threads;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Target rate of arrivals of an {@link ArrivalsThreadGroup}, as a table of segments.
+ * <p>
+ * Each line of the table holds the duration of a segment in seconds, the rate of arrivals per
+ * second at its start and optionally the rate at its end, separated by commas: the rate changes
+ * linearly within a segment, and is constant if there is no end rate. Empty lines and text after
+ * a <code>#</code> are ignored. A constant rate is a single line, a ramp a line with two rates,
+ * steps are consecutive lines:
+ * <pre>
+ * 60, 0, 100   # ramp up to 100 arrivals per second in a minute
+ * 600, 100     # hold 100 arrivals per second for 10 minutes
+ * 300, 150     # step up to 150 arrivals per second
+ * </pre>
+ */
+public final class ArrivalSchedule {
+    /** Durations of the segments in seconds */
+    private final double[] durations;
+
+    private final double[] startRates;
+
+    private final double[] endRates;
+
+    private ArrivalSchedule(double[] durations, double[] startRates, double[] endRates) {
+        this.durations = durations;
+        this.startRates = startRates;
+        this.endRates = endRates;
+    }
+
+    /**
+     * Parse a table of segments.
+     *
+     * @param table the segments, one per line
+     * @return the schedule
+     * @throws IllegalArgumentException if a line is not a valid segment, or if there is no segment
+     */
+    public static ArrivalSchedule parse(String table) {
+        List<double[]> segments = new ArrayList<>();
+        String[] lines = table.split("\r?\n|\r"); //$NON-NLS-1$
+        for (int i = 0; i < lines.length; i++) {
+            String line = lines[i];
+            int comment = line.indexOf('#');
+            if (comment >= 0) {
+                line = line.substring(0, comment);
+            }
+            line = line.trim();
+            if (line.isEmpty()) {
+                continue;
+            }
+            String[] fields = line.split("\\s*,\\s*"); //$NON-NLS-1$
+            if (fields.length < 2 || fields.length > 3) {
+                throw new IllegalArgumentException("Line " + (i + 1)
+                        + " of the arrivals schedule must be 'seconds, rate[, end rate]': " + lines[i]);
+            }
+            double[] segment = new double[3];
+            for (int j = 0; j < fields.length; j++) {
+                try {
+                    segment[j] = Double.parseDouble(fields[j]);
+                } catch (NumberFormatException e) {
+                    throw new IllegalArgumentException("Line " + (i + 1)
+                            + " of the arrivals schedule has an invalid number: " + fields[j], e);
+                }
+                if (!(segment[j] >= 0) || Double.isInfinite(segment[j])) {
+                    throw new IllegalArgumentException("Line " + (i + 1)
+                            + " of the arrivals schedule has a negative or infinite number: " + fields[j]);
+                }
+            }
+            if (fields.length == 2) {
+                segment[2] = segment[1];
+            }
+            segments.add(segment);
+        }
+        if (segments.isEmpty()) {
+            throw new IllegalArgumentException("The arrivals schedule has no segment");
+        }
+        int count = segments.size();
+        double[] durations = new double[count];
+        double[] startRates = new double[count];
+        double[] endRates = new double[count];
+        for (int i = 0; i < count; i++) {
+            durations[i] = segments.get(i)[0];
+            startRates[i] = segments.get(i)[1];
+            endRates[i] = segments.get(i)[2];
+        }
+        return new ArrivalSchedule(durations, startRates, endRates);
+    }
+
+    /**
+     * @return duration of the schedule in seconds
+     */
+    public double getDuration() {
+        double duration = 0;
+        for (double d : durations) {
+            duration += d;
+        }
+        return duration;
+    }
+
+    /**
+     * @return number of arrivals over the whole schedule
+     */
+    public double getArrivals() {
+        double arrivals = 0;
+        for (int i = 0; i < durations.length; i++) {
+            arrivals += durations[i] * (startRates[i] + endRates[i]) / 2;
+        }
+        return arrivals;
+    }
+
+    /**
+     * Get the time by which a number of arrivals is due, i.e. invert the number of arrivals
+     * since the start, the integral of the rate.
+     *
+     * @param arrivals number of arrivals since the start, positive, not necessarily an integer
+     * @return seconds since the start of the schedule, or -1 if fewer arrivals are due over the
+     *         whole schedule
+     */
+    public double timeOf(double arrivals) {
+        double remaining = arrivals;
+        double start = 0;
+        for (int i = 0; i < durations.length; i++) {
+            double d = durations[i];
+            double r0 = startRates[i];
+            double r1 = endRates[i];
+            double segmentArrivals = d * (r0 + r1) / 2;
+            if (remaining <= segmentArrivals && segmentArrivals > 0) {
+                // solve r0 * t + (r1 - r0) * t^2 / (2 * d) = remaining, in a form which is
+                // accurate when the rate is (nearly) constant
+                double discriminant = Math.max(0, r0 * r0 + 2 * (r1 - r0) * remaining / d);
+                return start + Math.min(d, 2 * remaining / (r0 + Math.sqrt(discriminant)));
+            }
+            remaining -= segmentArrivals;
+            start += d;
+        }
+        return -1;
+    }
+}
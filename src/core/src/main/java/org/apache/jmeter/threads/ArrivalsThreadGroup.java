@@ -0,0 +1,534 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.apache.jmeter.threads;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.apache.jmeter.control.LoopController;
+import org.apache.jmeter.engine.StandardJMeterEngine;
+import org.apache.jmeter.engine.TreeCloner;
+import org.apache.jmeter.gui.GUIMenuSortOrder;
+import org.apache.jmeter.samplers.SampleEvent;
+import org.apache.jmeter.samplers.SampleListener;
+import org.apache.jmeter.samplers.SampleResult;
+import org.apache.jmeter.testelement.property.BooleanProperty;
+import org.apache.jmeter.testelement.property.StringProperty;
+import org.apache.jmeter.util.JMeterUtils;
+import org.apache.jorphan.collections.ListedHashTree;
+import org.apache.jorphan.util.JMeterStopTestException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Thread group of an open workload: iterations start at the rate of an {@link ArrivalSchedule},
+ * whether or not the previous ones have completed, so the throughput does not drop when the
+ * system under test slows down.
+ * <p>
+ * Each arrival runs one iteration of the main controller on an idle thread, or on a new thread
+ * while there are fewer than the number of threads of the group, which caps the concurrency.
+ * Otherwise the arrival is dropped. Threads idle for <code>jmeterthread.arrivals.idle.timeout</code>
+ * end. Arrivals which start more than <code>jmeterthread.arrivals.late.threshold</code> after
+ * their scheduled time, e.g. while a new thread is created, are counted as late; the number of
+ * arrivals, late and dropped ones are logged at the end of the group, and reported to the listeners
+ * of the group as a sample labelled <code>name arrivals</code>, which fails if arrivals were late
+ * or dropped.
+ */
+@GUIMenuSortOrder(2)
+public class ArrivalsThreadGroup extends AbstractThreadGroup {
+    private static final long serialVersionUID = 240L;
+
+    private static final Logger log = LoggerFactory.getLogger(ArrivalsThreadGroup.class);
+
+    private static final long WAIT_TO_DIE = JMeterUtils.getPropDefault("jmeterengine.threadstop.wait", 5 * 1000); // 5 seconds
+
+    /** How long an idle thread waits for an arrival before it ends, default 30s */
+    private static final long IDLE_TIMEOUT =
+            JMeterUtils.getPropDefault("jmeterthread.arrivals.idle.timeout", 30000L); //$NON-NLS-1$
+
+    /** Delay after which an arrival is late, default 100ms */
+    private static final long LATE_THRESHOLD =
+            JMeterUtils.getPropDefault("jmeterthread.arrivals.late.threshold", 100L); //$NON-NLS-1$
+
+    /** How often an idle thread checks for the end of the schedule */
+    private static final long IDLE_GRANULARITY = 1000;
+
+    //+ JMX entries - do not change the string values
+
+    /** Table of the {@link ArrivalSchedule} */
+    public static final String SCHEDULE = "ArrivalsThreadGroup.schedule";
+
+    /** Whether the arrivals are random (Poisson process) rather than evenly spaced */
+    public static final String RANDOM_ARRIVALS = "ArrivalsThreadGroup.random";
+    //- JMX entries
+
+    private transient Thread arrivalStarter;
+
+    // List of active threads
+    private final ConcurrentHashMap<JMeterThread, Thread> allThreads = new ConcurrentHashMap<>();
+
+    /** Hands the scheduled time of an arrival over to an idle thread */
+    private transient SynchronousQueue<Long> arrivals;
+
+    /** Is test (still) running? */
+    private volatile boolean running = false;
+
+    /** Have all the arrivals been scheduled? */
+    private volatile boolean scheduleEnded = false;
+
+    private final AtomicInteger threadNumber = new AtomicInteger();
+
+    private final LongAdder scheduledArrivals = new LongAdder();
+
+    private final LongAdder lateArrivals = new LongAdder();
+
+    private final LongAdder droppedArrivals = new LongAdder();
+
+    /** Thread Group number */
+    private int groupNumber;
+
+    /** Thread safe class */
+    private ListenerNotifier notifier;
+
+    /** This property will be cloned */
+    private ListedHashTree threadGroupTree;
+
+    private transient StandardJMeterEngine engine;
+
+    /** Sample listeners in the scope of the whole group, which receive the arrival counts */
+    private transient List<SampleListener> groupListeners;
+
+    public ArrivalsThreadGroup() {
+        super();
+    }
+
+    /**
+     * @param schedule table of the {@link ArrivalSchedule}
+     */
+    public void setSchedule(String schedule) {
+        setProperty(new StringProperty(SCHEDULE, schedule));
+    }
+
+    /**
+     * @return table of the {@link ArrivalSchedule}
+     */
+    public String getSchedule() {
+        return getPropertyAsString(SCHEDULE);
+    }
+
+    /**
+     * @param random <code>true</code> if the arrivals are random rather than evenly spaced
+     */
+    public void setRandomArrivals(boolean random) {
+        setProperty(new BooleanProperty(RANDOM_ARRIVALS, random));
+    }
+
+    /**
+     * @return <code>true</code> if the arrivals are random rather than evenly spaced
+     */
+    public boolean getRandomArrivals() {
+        return getPropertyAsBoolean(RANDOM_ARRIVALS);
+    }
+
+    /**
+     * @return number of arrivals scheduled so far in the current test
+     */
+    public long getScheduledArrivals() {
+        return scheduledArrivals.sum();
+    }
+
+    /**
+     * @return number of arrivals which started late so far in the current test
+     */
+    public long getLateArrivals() {
+        return lateArrivals.sum();
+    }
+
+    /**
+     * @return number of arrivals dropped so far in the current test, as all threads were busy
+     */
+    public long getDroppedArrivals() {
+        return droppedArrivals.sum();
+    }
+
+    @Override
+    public void start(int groupNum, ListenerNotifier notifier, ListedHashTree threadGroupTree, StandardJMeterEngine engine) {
+        ArrivalSchedule schedule;
+        try {
+            schedule = ArrivalSchedule.parse(getSchedule());
+        } catch (IllegalArgumentException e) {
+            throw new JMeterStopTestException("Invalid arrivals schedule in Thread Group " + getName() + ": " + e.getMessage());
+        }
+        this.running = true;
+        this.scheduleEnded = false;
+        this.groupNumber = groupNum;
+        this.notifier = notifier;
+        this.threadGroupTree = threadGroupTree;
+        this.engine = engine;
+        this.groupListeners = new ArrayList<>();
+        for (Object element : threadGroupTree.list(this)) {
+            if (element instanceof SampleListener) {
+                groupListeners.add((SampleListener) element);
+            }
+        }
+        this.arrivals = new SynchronousQueue<>();
+        threadNumber.set(0);
+        log.info("Starting thread group... number={} max threads={} arrivals={} over {}s random={}", groupNumber,
+                getNumThreads(), Math.round(schedule.getArrivals()), schedule.getDuration(), getRandomArrivals());
+        arrivalStarter = new Thread(new ArrivalStarter(schedule), getName() + "-ArrivalStarter");
+        arrivalStarter.setDaemon(true);
+        arrivalStarter.start();
+        log.info("Started thread group number {}", groupNumber);
+    }
+
+    /**
+     * Start an iteration for an arrival, on an idle thread or on a new one.
+     *
+     * @param scheduledTime time the arrival is due, in milliseconds
+     * @param maxThreads maximum number of threads
+     * @param context {@link JMeterContext} of the test, whose variables are copied to new threads
+     */
+    private void dispatch(long scheduledTime, int maxThreads, JMeterContext context) {
+        scheduledArrivals.increment();
+        if (arrivals.offer(scheduledTime)) {
+            return;
+        }
+        if (allThreads.size() >= maxThreads) {
+            droppedArrivals.increment();
+            log.debug("Dropped arrival, all {} threads of {} are busy", maxThreads, getName());
+            return;
+        }
+        JMeterThread jmThread = makeThread(threadNumber.getAndIncrement(), context);
+        jmThread.setStartTime(scheduledTime); // for arrivalStarted, the thread is not scheduled
+        Thread newThread = JMeterThreadFactory.newThread(jmThread);
+        allThreads.put(jmThread, newThread);
+        newThread.start();
+    }
+
+    /**
+     * Account for an arrival starting an iteration.
+     *
+     * @param scheduledTime time the arrival was due, in milliseconds
+     */
+    private void arrivalStarted(long scheduledTime) {
+        if (System.currentTimeMillis() - scheduledTime > LATE_THRESHOLD) {
+            lateArrivals.increment();
+        }
+    }
+
+    /**
+     * Wait for the next arrival, in a thread which has completed an iteration.
+     *
+     * @return <code>false</code> if the thread should end, as it stayed idle for too long or
+     *         there are no more arrivals
+     */
+    private boolean awaitArrival() {
+        long idleSince = System.currentTimeMillis();
+        try {
+            while (running) {
+                Long scheduledTime = arrivals.poll(IDLE_GRANULARITY, TimeUnit.MILLISECONDS);
+                if (scheduledTime != null) {
+                    arrivalStarted(scheduledTime);
+                    return true;
+                }
+                if (scheduleEnded || System.currentTimeMillis() - idleSince >= IDLE_TIMEOUT) {
+                    return false;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return false;
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * In the clone run by a thread, it records the first arrival of the thread.
+     */
+    @Override
+    public void initialize() {
+        super.initialize();
+        JMeterContext context = JMeterContextService.getContext();
+        AbstractThreadGroup group = context.getThreadGroup();
+        if (group != this && group instanceof ArrivalsThreadGroup && context.getThread() != null) {
+            ((ArrivalsThreadGroup) group).arrivalStarted(context.getThread().getStartTime());
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * In the clone run by a thread, once the iteration is complete it waits for the next arrival,
+     * and if there is one it restarts the main controller.
+     */
+    @Override
+    public boolean isDone() {
+        if (!super.isDone()) {
+            return false;
+        }
+        AbstractThreadGroup group = JMeterContextService.getContext().getThreadGroup();
+        if (group == this || !(group instanceof ArrivalsThreadGroup)
+                || !((ArrivalsThreadGroup) group).awaitArrival()) {
+            return true;
+        }
+        // start over as a new thread would, the loop count is not reset by initialize()
+        LoopController controller = (LoopController) getSamplerController();
+        controller.initialize();
+        controller.triggerEndOfLoop();
+        return false;
+    }
+
+    /**
+     * Create {@link JMeterThread} cloning threadGroupTree
+     * @param threadNumber int thread number
+     * @param context {@link JMeterContext}
+     * @return {@link JMeterThread}
+     */
+    private JMeterThread makeThread(int threadNumber, JMeterContext context) {
+        final JMeterThread jmeterThread = new JMeterThread(cloneTree(threadGroupTree), this, notifier, isSameUserOnNextIteration());
+        jmeterThread.setThreadNum(threadNumber);
+        jmeterThread.setThreadGroup(this);
+        jmeterThread.setInitialContext(context);
+        String distributedPrefix =
+                JMeterUtils.getPropDefault(JMeterUtils.THREAD_GROUP_DISTRIBUTED_PREFIX_PROPERTY_NAME, "");
+        final String threadName = distributedPrefix + (distributedPrefix.isEmpty() ? "":"-") + getName() + " " + groupNumber + "-" + (threadNumber + 1);
+        jmeterThread.setThreadName(threadName);
+        jmeterThread.setEngine(engine);
+        jmeterThread.setOnErrorStopTest(getOnErrorStopTest());
+        jmeterThread.setOnErrorStopTestNow(getOnErrorStopTestNow());
+        jmeterThread.setOnErrorStopThread(getOnErrorStopThread());
+        jmeterThread.setOnErrorStartNextLoop(getOnErrorStartNextLoop());
+        return jmeterThread;
+    }
+
+    /**
+     * @param tree {@link ListedHashTree}
+     * @return a clone of tree
+     */
+    private ListedHashTree cloneTree(ListedHashTree tree) {
+        TreeCloner cloner = new TreeCloner(true);
+        tree.traverse(cloner);
+        return cloner.getClonedTree();
+    }
+
+    /**
+     * Threads are started by the arrivals, up to the number of threads of the group.
+     *
+     * @throws UnsupportedOperationException always
+     */
+    @Override
+    public JMeterThread addNewThread(int delay, StandardJMeterEngine engine) {
+        throw new UnsupportedOperationException("Threads of " + getName() + " are started by the arrivals");
+    }
+
+    @Override
+    public boolean stopThread(String threadName, boolean now) {
+        for (Map.Entry<JMeterThread, Thread> threadEntry : allThreads.entrySet()) {
+            JMeterThread jMeterThread = threadEntry.getKey();
+            if (jMeterThread.getThreadName().equals(threadName)) {
+                stopThread(jMeterThread, threadEntry.getValue(), now);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void stopThread(JMeterThread jmeterThread, Thread jvmThread, boolean interrupt) {
+        jmeterThread.stop();
+        jmeterThread.interrupt(); // interrupt sampler if possible
+        if (interrupt && jvmThread != null) { // Bug 49734
+            jvmThread.interrupt(); // also interrupt JVM thread
+        }
+    }
+
+    /**
+     * Called by JMeterThread when it finishes
+     */
+    @Override
+    public void threadFinished(JMeterThread thread) {
+        if (log.isDebugEnabled()) {
+            log.debug("Ending thread {}", thread.getThreadName());
+        }
+        allThreads.remove(thread);
+    }
+
+    private void stopArrivals() {
+        running = false;
+        if (arrivalStarter != null) {
+            arrivalStarter.interrupt();
+        }
+    }
+
+    @Override
+    public void tellThreadsToStop() {
+        stopArrivals();
+        allThreads.forEach((key, value) -> stopThread(key, value, true));
+    }
+
+    @Override
+    public void stop() {
+        stopArrivals();
+        allThreads.keySet().forEach(JMeterThread::stop);
+    }
+
+    @Override
+    public int numberOfActiveThreads() {
+        return allThreads.size();
+    }
+
+    @Override
+    public boolean verifyThreadsStopped() {
+        if (!verifyThreadStopped(arrivalStarter)) {
+            return false;
+        }
+        for (Thread t : allThreads.values()) {
+            if (!verifyThreadStopped(t)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean verifyThreadStopped(Thread thread) {
+        if (thread != null && thread.isAlive()) {
+            try {
+                thread.join(WAIT_TO_DIE);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            if (thread.isAlive()) {
+                log.warn("Thread won't exit: {}", thread.getName());
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Wait for all Group Threads to stop, then log and report the arrivals
+     */
+    @Override
+    public void waitThreadsStopped() {
+        waitThreadStopped(arrivalStarter);
+        // threads are started until the arrival starter ends
+        while (!allThreads.isEmpty()) {
+            allThreads.values().forEach(this::waitThreadStopped);
+        }
+        long scheduled = scheduledArrivals.sumThenReset();
+        if (scheduled > 0) {
+            long late = lateArrivals.sumThenReset();
+            long dropped = droppedArrivals.sumThenReset();
+            log.info("Arrivals of thread group {}: {} scheduled, {} late, {} dropped", getName(),
+                    scheduled, late, dropped);
+            notifyArrivals(scheduled, late, dropped);
+        }
+    }
+
+    /**
+     * Report the arrivals of the test to the listeners of the group.
+     *
+     * @param scheduled number of arrivals scheduled
+     * @param late number of arrivals which started late
+     * @param dropped number of arrivals dropped
+     */
+    private void notifyArrivals(long scheduled, long late, long dropped) {
+        String counts = scheduled + " scheduled, " + late + " late, " + dropped + " dropped"; //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+        SampleResult result = new SampleResult();
+        result.setSampleLabel(getName() + " arrivals"); //$NON-NLS-1$
+        result.setThreadName(getName() + " " + groupNumber); //$NON-NLS-1$
+        result.setStampAndTime(System.currentTimeMillis(), 0);
+        result.setAllThreads(JMeterContextService.getNumberOfThreads());
+        result.setResponseData(counts, null);
+        result.setDataType(SampleResult.TEXT);
+        result.setResponseMessage(counts);
+        boolean onTime = late == 0 && dropped == 0;
+        if (onTime) {
+            result.setResponseCodeOK();
+        } else {
+            result.setResponseCode("500"); //$NON-NLS-1$
+        }
+        result.setSuccessful(onTime);
+        notifier.notifyListeners(new SampleEvent(result, getName()), groupListeners);
+    }
+
+    private void waitThreadStopped(Thread thread) {
+        if (thread == null) {
+            return;
+        }
+        while (thread.isAlive()) {
+            try {
+                thread.join(WAIT_TO_DIE);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Schedules the arrivals
+     */
+    private class ArrivalStarter implements Runnable {
+        private final ArrivalSchedule schedule;
+        private final JMeterContext context;
+
+        ArrivalStarter(ArrivalSchedule schedule) {
+            this.schedule = schedule;
+            // Store context from Root Thread to pass it to created threads
+            this.context = JMeterContextService.getContext();
+        }
+
+        @Override
+        public void run() {
+            final boolean random = getRandomArrivals();
+            final int maxThreads = getNumThreads();
+            final long startTimeInMillis = System.currentTimeMillis();
+            double count = 0;
+            try {
+                while (running) {
+                    // the gaps between random arrivals in units of the expected gap are exponentially distributed
+                    count += random ? -Math.log(1 - ThreadLocalRandom.current().nextDouble()) : 1;
+                    double offset = schedule.timeOf(count);
+                    if (offset < 0) {
+                        break;
+                    }
+                    long scheduledTime = startTimeInMillis + Math.round(offset * 1000);
+                    long delay = scheduledTime - System.currentTimeMillis();
+                    if (delay > 0) {
+                        TimeUnit.MILLISECONDS.sleep(delay);
+                    }
+                    dispatch(scheduledTime, maxThreads, context);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (Exception ex) {
+                log.error("An error occurred scheduling the arrivals of Thread Group: {}", getName(), ex);
+            } finally {
+                scheduleEnded = true;
+            }
+        }
+    }
+}
@@ -17,7 +17,6 @@
 
 package org.apache.jmeter.threads;
 
-import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
 import java.util.concurrent.TimeUnit;
@@ -338,10 +337,10 @@ public class JMeterThread implements Runnable, Interruptible {
      * Trigger break/continue/switch to next thread Loop  depending on consumer implementation
      * @param sampler Sampler Base sampler
      * @param threadContext
-     * @param consumer Consumer that will process the tree of elements up to root node
+     * @param consumer Consumer that will process the controllers up to root node
      */
     private void triggerLoopLogicalActionOnParentControllers(Sampler sampler, JMeterContext threadContext,
-            Consumer<FindTestElementsUpToRootTraverser> consumer) {
+            Consumer<List<Controller>> consumer) {
         TransactionSampler transactionSampler = null;
         if (sampler instanceof TransactionSampler) {
             transactionSampler = (TransactionSampler) sampler;
@@ -353,11 +352,15 @@ public class JMeterThread implements Runnable, Interruptible {
                     "Got null subSampler calling findRealSampler for:" +
                     (sampler != null ? sampler.getName() : "null") + ", sampler:" + sampler);
         }
-        // Find parent controllers of current sampler
-        FindTestElementsUpToRootTraverser pathToRootTraverser = new FindTestElementsUpToRootTraverser(realSampler);
-        testTree.traverse(pathToRootTraverser);
+        // Find parent controllers of current sampler, compiled with it unless it is not in the tree
+        List<Controller> controllersToRoot = compiler.getControllersToRoot(realSampler);
+        if (controllersToRoot == null) {
+            FindTestElementsUpToRootTraverser pathToRootTraverser = new FindTestElementsUpToRootTraverser(realSampler);
+            testTree.traverse(pathToRootTraverser);
+            controllersToRoot = pathToRootTraverser.getControllersToRoot();
+        }
 
-        consumer.accept(pathToRootTraverser);
+        consumer.accept(controllersToRoot);
 
         // bug 52968
         // When using Start Next Loop option combined to TransactionController.
@@ -372,10 +375,9 @@ public class JMeterThread implements Runnable, Interruptible {
     /**
      * Executes a continue of current loop, equivalent of "continue" in algorithm.
      * As a consequence it ends the first loop it finds on the path to root
-     * @param pathToRootTraverser {@link FindTestElementsUpToRootTraverser}
+     * @param controllersToReinit {@link Controller}s from the sampler up to root node
      */
-    private static void continueOnCurrentLoop(FindTestElementsUpToRootTraverser pathToRootTraverser) {
-        List<Controller> controllersToReinit = pathToRootTraverser.getControllersToRoot();
+    private static void continueOnCurrentLoop(List<Controller> controllersToReinit) {
         for (Controller parentController : controllersToReinit) {
             if (parentController instanceof AbstractThreadGroup) {
                 AbstractThreadGroup tg = (AbstractThreadGroup) parentController;
@@ -392,10 +394,9 @@ public class JMeterThread implements Runnable, Interruptible {
     /**
      * Executes a break of current loop, equivalent of "break" in algorithm.
      * As a consequence it ends the first loop it finds on the path to root
-     * @param pathToRootTraverser {@link FindTestElementsUpToRootTraverser}
+     * @param controllersToReinit {@link Controller}s from the sampler up to root node
      */
-    private static void breakOnCurrentLoop(FindTestElementsUpToRootTraverser pathToRootTraverser) {
-        List<Controller> controllersToReinit = pathToRootTraverser.getControllersToRoot();
+    private static void breakOnCurrentLoop(List<Controller> controllersToReinit) {
         for (Controller parentController : controllersToReinit) {
             if (parentController instanceof AbstractThreadGroup) {
                 AbstractThreadGroup tg = (AbstractThreadGroup) parentController;
@@ -412,10 +413,9 @@ public class JMeterThread implements Runnable, Interruptible {
     /**
      * Executes a restart of Thread loop, equivalent of "continue" in algorithm but on Thread Loop.
      * As a consequence it ends all loop on the path to root
-     * @param pathToRootTraverser {@link FindTestElementsUpToRootTraverser}
+     * @param controllersToReinit {@link Controller}s from the sampler up to root node
      */
-    private static void continueOnThreadLoop(FindTestElementsUpToRootTraverser pathToRootTraverser) {
-        List<Controller> controllersToReinit = pathToRootTraverser.getControllersToRoot();
+    private static void continueOnThreadLoop(List<Controller> controllersToReinit) {
         for (Controller parentController : controllersToReinit) {
             if (parentController instanceof AbstractThreadGroup) {
                 AbstractThreadGroup tg = (AbstractThreadGroup) parentController;
@@ -673,28 +673,11 @@ public class JMeterThread implements Runnable, Interruptible {
      * @return the listeners who should receive the sample result
      */
     private List<SampleListener> getSampleListeners(SamplePackage samplePack, SamplePackage transactionPack, TransactionSampler transactionSampler) {
-        List<SampleListener> sampleListeners = samplePack.getSampleListeners();
         // Do not send subsamples to listeners which receive the transaction sample
         if(transactionSampler != null) {
-            List<SampleListener> onlySubSamplerListeners = new ArrayList<>();
-            List<SampleListener> transListeners = transactionPack.getSampleListeners();
-            for(SampleListener listener : sampleListeners) {
-                // Check if this instance is present in transaction listener list
-                boolean found = false;
-                for(SampleListener trans : transListeners) {
-                    // Check for the same instance
-                    if(trans == listener) {
-                        found = true;
-                        break;
-                    }
-                }
-                if(!found) {
-                    onlySubSamplerListeners.add(listener);
-                }
-            }
-            sampleListeners = onlySubSamplerListeners;
+            return samplePack.getSubSampleListeners(transactionPack);
         }
-        return sampleListeners;
+        return samplePack.getSampleListeners();
     }
 
     /**
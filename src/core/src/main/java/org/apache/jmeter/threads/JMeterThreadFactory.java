@@ -0,0 +1,99 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.apache.jmeter.threads;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+
+import org.apache.jmeter.util.JMeterUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Creates the threads running the {@link JMeterThread}s of the thread groups.
+ * <p>
+ * They are platform threads unless <code>jmeterthread.virtual=true</code>, in which case they
+ * are virtual threads, so that a virtual user blocked in a socket read or a timer does not hold
+ * an OS thread and its stack. Virtual threads need Java 21 or later, they are looked up by
+ * reflection as JMeter runs on Java 8; on older JVMs platform threads are used.
+ * Virtual threads are always daemon threads, the engine waits for them to end anyway.
+ */
+final class JMeterThreadFactory {
+    private static final Logger log = LoggerFactory.getLogger(JMeterThreadFactory.class);
+
+    /** <code>Thread.ofVirtual()</code>, <code>null</code> if virtual threads are not used */
+    private static final Method OF_VIRTUAL;
+
+    /** <code>Thread.Builder.name(String)</code> */
+    private static final Method NAME;
+
+    /** <code>Thread.Builder.unstarted(Runnable)</code> */
+    private static final Method UNSTARTED;
+
+    static {
+        Method ofVirtual = null;
+        Method name = null;
+        Method unstarted = null;
+        if (JMeterUtils.getPropDefault("jmeterthread.virtual", false)) { //$NON-NLS-1$
+            try {
+                ofVirtual = Thread.class.getMethod("ofVirtual"); //$NON-NLS-1$
+                Class<?> builder = Class.forName("java.lang.Thread$Builder"); //$NON-NLS-1$
+                name = builder.getMethod("name", String.class); //$NON-NLS-1$
+                unstarted = builder.getMethod("unstarted", Runnable.class); //$NON-NLS-1$
+                log.info("JMeter threads run on virtual threads");
+            } catch (ReflectiveOperationException e) {
+                log.warn("Virtual threads need Java 21 or later, JMeter threads run on platform threads");
+                ofVirtual = null;
+            }
+        }
+        OF_VIRTUAL = ofVirtual;
+        NAME = name;
+        UNSTARTED = unstarted;
+    }
+
+    private JMeterThreadFactory() {
+    }
+
+    /**
+     * @return <code>true</code> if the JMeter threads run on virtual threads
+     */
+    static boolean isVirtual() {
+        return OF_VIRTUAL != null;
+    }
+
+    /**
+     * Create the thread running a {@link JMeterThread}, named after it.
+     *
+     * @param jmThread the JMeter thread to run
+     * @return the thread, not started
+     */
+    static Thread newThread(JMeterThread jmThread) {
+        if (OF_VIRTUAL == null) {
+            Thread thread = new Thread(jmThread, jmThread.getThreadName());
+            thread.setDaemon(false); // the creating thread may be a daemon, e.g. the ThreadStarter
+            return thread;
+        }
+        try {
+            Object builder = NAME.invoke(OF_VIRTUAL.invoke(null), jmThread.getThreadName());
+            return (Thread) UNSTARTED.invoke(builder, jmThread);
+        } catch (IllegalAccessException | InvocationTargetException e) {
+            throw new IllegalStateException("Could not create virtual thread " + jmThread.getThreadName(), e);
+        }
+    }
+}
@@ -20,6 +20,7 @@ package org.apache.jmeter.threads;
 import java.io.Serializable;
 import java.util.List;
 
+import org.apache.jmeter.samplers.AsyncSampleListener;
 import org.apache.jmeter.samplers.SampleEvent;
 import org.apache.jmeter.samplers.SampleListener;
 import org.apache.jmeter.testbeans.TestBeanHelper;
@@ -30,7 +31,8 @@ import org.slf4j.LoggerFactory;
 /**
  * Processes sample events. <br>
  * The current implementation processes events in the calling thread
- * using {@link #notifyListeners(SampleEvent, List)} <br>
+ * using {@link #notifyListeners(SampleEvent, List)}, except for the
+ * {@link AsyncSampleListener}s when the {@link SampleEventDispatcher} is enabled <br>
  * Thread safe class
  */
 public class ListenerNotifier implements Serializable {
@@ -49,10 +51,16 @@ public class ListenerNotifier implements Serializable {
      * @param listeners
      *            a list of the listeners which should be notified. This list
      *            must not be null and must contain only SampleListener
-     *            elements.
+     *            elements. It must not be modified afterwards if it contains
+     *            asynchronous listeners.
      */
     public void notifyListeners(SampleEvent res, List<SampleListener> listeners) {
+        boolean dispatch = false;
         for (SampleListener sampleListener : listeners) {
+            if (sampleListener instanceof AsyncSampleListener && SampleEventDispatcher.isEnabled()) {
+                dispatch = true; // notified by the dispatcher threads
+                continue;
+            }
             try {
                 TestBeanHelper.prepare((TestElement) sampleListener);
                 sampleListener.sampleOccurred(res);
@@ -61,6 +69,9 @@ public class ListenerNotifier implements Serializable {
                 log.info("Continuing to process further listeners");
             }
         }
+        if (dispatch) {
+            SampleEventDispatcher.dispatch(res, listeners);
+        }
     }
 
 }
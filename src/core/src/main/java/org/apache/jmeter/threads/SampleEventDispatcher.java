@@ -0,0 +1,335 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.apache.jmeter.threads;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+import org.apache.jmeter.samplers.AsyncSampleListener;
+import org.apache.jmeter.samplers.SampleEvent;
+import org.apache.jmeter.samplers.SampleListener;
+import org.apache.jmeter.util.JMeterUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Delivers the samples to the {@link AsyncSampleListener}s on dispatcher threads, so that
+ * slow listeners, such as those writing result files, do not delay the sampling threads.
+ * <p>
+ * Enabled by <code>jmeter.listeners.async</code>. The samples are queued in bounded rings holding
+ * <code>jmeter.listeners.async.capacity</code> events in all, one ring per dispatcher thread
+ * (<code>jmeter.listeners.async.threads</code>), read in batches of up to
+ * <code>jmeter.listeners.async.batch</code> events; the dispatcher threads are started on the
+ * first sample of a test. The samples of a sampling thread always go to the same ring, so each
+ * listener receives them in the order they occurred, whatever the number of dispatcher threads;
+ * the samples of different sampling threads are not ordered.
+ * When its ring is full, <code>jmeter.listeners.async.policy</code> tells what the sampling
+ * thread does:
+ * <ul>
+ * <li><code>block</code>: it waits for room in the ring, no sample is lost</li>
+ * <li><code>drop</code>: the sample is not delivered to the asynchronous listeners</li>
+ * <li><code>sample</code>: it waits for room for one sample out of
+ * <code>jmeter.listeners.async.sample.ratio</code>, and drops the others</li>
+ * </ul>
+ * The depth of the queue, and the samples dropped, are available while the test runs
+ * and logged at its end.
+ */
+public final class SampleEventDispatcher {
+    private static final Logger log = LoggerFactory.getLogger(SampleEventDispatcher.class);
+
+    private enum Policy {
+        BLOCK, DROP, SAMPLE
+    }
+
+    private static final boolean ENABLED =
+            JMeterUtils.getPropDefault("jmeter.listeners.async", false); //$NON-NLS-1$
+
+    private static final int CAPACITY =
+            JMeterUtils.getPropDefault("jmeter.listeners.async.capacity", 65536); //$NON-NLS-1$
+
+    private static final int BATCH_SIZE =
+            Math.max(1, JMeterUtils.getPropDefault("jmeter.listeners.async.batch", 512)); //$NON-NLS-1$
+
+    private static final int THREADS =
+            Math.max(1, JMeterUtils.getPropDefault("jmeter.listeners.async.threads", 1)); //$NON-NLS-1$
+
+    private static final Policy POLICY =
+            parsePolicy(JMeterUtils.getPropDefault("jmeter.listeners.async.policy", "block")); //$NON-NLS-1$ //$NON-NLS-2$
+
+    private static final int SAMPLE_RATIO =
+            Math.max(1, JMeterUtils.getPropDefault("jmeter.listeners.async.sample.ratio", 10)); //$NON-NLS-1$
+
+    /** How long an idle dispatcher thread, or a sampling thread waiting for room, parks */
+    private static final long PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    /** One ring per dispatcher thread, written by the sampling threads according to their id */
+    private static final SampleEventRing[] RINGS = ENABLED ? createRings() : null;
+
+    /** Number of samples delivered since the ring was created, compared to the number written */
+    private static final AtomicLong DELIVERED = new AtomicLong();
+
+    private static final AtomicLong MAX_DEPTH = new AtomicLong();
+
+    private static final LongAdder DROPPED = new LongAdder();
+
+    private static final LongAdder BLOCKED = new LongAdder();
+
+    /** Samples which found the ring full, to keep one out of {@link #SAMPLE_RATIO} */
+    private static final AtomicLong OVERFLOWS = new AtomicLong();
+
+    private static final Object LIFECYCLE = new Object();
+
+    private static volatile Thread[] dispatchers;
+
+    private static volatile boolean stopping;
+
+    /** Value of {@link #DELIVERED} when the dispatcher threads were started */
+    private static long deliveredAtStart;
+
+    private SampleEventDispatcher() {
+    }
+
+    private static SampleEventRing[] createRings() {
+        SampleEventRing[] rings = new SampleEventRing[THREADS];
+        for (int i = 0; i < rings.length; i++) {
+            rings[i] = new SampleEventRing(Math.max(1, CAPACITY / THREADS));
+        }
+        return rings;
+    }
+
+    private static Policy parsePolicy(String policy) {
+        try {
+            return Policy.valueOf(policy.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            log.warn("Unknown jmeter.listeners.async.policy '{}', expected block, drop or sample; using block", policy);
+            return Policy.BLOCK;
+        }
+    }
+
+    /**
+     * @return <code>true</code> if the samples are delivered asynchronously
+     *         to the {@link AsyncSampleListener}s
+     */
+    public static boolean isEnabled() {
+        return ENABLED;
+    }
+
+    /**
+     * Queue a sample for its asynchronous listeners, which must be enabled.
+     *
+     * @param event the sample event
+     * @param listeners listeners of the sample, only the {@link AsyncSampleListener}s
+     *            are notified; the list must not be modified afterwards
+     * @return <code>false</code> if the sample was dropped as the queue was full
+     */
+    static boolean dispatch(SampleEvent event, List<SampleListener> listeners) {
+        if (dispatchers == null) {
+            start();
+        }
+        SampleEventRing ring = RINGS[(int) (Thread.currentThread().getId() % RINGS.length)];
+        if (ring.offer(event, listeners)) {
+            return true;
+        }
+        if (POLICY == Policy.DROP
+                || (POLICY == Policy.SAMPLE && OVERFLOWS.getAndIncrement() % SAMPLE_RATIO != 0)) {
+            DROPPED.increment();
+            return false;
+        }
+        BLOCKED.increment();
+        while (!ring.offer(event, listeners)) {
+            LockSupport.parkNanos(PARK_NANOS);
+        }
+        return true;
+    }
+
+    private static void start() {
+        synchronized (LIFECYCLE) {
+            if (dispatchers != null) {
+                return;
+            }
+            Thread[] threads = new Thread[THREADS];
+            for (int i = 0; i < threads.length; i++) {
+                SampleEventRing ring = RINGS[i];
+                threads[i] = new Thread(() -> run(ring), "SampleEventDispatcher-" + (i + 1)); //$NON-NLS-1$
+                threads[i].setDaemon(true);
+                threads[i].start();
+            }
+            dispatchers = threads;
+            deliveredAtStart = DELIVERED.get();
+            log.info("Started {} dispatcher threads for asynchronous listeners, queue of {} samples, {} policy",
+                    threads.length, getCapacity(), POLICY);
+        }
+    }
+
+    private static void run(SampleEventRing ring) {
+        List<SampleEvent> events = new ArrayList<>(BATCH_SIZE);
+        List<List<SampleListener>> eventListeners = new ArrayList<>(BATCH_SIZE);
+        Map<AsyncSampleListener, List<SampleEvent>> batches = new IdentityHashMap<>();
+        while (true) {
+            int depth = getQueueDepth();
+            if (depth > MAX_DEPTH.get()) {
+                MAX_DEPTH.accumulateAndGet(depth, Math::max);
+            }
+            int count = ring.drainTo(BATCH_SIZE, events, eventListeners);
+            if (count == 0) {
+                if (stopping) {
+                    return;
+                }
+                LockSupport.parkNanos(PARK_NANOS);
+                continue;
+            }
+            deliver(events, eventListeners, batches);
+            events.clear();
+            eventListeners.clear();
+            DELIVERED.addAndGet(count);
+        }
+    }
+
+    /**
+     * Group the events of a batch by listener, so that each listener gets them in a single call.
+     */
+    private static void deliver(List<SampleEvent> events, List<List<SampleListener>> eventListeners,
+            Map<AsyncSampleListener, List<SampleEvent>> batches) {
+        for (int i = 0; i < events.size(); i++) {
+            SampleEvent event = events.get(i);
+            for (SampleListener listener : eventListeners.get(i)) {
+                if (listener instanceof AsyncSampleListener) {
+                    batches.computeIfAbsent((AsyncSampleListener) listener, l -> new ArrayList<>()).add(event);
+                }
+            }
+        }
+        for (Map.Entry<AsyncSampleListener, List<SampleEvent>> batch : batches.entrySet()) {
+            List<SampleEvent> listenerEvents = batch.getValue();
+            if (listenerEvents.isEmpty()) {
+                continue;
+            }
+            try {
+                batch.getKey().samplesOccurred(listenerEvents);
+            } catch (RuntimeException e) {
+                log.error("Detected problem in Listener.", e);
+                log.info("Continuing to process further listeners");
+            }
+            listenerEvents.clear();
+        }
+    }
+
+    /**
+     * Wait until the queued samples are delivered, then stop the dispatcher threads
+     * and log the statistics of the queue. Called at the end of a test, once the
+     * sampling threads have stopped.
+     */
+    public static void drain() {
+        if (!ENABLED) {
+            return;
+        }
+        synchronized (LIFECYCLE) {
+            Thread[] threads = dispatchers;
+            if (threads == null) {
+                return;
+            }
+            while (DELIVERED.get() < getWritten() && isAnyAlive(threads)) {
+                LockSupport.parkNanos(PARK_NANOS);
+            }
+            stopping = true;
+            try {
+                for (Thread thread : threads) {
+                    thread.join();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                stopping = false;
+                dispatchers = null;
+            }
+            long dropped = DROPPED.sumThenReset();
+            long blocked = BLOCKED.sumThenReset();
+            log.info("Asynchronous listeners: {} samples delivered, {} dropped, {} waited for room,"
+                    + " max queue depth {} of {}",
+                    DELIVERED.get() - deliveredAtStart, dropped, blocked, MAX_DEPTH.getAndSet(0), getCapacity());
+            OVERFLOWS.set(0);
+        }
+    }
+
+    private static boolean isAnyAlive(Thread[] threads) {
+        for (Thread thread : threads) {
+            if (thread.isAlive()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static long getWritten() {
+        long written = 0;
+        for (SampleEventRing ring : RINGS) {
+            written += ring.getWritten();
+        }
+        return written;
+    }
+
+    /**
+     * @return number of samples waiting to be delivered
+     */
+    public static int getQueueDepth() {
+        if (!ENABLED) {
+            return 0;
+        }
+        int depth = 0;
+        for (SampleEventRing ring : RINGS) {
+            depth += ring.size();
+        }
+        return depth;
+    }
+
+    /**
+     * @return highest number of samples waiting to be delivered since the test started
+     */
+    public static long getMaxQueueDepth() {
+        return MAX_DEPTH.get();
+    }
+
+    /**
+     * @return number of samples the queue can hold
+     */
+    public static int getCapacity() {
+        if (!ENABLED) {
+            return 0;
+        }
+        int capacity = 0;
+        for (SampleEventRing ring : RINGS) {
+            capacity += ring.capacity();
+        }
+        return capacity;
+    }
+
+    /**
+     * @return number of samples not delivered to the asynchronous listeners since the test started,
+     *         as the queue was full
+     */
+    public static long getDropped() {
+        return DROPPED.sum();
+    }
+}
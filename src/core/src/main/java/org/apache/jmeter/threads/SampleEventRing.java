@@ -0,0 +1,151 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.apache.jmeter.threads;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import org.apache.jmeter.samplers.SampleEvent;
+import org.apache.jmeter.samplers.SampleListener;
+
+/**
+ * Bounded lock-free queue of sample events with their listeners, written by the sampling
+ * threads and read by the dispatcher threads.
+ * <p>
+ * Every slot has a sequence number telling whether it is free for the producer claiming
+ * position <code>p</code> (sequence <code>p</code>) or filled for the consumer claiming it
+ * (sequence <code>p + 1</code>). Positions are claimed by compare-and-set, the slot is written
+ * or read, and the sequence is then advanced, which publishes it.
+ */
+final class SampleEventRing {
+    private final SampleEvent[] events;
+
+    private final List<?>[] listeners;
+
+    private final AtomicLongArray sequences;
+
+    private final int mask;
+
+    /** Next position to write */
+    private final AtomicLong tail = new AtomicLong();
+
+    /** Next position to read */
+    private final AtomicLong head = new AtomicLong();
+
+    /**
+     * @param minCapacity number of events the ring holds, rounded up to a power of two
+     */
+    SampleEventRing(int minCapacity) {
+        int capacity = Integer.highestOneBit(Math.max(2, minCapacity) - 1) << 1;
+        this.events = new SampleEvent[capacity];
+        this.listeners = new List<?>[capacity];
+        this.sequences = new AtomicLongArray(capacity);
+        this.mask = capacity - 1;
+        for (int i = 0; i < capacity; i++) {
+            sequences.set(i, i);
+        }
+    }
+
+    /**
+     * @param event the sample event
+     * @param eventListeners listeners of the event, which must not be modified afterwards
+     * @return <code>false</code> if the ring is full
+     */
+    boolean offer(SampleEvent event, List<SampleListener> eventListeners) {
+        long position = tail.get();
+        while (true) {
+            int slot = (int) position & mask;
+            long diff = sequences.get(slot) - position;
+            if (diff == 0) {
+                if (tail.compareAndSet(position, position + 1)) {
+                    events[slot] = event;
+                    listeners[slot] = eventListeners;
+                    sequences.lazySet(slot, position + 1);
+                    return true;
+                }
+                position = tail.get();
+            } else if (diff < 0) {
+                return false;
+            } else {
+                // another producer claimed the position
+                position = tail.get();
+            }
+        }
+    }
+
+    /**
+     * Take up to <code>max</code> events.
+     *
+     * @param max maximum number of events to take
+     * @param eventsOut receives the events
+     * @param listenersOut receives the listeners of each event
+     * @return number of events taken, 0 if the ring is empty
+     */
+    @SuppressWarnings("unchecked")
+    int drainTo(int max, List<SampleEvent> eventsOut, List<List<SampleListener>> listenersOut) {
+        int count = 0;
+        long position = head.get();
+        while (count < max) {
+            int slot = (int) position & mask;
+            long diff = sequences.get(slot) - (position + 1);
+            if (diff == 0) {
+                if (head.compareAndSet(position, position + 1)) {
+                    eventsOut.add(events[slot]);
+                    listenersOut.add((List<SampleListener>) listeners[slot]);
+                    events[slot] = null;
+                    listeners[slot] = null;
+                    sequences.lazySet(slot, position + mask + 1);
+                    count++;
+                    position++;
+                } else {
+                    position = head.get();
+                }
+            } else if (diff < 0) {
+                break;
+            } else {
+                // another consumer took the position
+                position = head.get();
+            }
+        }
+        return count;
+    }
+
+    /**
+     * @return number of events written so far
+     */
+    long getWritten() {
+        return tail.get();
+    }
+
+    /**
+     * @return number of events in the ring, approximate while it is used
+     */
+    int size() {
+        long size = tail.get() - head.get();
+        return (int) Math.max(0, Math.min(size, capacity()));
+    }
+
+    /**
+     * @return maximum number of events in the ring
+     */
+    int capacity() {
+        return mask + 1;
+    }
+}
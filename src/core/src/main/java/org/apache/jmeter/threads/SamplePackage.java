@@ -17,6 +17,7 @@
 
 package org.apache.jmeter.threads;
 
+import java.util.ArrayList;
 import java.util.List;
 
 import org.apache.jmeter.assertions.Assertion;
@@ -58,6 +59,14 @@ public class SamplePackage {
 
     private final List<Controller> controllers;
 
+    /** Configs which apply to the sampler, merged into it before each sample */
+    private List<ConfigTestElement> mergedConfigs;
+
+    /** Package of the transaction for which {@link #subSampleListeners} were computed */
+    private SamplePackage listenersTransactionPack;
+
+    private List<SampleListener> subSampleListeners;
+
     private Sampler sampler;
 
     public SamplePackage(
@@ -139,6 +148,38 @@ public class SamplePackage {
      */
     public void addSampleListener(SampleListener listener) {
         sampleListeners.add(listener);
+        listenersTransactionPack = null;
+    }
+
+    /**
+     * Get the listeners which receive the sample but not the transaction sample,
+     * computed once for each transaction the sampler is called in.
+     *
+     * @param transactionPack package of the transaction the sample belongs to
+     * @return List of {@link SampleListener}s not in the transaction package
+     */
+    List<SampleListener> getSubSampleListeners(SamplePackage transactionPack) {
+        if (listenersTransactionPack != transactionPack) {
+            List<SampleListener> onlySubSamplerListeners = new ArrayList<>(sampleListeners.size());
+            List<SampleListener> transListeners = transactionPack.getSampleListeners();
+            for (SampleListener listener : sampleListeners) {
+                // Check if this instance is present in transaction listener list
+                boolean found = false;
+                for (SampleListener trans : transListeners) {
+                    // Check for the same instance
+                    if (trans == listener) {
+                        found = true;
+                        break;
+                    }
+                }
+                if (!found) {
+                    onlySubSamplerListeners.add(listener);
+                }
+            }
+            subSampleListeners = onlySubSamplerListeners;
+            listenersTransactionPack = transactionPack;
+        }
+        return subSampleListeners;
     }
 
     /**
@@ -226,4 +267,25 @@ public class SamplePackage {
         return configs;
     }
 
+    /**
+     * @return the configs which apply to the sampler
+     */
+    List<ConfigTestElement> getMergedConfigs() {
+        return mergedConfigs;
+    }
+
+    /**
+     * @param mergedConfigs the configs which apply to the sampler
+     */
+    void setMergedConfigs(List<ConfigTestElement> mergedConfigs) {
+        this.mergedConfigs = mergedConfigs;
+    }
+
+    /**
+     * @return List of the {@link Controller}s from the sampler up to the root of the tree
+     */
+    List<Controller> getControllers() {
+        return controllers;
+    }
+
 }
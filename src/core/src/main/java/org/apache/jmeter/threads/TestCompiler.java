@@ -99,10 +99,26 @@ public class TestCompiler implements HashTreeTraverser {
     public SamplePackage configureSampler(Sampler sampler) {
         SamplePackage pack = samplerConfigMap.get(sampler);
         pack.setSampler(sampler);
-        configureWithConfigElements(sampler, pack.getConfigs());
+        sampler.clearTestElementChildren();
+        for (ConfigTestElement config : pack.getMergedConfigs()) {
+            sampler.addTestElement(config);
+        }
         return pack;
     }
 
+    /**
+     * Get the controllers on the path from a sampler to the root of the test tree,
+     * without searching the tree.
+     *
+     * @param sampler {@link Sampler}
+     * @return List of {@link Controller}s from the sampler up to the root,
+     *         <code>null</code> if the sampler was not compiled
+     */
+    public List<Controller> getControllersToRoot(Sampler sampler) {
+        SamplePackage pack = samplerConfigMap.get(sampler);
+        return pack == null ? null : pack.getControllers();
+    }
+
     /**
      * Configures Transaction Sampler from SamplePackage extracted from Test plan and returns it
      * @param transactionSampler {@link TransactionSampler}
@@ -236,6 +252,7 @@ public class TestCompiler implements HashTreeTraverser {
         SamplePackage pack = new SamplePackage(configs, listeners, timers, assertions,
                 posts, pres, controllers);
         pack.setSampler(sam);
+        pack.setMergedConfigs(selectConfigsToMerge(sam, configs));
         pack.setRunningVersion(true);
         samplerConfigMap.put(sam, pack);
     }
@@ -304,20 +321,25 @@ public class TestCompiler implements HashTreeTraverser {
         }
     }
 
-    private void configureWithConfigElements(Sampler sam, List<ConfigTestElement> configs) {
-        sam.clearTestElementChildren();
+    /**
+     * Select once the configs to merge into the sampler before each sample,
+     * as whether they apply depends only on their GUI class.
+     */
+    private static List<ConfigTestElement> selectConfigsToMerge(Sampler sam, List<ConfigTestElement> configs) {
+        List<ConfigTestElement> merged = new ArrayList<>(configs.size());
         for (ConfigTestElement config  : configs) {
             if (!(config instanceof NoConfigMerge))
             {
                 if(sam instanceof ConfigMergabilityIndicator) {
                     if(((ConfigMergabilityIndicator)sam).applies(config)) {
-                        sam.addTestElement(config);
+                        merged.add(config);
                     }
                 } else {
                     // Backward compatibility
-                    sam.addTestElement(config);
+                    merged.add(config);
                 }
             }
         }
+        return merged;
     }
 }
@@ -265,7 +265,7 @@ public class ThreadGroup extends AbstractThreadGroup {
         JMeterThread jmThread = makeThread(notifier, threadGroupTree, engine, threadNum, context, isSameUserOnNextIteration);
         scheduleThread(jmThread, now); // set start and end time
         jmThread.setInitialDelay(delay);
-        Thread newThread = new Thread(jmThread, jmThread.getThreadName());
+        Thread newThread = JMeterThreadFactory.newThread(jmThread);
         registerStartedThread(jmThread, newThread);
         newThread.start();
         return jmThread;
@@ -625,8 +625,8 @@ public class ThreadGroup extends AbstractThreadGroup {
                         jmThread.setScheduled(true);
                         jmThread.setEndTime(endtime);
                     }
-                    Thread newThread = new Thread(jmThread, jmThread.getThreadName());
-                    newThread.setDaemon(false); // ThreadStarter is daemon, but we don't want sampler threads to be so too
+                    // ThreadStarter is daemon, but we don't want sampler threads to be so too
+                    Thread newThread = JMeterThreadFactory.newThread(jmThread);
                     registerStartedThread(jmThread, newThread);
                     newThread.start();
                 }
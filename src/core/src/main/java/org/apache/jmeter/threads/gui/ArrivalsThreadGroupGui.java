@@ -0,0 +1,136 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.apache.jmeter.threads.gui;
+
+import static org.apache.jmeter.util.JMeterUtils.labelFor;
+
+import java.awt.BorderLayout;
+
+import javax.swing.BorderFactory;
+import javax.swing.JCheckBox;
+import javax.swing.JLabel;
+import javax.swing.JPanel;
+import javax.swing.JTextField;
+
+import org.apache.jmeter.control.LoopController;
+import org.apache.jmeter.gui.TestElementMetadata;
+import org.apache.jmeter.gui.util.JSyntaxTextArea;
+import org.apache.jmeter.gui.util.JTextScrollPane;
+import org.apache.jmeter.testelement.TestElement;
+import org.apache.jmeter.testelement.property.BooleanProperty;
+import org.apache.jmeter.threads.AbstractThreadGroup;
+import org.apache.jmeter.threads.ArrivalsThreadGroup;
+import org.apache.jmeter.util.JMeterUtils;
+
+import net.miginfocom.swing.MigLayout;
+
+@TestElementMetadata(labelResource = "arrivals_thread_group_title")
+public class ArrivalsThreadGroupGui extends AbstractThreadGroupGui {
+    private static final long serialVersionUID = 240L;
+
+    private static final String DEFAULT_SCHEDULE = "60, 0, 10\n600, 10\n"; // $NON-NLS-1$
+
+    private final JTextField threadInput = new JTextField();
+
+    private JSyntaxTextArea scheduleInput;
+
+    private final JCheckBox randomBox =
+            new JCheckBox(JMeterUtils.getResString("arrivals_random")); // $NON-NLS-1$
+
+    public ArrivalsThreadGroupGui() {
+        super();
+        init();
+        initGui();
+    }
+
+    @Override
+    public TestElement createTestElement() {
+        ArrivalsThreadGroup tg = new ArrivalsThreadGroup();
+        modifyTestElement(tg);
+        return tg;
+    }
+
+    /**
+     * Modifies a given TestElement to mirror the data in the gui components.
+     *
+     * @see org.apache.jmeter.gui.JMeterGUIComponent#modifyTestElement(TestElement)
+     */
+    @Override
+    public void modifyTestElement(TestElement tg) {
+        super.configureTestElement(tg);
+        if (tg instanceof AbstractThreadGroup) {
+            // each arrival runs one iteration
+            LoopController looper = new LoopController();
+            looper.setLoops(1);
+            ((AbstractThreadGroup) tg).setSamplerController(looper);
+        }
+        tg.setProperty(AbstractThreadGroup.NUM_THREADS, threadInput.getText());
+        tg.setProperty(ArrivalsThreadGroup.SCHEDULE, scheduleInput.getText());
+        tg.setProperty(new BooleanProperty(ArrivalsThreadGroup.RANDOM_ARRIVALS, randomBox.isSelected()));
+        // every arrival is a new user
+        tg.setProperty(AbstractThreadGroup.IS_SAME_USER_ON_NEXT_ITERATION, false);
+    }
+
+    @Override
+    public void configure(TestElement tg) {
+        super.configure(tg);
+        threadInput.setText(tg.getPropertyAsString(AbstractThreadGroup.NUM_THREADS));
+        scheduleInput.setInitialText(tg.getPropertyAsString(ArrivalsThreadGroup.SCHEDULE));
+        scheduleInput.setCaretPosition(0);
+        randomBox.setSelected(tg.getPropertyAsBoolean(ArrivalsThreadGroup.RANDOM_ARRIVALS));
+    }
+
+    @Override
+    public String getLabelResource() {
+        return "arrivals_thread_group_title"; // $NON-NLS-1$
+    }
+
+    @Override
+    public void clearGui(){
+        super.clearGui();
+        initGui();
+    }
+
+    // Initialise the gui field values
+    private void initGui(){
+        threadInput.setText("100"); // $NON-NLS-1$
+        scheduleInput.setInitialText(DEFAULT_SCHEDULE);
+        randomBox.setSelected(false);
+    }
+
+    private void init() { // WARNING: called from ctor so must not be overridden (i.e. must be private or final)
+        JPanel threadPropsPanel = new JPanel(new MigLayout("fillx, wrap 2", "[][fill,grow]"));
+        threadPropsPanel.setBorder(BorderFactory.createTitledBorder(
+                JMeterUtils.getResString("thread_properties"))); // $NON-NLS-1$
+
+        // MAXIMUM NUMBER OF THREADS
+        threadPropsPanel.add(labelFor(threadInput, "arrivals_max_threads")); // $NON-NLS-1$
+        threadPropsPanel.add(threadInput);
+        threadPropsPanel.add(randomBox, "span 2");
+
+        // SCHEDULE
+        scheduleInput = JSyntaxTextArea.getInstance(10, 50);
+        JLabel scheduleLabel = new JLabel(JMeterUtils.getResString("arrivals_schedule")); // $NON-NLS-1$
+        scheduleLabel.setLabelFor(scheduleInput);
+        threadPropsPanel.add(scheduleLabel, "span 2");
+        threadPropsPanel.add(JTextScrollPane.getInstance(scheduleInput), "span 2, grow, push");
+
+        add(threadPropsPanel, BorderLayout.CENTER);
+    }
+}
@@ -30,6 +30,7 @@ import javax.net.ssl.HttpsURLConnection;
 import javax.net.ssl.KeyManager;
 import javax.net.ssl.KeyManagerFactory;
 import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLEngine;
 import javax.net.ssl.TrustManager;
 import javax.net.ssl.TrustManagerFactory;
 import javax.net.ssl.X509ExtendedKeyManager;
@@ -104,7 +105,7 @@ public class JsseSSLManager extends SSLManager {
         try {
             if (SHARED_SESSION_CONTEXT) {
                 log.debug("Creating shared context");
-                this.defaultContext = createContext();
+                this.defaultContext = createContext(null);
             } else {
                 this.threadlocal = new ThreadLocal<>();
             }
@@ -172,7 +173,7 @@ public class JsseSSLManager extends SSLManager {
             if (log.isDebugEnabled()){
                 log.debug("Creating threadLocal SSL context for: {}", Thread.currentThread().getName());
             }
-            sslContext = createContext();
+            sslContext = createContext(null);
             this.threadlocal.set(sslContext);
         }
         if (log.isDebugEnabled()){
@@ -192,16 +193,35 @@ public class JsseSSLManager extends SSLManager {
         }
     }
 
+    /**
+     * Creates a context which is not shared with any thread, for callers keeping
+     * their own session cache, e.g. one per simulated device. It uses the same
+     * key and trust stores as the other contexts, but every handshake of the
+     * context presents the same client certificate: the alias is chosen from
+     * the key store by the hash of the identity, not per handshake.
+     *
+     * @param identity
+     *            identity of the client, e.g. the IMEI of a device
+     * @return a new SSL context
+     * @throws GeneralSecurityException
+     *             when constructing the context fails
+     */
+    public SSLContext newContext(String identity) throws GeneralSecurityException {
+        return createContext(identity);
+    }
+
     /*
      *
      * Creates new SSL context
      *
+     * @param identity identity mapped to a fixed client alias, null to choose the alias per handshake
+     *
      * @return SSL context
      *
      * @throws GeneralSecurityException when the algorithm for the context can
      * not be found or the keys have problems
      */
-    private SSLContext createContext() throws GeneralSecurityException {
+    private SSLContext createContext(String identity) throws GeneralSecurityException {
         SSLContext context;
         if (pro != null) {
             context = SSLContext.getInstance(DEFAULT_SSL_PROTOCOL, pro); // $NON-NLS-1$
@@ -218,12 +238,16 @@ public class JsseSSLManager extends SSLManager {
         if (log.isDebugEnabled()) {
             log.debug("JmeterKeyStore type: {}", keys.getClass());
         }
+        String alias = null;
+        if (identity != null && keys.getAliasCount() > 0) {
+            alias = keys.getAlias(Math.floorMod(identity.hashCode(), keys.getAliasCount()));
+        }
 
         // Now wrap the default managers with our key manager
         for (int i = 0; i < managers.length; i++) {
             if (managers[i] instanceof X509KeyManager) {
                 X509KeyManager manager = (X509KeyManager) managers[i];
-                newManagers[i] = new WrappedX509KeyManager(manager, keys);
+                newManagers[i] = new WrappedX509KeyManager(manager, keys, alias);
             } else {
                 newManagers[i] = managers[i];
             }
@@ -283,6 +307,11 @@ public class JsseSSLManager extends SSLManager {
          */
         private final JmeterKeyStore store;
 
+        /**
+         * The alias of every client handshake, or null to ask the KeyStore each time.
+         */
+        private final String fixedAlias;
+
         /**
          * Instantiate a new WrappedX509KeyManager.
          *
@@ -290,10 +319,13 @@ public class JsseSSLManager extends SSLManager {
          *            The parent X509KeyManager
          * @param ks
          *            The KeyStore we derive our client certs and keys from
+         * @param alias
+         *            The alias of every client handshake, or null to ask the KeyStore each time
          */
-        public WrappedX509KeyManager(X509KeyManager parent, JmeterKeyStore ks) {
+        public WrappedX509KeyManager(X509KeyManager parent, JmeterKeyStore ks, String alias) {
             this.manager = parent;
             this.store = ks;
+            this.fixedAlias = alias;
         }
 
         /**
@@ -378,13 +410,24 @@ public class JsseSSLManager extends SSLManager {
             if(log.isDebugEnabled()) {
                 log.debug("keyType: {}", keyType[0]);
             }
-            String alias = this.store.getAlias();
+            String alias = fixedAlias != null ? fixedAlias : this.store.getAlias();
             if(log.isDebugEnabled()) {
                 log.debug("Client alias: '{}'", alias);
             }
             return alias;
         }
 
+        /**
+         * Same as {@link #chooseClientAlias(String[], Principal[], Socket)}, for
+         * the connections using an {@link SSLEngine} instead of a socket.
+         *
+         * @see javax.net.ssl.X509ExtendedKeyManager#chooseEngineClientAlias(String[], Principal[], SSLEngine)
+         */
+        @Override
+        public String chooseEngineClientAlias(String[] keyType, Principal[] issuers, SSLEngine engine) {
+            return chooseClientAlias(keyType, issuers, null);
+        }
+
         /**
          * Choose the server alias for the SSLServerSockets. This are not used
          * in JMeter.
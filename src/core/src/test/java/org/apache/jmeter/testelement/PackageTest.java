@@ -18,6 +18,8 @@
 package org.apache.jmeter.testelement;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
 import org.apache.jmeter.config.Arguments;
@@ -69,4 +71,37 @@ public class PackageTest {
         assertEquals(2, args.getArgumentCount());
         assertEquals("config1=configValue", args.getArgument(1).toString());
     }
+
+    @Test
+    public void testSharedProperties() throws Exception {
+        ConfigTestElement template = new ConfigTestElement();
+        template.setProperty("host", "gateway");
+        template.setProperty("port", 5023);
+        template.setRunningVersion(true);
+        ConfigTestElement first = (ConfigTestElement) template.clone();
+        ConfigTestElement second = (ConfigTestElement) template.clone();
+        assertSame(first.getProperty("host"), second.getProperty("host"));
+        assertSame(first.getProperty("port"), second.getProperty("port"));
+
+        first.setProperty("host", "backup");
+        assertEquals("backup", first.getPropertyAsString("host"));
+        assertEquals("gateway", second.getPropertyAsString("host"));
+        assertNotSame(first.getProperty("host"), second.getProperty("host"));
+        first.recoverRunningVersion();
+        assertEquals("gateway", first.getPropertyAsString("host"));
+        assertEquals(5023, first.getPropertyAsInt("port"));
+    }
+
+    @Test
+    public void testModifiedPropertiesNotShared() throws Exception {
+        ConfigTestElement template = new ConfigTestElement();
+        template.setProperty("host", "gateway");
+        template.setRunningVersion(true);
+        template.setProperty("host", "backup");
+        ConfigTestElement clone = (ConfigTestElement) template.clone();
+        assertNotSame(template.getProperty("host"), clone.getProperty("host"));
+        assertEquals("backup", clone.getPropertyAsString("host"));
+        template.recoverRunningVersion();
+        assertEquals("gateway", template.getPropertyAsString("host"));
+    }
 }
@@ -0,0 +1,89 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.jmeter.testelement.property;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.apache.jmeter.junit.JMeterTestCase;
+import org.apache.jmeter.threads.JMeterContextService;
+import org.apache.jmeter.threads.JMeterVariables;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class ByteArrayPropertyTest extends JMeterTestCase {
+
+    @BeforeEach
+    public void setUp() {
+        JMeterVariables vars = new JMeterVariables();
+        vars.put("imei", "0358");
+        JMeterContextService.getContext().setVariables(vars);
+    }
+
+    @Test
+    public void testDecodedOnce() {
+        ByteArrayProperty prop = new ByteArrayProperty("payload", "78 78 0d 01");
+        assertFalse(prop.isDynamic());
+        assertArrayEquals(new byte[] { 0x78, 0x78, 0x0d, 0x01 }, prop.getBytes());
+        assertSame(prop.getBytes(), prop.getBytes());
+        assertSame(prop.getBytes(), prop.clone().getBytes());
+        assertEquals("78 78 0d 01", prop.getStringValue());
+    }
+
+    @Test
+    public void testVariablesAtOffsets() {
+        ByteArrayProperty prop = new ByteArrayProperty("payload", "${imei}7878${imei}01${imei}");
+        assertTrue(prop.isDynamic());
+        assertArrayEquals(new byte[] { 0x03, 0x58, 0x78, 0x78, 0x03, 0x58, 0x01, 0x03, 0x58 }, prop.getBytes());
+        JMeterContextService.getContext().getVariables().put("imei", "");
+        assertArrayEquals(new byte[] { 0x78, 0x78, 0x01 }, prop.getBytes());
+    }
+
+    @Test
+    public void testBytes() {
+        ByteArrayProperty prop = new ByteArrayProperty("payload", new byte[] { 0, (byte) 0xff, 0x10 });
+        assertEquals("00ff10", prop.getStringValue());
+        assertEquals(prop, new ByteArrayProperty("payload", "00ff10"));
+    }
+
+    @Test
+    public void testRunningVersion() {
+        ByteArrayProperty prop = new ByteArrayProperty("payload", "0102");
+        prop.setRunningVersion(true);
+        prop.setObjectValue("0304");
+        assertArrayEquals(new byte[] { 3, 4 }, prop.getBytes());
+        prop.recoverRunningVersion(null);
+        assertArrayEquals(new byte[] { 1, 2 }, prop.getBytes());
+    }
+
+    @Test
+    public void testInvalidHex() {
+        ByteArrayProperty prop = new ByteArrayProperty("payload", "0x12");
+        assertEquals("0x12", prop.getStringValue());
+        try {
+            prop.getBytes();
+            fail("Expected IllegalArgumentException");
+        } catch (IllegalArgumentException e) {
+            // OK
+        }
+    }
+}
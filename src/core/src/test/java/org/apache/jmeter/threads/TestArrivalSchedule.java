@@ -0,0 +1,72 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.jmeter.threads;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import org.junit.jupiter.api.Test;
+
+public class TestArrivalSchedule {
+
+    @Test
+    public void testConstantRate() {
+        ArrivalSchedule schedule = ArrivalSchedule.parse("10, 5");
+        assertEquals(10, schedule.getDuration(), 0);
+        assertEquals(50, schedule.getArrivals(), 1e-9);
+        assertEquals(0.2, schedule.timeOf(1), 1e-9);
+        assertEquals(10, schedule.timeOf(50), 1e-9);
+        assertEquals(-1, schedule.timeOf(50.5), 0);
+    }
+
+    @Test
+    public void testRamp() {
+        // 0 to 10 arrivals per second in 10 seconds: t^2 / 2 arrivals at t
+        ArrivalSchedule schedule = ArrivalSchedule.parse("10, 0, 10");
+        assertEquals(50, schedule.getArrivals(), 1e-9);
+        assertEquals(2, schedule.timeOf(2), 1e-9);
+        assertEquals(Math.sqrt(2 * 30), schedule.timeOf(30), 1e-9);
+        // and down again
+        ArrivalSchedule down = ArrivalSchedule.parse("10, 10, 0");
+        assertEquals(10 - Math.sqrt(2 * 20), down.timeOf(30), 1e-9);
+        assertEquals(10, down.timeOf(50), 1e-9);
+    }
+
+    @Test
+    public void testSteps() {
+        ArrivalSchedule schedule = ArrivalSchedule.parse(
+                "# warm up\n5, 2\n\n10, 0 # pause\r\n 5 , 4 \n");
+        assertEquals(20, schedule.getDuration(), 0);
+        assertEquals(30, schedule.getArrivals(), 1e-9);
+        assertEquals(5, schedule.timeOf(10), 1e-9);
+        assertEquals(15.25, schedule.timeOf(11), 1e-9);
+        assertEquals(20, schedule.timeOf(30), 1e-9);
+    }
+
+    @Test
+    public void testInvalid() {
+        for (String table : new String[] { "", "# nothing", "10", "10, 1, 2, 3", "10, x", "-1, 5", "10, NaN" }) {
+            try {
+                ArrivalSchedule.parse(table);
+                fail("Expected IllegalArgumentException for " + table);
+            } catch (IllegalArgumentException e) {
+                // OK
+            }
+        }
+    }
+}
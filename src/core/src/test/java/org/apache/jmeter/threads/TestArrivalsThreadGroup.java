@@ -0,0 +1,133 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.jmeter.threads;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.jmeter.control.LoopController;
+import org.apache.jmeter.engine.util.NoThreadClone;
+import org.apache.jmeter.junit.JMeterTestCase;
+import org.apache.jmeter.samplers.AbstractSampler;
+import org.apache.jmeter.samplers.Entry;
+import org.apache.jmeter.samplers.SampleEvent;
+import org.apache.jmeter.samplers.SampleListener;
+import org.apache.jmeter.samplers.SampleResult;
+import org.apache.jmeter.testelement.AbstractTestElement;
+import org.apache.jorphan.collections.ListedHashTree;
+import org.junit.jupiter.api.Test;
+
+public class TestArrivalsThreadGroup extends JMeterTestCase {
+
+    /** Sampler busy for 400ms, whose clones take 150ms to create, as a new thread clones the tree */
+    public static class SlowSampler extends AbstractSampler {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        public SampleResult sample(Entry e) {
+            SampleResult res = new SampleResult();
+            res.setSampleLabel(getName());
+            res.sampleStart();
+            sleep(400);
+            res.sampleEnd();
+            res.setSuccessful(true);
+            return res;
+        }
+
+        @Override
+        public Object clone() {
+            sleep(150);
+            return super.clone();
+        }
+
+        private static void sleep(long millis) {
+            try {
+                Thread.sleep(millis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    public static class Collector extends AbstractTestElement implements SampleListener, NoThreadClone {
+        private static final long serialVersionUID = 1L;
+
+        private final List<SampleResult> results = Collections.synchronizedList(new ArrayList<>());
+
+        @Override
+        public void sampleOccurred(SampleEvent e) {
+            results.add(e.getResult());
+        }
+
+        @Override
+        public void sampleStarted(SampleEvent e) {
+        }
+
+        @Override
+        public void sampleStopped(SampleEvent e) {
+        }
+    }
+
+    @Test
+    public void testLateAndDroppedArrivals() {
+        JMeterContextService.getContext().setVariables(new JMeterVariables());
+        LoopController looper = new LoopController();
+        looper.setLoops(1);
+        ArrivalsThreadGroup group = new ArrivalsThreadGroup();
+        group.setName("Arrivals");
+        group.setSamplerController(looper);
+        group.setNumThreads(2);
+        // one arrival every 50ms for a second
+        group.setSchedule("1, 20");
+        group.setProperty(AbstractThreadGroup.IS_SAME_USER_ON_NEXT_ITERATION, false);
+        SlowSampler sampler = new SlowSampler();
+        sampler.setName("Slow");
+        Collector collector = new Collector();
+        ListedHashTree tree = new ListedHashTree(group);
+        tree.add(group, sampler);
+        tree.add(group, collector);
+
+        group.start(1, new ListenerNotifier(), tree, null);
+        assertTrue("Threads did not stop", group.verifyThreadsStopped());
+
+        long scheduled = group.getScheduledArrivals();
+        long late = group.getLateArrivals();
+        long dropped = group.getDroppedArrivals();
+        assertEquals(20, scheduled);
+        // the first arrivals wait for the two threads to be created
+        assertTrue("Late arrivals: " + late, late >= 2);
+        // the others mostly find both threads busy
+        assertTrue("Dropped arrivals: " + dropped, dropped >= 5 && dropped <= 18);
+        List<SampleResult> samples = new ArrayList<>(collector.results);
+        assertEquals("Each arrival not dropped runs one iteration", scheduled - dropped, samples.size());
+
+        group.waitThreadsStopped();
+        assertEquals(samples.size() + 1, collector.results.size());
+        SampleResult arrivals = collector.results.get(samples.size());
+        assertEquals("Arrivals arrivals", arrivals.getSampleLabel());
+        assertEquals(scheduled + " scheduled, " + late + " late, " + dropped + " dropped",
+                arrivals.getResponseMessage());
+        assertFalse(arrivals.isSuccessful());
+        assertEquals(0, group.getScheduledArrivals());
+    }
+}
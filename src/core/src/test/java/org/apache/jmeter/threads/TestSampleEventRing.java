@@ -0,0 +1,101 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.apache.jmeter.threads;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.jmeter.samplers.SampleEvent;
+import org.apache.jmeter.samplers.SampleListener;
+import org.junit.jupiter.api.Test;
+
+public class TestSampleEventRing {
+
+    @Test
+    public void testBounded() {
+        SampleEventRing ring = new SampleEventRing(3);
+        assertEquals(4, ring.capacity());
+        List<SampleListener> listeners = Collections.emptyList();
+        SampleEvent[] events = new SampleEvent[5];
+        for (int i = 0; i < events.length; i++) {
+            events[i] = new SampleEvent();
+        }
+        for (int i = 0; i < 4; i++) {
+            assertTrue(ring.offer(events[i], listeners));
+        }
+        assertFalse(ring.offer(events[4], listeners));
+        assertEquals(4, ring.size());
+
+        List<SampleEvent> taken = new ArrayList<>();
+        List<List<SampleListener>> takenListeners = new ArrayList<>();
+        assertEquals(3, ring.drainTo(3, taken, takenListeners));
+        assertSame(events[0], taken.get(0));
+        assertSame(events[2], taken.get(2));
+        assertSame(listeners, takenListeners.get(0));
+        assertTrue(ring.offer(events[4], listeners));
+        assertEquals(2, ring.drainTo(10, taken, takenListeners));
+        assertSame(events[4], taken.get(4));
+        assertEquals(0, ring.drainTo(10, taken, takenListeners));
+        assertEquals(5, ring.getWritten());
+    }
+
+    @Test
+    public void testConcurrentProducers() throws Exception {
+        SampleEventRing ring = new SampleEventRing(64);
+        int producers = 4;
+        int perProducer = 10000;
+        List<SampleListener> listeners = Collections.emptyList();
+        Thread[] threads = new Thread[producers];
+        for (int i = 0; i < producers; i++) {
+            threads[i] = new Thread(() -> {
+                for (int j = 0; j < perProducer; j++) {
+                    SampleEvent event = new SampleEvent();
+                    while (!ring.offer(event, listeners)) {
+                        Thread.yield();
+                    }
+                }
+            });
+            threads[i].start();
+        }
+        Map<SampleEvent, Boolean> seen = new IdentityHashMap<>();
+        List<SampleEvent> taken = new ArrayList<>();
+        List<List<SampleListener>> takenListeners = new ArrayList<>();
+        while (seen.size() < producers * perProducer) {
+            ring.drainTo(16, taken, takenListeners);
+            for (SampleEvent event : taken) {
+                seen.put(event, Boolean.TRUE);
+            }
+            taken.clear();
+            takenListeners.clear();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(producers * perProducer, seen.size());
+        assertEquals(0, ring.size());
+    }
+}
@@ -18,6 +18,9 @@
 package org.apache.jmeter.threads;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.Arrays;
 
 import org.apache.jmeter.config.ConfigTestElement;
 import org.apache.jmeter.control.GenericController;
@@ -47,6 +50,22 @@ public class TestTestCompiler {
         assertEquals("A test value", sampler.getPropertyAsString("test.property"));
     }
 
+    @Test
+    public void testControllersToRoot() throws Exception {
+        ListedHashTree testing = new ListedHashTree();
+        GenericController outer = new GenericController();
+        GenericController inner = new GenericController();
+        TestSampler sampler = new TestSampler();
+        testing.add(outer, inner);
+        testing.get(outer).add(inner, sampler);
+        TestCompiler.initialize();
+
+        TestCompiler compiler = new TestCompiler(testing);
+        testing.traverse(compiler);
+        assertEquals(Arrays.asList(inner, outer), compiler.getControllersToRoot(sampler));
+        assertNull(compiler.getControllersToRoot(new TestSampler()));
+    }
+
     class TestSampler extends AbstractSampler {
         private static final long serialVersionUID = 240L;
 
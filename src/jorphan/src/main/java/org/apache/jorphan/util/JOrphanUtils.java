@@ -25,8 +25,12 @@ import java.io.InputStream;
 import java.io.OutputStream;
 import java.net.ServerSocket;
 import java.net.Socket;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.security.SecureRandom;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
 import java.util.StringTokenizer;
@@ -44,6 +48,23 @@ public final class JOrphanUtils {
 
     private static final int DEFAULT_CHUNK_SIZE = 4096;
 
+    private static final byte[] HEX_DIGITS = {
+            '0', '1', '2', '3', '4', '5', '6', '7', '8', '9', 'a', 'b', 'c', 'd', 'e', 'f' };
+
+    /** Value of each ASCII character as a hex digit, -1 if it is not one */
+    private static final byte[] HEX_VALUES = new byte[128];
+
+    static {
+        Arrays.fill(HEX_VALUES, (byte) -1);
+        for (int i = 0; i < 10; i++) {
+            HEX_VALUES['0' + i] = (byte) i;
+        }
+        for (int i = 0; i < 6; i++) {
+            HEX_VALUES['a' + i] = (byte) (10 + i);
+            HEX_VALUES['A' + i] = (byte) (10 + i);
+        }
+    }
+
     /**
      * This enables to initialize SecureRandom only in case it is required
      */
@@ -403,15 +424,43 @@ public final class JOrphanUtils {
      * @return hex representation of binary input
      */
     public static String baToHexString(byte[] ba) {
-        StringBuilder sb = new StringBuilder(ba.length * 2);
-        for (byte b : ba) {
-            int j = b & 0xff;
-            if (j < 16) {
-                sb.append('0'); // $NON-NLS-1$ add zero padding
+        return baToHexString(ba, 0, ba.length);
+    }
+
+    /**
+     * Convert a range of a binary byte array to hex string.
+     *
+     * @param ba     input binary byte array
+     * @param offset offset of the first byte to convert
+     * @param length number of bytes to convert
+     * @return hex representation of binary input
+     */
+    public static String baToHexString(byte[] ba, int offset, int length) {
+        byte[] hex = new byte[length * 2];
+        encodeHex(ba, offset, length, hex, 0);
+        // the digits are ASCII, so the bytes are copied as is
+        return new String(hex, StandardCharsets.ISO_8859_1);
+    }
+
+    /**
+     * Convert the remaining bytes of a buffer to hex string, without moving its position.
+     *
+     * @param buffer input binary buffer
+     * @return hex representation of binary input
+     */
+    public static String baToHexString(ByteBuffer buffer) {
+        int length = buffer.remaining();
+        byte[] hex = new byte[length * 2];
+        if (buffer.hasArray()) {
+            encodeHex(buffer.array(), buffer.arrayOffset() + buffer.position(), length, hex, 0);
+        } else {
+            for (int i = 0, j = 0, position = buffer.position(); i < length; i++) {
+                int b = buffer.get(position + i);
+                hex[j++] = HEX_DIGITS[(b >> 4) & 0xF];
+                hex[j++] = HEX_DIGITS[b & 0xF];
             }
-            sb.append(Integer.toHexString(j));
         }
-        return sb.toString();
+        return new String(hex, StandardCharsets.ISO_8859_1);
     }
 
     /**
@@ -422,18 +471,18 @@ public final class JOrphanUtils {
      * @return hex representation of binary input
      */
     public static String baToHexString(byte[] ba, char separator) {
-        StringBuilder sb = new StringBuilder(ba.length * 2);
-        for (int i = 0; i < ba.length; i++) {
-            if (i > 0 && separator != 0) {
-                sb.append(separator);
-            }
-            int j = ba[i] & 0xff;
-            if (j < 16) {
-                sb.append('0'); // $NON-NLS-1$ add zero padding
+        if (separator == 0) {
+            return baToHexString(ba);
+        }
+        char[] hex = new char[Math.max(0, ba.length * 3 - 1)];
+        for (int i = 0, j = 0; i < ba.length; i++) {
+            if (i > 0) {
+                hex[j++] = separator;
             }
-            sb.append(Integer.toHexString(j));
+            hex[j++] = (char) HEX_DIGITS[(ba[i] >> 4) & 0xF];
+            hex[j++] = (char) HEX_DIGITS[ba[i] & 0xF];
         }
-        return sb.toString();
+        return new String(hex);
     }
 
     /**
@@ -444,20 +493,117 @@ public final class JOrphanUtils {
      */
     public static byte[] baToHexBytes(byte[] ba) {
         byte[] hb = new byte[ba.length * 2];
-        for (int i = 0; i < ba.length; i++) {
-            byte upper = (byte) ((ba[i] & 0xf0) >> 4);
-            byte lower = (byte) (ba[i] & 0x0f);
-            hb[2 * i] = toHexChar(upper);
-            hb[2 * i + 1] = toHexChar(lower);
-        }
+        encodeHex(ba, 0, ba.length, hb, 0);
         return hb;
     }
 
-    private static byte toHexChar(byte in) {
-        if (in < 10) {
-            return (byte) (in + '0');
+    /**
+     * Write the lower case hex digits of a range of bytes into a destination array.
+     *
+     * @param src       input binary byte array
+     * @param offset    offset of the first byte to convert
+     * @param length    number of bytes to convert
+     * @param dst       receives two digits per byte
+     * @param dstOffset offset in <code>dst</code> of the first digit
+     * @return offset in <code>dst</code> after the last digit
+     */
+    public static int encodeHex(byte[] src, int offset, int length, byte[] dst, int dstOffset) {
+        int j = dstOffset;
+        for (int i = offset, end = offset + length; i < end; i++) {
+            int b = src[i];
+            dst[j++] = HEX_DIGITS[(b >> 4) & 0xF];
+            dst[j++] = HEX_DIGITS[b & 0xF];
+        }
+        return j;
+    }
+
+    /**
+     * Get the value of a hex digit.
+     *
+     * @param c upper or lower case hex digit
+     * @return the value, or -1 if <code>c</code> is not a hex digit
+     */
+    public static int hexDigit(int c) {
+        return (c & ~0x7F) == 0 ? HEX_VALUES[c] : -1;
+    }
+
+    /**
+     * Convert hex string to binary byte array.
+     *
+     * @param hex hex-encoded binary string
+     * @return Byte array containing binary representation of input hex-encoded string
+     * @throws IllegalArgumentException if string is not an even number of hex digits
+     */
+    public static byte[] hexToBytes(CharSequence hex) {
+        byte[] bytes = new byte[hex.length() / 2];
+        decodeHex(hex, 0, hex.length(), bytes, 0);
+        return bytes;
+    }
+
+    /**
+     * Convert hex digits straight into a destination array.
+     *
+     * @param hex       hex-encoded binary string
+     * @param start     index of the first digit
+     * @param end       index after the last digit
+     * @param dst       receives the bytes, at least <code>(end - start) / 2</code> from <code>dstOffset</code>
+     * @param dstOffset offset in <code>dst</code> of the first byte
+     * @return number of bytes written
+     * @throws IllegalArgumentException if the range is not an even number of hex digits,
+     *                                  the bytes before the invalid digit are written
+     */
+    public static int decodeHex(CharSequence hex, int start, int end, byte[] dst, int dstOffset) {
+        if (((end - start) & 1) != 0) {
+            throw new IllegalArgumentException("Hex-encoded binary string contains an uneven no. of digits");
+        }
+        int j = dstOffset;
+        for (int i = start; i < end; i += 2) {
+            char c0 = hex.charAt(i);
+            char c1 = hex.charAt(i + 1);
+            int nibble0 = hexDigit(c0);
+            int nibble1 = hexDigit(c1);
+            if ((nibble0 | nibble1) < 0) {
+                throw new IllegalArgumentException(
+                        "Hex-encoded binary string contains an invalid hex digit in '" + c0 + c1 + "'");
+            }
+            dst[j++] = (byte) ((nibble0 << 4) | nibble1);
+        }
+        return j - dstOffset;
+    }
+
+    /**
+     * Convert hex digits straight into a destination buffer, at its position.
+     *
+     * @param hex   hex-encoded binary string
+     * @param start index of the first digit
+     * @param end   index after the last digit
+     * @param dst   receives the bytes
+     * @throws IllegalArgumentException if the range is not an even number of hex digits
+     * @throws BufferOverflowException if <code>dst</code> has not room enough for the bytes
+     */
+    public static void decodeHex(CharSequence hex, int start, int end, ByteBuffer dst) {
+        if ((end - start) / 2 > dst.remaining()) {
+            throw new BufferOverflowException();
+        }
+        if (dst.hasArray()) {
+            int length = decodeHex(hex, start, end, dst.array(), dst.arrayOffset() + dst.position());
+            dst.position(dst.position() + length);
+            return;
+        }
+        if (((end - start) & 1) != 0) {
+            throw new IllegalArgumentException("Hex-encoded binary string contains an uneven no. of digits");
+        }
+        for (int i = start; i < end; i += 2) {
+            char c0 = hex.charAt(i);
+            char c1 = hex.charAt(i + 1);
+            int nibble0 = hexDigit(c0);
+            int nibble1 = hexDigit(c1);
+            if ((nibble0 | nibble1) < 0) {
+                throw new IllegalArgumentException(
+                        "Hex-encoded binary string contains an invalid hex digit in '" + c0 + c1 + "'");
+            }
+            dst.put((byte) ((nibble0 << 4) | nibble1));
         }
-        return (byte) ((in - 10) + 'a');
     }
 
     /**
@@ -22,6 +22,8 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
 
 import org.hamcrest.CoreMatchers;
@@ -279,6 +281,36 @@ public class TestJorphanUtils {
                 JOrphanUtils.baToHexBytes(new byte[]{15, 16, 127, -128, -127, -1}));
     }
 
+    @Test
+    public void testBaToHexStringRanges() {
+        byte[] ba = {15, 16, 127, -128, -127, -1};
+        assertEquals("107f80", JOrphanUtils.baToHexString(ba, 1, 3));
+        ByteBuffer buffer = ByteBuffer.wrap(ba, 2, 3);
+        assertEquals("7f8081", JOrphanUtils.baToHexString(buffer));
+        assertEquals(2, buffer.position());
+        ByteBuffer direct = ByteBuffer.allocateDirect(6).put(ba);
+        direct.flip();
+        assertEquals("0f107f8081ff", JOrphanUtils.baToHexString(direct));
+    }
+
+    @Test
+    public void testHexToBytes() {
+        assertEqualsArray(new byte[]{}, JOrphanUtils.hexToBytes(""));
+        assertEqualsArray(new byte[]{15, 16, 127, -128, -127, -1}, JOrphanUtils.hexToBytes("0f107F8081fF"));
+        byte[] dst = new byte[4];
+        assertEquals(2, JOrphanUtils.decodeHex(new StringBuilder("xx7f80xx"), 2, 6, dst, 1));
+        assertEqualsArray(new byte[]{0, 127, -128, 0}, dst);
+        ByteBuffer buffer = ByteBuffer.allocate(3).put((byte) 1);
+        JOrphanUtils.decodeHex("abcd", 0, 4, buffer);
+        assertEquals(3, buffer.position());
+        assertEqualsArray(new byte[]{1, -85, -51}, buffer.array());
+        Assertions.assertThrows(IllegalArgumentException.class, () -> JOrphanUtils.hexToBytes("0f1"));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> JOrphanUtils.hexToBytes("0g"));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> JOrphanUtils.hexToBytes("\u00e90f"));
+        Assertions.assertThrows(BufferOverflowException.class,
+                () -> JOrphanUtils.decodeHex("abcd", 0, 4, ByteBuffer.allocate(1)));
+    }
+
     private void assertEqualsArray(byte[] expected, byte[] actual) {
         assertEquals("arrays must be same length", expected.length, actual.length);
         for (int i = 0; i < expected.length; i++) {
@@ -210,6 +210,9 @@ project("native") {
 
 project("tcp") {
     dependencies {
+        implementation(project(":src:protocol:jdbc")) {
+            because("DataSourceElement, to verify the records sent landed")
+        }
         implementation("org.apache.commons:commons-lang3") {
             because("ArrayUtils")
         }
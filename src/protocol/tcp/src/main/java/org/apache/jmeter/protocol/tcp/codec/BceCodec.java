@@ -0,0 +1,171 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.jmeter.protocol.tcp.codec;
+
+import java.nio.ByteBuffer;
+import java.util.Map;
+
+import org.apache.commons.lang3.StringUtils;
+import org.apache.jmeter.protocol.tcp.sampler.BCETCPSampler;
+import org.apache.jmeter.protocol.tcp.sampler.BceFrameTemplate;
+
+/**
+ * BCE binary protocol.
+ * <p>
+ * Reports are built from a demo signal (parameter {@link TrackerCodecs#SIGNAL}),
+ * see {@link BceFrameTemplate}, with the position of the report when the demo signal has one.
+ * The login prefix is sent before the first report
+ * of a connection and is not answered. The server frames have no framing of their own:
+ * they end with the byte given by {@link TrackerCodecs#EOM_BYTE}, or each chunk received
+ * is a frame if it is not set. Every server frame acknowledges one frame, and starts with
+ * the IMEI of the unit when the ACKs of many units share a socket (UDP).
+ * A backlog is flushed with as many records per frame as the demo signal allows,
+ * see {@link BceFrameTemplate#isBatchable()}.
+ */
+public class BceCodec implements TrackerCodec {
+
+    private static final byte[] LOGIN = BCETCPSampler.hexStringToByteArray(BCETCPSampler.LOGIN_PREFIX);
+
+    private final BceFrameTemplate template;
+
+    private final FrameDecoder decoder;
+
+    public BceCodec() {
+        this(null, FrameDecoder.AVAILABLE);
+    }
+
+    private BceCodec(BceFrameTemplate template, FrameDecoder decoder) {
+        this.template = template;
+        this.decoder = decoder;
+    }
+
+    @Override
+    public String getName() {
+        return "BCE"; //$NON-NLS-1$
+    }
+
+    @Override
+    public TrackerCodec configure(Map<String, String> parameters) {
+        String signal = parameters.get(TrackerCodecs.SIGNAL);
+        if (StringUtils.isBlank(signal)) {
+            throw new IllegalArgumentException("BCE codec requires a demo signal");
+        }
+        String eom = parameters.get(TrackerCodecs.EOM_BYTE);
+        return new BceCodec(BceFrameTemplate.compile(signal),
+                StringUtils.isBlank(eom) ? FrameDecoder.AVAILABLE : EomFrameDecoder.of(Integer.parseInt(eom.trim())));
+    }
+
+    /**
+     * @return the compiled demo signal, <code>null</code> if this codec is not configured
+     */
+    public BceFrameTemplate getTemplate() {
+        return template;
+    }
+
+    private BceFrameTemplate checkTemplate() {
+        if (template == null) {
+            throw new IllegalStateException("BCE codec is not configured with a demo signal");
+        }
+        return template;
+    }
+
+    @Override
+    public int getMaxFrameLength() {
+        return LOGIN.length + checkTemplate().getFrameLength();
+    }
+
+    @Override
+    public boolean encodeLogin(DeviceSession session, ByteBuffer dst) {
+        dst.put(LOGIN);
+        return true;
+    }
+
+    @Override
+    public boolean isLoginAcknowledged() {
+        return false;
+    }
+
+    @Override
+    public void encodeReport(DeviceSession session, TrackerReport report, ByteBuffer dst) {
+        checkTemplate().encode(dst, session.getImei(), report.getTimeMillis(),
+                report.getLatitude(), report.getLongitude());
+    }
+
+    @Override
+    public int getMaxBatchLength(int reports) {
+        BceFrameTemplate frameTemplate = checkTemplate();
+        if (!frameTemplate.isBatchable()) {
+            return TrackerCodec.super.getMaxBatchLength(reports);
+        }
+        int max = frameTemplate.getMaxBatchRecords();
+        int frames = (reports + max - 1) / max;
+        // each frame has the header and trailer of the demo signal
+        return frames * frameTemplate.getBatchLength(0) + reports * frameTemplate.getRecordLength();
+    }
+
+    @Override
+    public int encodeBatch(DeviceSession session, TrackerReport[] reports, int count, ByteBuffer dst) {
+        BceFrameTemplate frameTemplate = checkTemplate();
+        if (!frameTemplate.isBatchable()) {
+            return TrackerCodec.super.encodeBatch(session, reports, count, dst);
+        }
+        int max = frameTemplate.getMaxBatchRecords();
+        int frames = 0;
+        for (int first = 0; first < count; first += max) {
+            int records = Math.min(max, count - first);
+            int start = frameTemplate.startBatch(dst, session.getImei());
+            for (int i = first; i < first + records; i++) {
+                TrackerReport report = reports[i];
+                frameTemplate.putRecord(dst, report.getTimeMillis(), report.getLatitude(), report.getLongitude());
+            }
+            frameTemplate.endBatch(dst, start, records);
+            frames++;
+        }
+        return frames;
+    }
+
+    @Override
+    public boolean isReportAcknowledged() {
+        return true;
+    }
+
+    @Override
+    public FrameDecoder getFrameDecoder() {
+        return decoder;
+    }
+
+    @Override
+    public int acknowledged(DeviceSession session, ByteBuffer frame) {
+        return 1;
+    }
+
+    /**
+     * @return the IMEI the BCE server ACKs start with, 8 bytes little endian
+     */
+    @Override
+    public long ackImei(ByteBuffer frame) {
+        if (frame.remaining() < Long.BYTES) {
+            return -1;
+        }
+        long imei = 0;
+        for (int i = 0; i < Long.BYTES; i++) {
+            imei |= (frame.get(frame.position() + i) & 0xFFL) << (8 * i);
+        }
+        return imei;
+    }
+}
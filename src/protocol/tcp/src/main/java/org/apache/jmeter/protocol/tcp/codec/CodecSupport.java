@@ -0,0 +1,161 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.jmeter.protocol.tcp.codec;
+
+import java.nio.ByteBuffer;
+
+import org.apache.jorphan.util.JOrphanUtils;
+
+/**
+ * Checksums and allocation free formatting shared by the codecs.
+ */
+final class CodecSupport {
+
+    private static final byte[] HEX_DIGITS = {
+            '0', '1', '2', '3', '4', '5', '6', '7', '8', '9', 'A', 'B', 'C', 'D', 'E', 'F' };
+
+    private CodecSupport() {
+        super();
+    }
+
+    /**
+     * CRC-16/IBM (polynomial 0xA001 reflected, initial value 0), used by Teltonika.
+     */
+    static int crc16Ibm(ByteBuffer buffer, int from, int to) {
+        int crc = 0;
+        for (int i = from; i < to; i++) {
+            crc ^= buffer.get(i) & 0xFF;
+            for (int bit = 0; bit < 8; bit++) {
+                crc = (crc & 1) != 0 ? (crc >>> 1) ^ 0xA001 : crc >>> 1;
+            }
+        }
+        return crc;
+    }
+
+    /**
+     * CRC-16/X-25 (CRC-ITU, polynomial 0x8408 reflected, initial value and final xor 0xFFFF),
+     * used by GT06.
+     */
+    static int crc16X25(ByteBuffer buffer, int from, int to) {
+        int crc = 0xFFFF;
+        for (int i = from; i < to; i++) {
+            crc ^= buffer.get(i) & 0xFF;
+            for (int bit = 0; bit < 8; bit++) {
+                crc = (crc & 1) != 0 ? (crc >>> 1) ^ 0x8408 : crc >>> 1;
+            }
+        }
+        return ~crc & 0xFFFF;
+    }
+
+    /**
+     * Write an ASCII string without encoding it to a byte array first.
+     */
+    static void putAscii(ByteBuffer dst, String value) {
+        for (int i = 0; i < value.length(); i++) {
+            dst.put((byte) value.charAt(i));
+        }
+    }
+
+    /**
+     * Write the decimal digits of a non negative number, left padded with zeros to the given width.
+     */
+    static void putDigits(ByteBuffer dst, long value, int width) {
+        int digits = 1;
+        for (long v = value / 10; v > 0; v /= 10) {
+            digits++;
+        }
+        int length = Math.max(width, digits);
+        int end = dst.position() + length;
+        long v = value;
+        for (int i = end - 1; i >= end - length; i--) {
+            dst.put(i, (byte) ('0' + v % 10));
+            v /= 10;
+        }
+        dst.position(end);
+    }
+
+    /**
+     * Write a decimal number with a fixed number of fraction digits, e.g. <code>-46.675300</code>.
+     */
+    static void putFixed(ByteBuffer dst, double value, int fractionDigits) {
+        long scale = 1;
+        for (int i = 0; i < fractionDigits; i++) {
+            scale *= 10;
+        }
+        long scaled = Math.round(Math.abs(value) * scale);
+        if (value < 0 && scaled != 0) {
+            dst.put((byte) '-');
+        }
+        putDigits(dst, scaled / scale, 1);
+        if (fractionDigits > 0) {
+            dst.put((byte) '.');
+            putDigits(dst, scaled % scale, fractionDigits);
+        }
+    }
+
+    /**
+     * Write the upper case hex digits of a number, left padded with zeros to the given width.
+     */
+    static void putHex(ByteBuffer dst, long value, int width) {
+        for (int i = width - 1; i >= 0; i--) {
+            dst.put(HEX_DIGITS[(int) (value >>> (4 * i)) & 0xF]);
+        }
+    }
+
+    /**
+     * Parse upper or lower case hex digits.
+     *
+     * @return the value, or -1 if a character is not a hex digit
+     */
+    static int parseHex(ByteBuffer src, int from, int to) {
+        int value = 0;
+        for (int i = from; i < to; i++) {
+            int digit = JOrphanUtils.hexDigit(src.get(i));
+            if (digit < 0) {
+                return -1;
+            }
+            value = (value << 4) | digit;
+        }
+        return value;
+    }
+
+    /**
+     * Split a time in UTC calendar fields without allocating date objects.
+     *
+     * @param timeMillis time in milliseconds since the epoch
+     * @return year * 10^10 + month * 10^8 + day * 10^6 + hour * 10^4 + minute * 100 + second,
+     * e.g. 20211226152005
+     */
+    static long utcFields(long timeMillis) {
+        long seconds = Math.floorDiv(timeMillis, 1000L);
+        long days = Math.floorDiv(seconds, 86400L);
+        long secondOfDay = seconds - days * 86400L;
+        // civil from days, see http://howardhinnant.github.io/date_algorithms.html
+        long z = days + 719468;
+        long era = Math.floorDiv(z, 146097);
+        long doe = z - era * 146097;
+        long yoe = (doe - doe / 1460 + doe / 36524 - doe / 146096) / 365;
+        long doy = doe - (365 * yoe + yoe / 4 - yoe / 100);
+        long mp = (5 * doy + 2) / 153;
+        long day = doy - (153 * mp + 2) / 5 + 1;
+        long month = mp < 10 ? mp + 3 : mp - 9;
+        long year = yoe + era * 400 + (month <= 2 ? 1 : 0);
+        return year * 10000000000L + month * 100000000L + day * 1000000L
+                + (secondOfDay / 3600) * 10000L + (secondOfDay / 60 % 60) * 100L + secondOfDay % 60;
+    }
+}
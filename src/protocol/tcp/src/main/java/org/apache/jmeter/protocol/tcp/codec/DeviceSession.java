@@ -0,0 +1,86 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.jmeter.protocol.tcp.codec;
+
+/**
+ * Protocol state of one device connection: IMEI, login state and frame serial number.
+ * <p>
+ * Not thread safe, a session belongs to the thread or event loop owning the connection.
+ */
+public final class DeviceSession {
+
+    private final long imei;
+
+    private boolean loggedIn;
+
+    private int sequence;
+
+    /**
+     * @param imei IMEI of the device
+     */
+    public DeviceSession(long imei) {
+        this(imei, 0);
+    }
+
+    /**
+     * @param imei IMEI of the device
+     * @param sequence serial number of the last frame the device sent, to resume its numbering
+     */
+    public DeviceSession(long imei, int sequence) {
+        this.imei = imei;
+        this.sequence = sequence & 0xFFFF;
+    }
+
+    public long getImei() {
+        return imei;
+    }
+
+    /**
+     * @return <code>true</code> once the login frame was sent, and acknowledged
+     * when the protocol requires it
+     */
+    public boolean isLoggedIn() {
+        return loggedIn;
+    }
+
+    public void setLoggedIn(boolean loggedIn) {
+        this.loggedIn = loggedIn;
+    }
+
+    /**
+     * Allocate the serial number of a new frame.
+     *
+     * @return the next serial number, wrapping after 0xFFFF
+     */
+    public int nextSequence() {
+        sequence = (sequence + 1) & 0xFFFF;
+        return sequence;
+    }
+
+    /**
+     * @return serial number of the last frame written
+     */
+    public int getSequence() {
+        return sequence;
+    }
+
+    @Override
+    public String toString() {
+        return "DeviceSession[" + imei + "]"; //$NON-NLS-1$ //$NON-NLS-2$
+    }
+}
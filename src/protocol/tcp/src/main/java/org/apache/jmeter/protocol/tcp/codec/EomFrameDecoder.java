@@ -0,0 +1,57 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.jmeter.protocol.tcp.codec;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Frames ending with an end of message byte.
+ */
+public final class EomFrameDecoder implements FrameDecoder {
+
+    private final byte eom;
+
+    /**
+     * @param eom the end of message byte, included in the frame
+     */
+    public EomFrameDecoder(byte eom) {
+        this.eom = eom;
+    }
+
+    /**
+     * @param eomInt the end of message byte value
+     * @return a decoder for this byte, or {@link FrameDecoder#AVAILABLE}
+     * if the value is out of the byte range
+     */
+    public static FrameDecoder of(int eomInt) {
+        if (eomInt >= Byte.MIN_VALUE && eomInt <= Byte.MAX_VALUE) {
+            return new EomFrameDecoder((byte) eomInt);
+        }
+        return AVAILABLE;
+    }
+
+    @Override
+    public int frameLength(ByteBuffer in, DeviceSession session) {
+        for (int i = in.position(); i < in.limit(); i++) {
+            if (in.get(i) == eom) {
+                return i - in.position() + 1;
+            }
+        }
+        return 0;
+    }
+}
@@ -0,0 +1,51 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.jmeter.protocol.tcp.codec;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Finds the boundaries of the frames in a stream of bytes.
+ * <p>
+ * Decoders are stateless and shared, the bytes not consumed yet are kept by
+ * the {@link FrameReader} of each connection.
+ */
+@FunctionalInterface
+public interface FrameDecoder {
+
+    /**
+     * Every chunk of bytes received is one frame.
+     */
+    FrameDecoder AVAILABLE = (in, session) -> in.remaining();
+
+    /**
+     * The frame ends with the stream: it is never complete and the reader
+     * returns the bytes received with {@link FrameReader#drain()}.
+     */
+    FrameDecoder END_OF_STREAM = (in, session) -> 0;
+
+    /**
+     * Get the length of the frame starting at the position of the buffer.
+     * The position and limit of the buffer must not be modified.
+     *
+     * @param in the received bytes, between position and limit
+     * @param session the session of the connection, may be <code>null</code>
+     * @return the length of the first frame, or 0 if more bytes are needed
+     */
+    int frameLength(ByteBuffer in, DeviceSession session);
+}
@@ -0,0 +1,178 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.jmeter.protocol.tcp.codec;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.util.Arrays;
+
+/**
+ * Accumulates the bytes received on a connection and splits them into frames
+ * with a {@link FrameDecoder}.
+ * <p>
+ * Bytes following a complete frame are kept for the next call to {@link #nextFrame(DeviceSession)},
+ * so frames split over several reads and several frames received in one read are both handled.
+ * The buffer only grows when a single frame does not fit.
+ * <p>
+ * Not thread safe, one reader per connection.
+ */
+public final class FrameReader {
+
+    private final FrameDecoder decoder;
+
+    private byte[] data;
+
+    private ByteBuffer pending;
+
+    private ByteBuffer frame;
+
+    private int start;
+
+    private int end;
+
+    /**
+     * @param decoder the decoder finding the frame boundaries
+     * @param initialCapacity initial buffer size
+     */
+    public FrameReader(FrameDecoder decoder, int initialCapacity) {
+        this.decoder = decoder;
+        allocate(Math.max(16, initialCapacity));
+    }
+
+    private void allocate(int capacity) {
+        data = data == null ? new byte[capacity] : Arrays.copyOf(data, capacity);
+        pending = ByteBuffer.wrap(data);
+        frame = ByteBuffer.wrap(data);
+    }
+
+    /**
+     * Make room for at least one more byte, moving the pending bytes to the start of the buffer.
+     */
+    private void ensureSpace() {
+        if (end < data.length) {
+            return;
+        }
+        if (start > 0) {
+            System.arraycopy(data, start, data, 0, end - start);
+            end -= start;
+            start = 0;
+        } else {
+            allocate(data.length * 2);
+        }
+    }
+
+    /**
+     * Read available bytes from a stream, blocking until at least one is received.
+     *
+     * @param in the stream to read from
+     * @return number of bytes read, -1 at end of stream
+     * @throws IOException when reading fails
+     */
+    public int read(InputStream in) throws IOException {
+        ensureSpace();
+        int read = in.read(data, end, data.length - end);
+        if (read > 0) {
+            end += read;
+        }
+        return read;
+    }
+
+    /**
+     * Read available bytes from a channel.
+     *
+     * @param channel the channel to read from
+     * @return number of bytes read, -1 at end of stream
+     * @throws IOException when reading fails
+     */
+    public int read(ReadableByteChannel channel) throws IOException {
+        ensureSpace();
+        pending.limit(data.length).position(end);
+        int read = channel.read(pending);
+        if (read > 0) {
+            end += read;
+        }
+        return read;
+    }
+
+    /**
+     * Append received bytes.
+     *
+     * @param src the bytes between position and limit, the position is moved to the limit
+     */
+    public void append(ByteBuffer src) {
+        while (src.hasRemaining()) {
+            ensureSpace();
+            int length = Math.min(src.remaining(), data.length - end);
+            src.get(data, end, length);
+            end += length;
+        }
+    }
+
+    /**
+     * Get the next complete frame.
+     *
+     * @param session session of the connection, passed to the decoder
+     * @return a buffer holding the frame between position and limit, only valid until
+     * the next call to this reader; <code>null</code> if no complete frame was received yet
+     */
+    public ByteBuffer nextFrame(DeviceSession session) {
+        if (start == end) {
+            start = 0;
+            end = 0;
+            return null;
+        }
+        pending.limit(end).position(start);
+        int length = decoder.frameLength(pending, session);
+        if (length <= 0) {
+            return null;
+        }
+        frame.limit(start + length).position(start);
+        start += length;
+        return frame;
+    }
+
+    /**
+     * Get all the buffered bytes, complete frame or not, for example at the end of the stream.
+     *
+     * @return a buffer holding the bytes between position and limit, only valid until
+     * the next call to this reader
+     */
+    public ByteBuffer drain() {
+        frame.limit(end).position(start);
+        start = 0;
+        end = 0;
+        return frame;
+    }
+
+    /**
+     * @return number of received bytes not returned as frame yet
+     */
+    public int buffered() {
+        return end - start;
+    }
+
+    /**
+     * Drop the buffered bytes, for example when the connection is re-opened.
+     */
+    public void clear() {
+        start = 0;
+        end = 0;
+    }
+}
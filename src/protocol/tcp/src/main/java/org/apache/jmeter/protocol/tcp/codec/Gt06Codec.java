@@ -0,0 +1,211 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.jmeter.protocol.tcp.codec;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Concox GT06 protocol.
+ * <p>
+ * Packets start with <code>0x7878</code>, a length byte and a protocol number, and end
+ * with a serial number, the CRC-ITU of the packet and <code>0x0D0A</code>. The device logs in
+ * with its IMEI in BCD (protocol <code>0x01</code>), the server echoes the serial number.
+ * Location packets (protocol <code>0x12</code>) are not acknowledged.
+ * Online commands (protocol <code>0x80</code>) are answered with a <code>0x15</code> packet
+ * echoing the server flag and the command text.
+ */
+public class Gt06Codec implements TrackerCodec {
+
+    private static final byte START = 0x78;
+
+    private static final byte EXTENDED_START = 0x79;
+
+    private static final byte LOGIN = 0x01;
+
+    private static final byte LOCATION = 0x12;
+
+    private static final byte COMMAND = (byte) 0x80;
+
+    private static final byte COMMAND_RESPONSE = 0x15;
+
+    /** Protocol number, terminal id, serial and CRC */
+    private static final int LOGIN_LENGTH = 1 + 8 + 2 + 2;
+
+    /** Protocol number, date, GPS data, LBS data, serial and CRC */
+    private static final int LOCATION_LENGTH = 1 + 6 + 12 + 8 + 2 + 2;
+
+    /** Protocol number, command length, server flag, serial and CRC, without the text (and language) */
+    private static final int COMMAND_LENGTH = 1 + 1 + 4 + 2 + 2;
+
+    /** Start bits, length and stop bits */
+    private static final int PACKET_OVERHEAD = 2 + 1 + 2;
+
+    private static final double COORDINATE_SCALE = 1800000d;
+
+    private static final int MCC = 420;
+
+    private static final int MNC = 1;
+
+    private final FrameDecoder decoder = (in, session) -> {
+        int position = in.position();
+        int available = in.remaining();
+        if (available < 2) {
+            return 0;
+        }
+        if (in.get(position) == START && in.get(position + 1) == START) {
+            return available < 3 ? 0 : complete(available, PACKET_OVERHEAD + (in.get(position + 2) & 0xFF));
+        }
+        if (in.get(position) == EXTENDED_START && in.get(position + 1) == EXTENDED_START) {
+            return available < 4 ? 0 : complete(available, PACKET_OVERHEAD + 1 + (in.getShort(position + 2) & 0xFFFF));
+        }
+        // skip garbage up to the next start bits
+        for (int i = position + 1; i < in.limit(); i++) {
+            if (in.get(i) == START || in.get(i) == EXTENDED_START) {
+                return i - position;
+            }
+        }
+        return available;
+    };
+
+    private static int complete(int available, int length) {
+        return available >= length ? length : 0;
+    }
+
+    @Override
+    public String getName() {
+        return "GT06"; //$NON-NLS-1$
+    }
+
+    @Override
+    public int getMaxFrameLength() {
+        return PACKET_OVERHEAD + LOCATION_LENGTH;
+    }
+
+    @Override
+    public boolean encodeLogin(DeviceSession session, ByteBuffer dst) {
+        int start = begin(dst, LOGIN_LENGTH, LOGIN);
+        // terminal id: IMEI as 16 BCD digits
+        long imei = session.getImei();
+        int id = dst.position();
+        for (int i = 7; i >= 0; i--) {
+            dst.put(id + i, (byte) (((imei / 10) % 10) << 4 | (imei % 10)));
+            imei /= 100;
+        }
+        dst.position(id + 8);
+        end(session, dst, start);
+        return true;
+    }
+
+    @Override
+    public boolean isLoginAcknowledged() {
+        return true;
+    }
+
+    @Override
+    public void encodeReport(DeviceSession session, TrackerReport report, ByteBuffer dst) {
+        int start = begin(dst, LOCATION_LENGTH, LOCATION);
+        long fields = CodecSupport.utcFields(report.getTimeMillis());
+        dst.put((byte) (fields / 10000000000L % 100));
+        dst.put((byte) (fields / 100000000L % 100));
+        dst.put((byte) (fields / 1000000L % 100));
+        dst.put((byte) (fields / 10000L % 100));
+        dst.put((byte) (fields / 100L % 100));
+        dst.put((byte) (fields % 100));
+        dst.put((byte) (0xC0 | Math.min(report.getSatellites(), 0x0F)));
+        dst.putInt((int) Math.round(Math.abs(report.getLatitude()) * COORDINATE_SCALE));
+        dst.putInt((int) Math.round(Math.abs(report.getLongitude()) * COORDINATE_SCALE));
+        dst.put((byte) Math.min(report.getSpeed(), 0xFF));
+        int status = 0x1000 // positioned
+                | (report.getLongitude() < 0 ? 0x0800 : 0)
+                | (report.getLatitude() >= 0 ? 0x0400 : 0)
+                | (report.getHeading() & 0x03FF);
+        dst.putShort((short) status);
+        dst.putShort((short) MCC);
+        dst.put((byte) MNC);
+        dst.putShort((short) 0x2A4B); // LAC
+        dst.put((byte) 0);
+        dst.putShort((short) 0x5C1E); // cell id
+        end(session, dst, start);
+    }
+
+    private static int begin(ByteBuffer dst, int length, byte protocol) {
+        int start = dst.position();
+        dst.put(START);
+        dst.put(START);
+        dst.put((byte) length);
+        dst.put(protocol);
+        return start;
+    }
+
+    private static void end(DeviceSession session, ByteBuffer dst, int start) {
+        dst.putShort((short) session.nextSequence());
+        dst.putShort((short) CodecSupport.crc16X25(dst, start + 2, dst.position()));
+        dst.put((byte) 0x0D);
+        dst.put((byte) 0x0A);
+    }
+
+    @Override
+    public boolean isReportAcknowledged() {
+        return false;
+    }
+
+    @Override
+    public FrameDecoder getFrameDecoder() {
+        return decoder;
+    }
+
+    /**
+     * @return 1 if the frame is a server response, see {@link #ackSequence(DeviceSession, ByteBuffer)}
+     * for the packet it refers to
+     */
+    @Override
+    public int acknowledged(DeviceSession session, ByteBuffer frame) {
+        return frame.remaining() >= PACKET_OVERHEAD + 5 && frame.get(frame.position()) == START
+                && !isCommand(session, frame) ? 1 : 0;
+    }
+
+    @Override
+    public boolean isCommand(DeviceSession session, ByteBuffer frame) {
+        int position = frame.position();
+        return frame.remaining() >= PACKET_OVERHEAD + COMMAND_LENGTH && frame.get(position) == START
+                && frame.get(position + 3) == COMMAND;
+    }
+
+    @Override
+    public boolean encodeCommandResponse(DeviceSession session, ByteBuffer command, ByteBuffer dst) {
+        int position = command.position();
+        // the command length counts the server flag and the command text
+        int text = Math.max(0, Math.min((command.get(position + 4) & 0xFF) - 4,
+                command.remaining() - PACKET_OVERHEAD - COMMAND_LENGTH));
+        int start = begin(dst, COMMAND_LENGTH + text, COMMAND_RESPONSE);
+        dst.put((byte) (4 + text));
+        for (int i = 0; i < 4 + text; i++) {
+            dst.put(command.get(position + 5 + i));
+        }
+        end(session, dst, start);
+        return true;
+    }
+
+    /**
+     * @return the serial number echoed by the server
+     */
+    @Override
+    public int ackSequence(DeviceSession session, ByteBuffer frame) {
+        return frame.getShort(frame.limit() - 6) & 0xFFFF;
+    }
+}
@@ -0,0 +1,163 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.jmeter.protocol.tcp.codec;
+
+/**
+ * Frames sent on a connection and not acknowledged yet, oldest first.
+ * <p>
+ * ACKs are correlated with the frames by serial number when the protocol echoes it,
+ * otherwise they acknowledge the oldest frames. The window is backed by arrays
+ * allocated once, so tracking frames does not allocate.
+ * <p>
+ * Not thread safe, one window per connection.
+ */
+public final class InFlightWindow {
+
+    private final int[] sequences;
+
+    private final long[] sendNanos;
+
+    private final long[] sendMillis;
+
+    private final int[] sentBytes;
+
+    private int head;
+
+    private int size;
+
+    private int completedSequence;
+
+    private long completedNanos;
+
+    private long completedMillis;
+
+    private int completedBytes;
+
+    /**
+     * @param capacity maximum number of frames in flight
+     */
+    public InFlightWindow(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Window must hold at least one frame: " + capacity);
+        }
+        sequences = new int[capacity];
+        sendNanos = new long[capacity];
+        sendMillis = new long[capacity];
+        sentBytes = new int[capacity];
+    }
+
+    public int getCapacity() {
+        return sequences.length;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isFull() {
+        return size == sequences.length;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Track a frame that was just written.
+     *
+     * @param sequence serial number of the frame
+     * @param nanos {@link System#nanoTime()} when the frame was written
+     * @param millis {@link System#currentTimeMillis()} when the frame was written
+     * @param bytes number of bytes written for the frame
+     * @throws IllegalStateException if the window is full
+     */
+    public void add(int sequence, long nanos, long millis, int bytes) {
+        if (isFull()) {
+            throw new IllegalStateException("Window is full");
+        }
+        int index = (head + size) % sequences.length;
+        sequences[index] = sequence;
+        sendNanos[index] = nanos;
+        sendMillis[index] = millis;
+        sentBytes[index] = bytes;
+        size++;
+    }
+
+    /**
+     * Remove the frame acknowledged by an ACK, its details are then available
+     * from the <code>getCompleted*</code> methods.
+     *
+     * @param sequence serial number echoed by the ACK, or -1 to complete the oldest frame
+     * @return <code>false</code> if no frame in flight has this serial number
+     */
+    public boolean complete(int sequence) {
+        if (size == 0) {
+            return false;
+        }
+        int offset = 0;
+        if (sequence >= 0) {
+            while (offset < size && sequences[(head + offset) % sequences.length] != sequence) {
+                offset++;
+            }
+            if (offset == size) {
+                return false;
+            }
+        }
+        int index = (head + offset) % sequences.length;
+        completedSequence = sequences[index];
+        completedNanos = sendNanos[index];
+        completedMillis = sendMillis[index];
+        completedBytes = sentBytes[index];
+        // close the gap, frames are rarely acknowledged out of order so this is usually a no-op
+        for (int i = offset; i > 0; i--) {
+            int to = (head + i) % sequences.length;
+            int from = (head + i - 1) % sequences.length;
+            sequences[to] = sequences[from];
+            sendNanos[to] = sendNanos[from];
+            sendMillis[to] = sendMillis[from];
+            sentBytes[to] = sentBytes[from];
+        }
+        head = (head + 1) % sequences.length;
+        size--;
+        return true;
+    }
+
+    public int getCompletedSequence() {
+        return completedSequence;
+    }
+
+    public long getCompletedNanos() {
+        return completedNanos;
+    }
+
+    public long getCompletedMillis() {
+        return completedMillis;
+    }
+
+    public int getCompletedBytes() {
+        return completedBytes;
+    }
+
+    /**
+     * Forget all frames in flight, for example when the connection is closed.
+     */
+    public void clear() {
+        head = 0;
+        size = 0;
+    }
+}
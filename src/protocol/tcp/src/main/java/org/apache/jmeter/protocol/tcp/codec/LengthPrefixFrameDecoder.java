@@ -0,0 +1,57 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.jmeter.protocol.tcp.codec;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Frames starting with their length as a big endian unsigned number.
+ * The frame returned includes the prefix, the length does not.
+ */
+public final class LengthPrefixFrameDecoder implements FrameDecoder {
+
+    private final int prefixLength;
+
+    /**
+     * @param prefixLength number of bytes of the length prefix, 1 to 4
+     * @throws IllegalArgumentException if the prefix length is out of range
+     */
+    public LengthPrefixFrameDecoder(int prefixLength) {
+        if (prefixLength < 1 || prefixLength > 4) {
+            throw new IllegalArgumentException("Length prefix must have 1 to 4 bytes: " + prefixLength);
+        }
+        this.prefixLength = prefixLength;
+    }
+
+    public int getPrefixLength() {
+        return prefixLength;
+    }
+
+    @Override
+    public int frameLength(ByteBuffer in, DeviceSession session) {
+        if (in.remaining() < prefixLength) {
+            return 0;
+        }
+        long length = 0;
+        for (int i = 0; i < prefixLength; i++) {
+            length = (length << 8) | (in.get(in.position() + i) & 0xFF);
+        }
+        long frameLength = prefixLength + length;
+        return in.remaining() >= frameLength ? (int) frameLength : 0;
+    }
+}
@@ -0,0 +1,170 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.jmeter.protocol.tcp.codec;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Queclink ASCII protocol (GL/GV series).
+ * <p>
+ * Reports are <code>+RESP:GTFRI</code> messages ending with <code>$</code>, there is no login.
+ * The server acknowledges a report with <code>+SACK:&lt;count&gt;$</code> where the count is
+ * the 4 hex digits count number closing the report.
+ * Server commands (<code>AT+GTxxx=...,&lt;serial&gt;$</code>) are answered with
+ * <code>+ACK:GTxxx</code> echoing their serial number.
+ */
+public class QueclinkCodec implements TrackerCodec {
+
+    private static final String REPORT_PREFIX = "+RESP:GTFRI,300400,"; //$NON-NLS-1$
+
+    private static final String SACK = "+SACK:"; //$NON-NLS-1$
+
+    private static final String COMMAND_PREFIX = "AT+GT"; //$NON-NLS-1$
+
+    private static final String ACK_PREFIX = "+ACK:GT"; //$NON-NLS-1$
+
+    private static final String PROTOCOL_VERSION = ",300400,"; //$NON-NLS-1$
+
+    private static final byte END = '$';
+
+    private static final int COUNT_LENGTH = 4;
+
+    private final FrameDecoder decoder = new EomFrameDecoder(END);
+
+    @Override
+    public String getName() {
+        return "QUECLINK"; //$NON-NLS-1$
+    }
+
+    @Override
+    public int getMaxFrameLength() {
+        return 256;
+    }
+
+    @Override
+    public boolean encodeLogin(DeviceSession session, ByteBuffer dst) {
+        return false;
+    }
+
+    @Override
+    public boolean isLoginAcknowledged() {
+        return false;
+    }
+
+    @Override
+    public void encodeReport(DeviceSession session, TrackerReport report, ByteBuffer dst) {
+        CodecSupport.putAscii(dst, REPORT_PREFIX);
+        CodecSupport.putDigits(dst, session.getImei(), 15);
+        CodecSupport.putAscii(dst, ",,,10,1,1,"); //$NON-NLS-1$ name, external power, report id and type, number
+        dst.put((byte) '1'); // GPS accuracy
+        dst.put((byte) ',');
+        CodecSupport.putFixed(dst, report.getSpeed(), 1);
+        dst.put((byte) ',');
+        CodecSupport.putDigits(dst, report.getHeading(), 1);
+        dst.put((byte) ',');
+        CodecSupport.putFixed(dst, report.getAltitude(), 1);
+        dst.put((byte) ',');
+        CodecSupport.putFixed(dst, report.getLongitude(), 6);
+        dst.put((byte) ',');
+        CodecSupport.putFixed(dst, report.getLatitude(), 6);
+        dst.put((byte) ',');
+        long fields = CodecSupport.utcFields(report.getTimeMillis());
+        CodecSupport.putDigits(dst, fields, 14);
+        CodecSupport.putAscii(dst, ",0420,0001,2A4B,5C1E,,100,"); //$NON-NLS-1$ MCC, MNC, LAC, cell, battery
+        CodecSupport.putDigits(dst, fields, 14);
+        dst.put((byte) ',');
+        CodecSupport.putHex(dst, session.nextSequence(), COUNT_LENGTH);
+        dst.put(END);
+    }
+
+    @Override
+    public boolean isReportAcknowledged() {
+        return true;
+    }
+
+    @Override
+    public FrameDecoder getFrameDecoder() {
+        return decoder;
+    }
+
+    /**
+     * @return 1 if the frame is a <code>+SACK</code> with a count number
+     */
+    @Override
+    public int acknowledged(DeviceSession session, ByteBuffer frame) {
+        int position = frame.position();
+        if (frame.remaining() < SACK.length() + COUNT_LENGTH + 1) {
+            return 0;
+        }
+        for (int i = 0; i < SACK.length(); i++) {
+            if (frame.get(position + i) != SACK.charAt(i)) {
+                return 0;
+            }
+        }
+        return ackSequence(session, frame) >= 0 ? 1 : 0;
+    }
+
+    @Override
+    public boolean isCommand(DeviceSession session, ByteBuffer frame) {
+        int position = frame.position();
+        if (frame.remaining() <= COMMAND_PREFIX.length()) {
+            return false;
+        }
+        for (int i = 0; i < COMMAND_PREFIX.length(); i++) {
+            if (frame.get(position + i) != COMMAND_PREFIX.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public boolean encodeCommandResponse(DeviceSession session, ByteBuffer command, ByteBuffer dst) {
+        int end = command.limit() - 1;
+        int name = command.position() + COMMAND_PREFIX.length();
+        int serial = end;
+        while (serial > name && command.get(serial - 1) != ',') {
+            serial--;
+        }
+        CodecSupport.putAscii(dst, ACK_PREFIX);
+        for (int i = name; i < end && command.get(i) != '='; i++) {
+            dst.put(command.get(i));
+        }
+        CodecSupport.putAscii(dst, PROTOCOL_VERSION);
+        CodecSupport.putDigits(dst, session.getImei(), 15);
+        CodecSupport.putAscii(dst, ",,"); //$NON-NLS-1$ name
+        for (int i = serial; i < end; i++) {
+            dst.put(command.get(i));
+        }
+        dst.put((byte) ',');
+        CodecSupport.putDigits(dst, CodecSupport.utcFields(System.currentTimeMillis()), 14);
+        dst.put((byte) ',');
+        CodecSupport.putHex(dst, session.nextSequence(), COUNT_LENGTH);
+        dst.put(END);
+        return true;
+    }
+
+    /**
+     * @return the count number of the acknowledged report
+     */
+    @Override
+    public int ackSequence(DeviceSession session, ByteBuffer frame) {
+        int end = frame.limit() - 1;
+        return CodecSupport.parseHex(frame, end - COUNT_LENGTH, end);
+    }
+}
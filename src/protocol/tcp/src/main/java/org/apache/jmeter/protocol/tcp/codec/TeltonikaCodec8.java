@@ -0,0 +1,213 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.jmeter.protocol.tcp.codec;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Teltonika Codec 8 over TCP.
+ * <p>
+ * The device logs in with its IMEI (2 bytes length and 15 ASCII digits), the server
+ * answers <code>0x01</code> to accept it or <code>0x00</code> to reject it.
+ * Reports are AVL data packets: 4 zero bytes, data length, codec id <code>0x08</code>,
+ * record count, the records, record count again and the CRC-16/IBM of the data.
+ * The server acknowledges a packet with the number of records received on 4 bytes.
+ * A backlog is flushed with up to {@value #MAX_RECORDS} records per packet.
+ * Codec 12 commands sent by the server are answered with a Codec 12 response echoing the command.
+ */
+public class TeltonikaCodec8 implements TrackerCodec {
+
+    private static final byte CODEC_8 = 0x08;
+
+    private static final byte CODEC_12 = 0x0C;
+
+    /** Codec 12 message types */
+    private static final byte COMMAND = 0x05;
+
+    private static final byte RESPONSE = 0x06;
+
+    private static final int IMEI_LENGTH = 15;
+
+    /** IO element id of the ignition state */
+    private static final int IO_IGNITION = 239;
+
+    /** Preamble, data length, codec, 2 record counts and CRC */
+    private static final int PACKET_OVERHEAD = 4 + 4 + 1 + 1 + 1 + 4;
+
+    /** Preamble, data length, codec, quantity, type, command length, quantity and CRC */
+    private static final int COMMAND_OVERHEAD = 4 + 4 + 1 + 1 + 1 + 4 + 1 + 4;
+
+    /** Timestamp, priority, GPS element and an IO element holding the ignition */
+    private static final int RECORD_LENGTH = 8 + 1 + 15 + 8;
+
+    /** The record counts are single bytes */
+    static final int MAX_RECORDS = 255;
+
+    private final FrameDecoder decoder = (in, session) -> {
+        int position = in.position();
+        int available = in.remaining();
+        if (available == 0) {
+            return 0;
+        }
+        if (session != null && !session.isLoggedIn()) {
+            return 1;
+        }
+        if (available >= 9 && in.getInt(position) == 0 && in.get(position + 8) == CODEC_12) {
+            int length = 8 + in.getInt(position + 4) + 4;
+            return available >= length ? length : 0;
+        }
+        return available >= 4 ? 4 : 0;
+    };
+
+    @Override
+    public String getName() {
+        return "TELTONIKA"; //$NON-NLS-1$
+    }
+
+    @Override
+    public int getMaxFrameLength() {
+        return PACKET_OVERHEAD + RECORD_LENGTH;
+    }
+
+    @Override
+    public boolean encodeLogin(DeviceSession session, ByteBuffer dst) {
+        dst.putShort((short) IMEI_LENGTH);
+        CodecSupport.putDigits(dst, session.getImei(), IMEI_LENGTH);
+        return true;
+    }
+
+    @Override
+    public boolean isLoginAcknowledged() {
+        return true;
+    }
+
+    @Override
+    public void encodeReport(DeviceSession session, TrackerReport report, ByteBuffer dst) {
+        int start = startPacket(dst, 1);
+        putRecord(report, dst);
+        endPacket(dst, start, 1);
+    }
+
+    @Override
+    public int getMaxBatchLength(int reports) {
+        int packets = (reports + MAX_RECORDS - 1) / MAX_RECORDS;
+        return packets * PACKET_OVERHEAD + reports * RECORD_LENGTH;
+    }
+
+    @Override
+    public int encodeBatch(DeviceSession session, TrackerReport[] reports, int count, ByteBuffer dst) {
+        int packets = 0;
+        for (int first = 0; first < count; first += MAX_RECORDS) {
+            int records = Math.min(MAX_RECORDS, count - first);
+            int start = startPacket(dst, records);
+            for (int i = first; i < first + records; i++) {
+                putRecord(reports[i], dst);
+            }
+            endPacket(dst, start, records);
+            packets++;
+        }
+        return packets;
+    }
+
+    private static int startPacket(ByteBuffer dst, int records) {
+        int start = dst.position();
+        dst.putInt(0);
+        dst.putInt(0); // data length, set by endPacket
+        dst.put(CODEC_8);
+        dst.put((byte) records);
+        return start;
+    }
+
+    private static void endPacket(ByteBuffer dst, int start, int records) {
+        dst.put((byte) records);
+        int dataStart = start + 8;
+        int dataEnd = dst.position();
+        dst.putInt(start + 4, dataEnd - dataStart);
+        dst.putInt(CodecSupport.crc16Ibm(dst, dataStart, dataEnd));
+    }
+
+    private static void putRecord(TrackerReport report, ByteBuffer dst) {
+        dst.putLong(report.getTimeMillis());
+        dst.put((byte) 0); // priority: low
+        dst.putInt((int) Math.round(report.getLongitude() * 1e7));
+        dst.putInt((int) Math.round(report.getLatitude() * 1e7));
+        dst.putShort((short) report.getAltitude());
+        dst.putShort((short) report.getHeading());
+        dst.put((byte) report.getSatellites());
+        dst.putShort((short) report.getSpeed());
+        dst.put((byte) 0); // event IO id
+        dst.put((byte) 1); // IO count
+        dst.put((byte) 1); // 1 byte IOs
+        dst.put((byte) IO_IGNITION);
+        dst.put((byte) (report.isIgnition() ? 1 : 0));
+        dst.put((byte) 0); // 2 byte IOs
+        dst.put((byte) 0); // 4 byte IOs
+        dst.put((byte) 0); // 8 byte IOs
+    }
+
+    @Override
+    public boolean isReportAcknowledged() {
+        return true;
+    }
+
+    @Override
+    public FrameDecoder getFrameDecoder() {
+        return decoder;
+    }
+
+    /**
+     * @return 1 for an accepted login, -1 for a rejected one, the number of
+     * records for a report ACK, 0 for commands
+     */
+    @Override
+    public int acknowledged(DeviceSession session, ByteBuffer frame) {
+        if (!session.isLoggedIn()) {
+            return frame.get(frame.position()) == 1 ? 1 : -1;
+        }
+        return frame.remaining() == 4 ? frame.getInt(frame.position()) : 0;
+    }
+
+    @Override
+    public boolean isCommand(DeviceSession session, ByteBuffer frame) {
+        int position = frame.position();
+        return session.isLoggedIn() && frame.remaining() >= COMMAND_OVERHEAD && frame.getInt(position) == 0
+                && frame.get(position + 8) == CODEC_12 && frame.get(position + 10) == COMMAND;
+    }
+
+    @Override
+    public boolean encodeCommandResponse(DeviceSession session, ByteBuffer command, ByteBuffer dst) {
+        int position = command.position();
+        int length = Math.max(0, Math.min(command.getInt(position + 11), command.remaining() - COMMAND_OVERHEAD));
+        int start = dst.position();
+        dst.putInt(0);
+        dst.putInt(0); // data length
+        dst.put(CODEC_12);
+        dst.put((byte) 1);
+        dst.put(RESPONSE);
+        dst.putInt(length);
+        for (int i = 0; i < length; i++) {
+            dst.put(command.get(position + 15 + i));
+        }
+        dst.put((byte) 1);
+        int dataStart = start + 8;
+        int dataEnd = dst.position();
+        dst.putInt(start + 4, dataEnd - dataStart);
+        dst.putInt(CodecSupport.crc16Ibm(dst, dataStart, dataEnd));
+        return true;
+    }
+}
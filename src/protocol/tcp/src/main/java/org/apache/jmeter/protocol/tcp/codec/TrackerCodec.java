@@ -0,0 +1,177 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.jmeter.protocol.tcp.codec;
+
+import java.nio.ByteBuffer;
+import java.util.Map;
+
+/**
+ * Binary encoder/decoder of a tracker protocol.
+ * <p>
+ * Implementations are discovered with {@link java.util.ServiceLoader} (see
+ * {@link TrackerCodecs}) and must have a public no-arg constructor.
+ * A configured codec is shared by all threads and connections of a test, so it must
+ * be stateless: per connection state is kept in the {@link DeviceSession}.
+ */
+public interface TrackerCodec {
+
+    /**
+     * @return the protocol name, used to select the codec (case insensitive)
+     */
+    String getName();
+
+    /**
+     * Create a codec configured for a test.
+     * The default implementation returns this codec, for protocols without settings.
+     *
+     * @param parameters codec settings, see {@link TrackerCodecs} for the common keys
+     * @return the configured codec
+     * @throws IllegalArgumentException if the settings are invalid
+     */
+    default TrackerCodec configure(Map<String, String> parameters) {
+        return this;
+    }
+
+    /**
+     * @return maximum length of a frame written by this codec
+     */
+    int getMaxFrameLength();
+
+    /**
+     * Write the login (handshake) frame sent when a connection is opened.
+     *
+     * @param session the device session
+     * @param dst buffer to write to
+     * @return <code>false</code> if the protocol has no login frame
+     */
+    boolean encodeLogin(DeviceSession session, ByteBuffer dst);
+
+    /**
+     * @return <code>true</code> if the server answers the login frame,
+     * reports must then wait for that answer
+     */
+    boolean isLoginAcknowledged();
+
+    /**
+     * Write a report frame.
+     *
+     * @param session the device session
+     * @param report the report to encode
+     * @param dst buffer to write to
+     */
+    void encodeReport(DeviceSession session, TrackerReport report, ByteBuffer dst);
+
+    /**
+     * @param reports number of reports
+     * @return maximum length of the frames written by
+     * {@link #encodeBatch(DeviceSession, TrackerReport[], int, ByteBuffer)} for that many reports
+     */
+    default int getMaxBatchLength(int reports) {
+        return reports * getMaxFrameLength();
+    }
+
+    /**
+     * Write buffered reports, as sent by a device flushing its backlog.
+     * Protocols with multi-record frames pack the reports in as few frames as possible,
+     * the default implementation writes one frame per report.
+     *
+     * @param session the device session
+     * @param reports the reports to encode, oldest first
+     * @param count number of reports to encode
+     * @param dst buffer to write to
+     * @return number of frames written, the server acknowledges each of them
+     */
+    default int encodeBatch(DeviceSession session, TrackerReport[] reports, int count, ByteBuffer dst) {
+        for (int i = 0; i < count; i++) {
+            encodeReport(session, reports[i], dst);
+        }
+        return count;
+    }
+
+    /**
+     * @return <code>true</code> if the server acknowledges reports
+     */
+    boolean isReportAcknowledged();
+
+    /**
+     * @return the decoder splitting the bytes sent by the server into frames
+     */
+    FrameDecoder getFrameDecoder();
+
+    /**
+     * Check whether a frame received from the server is an ACK.
+     *
+     * @param session the device session
+     * @param frame the frame, between position and limit; must not be modified
+     * @return the number of frames (login or reports) acknowledged by this frame, or of reports
+     * for multi-record frames; 0 if it is not an ACK, a negative value if the server rejected the frame
+     */
+    int acknowledged(DeviceSession session, ByteBuffer frame);
+
+    /**
+     * Get the device an ACK is meant for, for transports where one socket serves many devices.
+     * The default implementation is for protocols whose ACKs do not carry the IMEI.
+     *
+     * @param frame an ACK frame, between position and limit; must not be modified
+     * @return the IMEI found in the ACK, or -1 if it has none
+     */
+    default long ackImei(ByteBuffer frame) {
+        return -1;
+    }
+
+    /**
+     * Get the frame an ACK refers to, for protocols echoing the serial number of the frame.
+     * The default implementation is for protocols acknowledging the frames in order.
+     *
+     * @param session the device session
+     * @param frame an ACK frame, between position and limit; must not be modified
+     * @return the {@link DeviceSession#nextSequence() serial number} of the acknowledged frame,
+     * or -1 if the ACK refers to the oldest frames not acknowledged yet
+     */
+    default int ackSequence(DeviceSession session, ByteBuffer frame) {
+        return -1;
+    }
+
+    /**
+     * Check whether a frame received from the server is a command pushed to the device
+     * (configuration, reboot, output control...) rather than an answer to a device frame.
+     * Commands arrive interleaved with the ACKs, they are answered with
+     * {@link #encodeCommandResponse(DeviceSession, ByteBuffer, ByteBuffer)} and never passed to
+     * {@link #acknowledged(DeviceSession, ByteBuffer)}.
+     * The default implementation is for protocols without downlink commands.
+     *
+     * @param session the device session
+     * @param frame the frame, between position and limit; must not be modified
+     * @return <code>true</code> if the frame is a command
+     */
+    default boolean isCommand(DeviceSession session, ByteBuffer frame) {
+        return false;
+    }
+
+    /**
+     * Write the answer of the device to a command.
+     *
+     * @param session the device session
+     * @param command the command frame, between position and limit; must not be modified
+     * @param dst buffer to write to, with room for {@link #getMaxFrameLength()} plus the length of the command
+     * @return <code>false</code> if the device does not answer the command
+     */
+    default boolean encodeCommandResponse(DeviceSession session, ByteBuffer command, ByteBuffer dst) {
+        return false;
+    }
+}
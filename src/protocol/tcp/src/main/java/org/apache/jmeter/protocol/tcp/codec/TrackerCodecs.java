@@ -0,0 +1,130 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.jmeter.protocol.tcp.codec;
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.Map;
+import java.util.ServiceConfigurationError;
+import java.util.ServiceLoader;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Registry of the {@link TrackerCodec}s.
+ * <p>
+ * Codecs are discovered once with {@link ServiceLoader}, so protocols can be added
+ * by dropping a jar with a <code>META-INF/services/org.apache.jmeter.protocol.tcp.codec.TrackerCodec</code>
+ * entry in <code>lib/ext</code>. Configured codecs are cached, all samplers using the same
+ * protocol and settings share one instance.
+ */
+public final class TrackerCodecs {
+    private static final Logger log = LoggerFactory.getLogger(TrackerCodecs.class);
+
+    /** Parameter holding the demo signal of template based codecs */
+    public static final String SIGNAL = "signal"; //$NON-NLS-1$
+
+    /** Parameter holding the end of message byte of the server frames, for protocols without framing */
+    public static final String EOM_BYTE = "eomByte"; //$NON-NLS-1$
+
+    private static volatile Map<String, TrackerCodec> codecs;
+
+    private static final ConcurrentMap<String, TrackerCodec> CONFIGURED = new ConcurrentHashMap<>();
+
+    private TrackerCodecs() {
+        super();
+    }
+
+    private static Map<String, TrackerCodec> getCodecs() {
+        Map<String, TrackerCodec> result = codecs;
+        if (result == null) {
+            synchronized (TrackerCodecs.class) {
+                result = codecs;
+                if (result == null) {
+                    result = discover();
+                    codecs = result;
+                }
+            }
+        }
+        return result;
+    }
+
+    private static Map<String, TrackerCodec> discover() {
+        Map<String, TrackerCodec> found = new TreeMap<>();
+        Iterator<TrackerCodec> it = ServiceLoader.load(TrackerCodec.class).iterator();
+        while (true) {
+            try {
+                if (!it.hasNext()) {
+                    break;
+                }
+                TrackerCodec codec = it.next();
+                TrackerCodec previous = found.putIfAbsent(normalize(codec.getName()), codec);
+                if (previous != null) {
+                    log.warn("Ignoring codec {}, protocol {} is already handled by {}",
+                            codec.getClass().getName(), codec.getName(), previous.getClass().getName());
+                }
+            } catch (ServiceConfigurationError e) {
+                log.error("Could not load tracker codec", e);
+            }
+        }
+        log.info("Tracker codecs found: {}", found.keySet());
+        return Collections.unmodifiableMap(found);
+    }
+
+    private static String normalize(String name) {
+        return name.trim().toUpperCase(Locale.ROOT);
+    }
+
+    /**
+     * @return names of the available protocols
+     */
+    public static Set<String> getNames() {
+        return getCodecs().keySet();
+    }
+
+    /**
+     * Get the codec of a protocol configured with the given settings.
+     *
+     * @param name the protocol name, case insensitive
+     * @param parameters codec settings
+     * @return the shared configured codec
+     * @throws IllegalArgumentException if the protocol is unknown or the settings are invalid
+     */
+    public static TrackerCodec get(String name, Map<String, String> parameters) {
+        String normalized = normalize(name);
+        TrackerCodec codec = getCodecs().get(normalized);
+        if (codec == null) {
+            throw new IllegalArgumentException("Unknown tracker protocol '" + name + "', available: " + getNames());
+        }
+        String key = normalized + new TreeMap<>(parameters);
+        return CONFIGURED.computeIfAbsent(key, k -> codec.configure(parameters));
+    }
+
+    /**
+     * Drop the configured codecs, called at the end of a test.
+     */
+    public static void clear() {
+        CONFIGURED.clear();
+    }
+}
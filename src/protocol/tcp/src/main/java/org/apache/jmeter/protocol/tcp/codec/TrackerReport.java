@@ -0,0 +1,124 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.jmeter.protocol.tcp.codec;
+
+/**
+ * Position report to be encoded by a {@link TrackerCodec}.
+ * <p>
+ * Reports are mutable so that a sender can reuse one instance for all its frames.
+ */
+public final class TrackerReport {
+
+    private long timeMillis;
+
+    private double latitude = 24.7136;
+
+    private double longitude = 46.6753;
+
+    private int altitude = 600;
+
+    private int speed;
+
+    private int heading;
+
+    private int satellites = 9;
+
+    private boolean ignition = true;
+
+    /**
+     * @return time of the fix in milliseconds since the epoch
+     */
+    public long getTimeMillis() {
+        return timeMillis;
+    }
+
+    public void setTimeMillis(long timeMillis) {
+        this.timeMillis = timeMillis;
+    }
+
+    /**
+     * @return latitude in degrees, negative in the southern hemisphere
+     */
+    public double getLatitude() {
+        return latitude;
+    }
+
+    public void setLatitude(double latitude) {
+        this.latitude = latitude;
+    }
+
+    /**
+     * @return longitude in degrees, negative west of Greenwich
+     */
+    public double getLongitude() {
+        return longitude;
+    }
+
+    public void setLongitude(double longitude) {
+        this.longitude = longitude;
+    }
+
+    /**
+     * @return altitude in meters
+     */
+    public int getAltitude() {
+        return altitude;
+    }
+
+    public void setAltitude(int altitude) {
+        this.altitude = altitude;
+    }
+
+    /**
+     * @return speed in km/h
+     */
+    public int getSpeed() {
+        return speed;
+    }
+
+    public void setSpeed(int speed) {
+        this.speed = speed;
+    }
+
+    /**
+     * @return heading in degrees, 0 is north
+     */
+    public int getHeading() {
+        return heading;
+    }
+
+    public void setHeading(int heading) {
+        this.heading = heading;
+    }
+
+    public int getSatellites() {
+        return satellites;
+    }
+
+    public void setSatellites(int satellites) {
+        this.satellites = satellites;
+    }
+
+    public boolean isIgnition() {
+        return ignition;
+    }
+
+    public void setIgnition(boolean ignition) {
+        this.ignition = ignition;
+    }
+}
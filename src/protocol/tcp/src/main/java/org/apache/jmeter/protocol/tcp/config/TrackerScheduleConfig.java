@@ -0,0 +1,269 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.jmeter.protocol.tcp.config;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.apache.jmeter.config.ConfigElement;
+import org.apache.jmeter.gui.TestElementMetadata;
+import org.apache.jmeter.protocol.tcp.registry.FleetRegistry;
+import org.apache.jmeter.protocol.tcp.schedule.ReportProfile;
+import org.apache.jmeter.protocol.tcp.schedule.ReportScheduler;
+import org.apache.jmeter.testbeans.TestBean;
+import org.apache.jmeter.testbeans.TestBeanHelper;
+import org.apache.jmeter.testelement.AbstractTestElement;
+import org.apache.jmeter.testelement.TestStateListener;
+import org.apache.jmeter.threads.JMeterContextService;
+import org.apache.jmeter.threads.JMeterVariables;
+import org.apache.jorphan.util.JOrphanUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Defines a device population and how often it reports, for Tracker TCP Samplers
+ * referring to the schedule by name.
+ * <p>
+ * The {@link ReportScheduler} is started with the test and published as a variable object,
+ * the samplers then send the report of whichever device is due instead of each thread
+ * simulating one device with a timer.
+ * <p>
+ * With a registry file the devices are read from a {@link FleetRegistry}, created from the
+ * first IMEI and number of devices if missing, and their state is kept there across runs.
+ */
+@TestElementMetadata(labelResource = "displayName")
+public class TrackerScheduleConfig extends AbstractTestElement
+    implements ConfigElement, TestStateListener, TestBean {
+
+    private static final long serialVersionUID = 1L;
+
+    private static final Logger log = LoggerFactory.getLogger(TrackerScheduleConfig.class);
+
+    private transient String scheduleName;
+
+    private transient int devices;
+
+    private transient long firstImei;
+
+    private transient String registryFile;
+
+    private transient int rampUp;
+
+    private transient long movingInterval;
+
+    private transient long parkedInterval;
+
+    private transient int jitter;
+
+    private transient long movingDuration;
+
+    private transient long parkedDuration;
+
+    private transient int tick;
+
+    /*
+     * The scheduler is started by testStarted and stopped by testEnded.
+     * These are called from different threads, so access must be synchronized.
+     */
+    private transient ReportScheduler scheduler;
+
+    @Override
+    public void testStarted() {
+        this.setRunningVersion(true);
+        TestBeanHelper.prepare(this);
+        JMeterVariables variables = getThreadContext().getVariables();
+        String name = getScheduleName();
+        if (JOrphanUtils.isBlank(name)) {
+            throw new IllegalArgumentException("Name for report schedule must not be empty in " + getName());
+        } else if (variables.getObject(name) != null) {
+            log.error("Report schedule already defined for: {}", name);
+        } else {
+            ReportProfile profile = new ReportProfile(getMovingInterval(), getParkedInterval(), getJitter(),
+                    getMovingDuration() * 1000L, getParkedDuration() * 1000L);
+            ReportScheduler reportScheduler;
+            if (JOrphanUtils.isBlank(getRegistryFile())) {
+                reportScheduler = new ReportScheduler(name, profile, getFirstImei(), getDevices(),
+                        getRampUp() * 1000L, Math.max(1, getTick()));
+            } else {
+                FleetRegistry registry;
+                try {
+                    registry = FleetRegistry.openOrCreate(new File(getRegistryFile().trim()), getFirstImei(),
+                            getDevices());
+                } catch (IOException e) {
+                    throw new IllegalArgumentException("Could not open fleet registry " + getRegistryFile()
+                            + " in " + getName(), e);
+                }
+                reportScheduler = new ReportScheduler(name, profile, registry, getRampUp() * 1000L,
+                        Math.max(1, getTick()));
+            }
+            synchronized (this) {
+                scheduler = reportScheduler;
+                variables.putObject(name, reportScheduler);
+            }
+            reportScheduler.start();
+        }
+    }
+
+    @Override
+    public void testStarted(String host) {
+        testStarted();
+    }
+
+    @Override
+    public void testEnded() {
+        synchronized (this) {
+            if (scheduler != null) {
+                scheduler.stop();
+                closeRegistry(scheduler.getRegistry());
+            }
+            scheduler = null;
+        }
+    }
+
+    @Override
+    public void testEnded(String host) {
+        testEnded();
+    }
+
+    private static void closeRegistry(FleetRegistry registry) {
+        if (registry != null) {
+            try {
+                registry.close();
+            } catch (IOException e) {
+                log.warn("Could not save the state of {}", registry, e);
+            }
+        }
+    }
+
+    @Override
+    public Object clone() {
+        TrackerScheduleConfig el = (TrackerScheduleConfig) super.clone();
+        synchronized (this) {
+            el.scheduler = scheduler;
+        }
+        return el;
+    }
+
+    /**
+     * Get the scheduler published by a Tracker Schedule Config element.
+     *
+     * @param scheduleName name of the schedule
+     * @return the scheduler, <code>null</code> if no schedule has this name
+     */
+    public static ReportScheduler getScheduler(String scheduleName) {
+        Object scheduler = JMeterContextService.getContext().getVariables().getObject(scheduleName);
+        return scheduler instanceof ReportScheduler ? (ReportScheduler) scheduler : null;
+    }
+
+    @Override
+    public void addConfigElement(ConfigElement config) {
+    }
+
+    @Override
+    public boolean expectsModification() {
+        return false;
+    }
+
+    public String getScheduleName() {
+        return scheduleName;
+    }
+
+    public void setScheduleName(String scheduleName) {
+        this.scheduleName = scheduleName;
+    }
+
+    public int getDevices() {
+        return devices;
+    }
+
+    public void setDevices(int devices) {
+        this.devices = devices;
+    }
+
+    public long getFirstImei() {
+        return firstImei;
+    }
+
+    public void setFirstImei(long firstImei) {
+        this.firstImei = firstImei;
+    }
+
+    public String getRegistryFile() {
+        return registryFile;
+    }
+
+    public void setRegistryFile(String registryFile) {
+        this.registryFile = registryFile;
+    }
+
+    public int getRampUp() {
+        return rampUp;
+    }
+
+    public void setRampUp(int rampUp) {
+        this.rampUp = rampUp;
+    }
+
+    public long getMovingInterval() {
+        return movingInterval;
+    }
+
+    public void setMovingInterval(long movingInterval) {
+        this.movingInterval = movingInterval;
+    }
+
+    public long getParkedInterval() {
+        return parkedInterval;
+    }
+
+    public void setParkedInterval(long parkedInterval) {
+        this.parkedInterval = parkedInterval;
+    }
+
+    public int getJitter() {
+        return jitter;
+    }
+
+    public void setJitter(int jitter) {
+        this.jitter = jitter;
+    }
+
+    public long getMovingDuration() {
+        return movingDuration;
+    }
+
+    public void setMovingDuration(long movingDuration) {
+        this.movingDuration = movingDuration;
+    }
+
+    public long getParkedDuration() {
+        return parkedDuration;
+    }
+
+    public void setParkedDuration(long parkedDuration) {
+        this.parkedDuration = parkedDuration;
+    }
+
+    public int getTick() {
+        return tick;
+    }
+
+    public void setTick(int tick) {
+        this.tick = tick;
+    }
+}
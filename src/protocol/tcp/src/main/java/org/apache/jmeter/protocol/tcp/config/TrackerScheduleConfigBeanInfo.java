@@ -0,0 +1,100 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.jmeter.protocol.tcp.config;
+
+import java.beans.PropertyDescriptor;
+
+import org.apache.jmeter.testbeans.BeanInfoSupport;
+
+public class TrackerScheduleConfigBeanInfo extends BeanInfoSupport {
+
+    public TrackerScheduleConfigBeanInfo() {
+        super(TrackerScheduleConfig.class);
+
+        createPropertyGroup("schedule", // $NON-NLS-1$
+                new String[] {
+                        "scheduleName", // $NON-NLS-1$
+                        "devices", // $NON-NLS-1$
+                        "firstImei", // $NON-NLS-1$
+                        "registryFile", // $NON-NLS-1$
+                        "rampUp", // $NON-NLS-1$
+                });
+
+        createPropertyGroup("intervals", // $NON-NLS-1$
+                new String[] {
+                        "movingInterval", // $NON-NLS-1$
+                        "parkedInterval", // $NON-NLS-1$
+                        "jitter", // $NON-NLS-1$
+                });
+
+        createPropertyGroup("states", // $NON-NLS-1$
+                new String[] {
+                        "movingDuration", // $NON-NLS-1$
+                        "parkedDuration", // $NON-NLS-1$
+                });
+
+        createPropertyGroup("advanced", // $NON-NLS-1$
+                new String[] {
+                        "tick", // $NON-NLS-1$
+                });
+
+        PropertyDescriptor p = property("scheduleName"); // $NON-NLS-1$
+        p.setValue(NOT_UNDEFINED, Boolean.TRUE);
+        p.setValue(DEFAULT, ""); // $NON-NLS-1$
+
+        p = property("devices"); // $NON-NLS-1$
+        p.setValue(NOT_UNDEFINED, Boolean.TRUE);
+        p.setValue(DEFAULT, 1000);
+
+        p = property("firstImei"); // $NON-NLS-1$
+        p.setValue(NOT_UNDEFINED, Boolean.TRUE);
+        p.setValue(DEFAULT, 100000000000000L);
+
+        p = property("registryFile"); // $NON-NLS-1$
+        p.setValue(NOT_UNDEFINED, Boolean.TRUE);
+        p.setValue(DEFAULT, ""); // $NON-NLS-1$
+
+        p = property("rampUp"); // $NON-NLS-1$
+        p.setValue(NOT_UNDEFINED, Boolean.TRUE);
+        p.setValue(DEFAULT, 60);
+
+        p = property("movingInterval"); // $NON-NLS-1$
+        p.setValue(NOT_UNDEFINED, Boolean.TRUE);
+        p.setValue(DEFAULT, 10000L);
+
+        p = property("parkedInterval"); // $NON-NLS-1$
+        p.setValue(NOT_UNDEFINED, Boolean.TRUE);
+        p.setValue(DEFAULT, 300000L);
+
+        p = property("jitter"); // $NON-NLS-1$
+        p.setValue(NOT_UNDEFINED, Boolean.TRUE);
+        p.setValue(DEFAULT, 10);
+
+        p = property("movingDuration"); // $NON-NLS-1$
+        p.setValue(NOT_UNDEFINED, Boolean.TRUE);
+        p.setValue(DEFAULT, 1800L);
+
+        p = property("parkedDuration"); // $NON-NLS-1$
+        p.setValue(NOT_UNDEFINED, Boolean.TRUE);
+        p.setValue(DEFAULT, 3600L);
+
+        p = property("tick"); // $NON-NLS-1$
+        p.setValue(NOT_UNDEFINED, Boolean.TRUE);
+        p.setValue(DEFAULT, 10);
+    }
+}
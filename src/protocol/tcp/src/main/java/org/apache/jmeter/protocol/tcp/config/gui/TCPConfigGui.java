@@ -39,6 +39,7 @@ import org.apache.jmeter.gui.util.TristateCheckBox;
 import org.apache.jmeter.gui.util.VerticalPanel;
 import org.apache.jmeter.protocol.tcp.sampler.TCPSampler;
 import org.apache.jmeter.testelement.TestElement;
+import org.apache.jmeter.testelement.property.ByteArrayProperty;
 import org.apache.jmeter.util.JMeterUtils;
 import org.apache.jorphan.gui.JLabeledTextField;
 
@@ -61,6 +62,10 @@ public class TCPConfigGui extends AbstractConfigGui {
 
     private JTextField eolByte;
 
+    private JCheckBox tls;
+
+    private JTextField poolSize;
+
     private JSyntaxTextArea requestData;
 
     private boolean displayName = true;
@@ -96,6 +101,8 @@ public class TCPConfigGui extends AbstractConfigGui {
         closeConnection.setTristateFromProperty(element, TCPSampler.CLOSE_CONNECTION);
         soLinger.setText(element.getPropertyAsString(TCPSampler.SO_LINGER));
         eolByte.setText(element.getPropertyAsString(TCPSampler.EOL_BYTE));
+        tls.setSelected(element.getPropertyAsBoolean(TCPSampler.TLS));
+        poolSize.setText(element.getPropertyAsString(TCPSampler.POOL_SIZE));
     }
 
     @Override
@@ -121,10 +128,17 @@ public class TCPConfigGui extends AbstractConfigGui {
         setNoDelay.setPropertyFromTristate(element, TCPSampler.NODELAY);
         element.setProperty(TCPSampler.TIMEOUT, serverPanel.getResponseTimeout());
         element.setProperty(TCPSampler.TIMEOUT_CONNECT, serverPanel.getConnectTimeout(),"");
-        element.setProperty(TCPSampler.REQUEST, requestData.getText());
+        if (TCPSampler.isBinaryClient(classname.getText())) {
+            // hex request, decoded once instead of on every sample
+            element.setProperty(new ByteArrayProperty(TCPSampler.REQUEST, requestData.getText()));
+        } else {
+            element.setProperty(TCPSampler.REQUEST, requestData.getText());
+        }
         closeConnection.setPropertyFromTristate(element, TCPSampler.CLOSE_CONNECTION); // Don't use default for saving tristates
         element.setProperty(TCPSampler.SO_LINGER, soLinger.getText(), "");
         element.setProperty(TCPSampler.EOL_BYTE, eolByte.getText(), "");
+        element.setProperty(TCPSampler.TLS, tls.isSelected(), false);
+        element.setProperty(TCPSampler.POOL_SIZE, poolSize.getText(), "");
     }
 
     /**
@@ -142,6 +156,8 @@ public class TCPConfigGui extends AbstractConfigGui {
         closeConnection.setSelected(TCPSampler.CLOSE_CONNECTION_DEFAULT); // TODO should this be indeterminate?
         soLinger.setText(""); //$NON-NLS-1$
         eolByte.setText(""); //$NON-NLS-1$
+        tls.setSelected(false);
+        poolSize.setText(""); //$NON-NLS-1$
     }
 
 
@@ -214,6 +230,31 @@ public class TCPConfigGui extends AbstractConfigGui {
         return eolBytePanel;
     }
 
+    private JPanel createTlsPanel() {
+        JLabel label = new JLabel(JMeterUtils.getResString("tcp_tls")); //$NON-NLS-1$
+
+        tls = new JCheckBox("", false);
+        label.setLabelFor(tls);
+
+        JPanel tlsPanel = new JPanel(new FlowLayout());
+        tlsPanel.add(label);
+        tlsPanel.add(tls);
+        return tlsPanel;
+    }
+
+    private JPanel createPoolSizePanel() {
+        JLabel label = new JLabel(JMeterUtils.getResString("tcp_pool_size")); //$NON-NLS-1$
+
+        poolSize = new JTextField(4); // 4 columns size
+        poolSize.setMaximumSize(new Dimension(poolSize.getPreferredSize()));
+        label.setLabelFor(poolSize);
+
+        JPanel poolSizePanel = new JPanel(new FlowLayout());
+        poolSizePanel.add(label);
+        poolSizePanel.add(poolSize);
+        return poolSizePanel;
+    }
+
     private JPanel createRequestPanel() {
         JLabel reqLabel = new JLabel(JMeterUtils.getResString("tcp_request_data")); // $NON-NLS-1$
         requestData = JSyntaxTextArea.getInstance(15, 80);
@@ -250,6 +291,8 @@ public class TCPConfigGui extends AbstractConfigGui {
         optionsPanel.add(createNoDelayPanel());
         optionsPanel.add(createSoLingerOption());
         optionsPanel.add(createEolBytePanel());
+        optionsPanel.add(createTlsPanel());
+        optionsPanel.add(createPoolSizePanel());
         mainPanel.add(optionsPanel);
         mainPanel.add(createRequestPanel());
 
@@ -41,6 +41,10 @@ public class TrackerTCPConfigGui extends AbstractConfigGui {
 
     private JLabeledTextField classname;
 
+    private JLabeledTextField codec;
+
+    private JLabeledTextField schedule;
+
     private JCheckBox reUseConnection;
 
     private TristateCheckBox setNoDelay;
@@ -51,6 +55,16 @@ public class TrackerTCPConfigGui extends AbstractConfigGui {
 
     private JTextField eolByte;
 
+    private JCheckBox tls;
+
+    private JTextField pipelineWindow;
+
+    private JCheckBox trajectory;
+
+    private JCheckBox downlink;
+
+    private JCheckBox preconnect;
+
     private JSyntaxTextArea requestData;
 
     private boolean displayName = true;
@@ -76,6 +90,8 @@ public class TrackerTCPConfigGui extends AbstractConfigGui {
         super.configure(element);
         // N.B. this will be a config element, so we cannot use the getXXX() methods
         classname.setText(element.getPropertyAsString(TrackerTCPSampler.CLASSNAME));
+        codec.setText(element.getPropertyAsString(TrackerTCPSampler.CODEC));
+        schedule.setText(element.getPropertyAsString(TrackerTCPSampler.SCHEDULE));
         serverPanel.setServer(element.getPropertyAsString(TrackerTCPSampler.SERVER));
         // Default to original behaviour, i.e. re-use connection
         reUseConnection.setSelected(element.getPropertyAsBoolean(TrackerTCPSampler.RE_USE_CONNECTION, TrackerTCPSampler.RE_USE_CONNECTION_DEFAULT));
@@ -88,6 +104,11 @@ public class TrackerTCPConfigGui extends AbstractConfigGui {
         closeConnection.setTristateFromProperty(element, TrackerTCPSampler.CLOSE_CONNECTION);
         soLinger.setText(element.getPropertyAsString(TrackerTCPSampler.SO_LINGER));
         eolByte.setText(element.getPropertyAsString(TrackerTCPSampler.EOL_BYTE));
+        tls.setSelected(element.getPropertyAsBoolean(TrackerTCPSampler.TLS));
+        pipelineWindow.setText(element.getPropertyAsString(TrackerTCPSampler.PIPELINE_WINDOW));
+        trajectory.setSelected(element.getPropertyAsBoolean(TrackerTCPSampler.TRAJECTORY));
+        downlink.setSelected(element.getPropertyAsBoolean(TrackerTCPSampler.DOWNLINK));
+        preconnect.setSelected(element.getPropertyAsBoolean(TrackerTCPSampler.PRECONNECT));
         demoHexSignal.setInitialText(element.getPropertyAsString(TrackerTCPSampler.SIGNAL));
         demoHexSignal.setCaretPosition(0);
     }
@@ -109,6 +130,8 @@ public class TrackerTCPConfigGui extends AbstractConfigGui {
         configureTestElement(element);
         // N.B. this will be a config element, so we cannot use the setXXX() methods
         element.setProperty(TrackerTCPSampler.CLASSNAME, classname.getText(), "");
+        element.setProperty(TrackerTCPSampler.CODEC, codec.getText(), "");
+        element.setProperty(TrackerTCPSampler.SCHEDULE, schedule.getText(), "");
         element.setProperty(TrackerTCPSampler.SERVER, serverPanel.getServer());
         element.setProperty(TrackerTCPSampler.RE_USE_CONNECTION, reUseConnection.isSelected());
         element.setProperty(TrackerTCPSampler.PORT, serverPanel.getPort());
@@ -119,6 +142,11 @@ public class TrackerTCPConfigGui extends AbstractConfigGui {
         closeConnection.setPropertyFromTristate(element, TrackerTCPSampler.CLOSE_CONNECTION); // Don't use default for saving tristates
         element.setProperty(TrackerTCPSampler.SO_LINGER, soLinger.getText(), "");
         element.setProperty(TrackerTCPSampler.EOL_BYTE, eolByte.getText(), "");
+        element.setProperty(TrackerTCPSampler.TLS, tls.isSelected(), false);
+        element.setProperty(TrackerTCPSampler.PIPELINE_WINDOW, pipelineWindow.getText(), "");
+        element.setProperty(TrackerTCPSampler.TRAJECTORY, trajectory.isSelected(), false);
+        element.setProperty(TrackerTCPSampler.DOWNLINK, downlink.isSelected(), false);
+        element.setProperty(TrackerTCPSampler.PRECONNECT, preconnect.isSelected(), false);
         element.setProperty(TrackerTCPSampler.SIGNAL, demoHexSignal.getText());
     }
 
@@ -131,12 +159,19 @@ public class TrackerTCPConfigGui extends AbstractConfigGui {
 
         serverPanel.clear();
         classname.setText(""); //$NON-NLS-1$
+        codec.setText(""); //$NON-NLS-1$
+        schedule.setText(""); //$NON-NLS-1$
         requestData.setInitialText(""); //$NON-NLS-1$
         reUseConnection.setSelected(true);
         setNoDelay.setSelected(false); // TODO should this be indeterminate?
         closeConnection.setSelected(TrackerTCPSampler.CLOSE_CONNECTION_DEFAULT); // TODO should this be indeterminate?
         soLinger.setText(""); //$NON-NLS-1$
         eolByte.setText(""); //$NON-NLS-1$
+        tls.setSelected(false);
+        pipelineWindow.setText(""); //$NON-NLS-1$
+        trajectory.setSelected(false);
+        downlink.setSelected(false);
+        preconnect.setSelected(false);
         demoHexSignal.setText("");
     }
 
@@ -210,6 +245,67 @@ public class TrackerTCPConfigGui extends AbstractConfigGui {
         return eolBytePanel;
     }
 
+    private JPanel createPipelineWindowPanel() {
+        JLabel label = new JLabel(JMeterUtils.getResString("tracker_pipeline_window")); //$NON-NLS-1$
+
+        pipelineWindow = new JTextField(3); // 3 columns size
+        pipelineWindow.setMaximumSize(new Dimension(pipelineWindow.getPreferredSize()));
+        label.setLabelFor(pipelineWindow);
+
+        JPanel pipelineWindowPanel = new JPanel(new FlowLayout());
+        pipelineWindowPanel.add(label);
+        pipelineWindowPanel.add(pipelineWindow);
+        return pipelineWindowPanel;
+    }
+
+    private JPanel createTrajectoryPanel() {
+        JLabel label = new JLabel(JMeterUtils.getResString("tracker_trajectory")); //$NON-NLS-1$
+
+        trajectory = new JCheckBox("", false);
+        label.setLabelFor(trajectory);
+
+        JPanel trajectoryPanel = new JPanel(new FlowLayout());
+        trajectoryPanel.add(label);
+        trajectoryPanel.add(trajectory);
+        return trajectoryPanel;
+    }
+
+    private JPanel createDownlinkPanel() {
+        JLabel label = new JLabel(JMeterUtils.getResString("tracker_downlink")); //$NON-NLS-1$
+
+        downlink = new JCheckBox("", false);
+        label.setLabelFor(downlink);
+
+        JPanel downlinkPanel = new JPanel(new FlowLayout());
+        downlinkPanel.add(label);
+        downlinkPanel.add(downlink);
+        return downlinkPanel;
+    }
+
+    private JPanel createPreconnectPanel() {
+        JLabel label = new JLabel(JMeterUtils.getResString("tracker_preconnect")); //$NON-NLS-1$
+
+        preconnect = new JCheckBox("", false);
+        label.setLabelFor(preconnect);
+
+        JPanel preconnectPanel = new JPanel(new FlowLayout());
+        preconnectPanel.add(label);
+        preconnectPanel.add(preconnect);
+        return preconnectPanel;
+    }
+
+    private JPanel createTlsPanel() {
+        JLabel label = new JLabel(JMeterUtils.getResString("tcp_tls")); //$NON-NLS-1$
+
+        tls = new JCheckBox("", false);
+        label.setLabelFor(tls);
+
+        JPanel tlsPanel = new JPanel(new FlowLayout());
+        tlsPanel.add(label);
+        tlsPanel.add(tls);
+        return tlsPanel;
+    }
+
     private JPanel createRequestPanel() {
         JLabel imeiLabel = new JLabel(JMeterUtils.getResString("tcp_request_imei")); // $NON-NLS-1$
         requestData = JSyntaxTextArea.getInstance(5, 80);
@@ -252,6 +348,10 @@ public class TrackerTCPConfigGui extends AbstractConfigGui {
         VerticalPanel mainPanel = new VerticalPanel();
         classname = new JLabeledTextField(JMeterUtils.getResString("tracker_protocol_classname")); // $NON-NLS-1$
         mainPanel.add(classname);
+        codec = new JLabeledTextField(JMeterUtils.getResString("tracker_protocol_codec")); // $NON-NLS-1$
+        mainPanel.add(codec);
+        schedule = new JLabeledTextField(JMeterUtils.getResString("tracker_report_schedule")); // $NON-NLS-1$
+        mainPanel.add(schedule);
         mainPanel.add(serverPanel);
 
         HorizontalPanel optionsPanel = new HorizontalPanel();
@@ -261,6 +361,11 @@ public class TrackerTCPConfigGui extends AbstractConfigGui {
         optionsPanel.add(createNoDelayPanel());
         optionsPanel.add(createSoLingerOption());
         optionsPanel.add(createEolBytePanel());
+        optionsPanel.add(createTlsPanel());
+        optionsPanel.add(createPipelineWindowPanel());
+        optionsPanel.add(createTrajectoryPanel());
+        optionsPanel.add(createDownlinkPanel());
+        optionsPanel.add(createPreconnectPanel());
         mainPanel.add(optionsPanel);
         mainPanel.add(createSignalDataPanel());
         mainPanel.add(createRequestPanel());
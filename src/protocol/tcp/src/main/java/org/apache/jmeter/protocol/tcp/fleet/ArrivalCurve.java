@@ -0,0 +1,52 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.jmeter.protocol.tcp.fleet;
+
+/**
+ * How the devices dropped by an outage come back once it is over.
+ */
+public enum ArrivalCurve {
+    /** All devices reconnect at once */
+    INSTANT,
+    /** Constant reconnection rate over the spread */
+    UNIFORM,
+    /** Most devices reconnect right away, the rate decays exponentially over the spread */
+    EXPONENTIAL,
+    /** The reconnection rate grows linearly over the spread, as cells come back one after another */
+    RAMP;
+
+    /**
+     * @param quantile rank of the device among the reconnecting ones, in [0, 1)
+     * @param spread time over which the devices reconnect
+     * @return delay of the device after the end of the outage, in [0, spread]
+     */
+    public long delay(double quantile, long spread) {
+        switch (this) {
+            case UNIFORM:
+                return Math.round(quantile * spread);
+            case EXPONENTIAL:
+                // mean of spread / 5, the last 1% are capped to the spread
+                return Math.min(spread, Math.round(-Math.log(1 - quantile) * spread / 5));
+            case RAMP:
+                return Math.round(Math.sqrt(quantile) * spread);
+            case INSTANT:
+            default:
+                return 0;
+        }
+    }
+}
@@ -0,0 +1,418 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.jmeter.protocol.tcp.fleet;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.PortUnreachableException;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.apache.jmeter.protocol.tcp.codec.DeviceSession;
+import org.apache.jmeter.protocol.tcp.codec.TrackerCodec;
+import org.apache.jmeter.protocol.tcp.codec.TrackerReport;
+import org.apache.jmeter.protocol.tcp.lag.IngestionLagProbe;
+import org.apache.jmeter.protocol.tcp.trajectory.TrajectoryPool;
+import org.apache.jmeter.util.JMeterUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Selector thread sending the datagrams of a share of the device groups of a
+ * {@link DatagramFleetEngine} from one connected non-blocking {@link DatagramChannel}.
+ * <p>
+ * All devices report at the same interval, so instead of timers the devices are kept
+ * sorted by their phase within the interval and a cursor walks them round after round:
+ * every wakeup sends all the datagrams which fell due since the previous one, until the
+ * socket buffer is full. The ACKs received are matched to the devices by IMEI; a device
+ * has at most one datagram waiting for its ACK, which is lost when the ACK timeout expires
+ * or when the device sends its next report first.
+ * <p>
+ * The state of the devices is kept in primitive arrays and only touched from this thread.
+ */
+final class DatagramEventLoop implements Runnable {
+    private static final Logger log = LoggerFactory.getLogger(DatagramEventLoop.class);
+
+    private static final long STATS_INTERVAL =
+            TimeUnit.MILLISECONDS.toNanos(JMeterUtils.getPropDefault("tracker.udp.stats.interval", 1000L)); // $NON-NLS-1$
+
+    private static final int SOCKET_BUFFER_SIZE =
+            JMeterUtils.getPropDefault("tracker.udp.socket.buffer", 4 * 1024 * 1024); // $NON-NLS-1$
+
+    /** Largest UDP payload */
+    private static final int READ_BUFFER_SIZE = 64 * 1024;
+
+    /** Bits of the device index in the sort keys of {@link #order} */
+    private static final int INDEX_BITS = 31;
+
+    private final DatagramFleetEngine engine;
+
+    private final TrackerCodec codec;
+
+    private final Selector selector;
+
+    private final DatagramChannel channel;
+
+    private final SelectionKey key;
+
+    private final Thread thread;
+
+    private final long interval;
+
+    /** An ACK is expected for every datagram */
+    private final boolean acknowledged;
+
+    private final long ackTimeout;
+
+    /** IMEIs of the devices, ascending */
+    private final long[] imeis;
+
+    private final DeviceSession[] sessions;
+
+    /** Time of the first report of each device after the start of the loop, in nanoseconds */
+    private final long[] offsets;
+
+    /** Devices sorted by the time of their reports within the interval */
+    private final int[] order;
+
+    private final long[] phases;
+
+    /** {@link System#nanoTime()} at which the pending datagram of each device was sent, 0 if none */
+    private final long[] sentNanos;
+
+    /** Index in the statistics arrays of the group of each device */
+    private final int[] groupOfDevice;
+
+    private final int[] groups;
+
+    private final long[] groupImeis;
+
+    private final int[] groupSent;
+
+    private final int[] groupAcked;
+
+    private final int[] groupLost;
+
+    private final long[] groupAckNanos;
+
+    private final long[] groupBytes;
+
+    private final ByteBuffer outbound;
+
+    private final ByteBuffer inbound = ByteBuffer.allocateDirect(READ_BUFFER_SIZE);
+
+    private final TrackerReport report = new TrackerReport();
+
+    private volatile boolean running = true;
+
+    private final LongAdder datagramsSent = new LongAdder();
+
+    private final LongAdder datagramsAcked = new LongAdder();
+
+    private final LongAdder datagramsLost = new LongAdder();
+
+    private long startNanos;
+
+    /** Start of the current round of reports */
+    private long roundStart;
+
+    private int cursor;
+
+    private long nextStats;
+
+    private long statsStartMillis;
+
+    /** The socket buffer was full, wait for it to drain */
+    private boolean blocked;
+
+    DatagramEventLoop(DatagramFleetEngine engine, InetSocketAddress address, int index, int[] slots)
+            throws IOException {
+        this.engine = engine;
+        this.codec = engine.getCodec();
+        FleetConfig config = engine.getConfig();
+        this.interval = TimeUnit.MILLISECONDS.toNanos(Math.max(1, config.getReportInterval()));
+        this.acknowledged = config.getResponseTimeout() > 0 && codec.isReportAcknowledged();
+        this.ackTimeout = TimeUnit.MILLISECONDS.toNanos(config.getResponseTimeout());
+        this.outbound = ByteBuffer.allocateDirect(codec.getMaxFrameLength());
+
+        int count = slots.length;
+        int devices = Math.max(1, config.getDevices());
+        long rampUp = TimeUnit.MILLISECONDS.toNanos(config.getRampUp());
+        imeis = new long[count];
+        sessions = new DeviceSession[count];
+        offsets = new long[count];
+        phases = new long[count];
+        sentNanos = new long[count];
+        groupOfDevice = new int[count];
+        long[] keys = new long[count];
+        int groupCount = 0;
+        int[] groupIndexes = new int[count];
+        for (int i = 0; i < count; i++) {
+            int slot = slots[i];
+            imeis[i] = config.getFirstImei() + slot;
+            sessions[i] = new DeviceSession(imeis[i]);
+            sessions[i].setLoggedIn(true);
+            offsets[i] = rampUp * slot / devices;
+            phases[i] = offsets[i] % interval;
+            keys[i] = (TimeUnit.NANOSECONDS.toMicros(phases[i]) << INDEX_BITS) | i;
+            int group = engine.groupOf(slot);
+            if (groupCount == 0 || groupIndexes[groupCount - 1] != group) {
+                groupIndexes[groupCount++] = group;
+            }
+            groupOfDevice[i] = groupCount - 1;
+        }
+        Arrays.sort(keys);
+        order = new int[count];
+        for (int i = 0; i < count; i++) {
+            order[i] = (int) (keys[i] & ((1L << INDEX_BITS) - 1));
+        }
+        groups = Arrays.copyOf(groupIndexes, groupCount);
+        groupImeis = new long[groupCount];
+        for (int i = count - 1; i >= 0; i--) {
+            groupImeis[groupOfDevice[i]] = imeis[i];
+        }
+        groupSent = new int[groupCount];
+        groupAcked = new int[groupCount];
+        groupLost = new int[groupCount];
+        groupAckNanos = new long[groupCount];
+        groupBytes = new long[groupCount];
+
+        this.selector = Selector.open();
+        try {
+            this.channel = DatagramChannel.open();
+            channel.configureBlocking(false);
+            channel.setOption(StandardSocketOptions.SO_SNDBUF, SOCKET_BUFFER_SIZE);
+            channel.setOption(StandardSocketOptions.SO_RCVBUF, SOCKET_BUFFER_SIZE);
+            channel.connect(address);
+            this.key = channel.register(selector, SelectionKey.OP_READ);
+        } catch (IOException e) {
+            selector.close();
+            throw e;
+        }
+        this.thread = new Thread(this, "TrackerUdp-" + index); //$NON-NLS-1$
+        this.thread.setDaemon(true);
+    }
+
+    void start() {
+        thread.start();
+    }
+
+    void shutdown() {
+        running = false;
+        if (!thread.isAlive()) {
+            close();
+            return;
+        }
+        selector.wakeup();
+        if (Thread.currentThread() != thread) {
+            try {
+                thread.join(TimeUnit.SECONDS.toMillis(5));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    @Override
+    public void run() {
+        log.debug("Datagram loop started with {} devices", imeis.length);
+        startNanos = System.nanoTime();
+        roundStart = startNanos;
+        nextStats = startNanos + STATS_INTERVAL;
+        statsStartMillis = System.currentTimeMillis();
+        try {
+            while (running) {
+                long now = System.nanoTime();
+                blocked = !sendDue(now);
+                receive();
+                if (now - nextStats >= 0) {
+                    publishStats(now);
+                }
+                key.interestOps(blocked ? SelectionKey.OP_READ | SelectionKey.OP_WRITE : SelectionKey.OP_READ);
+                long next = imeis.length == 0 || blocked ? nextStats : Math.min(nextStats, nextDue());
+                selector.select(Math.max(1, TimeUnit.NANOSECONDS.toMillis(next - System.nanoTime())));
+                selector.selectedKeys().clear();
+            }
+        } catch (IOException | RuntimeException e) {
+            log.error("Datagram loop failed", e);
+        } finally {
+            close();
+        }
+    }
+
+    private long nextDue() {
+        return roundStart + phases[order[cursor]];
+    }
+
+    /**
+     * Send the datagrams due by now.
+     *
+     * @return <code>false</code> if the socket buffer is full
+     */
+    private boolean sendDue(long now) throws IOException {
+        if (imeis.length == 0) {
+            return true;
+        }
+        long nowMillis = System.currentTimeMillis();
+        TrajectoryPool trajectories = engine.getTrajectories();
+        while (nextDue() - now <= 0) {
+            int device = order[cursor];
+            // skip the rounds before the device has started
+            if (roundStart + phases[device] - (startNanos + offsets[device]) >= 0
+                    && !send(device, nowMillis, trajectories)) {
+                return false;
+            }
+            if (++cursor == order.length) {
+                cursor = 0;
+                roundStart += interval;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return <code>false</code> if the datagram could not be sent because the socket buffer is full
+     */
+    private boolean send(int device, long nowMillis, TrajectoryPool trajectories) throws IOException {
+        report.setTimeMillis(nowMillis);
+        if (trajectories != null) {
+            trajectories.fill(report, imeis[device], nowMillis);
+        }
+        outbound.clear();
+        codec.encodeReport(sessions[device], report, outbound);
+        outbound.flip();
+        int written;
+        try {
+            written = channel.write(outbound);
+        } catch (PortUnreachableException e) {
+            // reported for an earlier datagram, this one was not sent
+            log.debug("Server unreachable from {}", channel, e);
+            return true;
+        }
+        if (written == 0) {
+            return false;
+        }
+        int group = groupOfDevice[device];
+        if (acknowledged) {
+            if (sentNanos[device] != 0) {
+                lost(device, group); // not acknowledged before the next report
+            }
+            sentNanos[device] = System.nanoTime();
+        }
+        groupSent[group]++;
+        groupBytes[group] += written;
+        IngestionLagProbe.sent(imeis[device], nowMillis);
+        datagramsSent.increment();
+        return true;
+    }
+
+    private void receive() throws IOException {
+        while (true) {
+            inbound.clear();
+            int read;
+            try {
+                read = channel.read(inbound);
+            } catch (PortUnreachableException e) {
+                log.debug("Server unreachable from {}", channel, e);
+                return;
+            }
+            if (read <= 0) {
+                return;
+            }
+            long now = System.nanoTime();
+            if (!acknowledged) {
+                continue;
+            }
+            inbound.flip();
+            int device = Arrays.binarySearch(imeis, codec.ackImei(inbound));
+            if (device < 0 || sentNanos[device] == 0) {
+                continue; // not one of our devices, or too late
+            }
+            int group = groupOfDevice[device];
+            groupAcked[group]++;
+            groupAckNanos[group] += now - sentNanos[device];
+            sentNanos[device] = 0;
+            datagramsAcked.increment();
+        }
+    }
+
+    private void lost(int device, int group) {
+        groupLost[group]++;
+        sentNanos[device] = 0;
+        datagramsLost.increment();
+    }
+
+    private void publishStats(long now) {
+        if (acknowledged) {
+            for (int device = 0; device < sentNanos.length; device++) {
+                if (sentNanos[device] != 0 && now - sentNanos[device] >= ackTimeout) {
+                    lost(device, groupOfDevice[device]);
+                }
+            }
+        }
+        for (int group = 0; group < groups.length; group++) {
+            int completed = acknowledged ? groupAcked[group] : groupSent[group];
+            long bytes = groupBytes[group];
+            // the loss is only counted, the ACK times are those of the datagrams acknowledged
+            if (completed > 0) {
+                engine.publish(new FrameResult(FrameResult.Type.DATAGRAMS, groups[group], groupImeis[group],
+                        statsStartMillis, completed, TimeUnit.NANOSECONDS.toMillis(groupAckNanos[group]), bytes));
+                bytes = 0;
+            }
+            if (groupLost[group] > 0) {
+                engine.publish(new FrameResult(FrameResult.Type.LOSSES, groups[group], groupImeis[group],
+                        statsStartMillis, groupLost[group], 0, bytes));
+            }
+            groupSent[group] = 0;
+            groupAcked[group] = 0;
+            groupLost[group] = 0;
+            groupAckNanos[group] = 0;
+            groupBytes[group] = 0;
+        }
+        nextStats = Math.max(nextStats + STATS_INTERVAL, now);
+        statsStartMillis = System.currentTimeMillis();
+    }
+
+    private void close() {
+        try {
+            channel.close();
+            selector.close();
+        } catch (IOException e) {
+            log.debug("Error closing datagram channel", e);
+        }
+        log.debug("Datagram loop stopped");
+    }
+
+    long getDatagramsSent() {
+        return datagramsSent.sum();
+    }
+
+    long getDatagramsAcked() {
+        return datagramsAcked.sum();
+    }
+
+    long getDatagramsLost() {
+        return datagramsLost.sum();
+    }
+}
@@ -0,0 +1,220 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.jmeter.protocol.tcp.fleet;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.apache.jmeter.protocol.tcp.codec.TrackerCodec;
+import org.apache.jmeter.protocol.tcp.trajectory.TrajectoryPool;
+import org.apache.jmeter.util.JMeterUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Simulates a fleet of trackers reporting over UDP.
+ * <p>
+ * The devices are split in groups of {@link FleetConfig#getGroupSize()} consecutive devices,
+ * each group is owned by one {@link DatagramEventLoop} which sends the reports of its devices
+ * from a single non-blocking channel and matches the ACK datagrams back to them by IMEI.
+ * Every <code>tracker.udp.stats.interval</code> milliseconds each group publishes one
+ * {@link FrameResult.Type#DATAGRAMS} result counting its datagrams acknowledged and their ACK times,
+ * and one {@link FrameResult.Type#LOSSES} result counting its lost ACKs if any, so the sampling
+ * threads keep up with hundreds of thousands of datagrams per second.
+ * <p>
+ * Engines are shared by all samplers simulating the same fleet and live until
+ * {@link #shutdownAll()} is called at the end of the test.
+ */
+public final class DatagramFleetEngine {
+    private static final Logger log = LoggerFactory.getLogger(DatagramFleetEngine.class);
+
+    private static final int RESULTS_CAPACITY =
+            JMeterUtils.getPropDefault("tracker.fleet.results.capacity", 100000); // $NON-NLS-1$
+
+    private static final ConcurrentMap<String, DatagramFleetEngine> ENGINES = new ConcurrentHashMap<>();
+
+    private final FleetConfig config;
+
+    private final TrackerCodec codec;
+
+    private final DatagramEventLoop[] loops;
+
+    private final BlockingQueue<FrameResult> results = new ArrayBlockingQueue<>(RESULTS_CAPACITY);
+
+    private final LongAdder droppedResults = new LongAdder();
+
+    private final TrajectoryPool trajectories;
+
+    private DatagramFleetEngine(FleetConfig config) {
+        this.config = config;
+        this.codec = FleetEngine.createCodec(config);
+        this.trajectories = config.isTrajectories() ? TrajectoryPool.getDefault() : null;
+        int count = config.getEventLoops() > 0
+                ? config.getEventLoops()
+                : Runtime.getRuntime().availableProcessors();
+        this.loops = new DatagramEventLoop[Math.max(1, Math.min(count, getGroups()))];
+    }
+
+    /**
+     * Get the engine simulating the configured fleet, starting it if needed.
+     *
+     * @param config the fleet settings
+     * @return the running engine
+     */
+    public static DatagramFleetEngine acquire(FleetConfig config) {
+        return ENGINES.computeIfAbsent(config.getKey(), k -> {
+            DatagramFleetEngine engine = new DatagramFleetEngine(config);
+            engine.start();
+            return engine;
+        });
+    }
+
+    /**
+     * Stops all running engines and closes their channels.
+     */
+    public static void shutdownAll() {
+        ENGINES.values().removeIf(engine -> {
+            engine.shutdown();
+            return true;
+        });
+    }
+
+    private int getGroupSize() {
+        return Math.max(1, config.getGroupSize());
+    }
+
+    private int getGroups() {
+        return Math.max(1, (config.getDevices() + getGroupSize() - 1) / getGroupSize());
+    }
+
+    private void start() {
+        InetSocketAddress address = new InetSocketAddress(config.getServer(), config.getPort());
+        int devices = config.getDevices();
+        int groupSize = getGroupSize();
+        int groups = getGroups();
+        log.info("Starting UDP {} with {} groups on {} event loops", config, groups, loops.length);
+        try {
+            for (int i = 0; i < loops.length; i++) {
+                // group g is owned by loop g % loops.length
+                int count = 0;
+                for (int g = i; g < groups; g += loops.length) {
+                    count += Math.min(devices, (g + 1) * groupSize) - g * groupSize;
+                }
+                int[] slots = new int[count];
+                count = 0;
+                for (int g = i; g < groups; g += loops.length) {
+                    for (int slot = g * groupSize; slot < Math.min(devices, (g + 1) * groupSize); slot++) {
+                        slots[count++] = slot;
+                    }
+                }
+                loops[i] = new DatagramEventLoop(this, address, i, slots);
+            }
+        } catch (IOException e) {
+            for (DatagramEventLoop loop : loops) {
+                if (loop != null) {
+                    loop.shutdown();
+                }
+            }
+            throw new IllegalStateException("Could not open datagram channel for " + config, e);
+        }
+        for (DatagramEventLoop loop : loops) {
+            loop.start();
+        }
+    }
+
+    private void shutdown() {
+        for (DatagramEventLoop loop : loops) {
+            loop.shutdown();
+        }
+        long sent = 0;
+        long acked = 0;
+        long lost = 0;
+        for (DatagramEventLoop loop : loops) {
+            sent += loop.getDatagramsSent();
+            acked += loop.getDatagramsAcked();
+            lost += loop.getDatagramsLost();
+        }
+        log.info("Stopped UDP {}: sent={}, acked={}, lost={}, dropped results={}",
+                config, sent, acked, lost, droppedResults.sum());
+    }
+
+    FleetConfig getConfig() {
+        return config;
+    }
+
+    /**
+     * @return the protocol codec, configured once for the whole fleet
+     */
+    TrackerCodec getCodec() {
+        return codec;
+    }
+
+    /**
+     * @return positions of the devices, <code>null</code> if they report a fixed position
+     */
+    TrajectoryPool getTrajectories() {
+        return trajectories;
+    }
+
+    /**
+     * @param slot index of a device in the fleet
+     * @return index of its group
+     */
+    int groupOf(int slot) {
+        return slot / getGroupSize();
+    }
+
+    /**
+     * Queue the statistics of a group, they are dropped if the sampling threads do not keep up.
+     *
+     * @param result the statistics
+     */
+    void publish(FrameResult result) {
+        if (!results.offer(result)) {
+            droppedResults.increment();
+        }
+    }
+
+    /**
+     * Wait for the next group statistics.
+     *
+     * @param timeout maximum time to wait in milliseconds
+     * @return the statistics or <code>null</code> if none were published in time
+     * @throws InterruptedException when the waiting thread is interrupted
+     */
+    public FrameResult poll(long timeout) throws InterruptedException {
+        return results.poll(timeout, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * @return number of datagrams sent so far
+     */
+    public long getDatagramsSent() {
+        long sent = 0;
+        for (DatagramEventLoop loop : loops) {
+            sent += loop.getDatagramsSent();
+        }
+        return sent;
+    }
+}
@@ -0,0 +1,664 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.jmeter.protocol.tcp.fleet;
+
+import java.io.IOException;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.jmeter.protocol.tcp.codec.DeviceSession;
+import org.apache.jmeter.protocol.tcp.codec.FrameReader;
+import org.apache.jmeter.protocol.tcp.codec.TrackerCodec;
+import org.apache.jmeter.protocol.tcp.codec.TrackerReport;
+import org.apache.jmeter.protocol.tcp.lag.IngestionLagProbe;
+import org.apache.jmeter.protocol.tcp.registry.FleetRegistry;
+import org.apache.jmeter.protocol.tcp.trajectory.TrajectoryPool;
+import org.apache.jmeter.util.JMeterUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * State of one simulated device and its persistent connection.
+ * <p>
+ * A device sends a report every {@link FleetConfig#getReportInterval()} milliseconds
+ * and waits for its ACK before sending the next one; a report falling due while
+ * the previous one is not acknowledged yet is sent as soon as the ACK arrives.
+ * When the protocol requires it, the login is acknowledged before the first report is sent.
+ * Connections closed by errors or timeouts are re-opened after
+ * <code>tracker.fleet.reconnect.delay</code> milliseconds.
+ * If the fleet has a {@link FleetRegistry}, a new connection resumes the sequence numbers
+ * from the device slot and acknowledged reports are recorded there.
+ * <p>
+ * A device dropped by an outage buffers the reports falling due while it is offline.
+ * Once it has reconnected, the backlog, including the reports falling due meanwhile, is flushed
+ * in frames of up to {@link FleetEngine#getBatchSize()} records before it reports live again.
+ * The reconnection and the whole flush are published as results of their own.
+ * <p>
+ * Commands pushed by the server are told apart from the ACKs by the codec and answered at once,
+ * behind the frames being written; each one is published as a {@link FrameResult.Type#COMMAND} result.
+ * <p>
+ * Not thread safe, only used by the owning {@link FleetEventLoop}.
+ */
+final class DeviceConnection {
+    private static final Logger log = LoggerFactory.getLogger(DeviceConnection.class);
+
+    private static final long RECONNECT_DELAY =
+            TimeUnit.MILLISECONDS.toNanos(JMeterUtils.getPropDefault("tracker.fleet.reconnect.delay", 1000L)); // $NON-NLS-1$
+
+    private static final int INITIAL_READ_CAPACITY = 64;
+
+    private final FleetEventLoop loop;
+
+    private final int slot;
+
+    private final long imei;
+
+    private SocketChannel channel;
+
+    private SelectionKey key;
+
+    /** Incremented whenever the connection is closed, invalidates pending timers */
+    private long generation;
+
+    private boolean connected;
+
+    private long connectStartNanos;
+
+    private long connectStartMillis;
+
+    /** The next frame is the first one of the connection, its result includes the connect time */
+    private boolean firstFrame;
+
+    private long connectTime;
+
+    private long nextReport;
+
+    private DeviceSession session;
+
+    /** Frames being written, holds the login and the first report of a connection */
+    private ByteBuffer outbound;
+
+    private FrameReader reader;
+
+    private boolean writing;
+
+    /** A login or report exchange is in progress */
+    private boolean awaitingAck;
+
+    private boolean awaitingLogin;
+
+    private boolean reportPending;
+
+    private long sendStartNanos;
+
+    private long sendStartMillis;
+
+    private long firstByteNanos;
+
+    private long ackDeadline;
+
+    private int sentBytes;
+
+    private byte[] ack = new byte[0];
+
+    private int ackLength;
+
+    /** Serial number of the pending report, the answers to commands may number frames too */
+    private int reportSequence;
+
+    /** Time and position of the pending report, recorded in the registry once acknowledged */
+    private long reportTime;
+
+    private double reportLatitude;
+
+    private double reportLongitude;
+
+    /** Dropped by an outage, does not reconnect until it is over */
+    private boolean offline;
+
+    private long offlineSinceMillis;
+
+    /** Reconnecting after an outage, the login is published as a reconnection */
+    private boolean recovering;
+
+    /** Buffered reports not acknowledged yet, including the batch in flight */
+    private int backlog;
+
+    /** Time of the oldest buffered report, the others follow at the report interval */
+    private long backlogStartMillis;
+
+    /** Reports of the batch in flight, 0 when a live report is in flight */
+    private int batchRecords;
+
+    /** Frames of the batch in flight, and how many of them are acknowledged */
+    private int batchFrames;
+
+    private int batchAcked;
+
+    private long drainStartNanos;
+
+    private long drainStartMillis;
+
+    private long drainLatency;
+
+    private int drainRecords;
+
+    private long drainBytes;
+
+    DeviceConnection(FleetEventLoop loop, int slot, long imei) {
+        this.loop = loop;
+        this.slot = slot;
+        this.imei = imei;
+    }
+
+    long getGeneration() {
+        return generation;
+    }
+
+    long getImei() {
+        return imei;
+    }
+
+    FleetEventLoop getLoop() {
+        return loop;
+    }
+
+    void connect(long now) {
+        if (channel != null || offline) {
+            return;
+        }
+        FleetConfig config = loop.getConfig();
+        connectStartNanos = now;
+        connectStartMillis = System.currentTimeMillis();
+        try {
+            channel = SocketChannel.open();
+            channel.configureBlocking(false);
+            channel.setOption(StandardSocketOptions.TCP_NODELAY, config.isNoDelay());
+            key = channel.register(loop.getSelector(), 0, this);
+            if (channel.connect(loop.getAddress())) {
+                connected(now);
+            } else {
+                key.interestOps(SelectionKey.OP_CONNECT);
+                if (config.getConnectTimeout() > 0) {
+                    loop.schedule(this, FleetEventLoop.TimerType.CONNECT_TIMEOUT,
+                            now + TimeUnit.MILLISECONDS.toNanos(config.getConnectTimeout()));
+                }
+            }
+        } catch (IOException e) {
+            log.debug("Could not connect device {}", this, e);
+            fail(e.toString());
+        }
+    }
+
+    void finishConnect() throws IOException {
+        if (channel.finishConnect()) {
+            connected(System.nanoTime());
+        }
+    }
+
+    private void connected(long now) {
+        TrackerCodec codec = loop.getEngine().getCodec();
+        connected = true;
+        loop.connected();
+        key.interestOps(SelectionKey.OP_READ);
+        connectTime = TimeUnit.NANOSECONDS.toMillis(now - connectStartNanos);
+        firstFrame = true;
+        firstByteNanos = 0;
+        ackLength = 0;
+        nextReport = now;
+        FleetRegistry registry = loop.getEngine().getRegistry();
+        session = registry == null ? new DeviceSession(imei) : new DeviceSession(imei, registry.getSequence(slot));
+        if (outbound == null) {
+            // room for a login followed by a report or a whole batch
+            outbound = ByteBuffer.allocate(codec.getMaxFrameLength()
+                    + Math.max(codec.getMaxFrameLength(), codec.getMaxBatchLength(loop.getBatch().length)));
+            reader = new FrameReader(codec.getFrameDecoder(), INITIAL_READ_CAPACITY);
+        }
+        outbound.clear();
+        reader.clear();
+        boolean login = codec.encodeLogin(session, outbound);
+        sentBytes = outbound.position();
+        if (login && codec.isLoginAcknowledged()) {
+            // the first report is sent once the login is accepted
+            awaitingLogin = true;
+            reportPending = true;
+            startExchange();
+            loop.schedule(this, FleetEventLoop.TimerType.REPORT, nextReport);
+            write();
+        } else {
+            session.setLoggedIn(true);
+            if (recovering) {
+                reconnected(now);
+            }
+            reportDue(now);
+        }
+    }
+
+    /**
+     * Drop the connection at the start of an outage. The report in flight, if any,
+     * is buffered with the ones falling due until {@link #recover(long)}.
+     */
+    void outageStarted() {
+        if (offline) {
+            return;
+        }
+        if (awaitingAck && !awaitingLogin && batchRecords == 0) {
+            if (backlog == 0) {
+                backlogStartMillis = reportTime;
+            }
+            backlog++;
+        }
+        offline = true;
+        offlineSinceMillis = System.currentTimeMillis();
+        close();
+    }
+
+    /**
+     * Reconnect at the end of an outage, the reports which fell due while offline are buffered.
+     *
+     * @param now {@link System#nanoTime()}
+     */
+    void recover(long now) {
+        if (!offline) {
+            return;
+        }
+        long interval = Math.max(1, loop.getConfig().getReportInterval());
+        long missed = (System.currentTimeMillis() - offlineSinceMillis) / interval;
+        if (backlog == 0) {
+            backlogStartMillis = offlineSinceMillis;
+        }
+        backlog = (int) Math.min(Integer.MAX_VALUE, backlog + missed);
+        offline = false;
+        recovering = true;
+        connect(now);
+    }
+
+    /**
+     * Publish the reconnection once the login is accepted, or once connected without login ACK.
+     */
+    private void reconnected(long now) {
+        long handshake = awaitingLogin ? TimeUnit.NANOSECONDS.toMillis(now - sendStartNanos) : 0;
+        loop.getEngine().publish(new FrameResult(FrameResult.Type.RECONNECT, 0, imei, connectStartMillis,
+                TimeUnit.NANOSECONDS.toMillis(now - connectStartNanos), connectTime, handshake, sentBytes,
+                Arrays.copyOf(ack, ackLength), null));
+        recovering = false;
+        // the connect time belongs to the reconnection, not to the first batch
+        firstFrame = false;
+    }
+
+    void connectTimedOut() {
+        if (!connected) {
+            fail("Connect timed out"); //$NON-NLS-1$
+        }
+    }
+
+    /**
+     * Send the report falling due at the given time and schedule the next one.
+     *
+     * @param due {@link System#nanoTime()} at which the report was scheduled
+     */
+    void reportDue(long due) {
+        nextReport = due + TimeUnit.MILLISECONDS.toNanos(loop.getConfig().getReportInterval());
+        loop.schedule(this, FleetEventLoop.TimerType.REPORT, nextReport);
+        if (backlog > 0) {
+            // still flushing, the report queues behind the buffered ones
+            backlog = backlog == Integer.MAX_VALUE ? backlog : backlog + 1;
+            if (!awaitingAck) {
+                sendBatch();
+            }
+        } else if (awaitingAck) {
+            reportPending = true;
+        } else {
+            send();
+        }
+    }
+
+    private void send() {
+        TrackerReport report = loop.getReport();
+        report.setTimeMillis(System.currentTimeMillis());
+        TrajectoryPool trajectories = loop.getEngine().getTrajectories();
+        if (trajectories != null) {
+            trajectories.fill(report, imei, report.getTimeMillis());
+        }
+        reportTime = report.getTimeMillis();
+        reportLatitude = report.getLatitude();
+        reportLongitude = report.getLongitude();
+        if (!firstFrame) {
+            firstByteNanos = 0;
+            ackLength = 0;
+            sentBytes = 0;
+        }
+        // the outbound buffer may still hold a login frame which is not acknowledged
+        int start = outbound.position();
+        loop.getEngine().getCodec().encodeReport(session, report, outbound);
+        reportSequence = session.getSequence();
+        sentBytes += outbound.position() - start;
+        IngestionLagProbe.sent(imei, reportTime);
+        startExchange();
+        loop.frameSent();
+        write();
+    }
+
+    /**
+     * Send the oldest buffered reports in one batch.
+     */
+    private void sendBatch() {
+        TrackerReport[] batch = loop.getBatch();
+        int count = Math.min(backlog, batch.length);
+        long interval = loop.getConfig().getReportInterval();
+        TrajectoryPool trajectories = loop.getEngine().getTrajectories();
+        for (int i = 0; i < count; i++) {
+            TrackerReport report = batch[i];
+            report.setTimeMillis(backlogStartMillis + i * interval);
+            if (trajectories != null) {
+                trajectories.fill(report, imei, report.getTimeMillis());
+            }
+        }
+        TrackerReport last = batch[count - 1];
+        reportTime = last.getTimeMillis();
+        reportLatitude = last.getLatitude();
+        reportLongitude = last.getLongitude();
+        if (!firstFrame) {
+            firstByteNanos = 0;
+            ackLength = 0;
+            sentBytes = 0;
+        }
+        int start = outbound.position();
+        batchFrames = loop.getEngine().getCodec().encodeBatch(session, batch, count, outbound);
+        sentBytes += outbound.position() - start;
+        batchRecords = count;
+        batchAcked = 0;
+        for (int i = 0; i < count; i++) {
+            IngestionLagProbe.sent(imei, batch[i].getTimeMillis());
+        }
+        startExchange();
+        if (drainStartNanos == 0) {
+            drainStartNanos = sendStartNanos;
+            drainStartMillis = sendStartMillis;
+        }
+        loop.frameSent();
+        write();
+    }
+
+    private void startExchange() {
+        FleetConfig config = loop.getConfig();
+        sendStartNanos = System.nanoTime();
+        sendStartMillis = System.currentTimeMillis();
+        awaitingAck = true;
+        if (config.getResponseTimeout() > 0) {
+            ackDeadline = sendStartNanos + TimeUnit.MILLISECONDS.toNanos(config.getResponseTimeout());
+            loop.schedule(this, FleetEventLoop.TimerType.ACK_TIMEOUT, ackDeadline);
+        }
+    }
+
+    private void write() {
+        outbound.flip();
+        writing = true;
+        try {
+            flush();
+        } catch (IOException e) {
+            log.debug("Could not write frame of device {}", this, e);
+            fail(e.toString());
+        }
+    }
+
+    void flush() throws IOException {
+        if (!writing) {
+            key.interestOps(SelectionKey.OP_READ);
+            return;
+        }
+        channel.write(outbound);
+        if (outbound.hasRemaining()) {
+            key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+            return;
+        }
+        writing = false;
+        outbound.clear();
+        key.interestOps(SelectionKey.OP_READ);
+        if (awaitingAck && !awaitingLogin && !loop.getEngine().getCodec().isReportAcknowledged()) {
+            exchangeCompleted();
+        }
+    }
+
+    void read() throws IOException {
+        ByteBuffer buffer = loop.getReadBuffer();
+        buffer.clear();
+        int read = channel.read(buffer);
+        if (read < 0) {
+            fail("Connection closed by server"); //$NON-NLS-1$
+            return;
+        }
+        if (read == 0) {
+            return;
+        }
+        long readNanos = System.nanoTime();
+        if (awaitingAck && firstByteNanos == 0) {
+            firstByteNanos = readNanos;
+        }
+        buffer.flip();
+        reader.append(buffer);
+        TrackerCodec codec = loop.getEngine().getCodec();
+        ByteBuffer frame;
+        while (channel != null && (frame = reader.nextFrame(session)) != null) {
+            if (codec.isCommand(session, frame)) {
+                answerCommand(codec, frame, readNanos);
+                continue;
+            }
+            int acknowledged = codec.acknowledged(session, frame);
+            if (acknowledged > 0 && !awaitingLogin && batchRecords == 0) {
+                int sequence = codec.ackSequence(session, frame);
+                if (sequence >= 0 && sequence != reportSequence) {
+                    acknowledged = 0; // not the ACK of the pending report
+                }
+            }
+            if (!awaitingAck || acknowledged == 0) {
+                log.debug("Device {} ignoring {} unsolicited bytes", this, frame.remaining());
+                continue;
+            }
+            appendAck(frame);
+            if (acknowledged < 0) {
+                fail(awaitingLogin ? "Login rejected" : "Report rejected"); //$NON-NLS-1$ //$NON-NLS-2$
+            } else if (awaitingLogin) {
+                if (recovering) {
+                    reconnected(System.nanoTime());
+                }
+                awaitingLogin = false;
+                awaitingAck = false;
+                session.setLoggedIn(true);
+                if (backlog > 0) {
+                    reportPending = false;
+                    sendBatch();
+                } else if (reportPending) {
+                    reportPending = false;
+                    send();
+                }
+            } else if (batchRecords > 0) {
+                // each frame of the batch is acknowledged on its own
+                if (++batchAcked >= batchFrames) {
+                    exchangeCompleted();
+                }
+            } else {
+                exchangeCompleted();
+            }
+        }
+    }
+
+    /**
+     * Answer a command pushed by the server, behind the frames being written if any.
+     *
+     * @param codec the codec of the fleet
+     * @param command the command frame
+     * @param receivedNanos {@link System#nanoTime()} at which the command was read
+     */
+    private void answerCommand(TrackerCodec codec, ByteBuffer command, long receivedNanos) {
+        long receivedMillis = System.currentTimeMillis()
+                - TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - receivedNanos);
+        byte[] bytes = new byte[command.remaining()];
+        if (writing) {
+            // back to write mode, the pending bytes are kept in front
+            outbound.compact();
+        }
+        ensureOutbound(codec.getMaxFrameLength() + bytes.length);
+        int start = outbound.position();
+        boolean answered = codec.encodeCommandResponse(session, command, outbound);
+        int length = outbound.position() - start;
+        command.get(bytes);
+        if (writing || answered) {
+            write();
+        }
+        loop.commandAnswered();
+        loop.getEngine().publish(new FrameResult(FrameResult.Type.COMMAND, 0, imei, receivedMillis,
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - receivedNanos), 0, 0, length, bytes,
+                channel == null ? "Could not answer command" : null)); //$NON-NLS-1$
+    }
+
+    private void ensureOutbound(int length) {
+        if (outbound.remaining() < length) {
+            ByteBuffer larger = ByteBuffer.allocate(outbound.position() + length);
+            outbound.flip();
+            larger.put(outbound);
+            outbound = larger;
+        }
+    }
+
+    private void appendAck(ByteBuffer frame) {
+        int length = frame.remaining();
+        if (ackLength + length > ack.length) {
+            ack = Arrays.copyOf(ack, Math.max(64, Math.max(ack.length * 2, ackLength + length)));
+        }
+        frame.get(ack, ackLength, length);
+        ackLength += length;
+    }
+
+    private void exchangeCompleted() {
+        completeAck(null);
+        if (backlog > 0) {
+            sendBatch();
+        } else if (reportPending) {
+            reportPending = false;
+            send();
+        }
+    }
+
+    void ackTimedOut(long now) {
+        if (awaitingAck && now - ackDeadline >= 0) {
+            fail(awaitingLogin ? "Timeout waiting for login ACK" : "Timeout waiting for ACK"); //$NON-NLS-1$ //$NON-NLS-2$
+        }
+    }
+
+    private void completeAck(String error) {
+        long now = System.nanoTime();
+        long startNanos = firstFrame ? connectStartNanos : sendStartNanos;
+        long startMillis = firstFrame ? connectStartMillis : sendStartMillis;
+        long latency = firstByteNanos == 0 ? 0 : TimeUnit.NANOSECONDS.toMillis(firstByteNanos - startNanos);
+        boolean login = awaitingLogin && recovering;
+        loop.getEngine().publish(new FrameResult(login ? FrameResult.Type.RECONNECT : FrameResult.Type.REPORT,
+                login ? 0 : Math.max(1, batchRecords), imei, startMillis, TimeUnit.NANOSECONDS.toMillis(now - startNanos),
+                firstFrame ? connectTime : 0, latency, sentBytes,
+                Arrays.copyOf(ack, ackLength), error));
+        if (error == null) {
+            FleetRegistry registry = loop.getEngine().getRegistry();
+            if (registry != null) {
+                registry.recordReport(slot, session.getSequence(), reportTime, reportLatitude, reportLongitude);
+            }
+            loop.frameAcked();
+            if (batchRecords > 0) {
+                batchDrained(now, latency);
+            }
+        } else {
+            loop.frameFailed();
+        }
+        // a failed batch stays buffered
+        batchRecords = 0;
+        awaitingAck = false;
+        firstFrame = false;
+    }
+
+    private void batchDrained(long now, long latency) {
+        if (drainRecords == 0) {
+            drainLatency = latency;
+        }
+        backlog -= batchRecords;
+        backlogStartMillis += batchRecords * loop.getConfig().getReportInterval();
+        drainRecords += batchRecords;
+        drainBytes += sentBytes;
+        if (backlog == 0) {
+            loop.getEngine().publish(new FrameResult(FrameResult.Type.DRAIN, drainRecords, imei, drainStartMillis,
+                    TimeUnit.NANOSECONDS.toMillis(now - drainStartNanos), 0, drainLatency, drainBytes,
+                    Arrays.copyOf(ack, ackLength), null));
+            drainStartNanos = 0;
+            drainRecords = 0;
+            drainBytes = 0;
+        }
+    }
+
+    /**
+     * Report the failure of the pending exchange if any, close the connection
+     * and schedule a reconnection.
+     *
+     * @param reason the failure reason
+     */
+    void fail(String reason) {
+        if (awaitingAck) {
+            completeAck(reason);
+        } else if (!connected && channel != null) {
+            long now = System.nanoTime();
+            loop.getEngine().publish(new FrameResult(recovering ? FrameResult.Type.RECONNECT : FrameResult.Type.REPORT,
+                    recovering ? 0 : 1, imei, connectStartMillis, TimeUnit.NANOSECONDS.toMillis(now - connectStartNanos),
+                    TimeUnit.NANOSECONDS.toMillis(now - connectStartNanos), 0, 0,
+                    new byte[0], reason));
+            loop.frameFailed();
+        }
+        close();
+        loop.schedule(this, FleetEventLoop.TimerType.CONNECT, System.nanoTime() + RECONNECT_DELAY);
+    }
+
+    void close() {
+        generation++;
+        if (key != null) {
+            key.cancel();
+            key = null;
+        }
+        if (channel != null) {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                log.debug("Error closing channel of device {}", this, e);
+            }
+            channel = null;
+        }
+        if (connected) {
+            connected = false;
+            loop.disconnected();
+        }
+        awaitingAck = false;
+        awaitingLogin = false;
+        reportPending = false;
+        writing = false;
+        batchRecords = 0;
+    }
+
+    @Override
+    public String toString() {
+        return "Device[" + imei + "]"; //$NON-NLS-1$ //$NON-NLS-2$
+    }
+}
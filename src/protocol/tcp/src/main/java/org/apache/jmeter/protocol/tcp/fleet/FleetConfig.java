@@ -0,0 +1,322 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.jmeter.protocol.tcp.fleet;
+
+/**
+ * Settings of a simulated tracker fleet.
+ * <p>
+ * A fleet is identified by its {@link #getKey() key}, so all samplers
+ * configured with the same target and IMEI range share one {@link FleetEngine}.
+ */
+public class FleetConfig {
+
+    private String server;
+
+    private int port;
+
+    private int connectTimeout;
+
+    private int responseTimeout;
+
+    private boolean noDelay;
+
+    private int devices;
+
+    private long firstImei;
+
+    private long reportInterval;
+
+    private long rampUp;
+
+    private int eventLoops;
+
+    private String protocol = "BCE"; //$NON-NLS-1$
+
+    private String signal;
+
+    private int eolByte = Byte.MAX_VALUE + 1;
+
+    private String registry;
+
+    private boolean trajectories;
+
+    private long outageStart;
+
+    private long outageDuration;
+
+    private int outageShare;
+
+    private long reconnectSpread;
+
+    private ArrivalCurve reconnectCurve = ArrivalCurve.UNIFORM;
+
+    private int batchSize = 1;
+
+    private int groupSize = 1000;
+
+    /**
+     * @return key shared by all samplers simulating the same fleet
+     */
+    public String getKey() {
+        return protocol + "://" + server + "#" + port + "#" + firstImei + "#" + devices //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$
+                + (registry == null ? "" : "#" + registry) //$NON-NLS-1$ //$NON-NLS-2$
+                + (trajectories ? "#moving" : ""); //$NON-NLS-1$ //$NON-NLS-2$
+    }
+
+    public String getServer() {
+        return server;
+    }
+
+    public void setServer(String server) {
+        this.server = server;
+    }
+
+    public int getPort() {
+        return port;
+    }
+
+    public void setPort(int port) {
+        this.port = port;
+    }
+
+    /**
+     * @return connect timeout in milliseconds, 0 means no timeout
+     */
+    public int getConnectTimeout() {
+        return connectTimeout;
+    }
+
+    public void setConnectTimeout(int connectTimeout) {
+        this.connectTimeout = connectTimeout;
+    }
+
+    /**
+     * @return maximum time in milliseconds to wait for the ACK of a report, 0 means no timeout
+     */
+    public int getResponseTimeout() {
+        return responseTimeout;
+    }
+
+    public void setResponseTimeout(int responseTimeout) {
+        this.responseTimeout = responseTimeout;
+    }
+
+    public boolean isNoDelay() {
+        return noDelay;
+    }
+
+    public void setNoDelay(boolean noDelay) {
+        this.noDelay = noDelay;
+    }
+
+    /**
+     * @return number of simulated devices
+     */
+    public int getDevices() {
+        return devices;
+    }
+
+    public void setDevices(int devices) {
+        this.devices = devices;
+    }
+
+    /**
+     * @return IMEI of the first device, the following devices use consecutive IMEIs
+     */
+    public long getFirstImei() {
+        return firstImei;
+    }
+
+    public void setFirstImei(long firstImei) {
+        this.firstImei = firstImei;
+    }
+
+    /**
+     * @return time in milliseconds between two reports of the same device
+     */
+    public long getReportInterval() {
+        return reportInterval;
+    }
+
+    public void setReportInterval(long reportInterval) {
+        this.reportInterval = reportInterval;
+    }
+
+    /**
+     * @return time in milliseconds over which the devices are connected
+     */
+    public long getRampUp() {
+        return rampUp;
+    }
+
+    public void setRampUp(long rampUp) {
+        this.rampUp = rampUp;
+    }
+
+    /**
+     * @return number of selector threads, 0 means one per available processor
+     */
+    public int getEventLoops() {
+        return eventLoops;
+    }
+
+    public void setEventLoops(int eventLoops) {
+        this.eventLoops = eventLoops;
+    }
+
+    /**
+     * @return name of the {@link org.apache.jmeter.protocol.tcp.codec.TrackerCodec} spoken by the devices
+     */
+    public String getProtocol() {
+        return protocol;
+    }
+
+    public void setProtocol(String protocol) {
+        this.protocol = protocol;
+    }
+
+    /**
+     * @return hex-encoded demo signal sent as report, for template based protocols
+     */
+    public String getSignal() {
+        return signal;
+    }
+
+    public void setSignal(String signal) {
+        this.signal = signal;
+    }
+
+    /**
+     * @return end of message byte of the ACKs for protocols without framing, a value
+     * out of the byte range means that every received chunk is an ACK
+     */
+    public int getEolByte() {
+        return eolByte;
+    }
+
+    public void setEolByte(int eolByte) {
+        this.eolByte = eolByte;
+    }
+
+    /**
+     * @return path of the {@link org.apache.jmeter.protocol.tcp.registry.FleetRegistry} holding
+     * the devices and their state, <code>null</code> to use consecutive IMEIs without persistent state
+     */
+    public String getRegistry() {
+        return registry;
+    }
+
+    public void setRegistry(String registry) {
+        this.registry = registry;
+    }
+
+    /**
+     * @return <code>true</code> if the devices follow the trajectories of
+     * {@link org.apache.jmeter.protocol.tcp.trajectory.TrajectoryPool#getDefault()},
+     * <code>false</code> if they report a fixed position
+     */
+    public boolean isTrajectories() {
+        return trajectories;
+    }
+
+    public void setTrajectories(boolean trajectories) {
+        this.trajectories = trajectories;
+    }
+
+    /**
+     * @return time in milliseconds after the start of the fleet at which the outage begins,
+     * 0 for no outage
+     */
+    public long getOutageStart() {
+        return outageStart;
+    }
+
+    public void setOutageStart(long outageStart) {
+        this.outageStart = outageStart;
+    }
+
+    /**
+     * @return time in milliseconds the dropped devices stay offline, buffering their reports
+     */
+    public long getOutageDuration() {
+        return outageDuration;
+    }
+
+    public void setOutageDuration(long outageDuration) {
+        this.outageDuration = outageDuration;
+    }
+
+    /**
+     * @return percentage of the devices losing their connection during the outage
+     */
+    public int getOutageShare() {
+        return outageShare;
+    }
+
+    public void setOutageShare(int outageShare) {
+        this.outageShare = outageShare;
+    }
+
+    /**
+     * @return time in milliseconds over which the dropped devices reconnect after the outage
+     */
+    public long getReconnectSpread() {
+        return reconnectSpread;
+    }
+
+    public void setReconnectSpread(long reconnectSpread) {
+        this.reconnectSpread = reconnectSpread;
+    }
+
+    public ArrivalCurve getReconnectCurve() {
+        return reconnectCurve;
+    }
+
+    public void setReconnectCurve(ArrivalCurve reconnectCurve) {
+        this.reconnectCurve = reconnectCurve;
+    }
+
+    /**
+     * @return maximum number of buffered reports flushed in one frame, for protocols with
+     * multi-record frames
+     */
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    public void setBatchSize(int batchSize) {
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * @return number of consecutive devices whose datagrams are reported together, for UDP fleets
+     */
+    public int getGroupSize() {
+        return groupSize;
+    }
+
+    public void setGroupSize(int groupSize) {
+        this.groupSize = groupSize;
+    }
+
+    @Override
+    public String toString() {
+        return "FleetConfig[" + getKey() + ", interval=" + reportInterval //$NON-NLS-1$ //$NON-NLS-2$
+                + ", loops=" + eventLoops + "]"; //$NON-NLS-1$ //$NON-NLS-2$
+    }
+}
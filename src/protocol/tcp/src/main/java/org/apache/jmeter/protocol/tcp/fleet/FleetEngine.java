@@ -0,0 +1,285 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.jmeter.protocol.tcp.fleet;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.apache.jmeter.protocol.tcp.codec.TrackerCodec;
+import org.apache.jmeter.protocol.tcp.codec.TrackerCodecs;
+import org.apache.jmeter.protocol.tcp.registry.FleetRegistry;
+import org.apache.jmeter.protocol.tcp.trajectory.TrajectoryPool;
+import org.apache.jmeter.util.JMeterUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Simulates a fleet of trackers with a few selector threads.
+ * <p>
+ * Every device owns one persistent non-blocking connection, the connections are
+ * spread over {@link FleetEventLoop}s which send the reports on schedule and parse
+ * the ACKs. Completed exchanges are queued as {@link FrameResult}s, the sampling
+ * threads drain them with {@link #poll(long)}.
+ * <p>
+ * Engines are shared by all samplers simulating the same fleet and live until
+ * {@link #shutdownAll()} is called at the end of the test.
+ * <p>
+ * When the fleet is backed by a {@link FleetRegistry}, the devices are read from it and each
+ * event loop records the state of its own devices there, so it survives the test.
+ */
+public final class FleetEngine {
+    private static final Logger log = LoggerFactory.getLogger(FleetEngine.class);
+
+    private static final int RESULTS_CAPACITY =
+            JMeterUtils.getPropDefault("tracker.fleet.results.capacity", 100000); // $NON-NLS-1$
+
+    private static final ConcurrentMap<String, FleetEngine> ENGINES = new ConcurrentHashMap<>();
+
+    private final FleetConfig config;
+
+    private final TrackerCodec codec;
+
+    private final FleetEventLoop[] loops;
+
+    private final BlockingQueue<FrameResult> results = new ArrayBlockingQueue<>(RESULTS_CAPACITY);
+
+    private final LongAdder droppedResults = new LongAdder();
+
+    private FleetRegistry registry;
+
+    private final TrajectoryPool trajectories;
+
+    private FleetEngine(FleetConfig config) {
+        this.config = config;
+        this.codec = createCodec(config);
+        this.trajectories = config.isTrajectories() ? TrajectoryPool.getDefault() : null;
+        int count = config.getEventLoops() > 0
+                ? config.getEventLoops()
+                : Runtime.getRuntime().availableProcessors();
+        this.loops = new FleetEventLoop[Math.max(1, Math.min(count, Math.max(1, config.getDevices())))];
+    }
+
+    static TrackerCodec createCodec(FleetConfig config) {
+        Map<String, String> parameters = new HashMap<>();
+        if (config.getSignal() != null) {
+            parameters.put(TrackerCodecs.SIGNAL, config.getSignal());
+        }
+        if (config.getEolByte() >= Byte.MIN_VALUE && config.getEolByte() <= Byte.MAX_VALUE) {
+            parameters.put(TrackerCodecs.EOM_BYTE, Integer.toString(config.getEolByte()));
+        }
+        return TrackerCodecs.get(config.getProtocol(), parameters);
+    }
+
+    /**
+     * Get the engine simulating the configured fleet, starting it if needed.
+     *
+     * @param config the fleet settings
+     * @return the running engine
+     */
+    public static FleetEngine acquire(FleetConfig config) {
+        return ENGINES.computeIfAbsent(config.getKey(), k -> {
+            FleetEngine engine = new FleetEngine(config);
+            engine.start();
+            return engine;
+        });
+    }
+
+    /**
+     * Stops all running engines and closes their connections.
+     */
+    public static void shutdownAll() {
+        ENGINES.values().removeIf(engine -> {
+            engine.shutdown();
+            return true;
+        });
+    }
+
+    private void start() {
+        InetSocketAddress address = new InetSocketAddress(config.getServer(), config.getPort());
+        int devices = config.getDevices();
+        if (config.getRegistry() != null) {
+            try {
+                registry = FleetRegistry.openOrCreate(new File(config.getRegistry()), config.getFirstImei(), devices);
+            } catch (IOException e) {
+                throw new IllegalStateException("Could not open fleet registry of " + config, e);
+            }
+            devices = registry.size();
+        }
+        log.info("Starting {} with {} event loops", config, loops.length);
+        try {
+            for (int i = 0; i < loops.length; i++) {
+                loops[i] = new FleetEventLoop(this, address, i);
+            }
+        } catch (IOException e) {
+            for (FleetEventLoop loop : loops) {
+                if (loop != null) {
+                    loop.shutdown();
+                }
+            }
+            closeRegistry();
+            throw new IllegalStateException("Could not open selector for " + config, e);
+        }
+        long now = System.nanoTime();
+        DeviceConnection[] connections = new DeviceConnection[devices];
+        for (int i = 0; i < devices; i++) {
+            long offset = devices > 1 ? config.getRampUp() * i / devices : 0;
+            FleetEventLoop loop = loops[i % loops.length];
+            long imei = registry == null ? config.getFirstImei() + i : registry.getImei(i);
+            connections[i] = new DeviceConnection(loop, i, imei);
+            loop.register(connections[i], now + TimeUnit.MILLISECONDS.toNanos(offset));
+        }
+        scheduleOutage(connections, now);
+        for (FleetEventLoop loop : loops) {
+            loop.start();
+        }
+    }
+
+    /**
+     * Pick the devices dropped by the outage, evenly spread over the fleet, and schedule
+     * their disconnection and their reconnection along the arrival curve.
+     */
+    private void scheduleOutage(DeviceConnection[] connections, long now) {
+        int share = Math.min(100, config.getOutageShare());
+        if (config.getOutageStart() <= 0 || share <= 0) {
+            return;
+        }
+        long outageStart = now + TimeUnit.MILLISECONDS.toNanos(config.getOutageStart());
+        long outageEnd = outageStart + TimeUnit.MILLISECONDS.toNanos(config.getOutageDuration());
+        int dropped = (int) ((long) connections.length * share / 100);
+        for (int k = 0; k < dropped; k++) {
+            DeviceConnection connection = connections[(int) ((long) k * connections.length / dropped)];
+            long delay = config.getReconnectCurve().delay((k + 0.5) / dropped, config.getReconnectSpread());
+            connection.getLoop().register(connection, FleetEventLoop.TimerType.OUTAGE, outageStart);
+            connection.getLoop().register(connection, FleetEventLoop.TimerType.RECOVER,
+                    outageEnd + TimeUnit.MILLISECONDS.toNanos(delay));
+        }
+        log.info("Outage of {} devices in {}ms for {}ms, reconnecting over {}ms ({})", dropped,
+                config.getOutageStart(), config.getOutageDuration(), config.getReconnectSpread(),
+                config.getReconnectCurve());
+    }
+
+    private void shutdown() {
+        for (FleetEventLoop loop : loops) {
+            loop.shutdown();
+        }
+        long sent = 0;
+        long acked = 0;
+        long failed = 0;
+        long commands = 0;
+        for (FleetEventLoop loop : loops) {
+            sent += loop.getFramesSent();
+            acked += loop.getFramesAcked();
+            failed += loop.getFramesFailed();
+            commands += loop.getCommandsAnswered();
+        }
+        log.info("Stopped {}: sent={}, acked={}, failed={}, commands={}, dropped results={}",
+                config, sent, acked, failed, commands, droppedResults.sum());
+        closeRegistry();
+    }
+
+    private void closeRegistry() {
+        if (registry != null) {
+            try {
+                registry.close();
+            } catch (IOException e) {
+                log.warn("Could not save the state of {}", registry, e);
+            }
+        }
+    }
+
+    /**
+     * @return the registry holding the state of the devices, <code>null</code> if the fleet has none
+     */
+    FleetRegistry getRegistry() {
+        return registry;
+    }
+
+    /**
+     * @return maximum number of buffered reports written at once when flushing a backlog
+     */
+    int getBatchSize() {
+        return Math.max(1, config.getBatchSize());
+    }
+
+    /**
+     * @return positions of the devices, <code>null</code> if they report a fixed position
+     */
+    TrajectoryPool getTrajectories() {
+        return trajectories;
+    }
+
+    FleetConfig getConfig() {
+        return config;
+    }
+
+    /**
+     * @return the protocol codec, configured once for the whole fleet
+     */
+    TrackerCodec getCodec() {
+        return codec;
+    }
+
+    /**
+     * Queue a completed exchange, it is dropped if the sampling threads do not keep up.
+     *
+     * @param result the exchange
+     */
+    void publish(FrameResult result) {
+        if (!results.offer(result)) {
+            droppedResults.increment();
+        }
+    }
+
+    /**
+     * Wait for the next completed exchange.
+     *
+     * @param timeout maximum time to wait in milliseconds
+     * @return the exchange or <code>null</code> if none completed in time
+     * @throws InterruptedException when the waiting thread is interrupted
+     */
+    public FrameResult poll(long timeout) throws InterruptedException {
+        return results.poll(timeout, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * @return number of devices currently connected
+     */
+    public int getConnectedDevices() {
+        int connected = 0;
+        for (FleetEventLoop loop : loops) {
+            connected += loop.getConnectedDevices();
+        }
+        return connected;
+    }
+
+    /**
+     * @return number of results dropped because the sampling threads did not keep up
+     */
+    public long getDroppedResults() {
+        return droppedResults.sum();
+    }
+}
@@ -0,0 +1,361 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.jmeter.protocol.tcp.fleet;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.Iterator;
+import java.util.PriorityQueue;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.apache.jmeter.protocol.tcp.codec.TrackerReport;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Selector thread owning a share of the fleet connections.
+ * <p>
+ * All state of the {@link DeviceConnection}s is only touched from this thread,
+ * other threads hand devices over with {@link #register(DeviceConnection, long)}.
+ */
+final class FleetEventLoop implements Runnable {
+    private static final Logger log = LoggerFactory.getLogger(FleetEventLoop.class);
+
+    private static final int READ_BUFFER_SIZE = 64 * 1024;
+
+    enum TimerType {
+        CONNECT(false),
+        CONNECT_TIMEOUT(true),
+        REPORT(true),
+        ACK_TIMEOUT(true),
+        OUTAGE(false),
+        RECOVER(false);
+
+        /** The timer is cancelled when the connection is closed */
+        private final boolean connectionBound;
+
+        TimerType(boolean connectionBound) {
+            this.connectionBound = connectionBound;
+        }
+    }
+
+    private static final class Timer implements Comparable<Timer> {
+        private final long due;
+        private final DeviceConnection device;
+        private final TimerType type;
+        private final long generation;
+
+        private Timer(long due, DeviceConnection device, TimerType type, long generation) {
+            this.due = due;
+            this.device = device;
+            this.type = type;
+            this.generation = generation;
+        }
+
+        @Override
+        public int compareTo(Timer other) {
+            return Long.compare(due, other.due);
+        }
+    }
+
+    private final FleetEngine engine;
+
+    private final InetSocketAddress address;
+
+    private final Selector selector;
+
+    private final Thread thread;
+
+    private final Queue<Timer> registrations = new ConcurrentLinkedQueue<>();
+
+    private final PriorityQueue<Timer> timers = new PriorityQueue<>();
+
+    /** Shared by all connections of this loop, ACKs are consumed as soon as they are read */
+    private final ByteBuffer readBuffer = ByteBuffer.allocateDirect(READ_BUFFER_SIZE);
+
+    /** Reused by all connections of this loop to encode their reports */
+    private final TrackerReport report = new TrackerReport();
+
+    /** Reused by all connections of this loop to encode the reports buffered during an outage */
+    private final TrackerReport[] batch;
+
+    private volatile boolean running = true;
+
+    private final AtomicInteger connectedDevices = new AtomicInteger();
+
+    private final LongAdder framesSent = new LongAdder();
+
+    private final LongAdder framesAcked = new LongAdder();
+
+    private final LongAdder framesFailed = new LongAdder();
+
+    private final LongAdder commandsAnswered = new LongAdder();
+
+    FleetEventLoop(FleetEngine engine, InetSocketAddress address, int index) throws IOException {
+        this.engine = engine;
+        this.address = address;
+        this.selector = Selector.open();
+        this.thread = new Thread(this, "TrackerFleet-" + index); //$NON-NLS-1$
+        this.thread.setDaemon(true);
+        this.batch = new TrackerReport[engine.getBatchSize()];
+        for (int i = 0; i < batch.length; i++) {
+            batch[i] = new TrackerReport();
+        }
+    }
+
+    void start() {
+        thread.start();
+    }
+
+    void shutdown() {
+        running = false;
+        if (!thread.isAlive()) {
+            closeAll();
+            return;
+        }
+        selector.wakeup();
+        if (Thread.currentThread() != thread) {
+            try {
+                thread.join(TimeUnit.SECONDS.toMillis(5));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Hand a device over to this loop, it will connect at the given time.
+     * May be called from any thread.
+     *
+     * @param device the device to simulate
+     * @param connectAt {@link System#nanoTime()} at which to connect
+     */
+    void register(DeviceConnection device, long connectAt) {
+        register(device, TimerType.CONNECT, connectAt);
+    }
+
+    /**
+     * Schedule a timer which is not bound to a connection, from any thread.
+     *
+     * @param device the device
+     * @param type {@link TimerType#CONNECT}, {@link TimerType#OUTAGE} or {@link TimerType#RECOVER}
+     * @param due {@link System#nanoTime()} at which the timer expires
+     */
+    void register(DeviceConnection device, TimerType type, long due) {
+        registrations.add(new Timer(due, device, type, device.getGeneration()));
+        selector.wakeup();
+    }
+
+    /**
+     * Schedule a timer for a device, must be called from the loop thread.
+     *
+     * @param device the device
+     * @param type what to do when the timer expires
+     * @param due {@link System#nanoTime()} at which the timer expires
+     */
+    void schedule(DeviceConnection device, TimerType type, long due) {
+        timers.add(new Timer(due, device, type, device.getGeneration()));
+    }
+
+    FleetEngine getEngine() {
+        return engine;
+    }
+
+    FleetConfig getConfig() {
+        return engine.getConfig();
+    }
+
+    InetSocketAddress getAddress() {
+        return address;
+    }
+
+    Selector getSelector() {
+        return selector;
+    }
+
+    ByteBuffer getReadBuffer() {
+        return readBuffer;
+    }
+
+    TrackerReport getReport() {
+        return report;
+    }
+
+    /**
+     * @return {@link FleetEngine#getBatchSize()} reports to encode a batch
+     */
+    TrackerReport[] getBatch() {
+        return batch;
+    }
+
+    @Override
+    public void run() {
+        log.debug("Event loop started");
+        try {
+            while (running) {
+                long now = System.nanoTime();
+                Timer registration;
+                while ((registration = registrations.poll()) != null) {
+                    timers.add(registration);
+                }
+                now = runTimers(now);
+                Timer next = timers.peek();
+                long timeout = next == null ? 0 : Math.max(1, TimeUnit.NANOSECONDS.toMillis(next.due - now));
+                selector.select(timeout);
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    handle(key);
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            log.error("Event loop failed", e);
+        } finally {
+            closeAll();
+        }
+    }
+
+    private long runTimers(long now) {
+        Timer timer;
+        while ((timer = timers.peek()) != null && timer.due - now <= 0) {
+            timers.poll();
+            DeviceConnection device = timer.device;
+            if (timer.generation != device.getGeneration() && timer.type.connectionBound) {
+                continue; // Connection was closed since the timer was set
+            }
+            try {
+                switch (timer.type) {
+                    case CONNECT:
+                        device.connect(now);
+                        break;
+                    case CONNECT_TIMEOUT:
+                        device.connectTimedOut();
+                        break;
+                    case REPORT:
+                        device.reportDue(timer.due);
+                        break;
+                    case ACK_TIMEOUT:
+                        device.ackTimedOut(now);
+                        break;
+                    case OUTAGE:
+                        device.outageStarted();
+                        break;
+                    case RECOVER:
+                        device.recover(now);
+                        break;
+                    default:
+                        break;
+                }
+            } catch (RuntimeException e) {
+                log.warn("Unexpected failure on device {}", device, e);
+                device.fail(e.toString());
+            }
+            now = System.nanoTime();
+        }
+        return now;
+    }
+
+    private void handle(SelectionKey key) {
+        DeviceConnection device = (DeviceConnection) key.attachment();
+        try {
+            if (!key.isValid()) {
+                return;
+            }
+            if (key.isConnectable()) {
+                device.finishConnect();
+            }
+            if (key.isValid() && key.isWritable()) {
+                device.flush();
+            }
+            if (key.isValid() && key.isReadable()) {
+                device.read();
+            }
+        } catch (IOException e) {
+            log.debug("I/O failure on device {}", device, e);
+            device.fail(e.toString());
+        } catch (RuntimeException e) {
+            // e.g. a codec or decoder bug, the other devices of this loop keep running
+            log.warn("Unexpected failure on device {}", device, e);
+            device.fail(e.toString());
+        }
+    }
+
+    private void closeAll() {
+        for (SelectionKey key : selector.keys()) {
+            ((DeviceConnection) key.attachment()).close();
+        }
+        try {
+            selector.close();
+        } catch (IOException e) {
+            log.debug("Error closing selector", e);
+        }
+        log.debug("Event loop stopped");
+    }
+
+    void connected() {
+        connectedDevices.incrementAndGet();
+    }
+
+    void disconnected() {
+        connectedDevices.decrementAndGet();
+    }
+
+    void frameSent() {
+        framesSent.increment();
+    }
+
+    void frameAcked() {
+        framesAcked.increment();
+    }
+
+    void frameFailed() {
+        framesFailed.increment();
+    }
+
+    void commandAnswered() {
+        commandsAnswered.increment();
+    }
+
+    int getConnectedDevices() {
+        return connectedDevices.get();
+    }
+
+    long getFramesSent() {
+        return framesSent.sum();
+    }
+
+    long getFramesAcked() {
+        return framesAcked.sum();
+    }
+
+    long getFramesFailed() {
+        return framesFailed.sum();
+    }
+
+    long getCommandsAnswered() {
+        return commandsAnswered.sum();
+    }
+}
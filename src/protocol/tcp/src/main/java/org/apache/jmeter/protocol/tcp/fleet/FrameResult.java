@@ -0,0 +1,202 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.jmeter.protocol.tcp.fleet;
+
+/**
+ * Outcome of one report sent by a simulated device, from the write of the frame
+ * (or the connect, for the first frame of a connection) to the reception of its ACK.
+ * <p>
+ * Instances are created by the event loops and converted to
+ * {@link org.apache.jmeter.samplers.SampleResult}s by the sampling threads.
+ */
+public final class FrameResult {
+
+    /**
+     * What a result measures.
+     */
+    public enum Type {
+        /** A report or a batch of buffered reports, from its write to its ACK */
+        REPORT,
+        /** A reconnection after an outage, from the connect to the accepted login */
+        RECONNECT,
+        /** The flush of the reports buffered during an outage, from the first write to the last ACK */
+        DRAIN,
+        /** The datagrams of a device group acknowledged over a period, elapsed and latency are sums of their ACK times */
+        DATAGRAMS,
+        /** The datagrams of a device group whose ACK was lost over a period, only counted */
+        LOSSES,
+        /** A command pushed by the server, from its reception to the write of the answer */
+        COMMAND
+    }
+
+    private final Type type;
+
+    private final int records;
+
+    private final int group;
+
+    private final int failures;
+
+    private final long imei;
+
+    private final long startTime;
+
+    private final long elapsed;
+
+    private final long connectTime;
+
+    private final long latency;
+
+    private final long sentBytes;
+
+    private final byte[] response;
+
+    private final String error;
+
+    /**
+     * @param imei IMEI of the device
+     * @param startTime start of the exchange in milliseconds since the epoch
+     * @param elapsed duration of the exchange in milliseconds
+     * @param connectTime time spent connecting in milliseconds, 0 when the connection was reused
+     * @param latency time to the first byte of the ACK in milliseconds
+     * @param sentBytes number of bytes written
+     * @param response the ACK bytes, may be partial in case of error
+     * @param error the failure reason or <code>null</code> when the ACK was received
+     */
+    FrameResult(long imei, long startTime, long elapsed, long connectTime, long latency,
+            long sentBytes, byte[] response, String error) {
+        this(Type.REPORT, 1, imei, startTime, elapsed, connectTime, latency, sentBytes, response, error);
+    }
+
+    /**
+     * @param type what the result measures
+     * @param records number of reports sent
+     * @param imei IMEI of the device
+     * @param startTime start of the exchange in milliseconds since the epoch
+     * @param elapsed duration of the exchange in milliseconds
+     * @param connectTime time spent connecting in milliseconds, 0 when the connection was reused
+     * @param latency time to the first byte of the (first) ACK in milliseconds
+     * @param sentBytes number of bytes written
+     * @param response the (last) ACK bytes, may be partial in case of error
+     * @param error the failure reason or <code>null</code> when the ACK was received
+     */
+    FrameResult(Type type, int records, long imei, long startTime, long elapsed, long connectTime, long latency,
+            long sentBytes, byte[] response, String error) {
+        this.type = type;
+        this.records = records;
+        this.group = -1;
+        this.failures = error == null ? 0 : 1;
+        this.imei = imei;
+        this.startTime = startTime;
+        this.elapsed = elapsed;
+        this.connectTime = connectTime;
+        this.latency = latency;
+        this.sentBytes = sentBytes;
+        this.response = response;
+        this.error = error;
+    }
+
+    /**
+     * @param type {@link Type#DATAGRAMS} or {@link Type#LOSSES}
+     * @param group index of the device group
+     * @param imei IMEI of the first device of the group
+     * @param startTime start of the period in milliseconds since the epoch
+     * @param records number of datagrams acknowledged during the period (sent, if the protocol
+     *            has no ACK), or lost for {@link Type#LOSSES}
+     * @param elapsed sum of the ACK times of the datagrams acknowledged in milliseconds, 0 for losses
+     * @param sentBytes number of bytes sent during the period
+     */
+    FrameResult(Type type, int group, long imei, long startTime, int records, long elapsed, long sentBytes) {
+        this.type = type;
+        this.records = records;
+        this.group = group;
+        this.failures = type == Type.LOSSES ? records : 0;
+        this.imei = imei;
+        this.startTime = startTime;
+        this.elapsed = elapsed;
+        this.connectTime = 0;
+        this.latency = elapsed;
+        this.sentBytes = sentBytes;
+        this.response = new byte[0];
+        this.error = failures == 0 ? null : failures + " ACKs lost"; //$NON-NLS-1$
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    /**
+     * @return number of reports sent, 0 for a reconnection or a command
+     */
+    public int getRecords() {
+        return records;
+    }
+
+    /**
+     * @return index of the device group of a {@link Type#DATAGRAMS} or {@link Type#LOSSES} result, -1 otherwise
+     */
+    public int getGroup() {
+        return group;
+    }
+
+    /**
+     * @return number of failed reports, 0 or 1 unless this is a {@link Type#LOSSES} result
+     */
+    public int getFailures() {
+        return failures;
+    }
+
+    public long getImei() {
+        return imei;
+    }
+
+    public long getStartTime() {
+        return startTime;
+    }
+
+    public long getElapsed() {
+        return elapsed;
+    }
+
+    public long getConnectTime() {
+        return connectTime;
+    }
+
+    public long getLatency() {
+        return latency;
+    }
+
+    public long getSentBytes() {
+        return sentBytes;
+    }
+
+    public byte[] getResponse() {
+        return response;
+    }
+
+    public boolean isSuccessful() {
+        return error == null;
+    }
+
+    /**
+     * @return the failure reason or <code>null</code>
+     */
+    public String getError() {
+        return error;
+    }
+}
@@ -0,0 +1,101 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.apache.jmeter.protocol.tcp.lag;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Looks up the records in a file appended to by a stand-in of the tracking platform, with a line
+ * per persisted record: <code>imei,time[,landed]</code>, the times being milliseconds since the
+ * epoch. Without a landing time, a record lands when the line is read.
+ */
+public class FileRecordVerifier implements RecordVerifier {
+    private final File file;
+
+    /** Landing times of the lines read and not looked up yet */
+    private final Map<String, Long> records = new HashMap<>();
+
+    private long position;
+
+    /**
+     * @param file the file, which may not exist yet
+     */
+    public FileRecordVerifier(File file) {
+        this.file = file;
+    }
+
+    @Override
+    public void find(long[] imeis, long[] times, int count, long[] landed) throws IOException {
+        readLines();
+        for (int i = 0; i < count; i++) {
+            Long time = records.remove(key(imeis[i], times[i]));
+            landed[i] = time == null ? NOT_FOUND : time;
+        }
+    }
+
+    private static String key(long imei, long timeMillis) {
+        return imei + "," + timeMillis;
+    }
+
+    private void readLines() throws IOException {
+        if (!file.exists()) {
+            return;
+        }
+        try (RandomAccessFile in = new RandomAccessFile(file, "r")) { //$NON-NLS-1$
+            if (in.length() < position) {
+                position = 0; // truncated
+            }
+            in.seek(position);
+            long now = System.currentTimeMillis();
+            String line;
+            while ((line = in.readLine()) != null) {
+                if (in.getFilePointer() == in.length() && !line.isEmpty() && !endsWithNewLine(in)) {
+                    break; // partly written, read again next time
+                }
+                position = in.getFilePointer();
+                parse(line.trim(), now);
+            }
+        }
+    }
+
+    private static boolean endsWithNewLine(RandomAccessFile in) throws IOException {
+        in.seek(in.length() - 1);
+        int last = in.read();
+        return last == '\n' || last == '\r';
+    }
+
+    private void parse(String line, long now) throws IOException {
+        if (line.isEmpty()) {
+            return;
+        }
+        String[] fields = line.split(",");
+        try {
+            long imei = Long.parseLong(fields[0].trim());
+            long time = Long.parseLong(fields[1].trim());
+            long landed = fields.length > 2 ? Long.parseLong(fields[2].trim()) : now;
+            records.put(key(imei, time), landed);
+        } catch (NumberFormatException | ArrayIndexOutOfBoundsException e) {
+            throw new IOException("Invalid record '" + line + "' in " + file, e);
+        }
+    }
+}
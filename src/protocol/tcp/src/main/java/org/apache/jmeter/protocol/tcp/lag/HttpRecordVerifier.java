@@ -0,0 +1,82 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.apache.jmeter.protocol.tcp.lag;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.jorphan.util.JOrphanUtils;
+
+/**
+ * Looks up the records with an HTTP API of the tracking platform, or a stand-in of it.
+ * <p>
+ * A GET request is sent per record, to the URL with <code>{imei}</code> and <code>{time}</code>
+ * replaced by the IMEI and the time of the record in milliseconds since the epoch.
+ * A 200 response means the record was found, its body being the time it was persisted at in
+ * milliseconds since the epoch if it is a number; a 404 response means it was not found yet.
+ */
+public class HttpRecordVerifier implements RecordVerifier {
+    private static final int TIMEOUT = 10000;
+
+    private final String url;
+
+    /**
+     * @param url URL of the records, with the <code>{imei}</code> and <code>{time}</code> placeholders
+     */
+    public HttpRecordVerifier(String url) {
+        this.url = url;
+    }
+
+    @Override
+    public void find(long[] imeis, long[] times, int count, long[] landed) throws IOException {
+        for (int i = 0; i < count; i++) {
+            landed[i] = find(imeis[i], times[i]);
+        }
+    }
+
+    private long find(long imei, long timeMillis) throws IOException {
+        URL recordUrl = new URL(url.replace("{imei}", Long.toString(imei)) //$NON-NLS-1$
+                .replace("{time}", Long.toString(timeMillis))); //$NON-NLS-1$
+        HttpURLConnection conn = (HttpURLConnection) recordUrl.openConnection();
+        conn.setConnectTimeout(TIMEOUT);
+        conn.setReadTimeout(TIMEOUT);
+        int code = conn.getResponseCode();
+        if (code == HttpURLConnection.HTTP_NOT_FOUND) {
+            JOrphanUtils.closeQuietly(conn.getErrorStream());
+            return NOT_FOUND;
+        }
+        if (code != HttpURLConnection.HTTP_OK) {
+            JOrphanUtils.closeQuietly(conn.getErrorStream());
+            throw new IOException("Unexpected response " + code + " from " + recordUrl);
+        }
+        String body;
+        try (InputStream in = conn.getInputStream()) {
+            body = IOUtils.toString(in, StandardCharsets.UTF_8).trim();
+        }
+        try {
+            return Long.parseLong(body);
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+}
@@ -0,0 +1,215 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.apache.jmeter.protocol.tcp.lag;
+
+import java.io.IOException;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.apache.jmeter.util.JMeterUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Measures how long the records sent by the tracker samplers take to become visible downstream.
+ * <p>
+ * While a probe is started, every record sent is keyed by the IMEI of its device and its time,
+ * and its send time is kept in a {@link LagIndex} of at most <code>tracker.lag.capacity</code>
+ * records. The sampling threads take turns to look up the pending records with a
+ * {@link RecordVerifier}, and take the {@link LagResult}s of the records found, or not found
+ * within the timeout, in the order they are known.
+ */
+public final class IngestionLagProbe {
+    private static final Logger log = LoggerFactory.getLogger(IngestionLagProbe.class);
+
+    private static final int CAPACITY =
+            JMeterUtils.getPropDefault("tracker.lag.capacity", 1 << 20); //$NON-NLS-1$
+
+    /** Number of slots of the index looked up at once */
+    private static final int CHUNK = 1024;
+
+    private static final Object LOCK = new Object();
+
+    private static volatile IngestionLagProbe active;
+
+    private final LagIndex index = new LagIndex(CAPACITY);
+
+    private final BlockingQueue<LagResult> results = new LinkedBlockingQueue<>();
+
+    private final ReentrantLock verifying = new ReentrantLock();
+
+    private final long[] imeis = new long[CHUNK];
+
+    private final long[] times = new long[CHUNK];
+
+    private final long[] sent = new long[CHUNK];
+
+    private final long[] landed = new long[CHUNK];
+
+    private final LongAdder landedCount = new LongAdder();
+
+    private final LongAdder lostCount = new LongAdder();
+
+    private final LongAdder untracked = new LongAdder();
+
+    private volatile long nextPollMillis;
+
+    private IngestionLagProbe() {
+    }
+
+    /**
+     * Track a record just sent, if a probe is started.
+     *
+     * @param imei IMEI of the device
+     * @param timeMillis time of the record in milliseconds since the epoch
+     */
+    public static void sent(long imei, long timeMillis) {
+        IngestionLagProbe probe = active;
+        if (probe != null) {
+            probe.track(imei, timeMillis, System.currentTimeMillis());
+        }
+    }
+
+    /**
+     * Start tracking the records sent, at the start of a test.
+     *
+     * @return the probe, already started or new
+     */
+    public static IngestionLagProbe start() {
+        synchronized (LOCK) {
+            if (active == null) {
+                active = new IngestionLagProbe();
+                log.info("Ingestion lag probe tracking up to {} records", CAPACITY);
+            }
+            return active;
+        }
+    }
+
+    /**
+     * @return the started probe or <code>null</code>
+     */
+    public static IngestionLagProbe getActive() {
+        return active;
+    }
+
+    /**
+     * Stop tracking the records sent and log the counts of the test.
+     */
+    public static void stop() {
+        IngestionLagProbe probe;
+        synchronized (LOCK) {
+            probe = active;
+            active = null;
+        }
+        if (probe != null) {
+            log.info("Ingestion lag probe: {} records landed, {} lost, {} not verified, {} not tracked (index full)",
+                    probe.landedCount.sum(), probe.lostCount.sum(), probe.index.size(), probe.untracked.sum());
+            probe.index.clear();
+        }
+    }
+
+    private void track(long imei, long timeMillis, long sentMillis) {
+        if (!index.put(imei, timeMillis, sentMillis)) {
+            untracked.increment();
+        }
+    }
+
+    /**
+     * Get the next record found downstream or lost, looking up the pending records if no
+     * other thread is doing so and the last look up is older than the poll interval.
+     *
+     * @param verifier looks up the records
+     * @param pollInterval minimum time between two look ups in milliseconds
+     * @param timeout time after its send after which a record not found is lost, in milliseconds
+     * @param maxWait maximum time to wait for a result in milliseconds
+     * @return the result or <code>null</code> if none was known within <code>maxWait</code>
+     * @throws InterruptedException when interrupted while waiting
+     * @throws IOException when the verifier fails, the next look up is delayed by the poll interval
+     */
+    public LagResult next(RecordVerifier verifier, long pollInterval, long timeout, long maxWait)
+            throws InterruptedException, IOException {
+        long deadline = System.currentTimeMillis() + maxWait;
+        while (true) {
+            LagResult result = results.poll();
+            if (result != null) {
+                return result;
+            }
+            long now = System.currentTimeMillis();
+            if (now >= nextPollMillis && verifying.tryLock()) {
+                try {
+                    if (now >= nextPollMillis) {
+                        verify(verifier, timeout, now);
+                    }
+                } finally {
+                    nextPollMillis = System.currentTimeMillis() + pollInterval;
+                    verifying.unlock();
+                }
+                result = results.poll();
+                if (result != null) {
+                    return result;
+                }
+                now = System.currentTimeMillis();
+            }
+            if (now >= deadline) {
+                return null;
+            }
+            result = results.poll(Math.max(1, Math.min(deadline, nextPollMillis) - now), TimeUnit.MILLISECONDS);
+            if (result != null) {
+                return result;
+            }
+        }
+    }
+
+    private void verify(RecordVerifier verifier, long timeout, long now) throws IOException {
+        for (int from = 0; from < index.capacity(); from += CHUNK) {
+            int count = index.copy(from, Math.min(from + CHUNK, index.capacity()), imeis, times, sent);
+            if (count == 0) {
+                continue;
+            }
+            verifier.find(imeis, times, count, landed);
+            long polledMillis = System.currentTimeMillis();
+            for (int i = 0; i < count; i++) {
+                boolean found = landed[i] != RecordVerifier.NOT_FOUND;
+                if (!found && now - sent[i] < timeout) {
+                    continue;
+                }
+                if (index.remove(imeis[i], times[i]) == 0) {
+                    continue; // moved by a removal and already handled
+                }
+                if (found) {
+                    landedCount.increment();
+                    results.add(new LagResult(imeis[i], times[i], sent[i], landed[i] == 0 ? polledMillis : landed[i]));
+                } else {
+                    lostCount.increment();
+                    results.add(new LagResult(imeis[i], times[i], sent[i], RecordVerifier.NOT_FOUND));
+                }
+            }
+        }
+    }
+
+    /**
+     * @return number of records sent and not found or lost yet
+     */
+    public int getPending() {
+        return index.size();
+    }
+}
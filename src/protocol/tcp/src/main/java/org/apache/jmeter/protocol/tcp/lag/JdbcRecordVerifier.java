@@ -0,0 +1,116 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.apache.jmeter.protocol.tcp.lag;
+
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Date;
+
+import org.apache.jmeter.protocol.jdbc.config.DataSourceElement;
+
+/**
+ * Looks up the records in the database they are persisted to, with the pool of a
+ * JDBC Connection Configuration.
+ * <p>
+ * The query is run once per record, with the IMEI and the time of the record in milliseconds
+ * as parameters, e.g. <code>SELECT created_at FROM positions WHERE imei = ? AND fix_time = ?</code>.
+ * The record is found if the query returns a row; its first column, if it is a timestamp or a
+ * number of milliseconds since the epoch, is the time the record was persisted at.
+ * <p>
+ * As the pool is a variable of the thread, the verifier must be used by the thread which
+ * created it.
+ */
+public class JdbcRecordVerifier implements RecordVerifier {
+    private final String dataSource;
+
+    private final String query;
+
+    private Connection connection;
+
+    private PreparedStatement statement;
+
+    /**
+     * @param dataSource name of the pool of the JDBC Connection Configuration
+     * @param query query of the records, with the IMEI and time as parameters
+     */
+    public JdbcRecordVerifier(String dataSource, String query) {
+        this.dataSource = dataSource;
+        this.query = query;
+    }
+
+    @Override
+    public void find(long[] imeis, long[] times, int count, long[] landed) throws IOException {
+        try {
+            if (statement == null) {
+                connection = DataSourceElement.getConnection(dataSource);
+                statement = connection.prepareStatement(query);
+            }
+            for (int i = 0; i < count; i++) {
+                statement.setLong(1, imeis[i]);
+                statement.setLong(2, times[i]);
+                try (ResultSet rs = statement.executeQuery()) {
+                    landed[i] = rs.next() ? getTime(rs) : NOT_FOUND;
+                }
+            }
+        } catch (SQLException e) {
+            close();
+            throw new IOException("Failed to look up records in " + dataSource, e);
+        }
+    }
+
+    private static long getTime(ResultSet rs) throws SQLException {
+        if (rs.getMetaData().getColumnCount() == 0) {
+            return 0;
+        }
+        Object value = rs.getObject(1);
+        if (value instanceof Date) {
+            return ((Date) value).getTime();
+        }
+        if (value instanceof Number) {
+            return ((Number) value).longValue();
+        }
+        return 0;
+    }
+
+    /**
+     * Give the connection back to the pool.
+     */
+    @Override
+    public void close() {
+        try {
+            if (statement != null) {
+                statement.close();
+            }
+        } catch (SQLException e) {
+            // ignored, the connection is closed anyway
+        }
+        try {
+            if (connection != null) {
+                connection.close();
+            }
+        } catch (SQLException e) {
+            // ignored
+        }
+        statement = null;
+        connection = null;
+    }
+}
@@ -0,0 +1,189 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.jmeter.protocol.tcp.lag;
+
+import java.nio.ByteBuffer;
+import java.nio.LongBuffer;
+
+/**
+ * Send times of the records not seen downstream yet, keyed by IMEI and time of the record.
+ * <p>
+ * The entries are kept off-heap, three longs each, in an open addressing table with linear
+ * probing, so millions of records in flight cost neither objects nor garbage collections.
+ * A free slot has a send time of 0. Removal shifts the following entries back instead of
+ * leaving tombstones.
+ */
+final class LagIndex {
+    private static final int SLOT_LONGS = 3;
+
+    private static final int IMEI = 0;
+
+    private static final int TIME = 1;
+
+    private static final int SENT = 2;
+
+    private final LongBuffer slots;
+
+    private final int capacity;
+
+    private final int mask;
+
+    /** The table is never filled beyond three quarters, to keep the probe sequences short */
+    private final int maxSize;
+
+    private int size;
+
+    /**
+     * @param maxEntries number of entries the index holds, rounded up to a power of two
+     *            once a quarter of free slots is added
+     */
+    LagIndex(int maxEntries) {
+        int slotCount = Integer.highestOneBit(Math.max(16, maxEntries + maxEntries / 3) - 1) << 1;
+        this.capacity = slotCount;
+        this.mask = slotCount - 1;
+        this.maxSize = slotCount / 4 * 3;
+        this.slots = ByteBuffer.allocateDirect(slotCount * SLOT_LONGS * Long.BYTES).asLongBuffer();
+    }
+
+    private static int hash(long imei, long timeMillis) {
+        long h = imei * 0x9E3779B97F4A7C15L + timeMillis;
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        return (int) h;
+    }
+
+    private long get(int slot, int field) {
+        return slots.get(slot * SLOT_LONGS + field);
+    }
+
+    private void set(int slot, long imei, long timeMillis, long sentMillis) {
+        int base = slot * SLOT_LONGS;
+        slots.put(base + IMEI, imei);
+        slots.put(base + TIME, timeMillis);
+        slots.put(base + SENT, sentMillis);
+    }
+
+    private int find(long imei, long timeMillis) {
+        int slot = hash(imei, timeMillis) & mask;
+        while (get(slot, SENT) != 0) {
+            if (get(slot, IMEI) == imei && get(slot, TIME) == timeMillis) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return ~slot;
+    }
+
+    /**
+     * Record the send time of a record, a record sent again keeps its first send time.
+     *
+     * @param imei IMEI of the device
+     * @param timeMillis time of the record
+     * @param sentMillis time the record was sent, not 0
+     * @return <code>false</code> if the index is full
+     */
+    synchronized boolean put(long imei, long timeMillis, long sentMillis) {
+        int slot = find(imei, timeMillis);
+        if (slot >= 0) {
+            return true;
+        }
+        if (size >= maxSize) {
+            return false;
+        }
+        set(~slot, imei, timeMillis, sentMillis);
+        size++;
+        return true;
+    }
+
+    /**
+     * @param imei IMEI of the device
+     * @param timeMillis time of the record
+     * @return the send time of the record, 0 if it is not in the index
+     */
+    synchronized long remove(long imei, long timeMillis) {
+        int slot = find(imei, timeMillis);
+        if (slot < 0) {
+            return 0;
+        }
+        long sentMillis = get(slot, SENT);
+        // shift back the entries which would not be found past the freed slot
+        int free = slot;
+        int next = (slot + 1) & mask;
+        while (get(next, SENT) != 0) {
+            int home = hash(get(next, IMEI), get(next, TIME)) & mask;
+            if (((next - home) & mask) >= ((next - free) & mask)) {
+                set(free, get(next, IMEI), get(next, TIME), get(next, SENT));
+                free = next;
+            }
+            next = (next + 1) & mask;
+        }
+        set(free, 0, 0, 0);
+        size--;
+        return sentMillis;
+    }
+
+    /**
+     * Copy the entries of a range of slots.
+     * Entries moved by a concurrent removal may be skipped or copied twice.
+     *
+     * @param from first slot to copy
+     * @param to slot after the last one to copy, at most {@link #capacity()}
+     * @param imeis receives the IMEIs
+     * @param times receives the times of the records
+     * @param sent receives the send times
+     * @return number of entries copied, at most <code>to - from</code>
+     */
+    synchronized int copy(int from, int to, long[] imeis, long[] times, long[] sent) {
+        int count = 0;
+        for (int slot = from; slot < to; slot++) {
+            long sentMillis = get(slot, SENT);
+            if (sentMillis != 0) {
+                imeis[count] = get(slot, IMEI);
+                times[count] = get(slot, TIME);
+                sent[count] = sentMillis;
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * @return number of slots of the table
+     */
+    int capacity() {
+        return capacity;
+    }
+
+    /**
+     * @return number of entries
+     */
+    synchronized int size() {
+        return size;
+    }
+
+    /**
+     * Remove all entries.
+     */
+    synchronized void clear() {
+        for (int i = 0; i < slots.capacity(); i++) {
+            slots.put(i, 0);
+        }
+        size = 0;
+    }
+}
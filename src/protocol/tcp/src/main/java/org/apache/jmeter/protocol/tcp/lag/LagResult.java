@@ -0,0 +1,90 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.apache.jmeter.protocol.tcp.lag;
+
+/**
+ * Outcome of one record tracked by the {@link IngestionLagProbe}: either the record was found
+ * downstream, or it was not found within the timeout and is counted as lost.
+ */
+public final class LagResult {
+
+    private final long imei;
+
+    private final long timeMillis;
+
+    private final long sentMillis;
+
+    private final long landedMillis;
+
+    /**
+     * @param imei IMEI of the device
+     * @param timeMillis time of the record
+     * @param sentMillis time the record was sent in milliseconds since the epoch
+     * @param landedMillis time the record was found downstream, {@link RecordVerifier#NOT_FOUND} if it was lost
+     */
+    LagResult(long imei, long timeMillis, long sentMillis, long landedMillis) {
+        this.imei = imei;
+        this.timeMillis = timeMillis;
+        this.sentMillis = sentMillis;
+        this.landedMillis = landedMillis;
+    }
+
+    /**
+     * @return IMEI of the device
+     */
+    public long getImei() {
+        return imei;
+    }
+
+    /**
+     * @return time of the record in milliseconds since the epoch
+     */
+    public long getTimeMillis() {
+        return timeMillis;
+    }
+
+    /**
+     * @return time the record was sent in milliseconds since the epoch
+     */
+    public long getSentMillis() {
+        return sentMillis;
+    }
+
+    /**
+     * @return time the record was found downstream in milliseconds since the epoch,
+     *         {@link RecordVerifier#NOT_FOUND} if it was lost
+     */
+    public long getLandedMillis() {
+        return landedMillis;
+    }
+
+    /**
+     * @return <code>true</code> if the record was not found within the timeout
+     */
+    public boolean isLost() {
+        return landedMillis == RecordVerifier.NOT_FOUND;
+    }
+
+    /**
+     * @return time from the send to the landing of the record in milliseconds, 0 if it was lost
+     */
+    public long getLag() {
+        return isLost() ? 0 : Math.max(0, landedMillis - sentMillis);
+    }
+}
@@ -0,0 +1,55 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.apache.jmeter.protocol.tcp.lag;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * Looks up downstream, e.g. in the database of the tracking platform, the records sent by the
+ * simulated devices.
+ * <p>
+ * A verifier is called by one sampling thread at a time, from which it may use the variables
+ * of the thread, such as a JDBC connection pool.
+ */
+public interface RecordVerifier extends Closeable {
+
+    /** Landing time of a record which was not found */
+    long NOT_FOUND = -1L;
+
+    /**
+     * Look up records.
+     *
+     * @param imeis IMEIs of the devices
+     * @param times times of the records in milliseconds since the epoch
+     * @param count number of records to look up
+     * @param landed receives, for each record, the time it was persisted in milliseconds since the epoch,
+     *            0 if it was found without a time or {@link #NOT_FOUND}
+     * @throws IOException when the records cannot be looked up
+     */
+    void find(long[] imeis, long[] times, int count, long[] landed) throws IOException;
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    default void close() throws IOException {
+        // NOOP
+    }
+}
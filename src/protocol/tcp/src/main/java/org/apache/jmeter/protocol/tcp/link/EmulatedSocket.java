@@ -0,0 +1,177 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.jmeter.protocol.tcp.link;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.net.SocketException;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Socket emulating the latency, bandwidth, losses and resets of a slow link, in the manner of
+ * {@link org.apache.jmeter.util.SlowSocket}.
+ * <p>
+ * The bytes written are queued in an {@link Uplink} and delivered by the shared
+ * {@link LinkScheduler}, so the writing thread does not wait for them. The bytes read are
+ * handed over once they would have crossed the link, the reading thread waits for them as it
+ * would for the server.
+ */
+final class EmulatedSocket extends Socket {
+    private static final Logger log = LoggerFactory.getLogger(EmulatedSocket.class);
+
+    private final LinkConditions conditions;
+
+    private OutputStream output;
+
+    private InputStream input;
+
+    private Uplink uplink;
+
+    EmulatedSocket(LinkConditions conditions) {
+        super();
+        this.conditions = conditions;
+    }
+
+    // Override so we can intercept the stream
+    @Override
+    public synchronized OutputStream getOutputStream() throws IOException {
+        if (output == null) {
+            uplink = new Uplink(super.getOutputStream(), conditions);
+            output = new EmulatedOutputStream();
+            if (log.isDebugEnabled()) {
+                log.debug("Emulating {} on {}", conditions, this);
+            }
+        }
+        return output;
+    }
+
+    // Override so we can intercept the stream
+    @Override
+    public synchronized InputStream getInputStream() throws IOException {
+        if (input == null) {
+            input = new EmulatedInputStream(super.getInputStream());
+        }
+        return input;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (uplink != null) {
+            uplink.close();
+        }
+        super.close();
+    }
+
+    /**
+     * Abort the connection with a RST, as a mobile network dropping the device would.
+     */
+    private SocketException reset() {
+        try {
+            setSoLinger(true, 0);
+            close();
+        } catch (IOException e) {
+            log.debug("Error resetting {}", this, e);
+        }
+        return new SocketException("Connection reset (emulated)"); //$NON-NLS-1$
+    }
+
+    private final class EmulatedOutputStream extends OutputStream {
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[] { (byte) b }, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            if (conditions.drawReset()) {
+                throw reset();
+            }
+            uplink.write(b, off, len);
+        }
+
+        @Override
+        public void close() throws IOException {
+            EmulatedSocket.this.close();
+        }
+    }
+
+    private final class EmulatedInputStream extends FilterInputStream {
+
+        /** {@link System#nanoTime()} at which the last bytes read are transmitted */
+        private long transmittedNanos = System.nanoTime();
+
+        /** Time at which the last bytes read are handed over, the later ones do not overtake them */
+        private long lastDueNanos;
+
+        private EmulatedInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = in.read();
+            if (b >= 0) {
+                received(1);
+            }
+            return b;
+        }
+
+        // Also handles read(byte[])
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int read = in.read(b, off, len);
+            if (read > 0) {
+                received(read);
+            }
+            return read;
+        }
+
+        /**
+         * Wait until the bytes just read would have crossed the link.
+         */
+        private void received(int bytes) throws InterruptedIOException {
+            long now = System.nanoTime();
+            transmittedNanos = Math.max(now, transmittedNanos) + conditions.transmitNanos(bytes);
+            long due = Math.max(lastDueNanos,
+                    transmittedNanos + conditions.getLatencyNanos() + conditions.drawLossDelay());
+            lastDueNanos = due;
+            long wait = due - now;
+            if (wait > 0) {
+                try {
+                    TimeUnit.NANOSECONDS.sleep(wait);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("Interrupted reading the emulated link"); //$NON-NLS-1$
+                }
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            EmulatedSocket.this.close();
+        }
+    }
+}
@@ -0,0 +1,95 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.jmeter.protocol.tcp.link;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Network conditions of one emulated connection, the same in both directions.
+ */
+final class LinkConditions {
+
+    private final long latencyNanos;
+
+    /** Transmission time of a byte, 0 for no bandwidth limit */
+    private final long nanosPerByte;
+
+    private final double loss;
+
+    private final long lossDelayNanos;
+
+    private final double reset;
+
+    private final int bufferBytes;
+
+    /**
+     * @param latencyMillis one-way delay in milliseconds
+     * @param bytesPerSecond bandwidth in bytes per second, 0 for no limit
+     * @param loss probability that a segment is lost and retransmitted
+     * @param lossDelayMillis delay added by a retransmission in milliseconds
+     * @param reset probability that a write resets the connection
+     * @param bufferBytes bytes written and not yet delivered before writes block
+     */
+    LinkConditions(long latencyMillis, long bytesPerSecond, double loss, long lossDelayMillis,
+            double reset, int bufferBytes) {
+        this.latencyNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, latencyMillis));
+        this.nanosPerByte = bytesPerSecond > 0 ? Math.max(1, TimeUnit.SECONDS.toNanos(1) / bytesPerSecond) : 0;
+        this.loss = loss;
+        this.lossDelayNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, lossDelayMillis));
+        this.reset = reset;
+        this.bufferBytes = Math.max(1, bufferBytes);
+    }
+
+    long getLatencyNanos() {
+        return latencyNanos;
+    }
+
+    /**
+     * @param bytes number of bytes
+     * @return time to transmit them in nanoseconds
+     */
+    long transmitNanos(int bytes) {
+        return bytes * nanosPerByte;
+    }
+
+    /**
+     * @return retransmission delay of a segment, 0 unless it is lost
+     */
+    long drawLossDelay() {
+        return loss > 0 && ThreadLocalRandom.current().nextDouble() < loss ? lossDelayNanos : 0;
+    }
+
+    /**
+     * @return <code>true</code> if the connection is reset on this write
+     */
+    boolean drawReset() {
+        return reset > 0 && ThreadLocalRandom.current().nextDouble() < reset;
+    }
+
+    int getBufferBytes() {
+        return bufferBytes;
+    }
+
+    @Override
+    public String toString() {
+        return "LinkConditions[latency=" + TimeUnit.NANOSECONDS.toMillis(latencyNanos) //$NON-NLS-1$
+                + "ms, bandwidth=" + (nanosPerByte == 0 ? "unlimited" : TimeUnit.SECONDS.toNanos(1) / nanosPerByte + "B/s") //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+                + ", loss=" + loss + ", reset=" + reset + "]"; //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+    }
+}
@@ -0,0 +1,128 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.jmeter.protocol.tcp.link;
+
+import java.net.Socket;
+import java.util.concurrent.ThreadLocalRandom;
+
+import org.apache.jmeter.util.JMeterUtils;
+
+/**
+ * Network conditions emulated on the connections of the TCP samplers, to load a server
+ * with devices on slow mobile links from a generator on a fast LAN.
+ * <p>
+ * Every connection draws its own one-way latency and bandwidth, uniformly within
+ * <code>tcp.link.latency</code> &plusmn; <code>tcp.link.latency.jitter</code> milliseconds and
+ * <code>tcp.link.bandwidth</code> &plusmn; <code>tcp.link.bandwidth.jitter</code> bytes per second.
+ * Each segment is lost with probability <code>tcp.link.loss</code>, which delays it by
+ * <code>tcp.link.loss.delay</code> milliseconds as a retransmission would, and each write resets
+ * the connection with probability <code>tcp.link.reset</code>.
+ * Nothing is emulated when all of them are 0, the default.
+ * <p>
+ * Only the sockets of the TCP and Tracker TCP samplers are emulated, the non-blocking channels
+ * of the Tracker Fleet and UDP samplers are not.
+ */
+public final class LinkProfile {
+
+    private static final LinkProfile DEFAULT = new LinkProfile(
+            JMeterUtils.getPropDefault("tcp.link.latency", 0L), //$NON-NLS-1$
+            JMeterUtils.getPropDefault("tcp.link.latency.jitter", 0L), //$NON-NLS-1$
+            JMeterUtils.getPropDefault("tcp.link.bandwidth", 0L), //$NON-NLS-1$
+            JMeterUtils.getPropDefault("tcp.link.bandwidth.jitter", 0L), //$NON-NLS-1$
+            JMeterUtils.getPropDefault("tcp.link.loss", 0d), //$NON-NLS-1$
+            JMeterUtils.getPropDefault("tcp.link.loss.delay", 1000L), //$NON-NLS-1$
+            JMeterUtils.getPropDefault("tcp.link.reset", 0d), //$NON-NLS-1$
+            JMeterUtils.getPropDefault("tcp.link.buffer", 65536)); //$NON-NLS-1$
+
+    private final long latencyMillis;
+
+    private final long latencyJitterMillis;
+
+    private final long bandwidth;
+
+    private final long bandwidthJitter;
+
+    private final double loss;
+
+    private final long lossDelayMillis;
+
+    private final double reset;
+
+    private final int bufferBytes;
+
+    LinkProfile(long latencyMillis, long latencyJitterMillis, long bandwidth, long bandwidthJitter,
+            double loss, long lossDelayMillis, double reset, int bufferBytes) {
+        this.latencyMillis = latencyMillis;
+        this.latencyJitterMillis = latencyJitterMillis;
+        this.bandwidth = bandwidth;
+        this.bandwidthJitter = bandwidthJitter;
+        this.loss = loss;
+        this.lossDelayMillis = lossDelayMillis;
+        this.reset = reset;
+        this.bufferBytes = bufferBytes;
+    }
+
+    /**
+     * @return <code>true</code> if the connections are not emulated as is
+     */
+    boolean isEnabled() {
+        return latencyMillis > 0 || bandwidth > 0 || loss > 0 || reset > 0;
+    }
+
+    /**
+     * Create an unconnected socket, emulating the configured network conditions if any.
+     *
+     * @return a new socket, to be connected by the caller
+     */
+    public static Socket newSocket() {
+        return DEFAULT.isEnabled() ? new EmulatedSocket(DEFAULT.draw()) : new Socket();
+    }
+
+    /**
+     * @return identity of the emulated conditions, connections opened under different
+     *         conditions must not be shared
+     */
+    public static String getKey() {
+        return DEFAULT.toString();
+    }
+
+    @Override
+    public String toString() {
+        if (!isEnabled()) {
+            return "direct"; //$NON-NLS-1$
+        }
+        return "latency=" + latencyMillis + "~" + latencyJitterMillis //$NON-NLS-1$ //$NON-NLS-2$
+                + ",bandwidth=" + bandwidth + "~" + bandwidthJitter //$NON-NLS-1$ //$NON-NLS-2$
+                + ",loss=" + loss + "/" + lossDelayMillis //$NON-NLS-1$ //$NON-NLS-2$
+                + ",reset=" + reset + ",buffer=" + bufferBytes; //$NON-NLS-1$ //$NON-NLS-2$
+    }
+
+    /**
+     * @return the conditions of a new connection
+     */
+    LinkConditions draw() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        long latency = latencyMillis + spread(random, latencyJitterMillis);
+        long bytesPerSecond = bandwidth > 0 ? Math.max(1, bandwidth + spread(random, bandwidthJitter)) : 0;
+        return new LinkConditions(latency, bytesPerSecond, loss, lossDelayMillis, reset, bufferBytes);
+    }
+
+    private static long spread(ThreadLocalRandom random, long jitter) {
+        return jitter > 0 ? random.nextLong(-jitter, jitter + 1) : 0;
+    }
+}
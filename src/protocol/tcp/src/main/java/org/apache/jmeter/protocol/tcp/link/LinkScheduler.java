@@ -0,0 +1,117 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.jmeter.protocol.tcp.link;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+import org.apache.jmeter.protocol.tcp.schedule.TimingWheel;
+import org.apache.jmeter.util.JMeterUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Single thread delivering the bytes of all emulated connections when they are due.
+ * <p>
+ * Pending {@link Uplink}s wait in a {@link TimingWheel} with a 1 ms tick, so the cost does not
+ * depend on the number of connections. Due uplinks are written to their sockets by a pool of
+ * at most <code>tcp.link.writers</code> threads. A server which stops reading blocks the writer
+ * of its connection once the socket buffers are full; the uplinks of the other connections are
+ * delivered late only when all the writers are blocked.
+ */
+final class LinkScheduler implements Runnable {
+    private static final Logger log = LoggerFactory.getLogger(LinkScheduler.class);
+
+    private static final class Holder {
+        private static final LinkScheduler INSTANCE = new LinkScheduler();
+    }
+
+    private static final int WRITERS = Math.max(1, JMeterUtils.getPropDefault("tcp.link.writers", //$NON-NLS-1$
+            2 * Runtime.getRuntime().availableProcessors()));
+
+    private final Queue<Uplink> submitted = new ConcurrentLinkedQueue<>();
+
+    /** Only used by the scheduler thread */
+    private final TimingWheel<Uplink> wheel = new TimingWheel<>(1, nowMillis());
+
+    private final ThreadPoolExecutor writers;
+
+    private final Thread thread;
+
+    private LinkScheduler() {
+        AtomicInteger count = new AtomicInteger();
+        this.writers = new ThreadPoolExecutor(WRITERS, WRITERS, 60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), r -> {
+                    Thread writer = new Thread(r, "TcpLinkWriter-" + count.incrementAndGet()); //$NON-NLS-1$
+                    writer.setDaemon(true);
+                    return writer;
+                });
+        this.writers.allowCoreThreadTimeOut(true);
+        this.thread = new Thread(this, "TcpLinkScheduler"); //$NON-NLS-1$
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    static LinkScheduler getInstance() {
+        return Holder.INSTANCE;
+    }
+
+    /**
+     * Deliver an uplink at its {@link Uplink#getDueNanos() due time}, from any thread.
+     * An uplink is scheduled again only once it was delivered.
+     *
+     * @param uplink the uplink
+     */
+    void schedule(Uplink uplink) {
+        submitted.add(uplink);
+        LockSupport.unpark(thread);
+    }
+
+    private static long nowMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime());
+    }
+
+    @Override
+    public void run() {
+        while (true) {
+            try {
+                Uplink uplink;
+                while ((uplink = submitted.poll()) != null) {
+                    // round up, the writer finds the bytes due
+                    wheel.schedule(uplink, TimeUnit.NANOSECONDS.toMillis(uplink.getDueNanos() + 999_999));
+                }
+                wheel.advance(nowMillis(), writers::execute);
+                if (!submitted.isEmpty()) {
+                    continue;
+                }
+                if (wheel.size() == 0) {
+                    LockSupport.park(this);
+                } else {
+                    LockSupport.parkNanos(this, TimeUnit.MILLISECONDS.toNanos(wheel.nextTickMillis() - nowMillis()));
+                }
+            } catch (RuntimeException e) {
+                log.error("Unexpected failure delivering emulated link data", e);
+            }
+        }
+    }
+}
@@ -0,0 +1,187 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.jmeter.protocol.tcp.link;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.net.SocketException;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+
+import org.apache.jmeter.protocol.tcp.schedule.TimingWheel;
+
+/**
+ * Bytes written on an emulated connection and not yet delivered to the server.
+ * <p>
+ * A write returns once the bytes are queued, as it would once they are in the send buffer of a
+ * real socket, unless {@link LinkConditions#getBufferBytes()} bytes are already waiting.
+ * The bytes are due once transmitted at the bandwidth of the link, after the bytes written
+ * before, and carried with its latency. They are delivered in order by the {@link LinkScheduler}.
+ */
+final class Uplink extends TimingWheel.Timeout implements Runnable {
+
+    private static final class Chunk {
+        private final byte[] bytes;
+        private final long dueNanos;
+
+        private Chunk(byte[] bytes, long dueNanos) {
+            this.bytes = bytes;
+            this.dueNanos = dueNanos;
+        }
+    }
+
+    private final OutputStream out;
+
+    private final LinkConditions conditions;
+
+    private final ArrayDeque<Chunk> chunks = new ArrayDeque<>();
+
+    private int queuedBytes;
+
+    /** {@link System#nanoTime()} at which the last chunk is transmitted */
+    private long transmittedNanos = System.nanoTime();
+
+    /** Due time of the last chunk, the later ones do not overtake it */
+    private long lastDueNanos;
+
+    /** The first chunk is scheduled or being delivered */
+    private boolean pending;
+
+    private long dueNanos;
+
+    private IOException failure;
+
+    private boolean closed;
+
+    /**
+     * @param out the stream of the socket
+     * @param conditions the conditions of the link
+     */
+    Uplink(OutputStream out, LinkConditions conditions) {
+        this.out = out;
+        this.conditions = conditions;
+    }
+
+    /**
+     * Queue bytes for the server.
+     *
+     * @param b the bytes
+     * @param off offset of the first byte
+     * @param len number of bytes
+     * @throws IOException if an earlier delivery failed or the connection is closed
+     */
+    synchronized void write(byte[] b, int off, int len) throws IOException {
+        if (len == 0) {
+            return;
+        }
+        // a write larger than the buffer is queued alone
+        while (queuedBytes > 0 && queuedBytes + len > conditions.getBufferBytes()) {
+            checkOpen();
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted waiting for the emulated link"); //$NON-NLS-1$
+            }
+        }
+        checkOpen();
+        long now = System.nanoTime();
+        transmittedNanos = Math.max(now, transmittedNanos) + conditions.transmitNanos(len);
+        long due = transmittedNanos + conditions.getLatencyNanos() + conditions.drawLossDelay();
+        if (due - lastDueNanos < 0 && !chunks.isEmpty()) {
+            due = lastDueNanos;
+        }
+        lastDueNanos = due;
+        chunks.add(new Chunk(Arrays.copyOfRange(b, off, off + len), due));
+        queuedBytes += len;
+        if (!pending) {
+            pending = true;
+            dueNanos = due;
+            LinkScheduler.getInstance().schedule(this);
+        }
+    }
+
+    private void checkOpen() throws IOException {
+        if (failure != null) {
+            throw new SocketException(failure.getMessage());
+        }
+        if (closed) {
+            throw new SocketException("Socket is closed"); //$NON-NLS-1$
+        }
+    }
+
+    /**
+     * @return {@link System#nanoTime()} at which the first chunk is due
+     */
+    synchronized long getDueNanos() {
+        return dueNanos;
+    }
+
+    /**
+     * Drop the bytes not delivered yet.
+     */
+    synchronized void close() {
+        closed = true;
+        chunks.clear();
+        queuedBytes = 0;
+        notifyAll();
+    }
+
+    /**
+     * Deliver the chunks which are due, called by a writer of the {@link LinkScheduler}.
+     */
+    @Override
+    public void run() {
+        while (true) {
+            Chunk chunk;
+            synchronized (this) {
+                chunk = chunks.peek();
+                if (chunk == null) {
+                    pending = false;
+                    return;
+                }
+                if (chunk.dueNanos - System.nanoTime() > 0) {
+                    dueNanos = chunk.dueNanos;
+                    LinkScheduler.getInstance().schedule(this);
+                    return;
+                }
+                chunks.poll();
+            }
+            try {
+                out.write(chunk.bytes);
+                out.flush();
+            } catch (IOException e) {
+                synchronized (this) {
+                    failure = e;
+                    chunks.clear();
+                    queuedBytes = 0;
+                    pending = false;
+                    notifyAll();
+                }
+                return;
+            }
+            synchronized (this) {
+                if (!closed) {
+                    queuedBytes -= chunk.bytes.length;
+                }
+                notifyAll();
+            }
+        }
+    }
+}
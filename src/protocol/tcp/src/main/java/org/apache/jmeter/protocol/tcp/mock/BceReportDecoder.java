@@ -0,0 +1,66 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.jmeter.protocol.tcp.mock;
+
+import java.nio.ByteBuffer;
+
+import org.apache.jmeter.protocol.tcp.codec.DeviceSession;
+import org.apache.jmeter.protocol.tcp.codec.FrameDecoder;
+import org.apache.jmeter.protocol.tcp.sampler.BCETCPSampler;
+import org.apache.jmeter.protocol.tcp.sampler.BceFrameTemplate;
+
+/**
+ * Splits what BCE units send: the login marker sent when they connect is a frame
+ * of its own, reports are framed by the data length following their IMEI. Reports
+ * received in one read and reports holding several records are split as they were sent.
+ */
+final class BceReportDecoder implements FrameDecoder {
+
+    static final byte[] LOGIN = BCETCPSampler.hexStringToByteArray(BCETCPSampler.LOGIN_PREFIX);
+
+    @Override
+    public int frameLength(ByteBuffer in, DeviceSession session) {
+        if (startsWithLogin(in)) {
+            return in.remaining() >= LOGIN.length ? LOGIN.length : 0;
+        }
+        int length = BceFrameTemplate.frameLength(in);
+        return in.remaining() >= length ? length : 0;
+    }
+
+    /**
+     * @return <code>true</code> if the buffered bytes are the login marker or the start of it
+     */
+    private static boolean startsWithLogin(ByteBuffer in) {
+        int position = in.position();
+        int length = Math.min(in.remaining(), LOGIN.length);
+        for (int i = 0; i < length; i++) {
+            if (in.get(position + i) != LOGIN[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @param frame a frame returned by this decoder
+     * @return <code>true</code> if it is the login marker
+     */
+    static boolean isLogin(ByteBuffer frame) {
+        return frame.remaining() == LOGIN.length && startsWithLogin(frame);
+    }
+}
@@ -0,0 +1,171 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.jmeter.protocol.tcp.mock;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+
+import org.apache.jmeter.protocol.tcp.codec.FrameReader;
+import org.apache.jmeter.protocol.tcp.sampler.BceFrameTemplate;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A unit connected to the {@link MockTrackerServer}, only used by the thread of its
+ * {@link MockTrackerLoop}.
+ */
+final class MockTrackerConnection {
+    private static final Logger log = LoggerFactory.getLogger(MockTrackerConnection.class);
+
+    private static final int READ_BUFFER_SIZE = 256;
+
+    /** ACKs which can be queued for a unit that does not read them */
+    private static final int PENDING_ACKS = 16;
+
+    private final MockTrackerLoop loop;
+
+    private final MockTrackerServer server;
+
+    private final SocketChannel channel;
+
+    private final FrameReader reader;
+
+    private SelectionKey key;
+
+    /** ACKs not written yet, allocated when the socket buffer is first full */
+    private ByteBuffer outbound;
+
+    MockTrackerConnection(MockTrackerLoop loop, SocketChannel channel) {
+        this.loop = loop;
+        this.server = loop.getServer();
+        this.channel = channel;
+        this.reader = new FrameReader(server.getFrameDecoder(), READ_BUFFER_SIZE);
+    }
+
+    void setKey(SelectionKey key) {
+        this.key = key;
+    }
+
+    boolean isOpen() {
+        return channel.isOpen();
+    }
+
+    /**
+     * Read what the unit sent and handle the complete frames.
+     *
+     * @throws IOException when the connection fails
+     */
+    void read() throws IOException {
+        int read = reader.read(channel);
+        if (read < 0) {
+            close();
+            return;
+        }
+        server.bytesReceived(read);
+        ByteBuffer frame;
+        while (channel.isOpen() && (frame = reader.nextFrame(null)) != null) {
+            received(frame);
+        }
+    }
+
+    private void received(ByteBuffer frame) throws IOException {
+        if (BceReportDecoder.isLogin(frame)) {
+            server.loginReceived();
+            return;
+        }
+        if (server.isChecksumChecked() && !BceFrameTemplate.isChecksumValid(frame)) {
+            log.debug("{} Bad checksum", this);
+            server.badFrameReceived();
+            return;
+        }
+        server.frameReceived();
+        if (server.isAckDropped()) {
+            server.ackDropped();
+            return;
+        }
+        long delay = server.nextAckDelay();
+        if (delay > 0) {
+            loop.scheduleAck(this, System.nanoTime() + delay);
+        } else {
+            sendAck();
+        }
+    }
+
+    /**
+     * Write an ACK, or queue it until the unit reads the previous ones.
+     *
+     * @throws IOException when the connection fails or the unit does not read its ACKs
+     */
+    void sendAck() throws IOException {
+        byte[] ack = server.getAck();
+        if (outbound == null || outbound.position() == 0) {
+            ByteBuffer src = ByteBuffer.wrap(ack);
+            channel.write(src);
+            if (!src.hasRemaining()) {
+                server.ackSent();
+                return;
+            }
+            if (outbound == null) {
+                outbound = ByteBuffer.allocate(PENDING_ACKS * ack.length);
+            }
+            outbound.put(src);
+            key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+        } else if (outbound.remaining() >= ack.length) {
+            outbound.put(ack);
+        } else {
+            throw new IOException("Unit does not read its ACKs");
+        }
+        server.ackSent();
+    }
+
+    /**
+     * Write the queued ACKs.
+     *
+     * @throws IOException when the connection fails
+     */
+    void flush() throws IOException {
+        outbound.flip();
+        channel.write(outbound);
+        outbound.compact();
+        if (outbound.position() == 0) {
+            key.interestOps(SelectionKey.OP_READ);
+        }
+    }
+
+    void close() {
+        if (!channel.isOpen()) {
+            return;
+        }
+        if (key != null) {
+            key.cancel();
+        }
+        try {
+            channel.close();
+        } catch (IOException e) {
+            log.debug("{} Error closing connection", this, e);
+        }
+        server.disconnected();
+    }
+
+    @Override
+    public String toString() {
+        return "MockTrackerConnection[" + channel + "]"; //$NON-NLS-1$
+    }
+}
@@ -0,0 +1,216 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.jmeter.protocol.tcp.mock;
+
+import java.io.IOException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+import java.util.PriorityQueue;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Selector thread serving a share of the connections of a {@link MockTrackerServer}.
+ * <p>
+ * The acceptor hands the accepted connections over with {@link #register(SocketChannel)},
+ * they are then only touched from this thread. Delayed ACKs are kept in a timer queue
+ * so no connection ever blocks the loop.
+ */
+final class MockTrackerLoop implements Runnable {
+    private static final Logger log = LoggerFactory.getLogger(MockTrackerLoop.class);
+
+    private static final class PendingAck implements Comparable<PendingAck> {
+        private final long due;
+        private final MockTrackerConnection connection;
+
+        private PendingAck(long due, MockTrackerConnection connection) {
+            this.due = due;
+            this.connection = connection;
+        }
+
+        @Override
+        public int compareTo(PendingAck other) {
+            return Long.compare(due, other.due);
+        }
+    }
+
+    private final MockTrackerServer server;
+
+    private final Selector selector;
+
+    private final Thread thread;
+
+    private final Queue<SocketChannel> registrations = new ConcurrentLinkedQueue<>();
+
+    private final PriorityQueue<PendingAck> pendingAcks = new PriorityQueue<>();
+
+    private volatile boolean running = true;
+
+    MockTrackerLoop(MockTrackerServer server, int index) throws IOException {
+        this.server = server;
+        this.selector = Selector.open();
+        this.thread = new Thread(this, "MockTracker-" + index); //$NON-NLS-1$
+        this.thread.setDaemon(true);
+    }
+
+    void start() {
+        thread.start();
+    }
+
+    void shutdown() {
+        running = false;
+        if (!thread.isAlive()) {
+            closeAll();
+            return;
+        }
+        selector.wakeup();
+        try {
+            thread.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Hand an accepted connection over to this loop, may be called from any thread.
+     *
+     * @param channel the connection
+     */
+    void register(SocketChannel channel) {
+        registrations.add(channel);
+        selector.wakeup();
+    }
+
+    /**
+     * Send an ACK later, must be called from the loop thread.
+     *
+     * @param connection the connection to send the ACK on
+     * @param due {@link System#nanoTime()} at which to send it
+     */
+    void scheduleAck(MockTrackerConnection connection, long due) {
+        pendingAcks.add(new PendingAck(due, connection));
+    }
+
+    MockTrackerServer getServer() {
+        return server;
+    }
+
+    @Override
+    public void run() {
+        log.debug("Event loop started");
+        try {
+            while (running) {
+                registerConnections();
+                long now = sendDueAcks(System.nanoTime());
+                PendingAck next = pendingAcks.peek();
+                long timeout = next == null ? 0 : Math.max(1, TimeUnit.NANOSECONDS.toMillis(next.due - now));
+                selector.select(timeout);
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    handle(key);
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            log.error("Event loop failed", e);
+        } finally {
+            closeAll();
+        }
+    }
+
+    private void registerConnections() {
+        SocketChannel channel;
+        while ((channel = registrations.poll()) != null) {
+            MockTrackerConnection connection = new MockTrackerConnection(this, channel);
+            try {
+                channel.configureBlocking(false);
+                channel.socket().setTcpNoDelay(true);
+                connection.setKey(channel.register(selector, SelectionKey.OP_READ, connection));
+                server.connected();
+            } catch (IOException e) {
+                log.debug("Could not register {}", connection, e);
+                try {
+                    channel.close();
+                } catch (IOException ignored) {
+                    // NOOP
+                }
+            }
+        }
+    }
+
+    private long sendDueAcks(long now) {
+        PendingAck ack;
+        while ((ack = pendingAcks.peek()) != null && ack.due - now <= 0) {
+            pendingAcks.poll();
+            MockTrackerConnection connection = ack.connection;
+            if (!connection.isOpen()) {
+                continue;
+            }
+            try {
+                connection.sendAck();
+            } catch (IOException e) {
+                log.debug("Could not send ACK on {}", connection, e);
+                connection.close();
+            }
+            now = System.nanoTime();
+        }
+        return now;
+    }
+
+    private void handle(SelectionKey key) {
+        MockTrackerConnection connection = (MockTrackerConnection) key.attachment();
+        try {
+            if (key.isValid() && key.isWritable()) {
+                connection.flush();
+            }
+            if (key.isValid() && key.isReadable()) {
+                connection.read();
+            }
+        } catch (IOException e) {
+            log.debug("I/O failure on {}", connection, e);
+            connection.close();
+        }
+    }
+
+    private void closeAll() {
+        for (SelectionKey key : selector.keys()) {
+            ((MockTrackerConnection) key.attachment()).close();
+        }
+        SocketChannel channel;
+        while ((channel = registrations.poll()) != null) {
+            try {
+                channel.close();
+            } catch (IOException ignored) {
+                // NOOP
+            }
+        }
+        try {
+            selector.close();
+        } catch (IOException e) {
+            log.debug("Error closing selector", e);
+        }
+        log.debug("Event loop stopped");
+    }
+}
@@ -0,0 +1,512 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.jmeter.protocol.tcp.mock;
+
+import java.io.IOException;
+import java.net.BindException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.apache.commons.cli.avalon.CLArgsParser;
+import org.apache.commons.cli.avalon.CLOption;
+import org.apache.commons.cli.avalon.CLOptionDescriptor;
+import org.apache.commons.cli.avalon.CLUtil;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.jmeter.gui.Stoppable;
+import org.apache.jmeter.protocol.tcp.codec.FrameDecoder;
+import org.apache.jmeter.protocol.tcp.sampler.BCETCPSampler;
+import org.apache.jmeter.protocol.tcp.sampler.BceFrameTemplate;
+import org.apache.jmeter.testelement.NonTestElement;
+import org.apache.jorphan.util.JOrphanUtils;
+import org.apache.logging.log4j.Level;
+import org.apache.logging.log4j.core.config.Configurator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Mock BCE ingest server, to benchmark the tracker samplers without a real backend.
+ * <p>
+ * Connections are accepted by this thread and spread over a few {@link MockTrackerLoop}
+ * selector threads, so tens of thousands of units can stay connected. Every report
+ * received is answered with a configurable ACK, after an optional delay and jitter,
+ * and a share of the ACKs can be dropped. The number of frames received per second
+ * is logged periodically.
+ */
+public class MockTrackerServer extends Thread implements Stoppable, NonTestElement {
+
+    public static final int DEFAULT_PORT = 5055;
+
+    /** Hex of the ACK sent by default */
+    public static final String DEFAULT_ACK = "01"; //$NON-NLS-1$
+
+    private static final int HELP_OPT_ID = '?';// $NON-NLS-1$
+    private static final int PORT_OPT_ID = 'P';// $NON-NLS-1$
+    private static final int SIGNAL_OPT_ID = 's';// $NON-NLS-1$
+    private static final int ACK_OPT_ID = 'a';// $NON-NLS-1$
+    private static final int DELAY_OPT_ID = 'd';// $NON-NLS-1$
+    private static final int JITTER_OPT_ID = 'j';// $NON-NLS-1$
+    private static final int DROP_OPT_ID = 'D';// $NON-NLS-1$
+    private static final int THREADS_OPT_ID = 't';// $NON-NLS-1$
+    private static final int INTERVAL_OPT_ID = 'i';// $NON-NLS-1$
+    private static final int LOGLEVEL_OPT_ID = 'L';// $NON-NLS-1$
+
+    /* Define the understood command line flags. */
+    private static final CLOptionDescriptor[] options = new CLOptionDescriptor[]{
+            new CLOptionDescriptor("?",
+                    CLOptionDescriptor.ARGUMENT_DISALLOWED,
+                    HELP_OPT_ID,
+                    "print command line options and exit"),
+            new CLOptionDescriptor("port",
+                    CLOptionDescriptor.ARGUMENT_REQUIRED,
+                    PORT_OPT_ID,
+                    "Set server port to listen on, default " + DEFAULT_PORT),
+            new CLOptionDescriptor("signal",
+                    CLOptionDescriptor.ARGUMENT_REQUIRED,
+                    SIGNAL_OPT_ID,
+                    "Demo signal the reports are built from, to check their checksums"),
+            new CLOptionDescriptor("ack",
+                    CLOptionDescriptor.ARGUMENT_REQUIRED,
+                    ACK_OPT_ID,
+                    "Hex-encoded ACK sent for every report, default " + DEFAULT_ACK),
+            new CLOptionDescriptor("delay",
+                    CLOptionDescriptor.ARGUMENT_REQUIRED,
+                    DELAY_OPT_ID,
+                    "Delay of the ACKs in milliseconds"),
+            new CLOptionDescriptor("jitter",
+                    CLOptionDescriptor.ARGUMENT_REQUIRED,
+                    JITTER_OPT_ID,
+                    "Random delay added to the ACKs, up to this many milliseconds"),
+            new CLOptionDescriptor("drop",
+                    CLOptionDescriptor.ARGUMENT_REQUIRED,
+                    DROP_OPT_ID,
+                    "Percentage of the reports which are not acknowledged"),
+            new CLOptionDescriptor("threads",
+                    CLOptionDescriptor.ARGUMENT_REQUIRED,
+                    THREADS_OPT_ID,
+                    "Number of selector threads, default is the number of processors"),
+            new CLOptionDescriptor("interval",
+                    CLOptionDescriptor.ARGUMENT_REQUIRED,
+                    INTERVAL_OPT_ID,
+                    "Seconds between statistics, 0 to disable, default 10"),
+            new CLOptionDescriptor("loglevel",
+                    CLOptionDescriptor.DUPLICATES_ALLOWED | CLOptionDescriptor.ARGUMENTS_REQUIRED_2,
+                    LOGLEVEL_OPT_ID,
+                    "[category=]level e.g. INFO or DEBUG"),
+    };
+
+    /**
+     * The time (in milliseconds) to wait for a connection before checking whether the
+     * server was stopped or the statistics are due.
+     */
+    private static final int ACCEPT_TIMEOUT = 1000;
+
+    /** Pending connections queued by the OS, sized for reconnect storms */
+    private static final int BACKLOG = 4096;
+
+    /** Initialization On Demand Holder pattern */
+    private static class LazyHolder {
+        public static final Logger LOGGER = LoggerFactory.getLogger(MockTrackerServer.class);
+    }
+
+    private volatile boolean isRunning;
+
+    // Saves the error if one occurs
+    private volatile Exception except;
+
+    private volatile int localPort;
+
+    private final int daemonPort;
+
+    private static final FrameDecoder FRAME_DECODER = new BceReportDecoder();
+
+    private boolean checksumChecked;
+
+    private byte[] ack = BCETCPSampler.hexStringToByteArray(DEFAULT_ACK);
+
+    private volatile long ackDelay;
+
+    private volatile long ackJitter;
+
+    private volatile double dropRate;
+
+    private int threads = Runtime.getRuntime().availableProcessors();
+
+    private long statisticsInterval = TimeUnit.SECONDS.toNanos(10);
+
+    private final AtomicInteger connections = new AtomicInteger();
+
+    private final LongAdder bytesReceived = new LongAdder();
+
+    private final LongAdder logins = new LongAdder();
+
+    private final LongAdder framesReceived = new LongAdder();
+
+    private final LongAdder badFrames = new LongAdder();
+
+    private final LongAdder acksSent = new LongAdder();
+
+    private final LongAdder acksDropped = new LongAdder();
+
+    /**
+     * Create a new server listening on the specified port, it is configured with
+     * the setters before being started.
+     *
+     * @param port the port to listen on, 0 for any free port
+     */
+    public MockTrackerServer(int port) {
+        super("MockTrackerServer");
+        this.daemonPort = port;
+    }
+
+    /**
+     * Accept connections and hand them over to the event loops. This method will
+     * not exit until {@link #stopServer()} is called or an error occurs.
+     */
+    @Override
+    public void run() {
+        except = null;
+        isRunning = true;
+        MockTrackerLoop[] loops = new MockTrackerLoop[Math.max(1, threads)];
+        try (ServerSocketChannel serverChannel = ServerSocketChannel.open();
+                Selector selector = Selector.open()) {
+            getLogger().info("Creating MockTrackerServer ... on port {}", daemonPort);
+            serverChannel.setOption(StandardSocketOptions.SO_REUSEADDR, Boolean.TRUE);
+            serverChannel.bind(new InetSocketAddress(daemonPort), BACKLOG);
+            serverChannel.configureBlocking(false);
+            serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+            for (int i = 0; i < loops.length; i++) {
+                loops[i] = new MockTrackerLoop(this, i);
+                loops[i].start();
+            }
+            localPort = serverChannel.socket().getLocalPort();
+            getLogger().info("MockTrackerServer up and running on port {} with {} event loops, "
+                    + "checksums checked={}, ack={}, delay={}ms, jitter={}ms, drop={}%",
+                    localPort, loops.length, checksumChecked, JOrphanUtils.baToHexString(ack),
+                    ackDelay, ackJitter, dropRate * 100);
+            long lastStatistics = System.nanoTime();
+            long lastFrames = 0;
+            int next = 0;
+            while (isRunning) {
+                selector.select(ACCEPT_TIMEOUT);
+                selector.selectedKeys().clear();
+                SocketChannel channel;
+                while ((channel = serverChannel.accept()) != null) {
+                    loops[next].register(channel);
+                    next = (next + 1) % loops.length;
+                }
+                long now = System.nanoTime();
+                if (statisticsInterval > 0 && now - lastStatistics >= statisticsInterval) {
+                    long frames = framesReceived.sum();
+                    logStatistics((frames - lastFrames) * TimeUnit.SECONDS.toNanos(1) / (now - lastStatistics));
+                    lastStatistics = now;
+                    lastFrames = frames;
+                }
+            }
+            getLogger().info("MockTrackerServer stopped");
+        } catch (BindException e) {
+            except = e;
+            getLogger().warn("Could not bind MockTrackerServer to port {}. Maybe there is already a server running?",
+                    daemonPort);
+        } catch (Exception e) {
+            except = e;
+            getLogger().warn("MockTrackerServer stopped", e);
+        } finally {
+            for (MockTrackerLoop loop : loops) {
+                if (loop != null) {
+                    loop.shutdown();
+                }
+            }
+            localPort = 0;
+            logStatistics(-1);
+        }
+    }
+
+    private void logStatistics(long framesPerSecond) {
+        getLogger().info("{} frames/s, received={} frames ({} bytes), logins={}, bad frames={}, "
+                + "ACKs sent={}, ACKs dropped={}, connections={}",
+                framesPerSecond < 0 ? "-" : Long.toString(framesPerSecond), framesReceived.sum(),
+                bytesReceived.sum(), logins.sum(), badFrames.sum(), acksSent.sum(), acksDropped.sum(),
+                connections.get());
+    }
+
+    @Override
+    public void stopServer() {
+        isRunning = false;
+    }
+
+    public Exception getException() {
+        return except;
+    }
+
+    /**
+     * @return the port the server listens on, 0 if it is not running
+     */
+    public int getLocalPort() {
+        return localPort;
+    }
+
+    /**
+     * Set the demo signal the units build their reports from, to check their checksums.
+     * Reports are split on their data length whether a signal is set or not.
+     *
+     * @param signal the hex-encoded demo signal, see {@link BceFrameTemplate}
+     */
+    public void setSignal(String signal) {
+        BceFrameTemplate.compile(signal);
+        this.checksumChecked = true;
+    }
+
+    /**
+     * @return <code>true</code> if reports with a bad checksum are counted and not acknowledged
+     */
+    public boolean isChecksumChecked() {
+        return checksumChecked;
+    }
+
+    FrameDecoder getFrameDecoder() {
+        return FRAME_DECODER;
+    }
+
+    /**
+     * @param hexAck hex-encoded ACK sent for every report
+     */
+    public void setAck(String hexAck) {
+        byte[] bytes = BCETCPSampler.hexStringToByteArray(hexAck.trim());
+        if (bytes.length == 0) {
+            throw new IllegalArgumentException("ACK must not be empty");
+        }
+        this.ack = bytes;
+    }
+
+    byte[] getAck() {
+        return ack;
+    }
+
+    /**
+     * @param delay delay of the ACKs in milliseconds
+     * @param jitter maximum random delay added to the ACKs in milliseconds
+     */
+    public void setAckDelay(long delay, long jitter) {
+        this.ackDelay = delay;
+        this.ackJitter = jitter;
+    }
+
+    /**
+     * @return delay of the next ACK in nanoseconds
+     */
+    long nextAckDelay() {
+        long delay = ackJitter > 0 ? ackDelay + ThreadLocalRandom.current().nextLong(ackJitter + 1) : ackDelay;
+        return TimeUnit.MILLISECONDS.toNanos(delay);
+    }
+
+    /**
+     * @param percent percentage of the reports which are not acknowledged
+     */
+    public void setDropPercent(double percent) {
+        if (percent < 0 || percent > 100) {
+            throw new IllegalArgumentException("Drop percentage must be between 0 and 100: " + percent);
+        }
+        this.dropRate = percent / 100;
+    }
+
+    boolean isAckDropped() {
+        return dropRate > 0 && ThreadLocalRandom.current().nextDouble() < dropRate;
+    }
+
+    /**
+     * @param threads number of selector threads
+     */
+    public void setThreads(int threads) {
+        this.threads = threads;
+    }
+
+    /**
+     * @param seconds seconds between statistics, 0 to only log them when the server stops
+     */
+    public void setStatisticsInterval(int seconds) {
+        this.statisticsInterval = TimeUnit.SECONDS.toNanos(seconds);
+    }
+
+    void connected() {
+        connections.incrementAndGet();
+    }
+
+    void disconnected() {
+        connections.decrementAndGet();
+    }
+
+    void bytesReceived(int bytes) {
+        bytesReceived.add(bytes);
+    }
+
+    void loginReceived() {
+        logins.increment();
+    }
+
+    void frameReceived() {
+        framesReceived.increment();
+    }
+
+    void badFrameReceived() {
+        badFrames.increment();
+    }
+
+    void ackSent() {
+        acksSent.increment();
+    }
+
+    void ackDropped() {
+        acksDropped.increment();
+    }
+
+    public int getConnections() {
+        return connections.get();
+    }
+
+    public long getLogins() {
+        return logins.sum();
+    }
+
+    public long getFramesReceived() {
+        return framesReceived.sum();
+    }
+
+    public long getBadFrames() {
+        return badFrames.sum();
+    }
+
+    public long getAcksSent() {
+        return acksSent.sum();
+    }
+
+    public long getAcksDropped() {
+        return acksDropped.sum();
+    }
+
+    public static void main(String[] args) {
+        CLArgsParser clArgsParser = new CLArgsParser(args, options);
+        String error = clArgsParser.getErrorString();
+        if (error != null) {
+            System.err.println("Error: " + error);//NOSONAR
+            System.out.println("Usage");//NOSONAR
+            System.out.println(CLUtil.describeOptions(options).toString());//NOSONAR
+            // repeat the error so no need to scroll back past the usage to see it
+            System.out.println("Error: " + error);//NOSONAR
+            return;
+        }
+
+        if (clArgsParser.getArgumentById(HELP_OPT_ID) != null) {
+            System.out.println(CLUtil.describeOptions(options).toString());//NOSONAR
+            return;
+        }
+
+        if (System.getProperty("log4j.configurationFile") == null) {// $NON-NLS-1$
+            Configurator.setRootLevel(Level.INFO);
+        }
+
+        setLogLevel(clArgsParser);
+
+        MockTrackerServer server;
+        try {
+            server = configure(args, clArgsParser);
+        } catch (IllegalArgumentException e) {
+            System.err.println("Error: " + e.getMessage());//NOSONAR
+            System.out.println(CLUtil.describeOptions(options).toString());//NOSONAR
+            return;
+        }
+        server.start();
+    }
+
+    private static MockTrackerServer configure(String[] args, CLArgsParser parser) {
+        int port = DEFAULT_PORT;
+        if (parser.getArgumentById(PORT_OPT_ID) != null) {
+            port = Integer.parseInt(getArgument(parser, PORT_OPT_ID));
+        } else if (args.length > 0 && !args[0].startsWith("-")) {
+            port = Integer.parseInt(args[0]);
+        }
+        MockTrackerServer server = new MockTrackerServer(port);
+        if (parser.getArgumentById(SIGNAL_OPT_ID) != null) {
+            server.setSignal(getArgument(parser, SIGNAL_OPT_ID));
+        }
+        if (parser.getArgumentById(ACK_OPT_ID) != null) {
+            server.setAck(getArgument(parser, ACK_OPT_ID));
+        }
+        server.setAckDelay(getLongArgument(parser, DELAY_OPT_ID), getLongArgument(parser, JITTER_OPT_ID));
+        if (parser.getArgumentById(DROP_OPT_ID) != null) {
+            server.setDropPercent(Double.parseDouble(getArgument(parser, DROP_OPT_ID)));
+        }
+        if (parser.getArgumentById(THREADS_OPT_ID) != null) {
+            server.setThreads(Integer.parseInt(getArgument(parser, THREADS_OPT_ID)));
+        }
+        if (parser.getArgumentById(INTERVAL_OPT_ID) != null) {
+            server.setStatisticsInterval(Integer.parseInt(getArgument(parser, INTERVAL_OPT_ID)));
+        }
+        return server;
+    }
+
+    private static String getArgument(CLArgsParser parser, int id) {
+        return parser.getArgumentById(id).getArgument(0).trim();
+    }
+
+    private static long getLongArgument(CLArgsParser parser, int id) {
+        return parser.getArgumentById(id) == null ? 0 : Long.parseLong(getArgument(parser, id));
+    }
+
+    private static void setLogLevel(CLArgsParser parser) {
+        CLOption logLevelOption = parser.getArgumentById(LOGLEVEL_OPT_ID);
+
+        if (logLevelOption == null) {
+            return;
+        }
+
+        String name = logLevelOption.getArgument(0);
+        final Level logLevel = Level.getLevel(name);
+
+        if (logLevel == null) {
+            getLogger().warn("Invalid log level '{}'.", name);
+            return;
+        }
+
+        String value = logLevelOption.getArgument(1);
+        if (StringUtils.isEmpty(value)) {
+            // Set root level
+            getLogger().info("Setting root log level to '{}'", name);// $NON-NLS-1$
+            Configurator.setRootLevel(logLevel);
+        } else {
+            // Set category
+            String loggerName = name;
+            if (name.startsWith("jmeter") || name.startsWith("jorphan")) {
+                loggerName = "org.apache." + name; // $NON-NLS-1$
+            }
+            getLogger().info("Setting log level to '{}' for '{}'.", value, loggerName); // $NON-NLS-1$
+            Configurator.setAllLevels(loggerName, logLevel);
+        }
+    }
+
+    private static Logger getLogger() {
+        return LazyHolder.LOGGER;
+    }
+}
@@ -0,0 +1,410 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.jmeter.protocol.tcp.registry;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+
+import org.apache.commons.lang3.StringUtils;
+
+/**
+ * Memory-mapped registry of a device fleet: IMEI and protocol state of every device,
+ * in fixed-width records indexed by device slot.
+ * <p>
+ * The records live in the page cache rather than in the heap, so a registry of
+ * millions of devices costs no garbage collection and is loaded lazily by the OS.
+ * The file keeps the state written by a test, so the next run resumes the sequence
+ * numbers, positions and odometers of the devices where the previous one stopped.
+ * <p>
+ * Records are read and written without locking: a slot must be owned by a single
+ * thread or event loop at a time, handing a device over to another thread must go
+ * through a synchronizing structure such as a queue. Different slots can be used
+ * concurrently.
+ * <p>
+ * A registry can be created from an IMEI list without loading it in memory:
+ * <pre>
+ * java -cp ... org.apache.jmeter.protocol.tcp.registry.FleetRegistry fleet.reg imeis.csv
+ * java -cp ... org.apache.jmeter.protocol.tcp.registry.FleetRegistry fleet.reg 350000000000000 1000000
+ * </pre>
+ */
+public final class FleetRegistry implements Closeable {
+    /** "FLEETREG" */
+    private static final long MAGIC = 0x464C454554524547L;
+
+    private static final int VERSION = 1;
+
+    static final int HEADER_SIZE = 64;
+
+    static final int RECORD_SIZE = 64;
+
+    private static final int RECORD_SHIFT = 6;
+
+    /** 2^24 records of 64 bytes per mapping, keeps each mapping under the 2GB limit */
+    private static final int SEGMENT_SHIFT = 24;
+
+    private static final int IMEI = 0;
+    private static final int SEQUENCE = 8;
+    private static final int REPORTS = 16;
+    private static final int LAST_REPORT = 24;
+    private static final int LATITUDE = 32;
+    private static final int LONGITUDE = 40;
+    private static final int ODOMETER = 48;
+
+    private static final double EARTH_RADIUS = 6371008.8;
+
+    private final File file;
+
+    private final FileChannel channel;
+
+    private final MappedByteBuffer[] segments;
+
+    private final int size;
+
+    private final int segmentShift;
+
+    private final int slotMask;
+
+    private FleetRegistry(File file, FileChannel channel, int size, int segmentShift) throws IOException {
+        this.file = file;
+        this.channel = channel;
+        this.size = size;
+        this.segmentShift = segmentShift;
+        this.slotMask = (1 << segmentShift) - 1;
+        int segmentCount = size == 0 ? 0 : ((size - 1) >>> segmentShift) + 1;
+        this.segments = new MappedByteBuffer[segmentCount];
+        long segmentBytes = (long) RECORD_SIZE << segmentShift;
+        for (int i = 0; i < segmentCount; i++) {
+            long position = HEADER_SIZE + i * segmentBytes;
+            long length = Math.min(segmentBytes, (long) size * RECORD_SIZE - i * segmentBytes);
+            segments[i] = channel.map(FileChannel.MapMode.READ_WRITE, position, length);
+        }
+    }
+
+    /**
+     * Open an existing registry.
+     *
+     * @param file the registry file
+     * @return the registry, to be closed once the test is over
+     * @throws IOException when the file can not be read or is not a fleet registry
+     */
+    public static FleetRegistry open(File file) throws IOException {
+        return open(file, SEGMENT_SHIFT);
+    }
+
+    static FleetRegistry open(File file, int segmentShift) throws IOException {
+        FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            while (header.hasRemaining() && channel.read(header, header.position()) >= 0) {
+                // read the whole header
+            }
+            header.flip();
+            if (header.remaining() < HEADER_SIZE || header.getLong(0) != MAGIC) {
+                throw new IOException("Not a fleet registry: " + file);
+            }
+            if (header.getInt(8) != VERSION || header.getInt(12) != RECORD_SIZE) {
+                throw new IOException("Unsupported fleet registry version " + header.getInt(8) + " in " + file);
+            }
+            int size = header.getInt(16);
+            if (size < 0 || channel.size() < HEADER_SIZE + (long) size * RECORD_SIZE) {
+                throw new IOException("Truncated fleet registry: " + file);
+            }
+            return new FleetRegistry(file, channel, size, segmentShift);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Open a registry, creating it with consecutive IMEIs if the file does not exist.
+     *
+     * @param file the registry file
+     * @param firstImei IMEI of the first device of a new registry
+     * @param devices number of devices of a new registry
+     * @return the registry, to be closed once the test is over
+     * @throws IOException when the file can not be created or read
+     */
+    public static FleetRegistry openOrCreate(File file, long firstImei, int devices) throws IOException {
+        if (!file.exists()) {
+            create(file, firstImei, devices);
+        }
+        return open(file);
+    }
+
+    /**
+     * Create a registry of devices with consecutive IMEIs, replacing any existing file.
+     *
+     * @param file the registry file
+     * @param firstImei IMEI of the first device
+     * @param devices number of devices
+     * @throws IOException when the file can not be written
+     */
+    public static void create(File file, long firstImei, int devices) throws IOException {
+        if (devices < 0) {
+            throw new IllegalArgumentException("Number of devices must not be negative: " + devices);
+        }
+        try (RegistryWriter writer = new RegistryWriter(file)) {
+            for (int i = 0; i < devices; i++) {
+                writer.add(firstImei + i);
+            }
+        }
+    }
+
+    /**
+     * Create a registry from an IMEI list, replacing any existing file.
+     * The list is streamed: the IMEI is the first column of each line, empty lines
+     * and lines which do not start with a number (headers, comments) are skipped.
+     *
+     * @param file the registry file
+     * @param imeiList text or CSV file listing the IMEIs
+     * @return the number of devices
+     * @throws IOException when the list can not be read or the file can not be written
+     */
+    public static int create(File file, File imeiList) throws IOException {
+        try (BufferedReader reader = Files.newBufferedReader(imeiList.toPath(), StandardCharsets.UTF_8);
+                RegistryWriter writer = new RegistryWriter(file)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String imei = StringUtils.substringBefore(line, ",").trim(); //$NON-NLS-1$
+                if (!imei.isEmpty() && StringUtils.isNumeric(imei)) {
+                    writer.add(Long.parseLong(imei));
+                }
+            }
+            return (int) writer.count;
+        }
+    }
+
+    /**
+     * @return the registry file
+     */
+    public File getFile() {
+        return file;
+    }
+
+    /**
+     * @return number of devices
+     */
+    public int size() {
+        return size;
+    }
+
+    private ByteBuffer segment(int slot) {
+        if (slot < 0 || slot >= size) {
+            throw new IndexOutOfBoundsException("Slot " + slot + " out of " + size);
+        }
+        return segments[slot >>> segmentShift];
+    }
+
+    private int offset(int slot) {
+        return (slot & slotMask) << RECORD_SHIFT;
+    }
+
+    public long getImei(int slot) {
+        return segment(slot).getLong(offset(slot) + IMEI);
+    }
+
+    /**
+     * @param slot the device slot
+     * @return serial number of the last frame the device sent
+     */
+    public int getSequence(int slot) {
+        return segment(slot).getInt(offset(slot) + SEQUENCE);
+    }
+
+    public void setSequence(int slot, int sequence) {
+        segment(slot).putInt(offset(slot) + SEQUENCE, sequence);
+    }
+
+    /**
+     * @param slot the device slot
+     * @return number of acknowledged reports over all runs
+     */
+    public long getReports(int slot) {
+        return segment(slot).getLong(offset(slot) + REPORTS);
+    }
+
+    /**
+     * @param slot the device slot
+     * @return time of the last acknowledged report in milliseconds since the epoch, 0 if none
+     */
+    public long getLastReportTime(int slot) {
+        return segment(slot).getLong(offset(slot) + LAST_REPORT);
+    }
+
+    public double getLatitude(int slot) {
+        return segment(slot).getDouble(offset(slot) + LATITUDE);
+    }
+
+    public double getLongitude(int slot) {
+        return segment(slot).getDouble(offset(slot) + LONGITUDE);
+    }
+
+    /**
+     * @param slot the device slot
+     * @return distance travelled between the reported positions, in meters
+     */
+    public double getOdometer(int slot) {
+        return segment(slot).getDouble(offset(slot) + ODOMETER);
+    }
+
+    /**
+     * Record an acknowledged report: its sequence number, time and position.
+     * The odometer grows by the distance from the previously reported position.
+     *
+     * @param slot the device slot
+     * @param sequence serial number of the report
+     * @param timeMillis report time in milliseconds since the epoch
+     * @param latitude reported latitude in degrees
+     * @param longitude reported longitude in degrees
+     */
+    public void recordReport(int slot, int sequence, long timeMillis, double latitude, double longitude) {
+        ByteBuffer segment = segment(slot);
+        int offset = offset(slot);
+        long reports = segment.getLong(offset + REPORTS);
+        if (reports > 0) {
+            double distance = distance(segment.getDouble(offset + LATITUDE), segment.getDouble(offset + LONGITUDE),
+                    latitude, longitude);
+            segment.putDouble(offset + ODOMETER, segment.getDouble(offset + ODOMETER) + distance);
+        }
+        segment.putInt(offset + SEQUENCE, sequence);
+        segment.putLong(offset + REPORTS, reports + 1);
+        segment.putLong(offset + LAST_REPORT, timeMillis);
+        segment.putDouble(offset + LATITUDE, latitude);
+        segment.putDouble(offset + LONGITUDE, longitude);
+    }
+
+    /**
+     * Great-circle distance between two positions.
+     *
+     * @return the distance in meters
+     */
+    static double distance(double latitude1, double longitude1, double latitude2, double longitude2) {
+        double phi1 = Math.toRadians(latitude1);
+        double phi2 = Math.toRadians(latitude2);
+        double sinPhi = Math.sin((phi2 - phi1) / 2);
+        double sinLambda = Math.sin(Math.toRadians(longitude2 - longitude1) / 2);
+        double a = sinPhi * sinPhi + Math.cos(phi1) * Math.cos(phi2) * sinLambda * sinLambda;
+        return 2 * EARTH_RADIUS * Math.asin(Math.min(1.0, Math.sqrt(a)));
+    }
+
+    /**
+     * Write the modified records to the file.
+     */
+    public void force() {
+        for (MappedByteBuffer segment : segments) {
+            segment.force();
+        }
+    }
+
+    /**
+     * Write the modified records to the file and close it. The mappings stay valid
+     * until they are garbage collected, the registry must not be used any more.
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            force();
+        } finally {
+            channel.close();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "FleetRegistry[" + file + ", " + size + " devices]"; //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+    }
+
+    /**
+     * Appends records to a new registry file, the header is written on close.
+     */
+    private static final class RegistryWriter implements Closeable {
+        private final FileChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocate(RECORD_SIZE * 1024);
+        private long count;
+
+        RegistryWriter(File file) throws IOException {
+            channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING);
+            channel.position(HEADER_SIZE);
+        }
+
+        void add(long imei) throws IOException {
+            if (count == Integer.MAX_VALUE) {
+                throw new IOException("Too many devices for a fleet registry");
+            }
+            if (!buffer.hasRemaining()) {
+                flush();
+            }
+            int start = buffer.position();
+            buffer.putLong(imei);
+            buffer.position(start + RECORD_SIZE);
+            count++;
+        }
+
+        private void flush() throws IOException {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            buffer.clear();
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                flush();
+                ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+                header.putLong(MAGIC).putInt(VERSION).putInt(RECORD_SIZE).putInt((int) count);
+                header.clear();
+                while (header.hasRemaining()) {
+                    channel.write(header, header.position());
+                }
+            } finally {
+                channel.close();
+            }
+        }
+    }
+
+    /**
+     * Create a registry file.
+     *
+     * @param args registry file, then an IMEI list or the first IMEI and number of devices
+     * @throws IOException when the registry can not be created
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length == 2) {
+            int devices = create(new File(args[0]), new File(args[1]));
+            System.out.println("Created " + args[0] + " with " + devices + " devices"); // NOSONAR
+        } else if (args.length == 3) {
+            create(new File(args[0]), Long.parseLong(args[1]), Integer.parseInt(args[2]));
+            System.out.println("Created " + args[0] + " with " + args[2] + " devices"); // NOSONAR
+        } else {
+            System.out.println("Usage: FleetRegistry <registry file> <IMEI list> " // NOSONAR
+                    + "| FleetRegistry <registry file> <first IMEI> <devices>");
+        }
+    }
+}
@@ -17,18 +17,37 @@
 
 package org.apache.jmeter.protocol.tcp.sampler;
 
+import java.io.IOException;
 import java.io.InputStream;
+import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
 
+import org.apache.jmeter.protocol.tcp.codec.EomFrameDecoder;
+import org.apache.jmeter.protocol.tcp.codec.FrameDecoder;
+import org.apache.jmeter.protocol.tcp.codec.FrameReader;
 import org.apache.jmeter.samplers.SampleResult;
+import org.apache.jorphan.util.JOrphanUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 /**
  * Basic implementation of TCPClient interface.
  */
 public abstract class AbstractTCPClient implements TCPClient {
+    private static final Logger log = LoggerFactory.getLogger(AbstractTCPClient.class);
+
+    private static final int INITIAL_FRAME_CAPACITY = 4096;
+
     private String charset;
     protected byte eolByte;
     protected boolean useEolByte = false;
 
+    /** Bytes received and not consumed yet, for {@link #readFrame(InputStream, SampleResult)} */
+    private FrameReader frameReader;
+
+    /** Stream the buffered bytes were read from */
+    private InputStream frameStream;
+
     /**
      * {@inheritDoc}
      */
@@ -48,6 +67,7 @@ public abstract class AbstractTCPClient implements TCPClient {
         } else {
             useEolByte = false;
         }
+        frameReader = null;
     }
 
     /**
@@ -88,4 +108,73 @@ public abstract class AbstractTCPClient implements TCPClient {
     public String read(InputStream is, SampleResult sampleResult) throws ReadException {
         return read(is);
     }
+
+    /**
+     * Reads one frame ending with the EOM byte, or with the stream if there is no EOM byte.
+     * <p>
+     * The bytes received after the EOM byte are kept for the next call on the same stream,
+     * so responses sent back-to-back in one segment are returned one by one.
+     *
+     * @param is the stream to read from
+     * @param sampleResult the sample result, latency is set when the first byte is available
+     * @return the bytes of the frame, EOM byte included
+     * @throws ReadException when reading fails or times out while looking for the EOM byte
+     */
+    protected byte[] readFrame(InputStream is, SampleResult sampleResult) throws ReadException {
+        if (frameReader == null) {
+            frameReader = new FrameReader(useEolByte ? new EomFrameDecoder(eolByte) : FrameDecoder.END_OF_STREAM,
+                    INITIAL_FRAME_CAPACITY);
+        } else if (frameStream != is) {
+            frameReader.clear();
+        }
+        frameStream = is;
+        boolean first = true;
+        ByteBuffer frame;
+        try {
+            while ((frame = frameReader.nextFrame(null)) == null) {
+                if (frameReader.read(is) < 0) {
+                    break;
+                }
+                if (first) {
+                    sampleResult.latencyEnd();
+                    first = false;
+                }
+            }
+        } catch (SocketTimeoutException e) {
+            if (useEolByte) {
+                throw new ReadException("Socket timed out while looking for EOM", e,
+                        JOrphanUtils.baToHexString(frameReader.drain()));
+            }
+            log.debug("Ignoring SocketTimeoutException, as we are not looking for EOM", e);
+            frame = null;
+        } catch (IOException e) {
+            throw new ReadException("Problems while trying to read", e,
+                    JOrphanUtils.baToHexString(frameReader.drain()));
+        }
+        if (frame == null) {
+            frame = frameReader.drain();
+        } else if (first) {
+            // received with the previous frame
+            sampleResult.latencyEnd();
+        }
+        return toByteArray(frame);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean hasPendingInput(InputStream is) {
+        return frameReader != null && frameStream == is && frameReader.buffered() > 0;
+    }
+
+    /**
+     * @param buffer bytes between position and limit
+     * @return a copy of the bytes
+     */
+    protected static byte[] toByteArray(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.remaining()];
+        buffer.get(bytes);
+        return bytes;
+    }
 }
@@ -30,15 +30,14 @@
 
 package org.apache.jmeter.protocol.tcp.sampler;
 
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
-import java.net.SocketTimeoutException;
 import java.nio.ByteBuffer;
-import java.nio.ByteOrder;
-import java.nio.channels.SocketChannel;
 
+import org.apache.jmeter.protocol.tcp.codec.TrackerReport;
+import org.apache.jmeter.protocol.tcp.lag.IngestionLagProbe;
+import org.apache.jmeter.protocol.tcp.trajectory.TrajectoryPool;
 import org.apache.jmeter.samplers.SampleResult;
 import org.apache.jmeter.util.JMeterUtils;
 import org.apache.jorphan.util.JOrphanUtils;
@@ -58,7 +57,22 @@ public class BCETCPSampler extends AbstractTCPClient {
     private static final Logger log = LoggerFactory.getLogger(BCETCPSampler.class);
     private static final int SIGNAL = JMeterUtils.getPropDefault("TrackerTCPSampler.signal", 1000); // $NON_NLS-1$
     private static final int EOM_INT = JMeterUtils.getPropDefault("tcp.BinaryTCPClient.eomByte", 1000); // $NON_NLS-1$
+    /** Replace the position of the demo signal with the unit's trajectory */
+    private static final boolean TRAJECTORY = JMeterUtils.getPropDefault("tracker.trajectory.signal", false); // $NON_NLS-1$
+    /** Time between the records packed in one frame, in milliseconds */
+    private static final long BATCH_INTERVAL = JMeterUtils.getPropDefault("tracker.batch.interval", 1000L); // $NON_NLS-1$
+    /** Records packed in each frame */
+    private static final int BATCH_RECORDS = getBatchRecords();
+    /** Hex of the "#BCE#\r\n" login marker sent in front of the first frame of a connection */
+    public static final String LOGIN_PREFIX = "23424345230d0a"; // $NON-NLS-1$
+    private static final byte[] LOGIN = hexStringToByteArray(LOGIN_PREFIX);
     private int index = 0;
+    private BceFrameTemplate template;
+    /** Reused for every write, patched from the template */
+    private byte[] frame;
+    private TrackerReport report;
+    /** Reused for every write of a multi-record frame */
+    private ByteBuffer batch;
     public BCETCPSampler() {
         super();
         setEolByte(EOM_INT);
@@ -67,6 +81,18 @@ public class BCETCPSampler extends AbstractTCPClient {
         }
     }
 
+    /**
+     * @return <code>tracker.batch.window / tracker.batch.interval</code> if a window is set,
+     * <code>tracker.batch.records</code> otherwise
+     */
+    private static int getBatchRecords() {
+        long window = JMeterUtils.getPropDefault("tracker.batch.window", 0L); // $NON_NLS-1$
+        if (window > 0) {
+            return (int) Math.max(1, Math.min(Integer.MAX_VALUE, window / Math.max(1, BATCH_INTERVAL)));
+        }
+        return Math.max(1, JMeterUtils.getPropDefault("tracker.batch.records", 1)); // $NON_NLS-1$
+    }
+
     /**
      * Convert hex string to binary byte array.
      *
@@ -75,47 +101,109 @@ public class BCETCPSampler extends AbstractTCPClient {
      * @throws IllegalArgumentException if string is not an even number of hex digits
      */
     public static byte[] hexStringToByteArray(String hexEncodedBinary) {
-        if (hexEncodedBinary.length() % 2 == 0) {
-            char[] sc = hexEncodedBinary.toCharArray();
-            byte[] ba = new byte[sc.length / 2];
-
-            for (int i = 0; i < ba.length; i++) {
-                int nibble0 = Character.digit(sc[i * 2], 16);
-                int nibble1 = Character.digit(sc[i * 2 + 1], 16);
-                if (nibble0 == -1 || nibble1 == -1){
-                    throw new IllegalArgumentException(
-                            "Hex-encoded binary string contains an invalid hex digit in '"+sc[i * 2]+sc[i * 2 + 1]+"'");
-                }
-                ba[i] = (byte) ((nibble0 << 4) | nibble1);
-            }
-
-            return ba;
-        } else {
-            throw new IllegalArgumentException(
-                    "Hex-encoded binary string contains an uneven no. of digits");
-        }
+        return JOrphanUtils.hexToBytes(hexEncodedBinary);
     }
 
     /**
-     * Input (hex) string is converted to binary and written to the output stream.
+     * The demo signal is compiled once to a {@link BceFrameTemplate}, then every call
+     * patches IMEI, time and checksum into the same frame buffer and writes it, along with
+     * the position on the unit's trajectory when <code>tracker.trajectory.signal</code> is set.
+     * The first frame written by this client is preceded by the login marker.
+     * When <code>tracker.batch.records</code> or <code>tracker.batch.window</code> is set, each write
+     * sends one frame holding the records of that many past intervals instead, see {@link #writeBatch}.
      * @param os output stream
-     * @param hexEncodedBinary hex-encoded binary
+     * @param hexEncodedBinary hex-encoded demo signal
+     * @param imei IMEI of the unit
      */
     @Override
     public void write(OutputStream os, String hexEncodedBinary, String imei) throws IOException{
-        log.info(String.valueOf(index));
-        String message = buildTheSignalMessage(hexEncodedBinary, Long.parseLong(imei));
+        BceFrameTemplate frameTemplate = getTemplate(hexEncodedBinary);
+        long unit = Long.parseLong(imei);
+        long now = System.currentTimeMillis();
+        if (BATCH_RECORDS > 1 && frameTemplate.isBatchable()) {
+            writeBatch(os, frameTemplate, unit, now);
+            return;
+        }
+        if (TRAJECTORY) {
+            if (report == null) {
+                report = new TrackerReport();
+            }
+            TrajectoryPool.getDefault().fill(report, unit, now);
+            frameTemplate.patch(frame, unit, now, report.getLatitude(), report.getLongitude());
+        } else {
+            frameTemplate.patch(frame, unit, now);
+        }
         if (index == 0){
-            message = "23424345230d0a" + message;
+            byte[] withLogin = new byte[LOGIN.length + frame.length];
+            System.arraycopy(LOGIN, 0, withLogin, 0, LOGIN.length);
+            System.arraycopy(frame, 0, withLogin, LOGIN.length, frame.length);
+            os.write(withLogin);
+        } else {
+            os.write(frame);
         }
-        os.write(hexStringToByteArray(message));
         os.flush();
         index++;
+        IngestionLagProbe.sent(unit, now);
         if(log.isDebugEnabled()) {
-            log.debug("Wrote: " + message);
+            log.debug("Wrote: {}", JOrphanUtils.baToHexString(frame));
         }
     }
 
+    /**
+     * Write one frame holding a record every <code>tracker.batch.interval</code> milliseconds
+     * up to now, oldest first, as a unit uploading what it logged since its last frame.
+     */
+    private void writeBatch(OutputStream os, BceFrameTemplate frameTemplate, long unit, long now) throws IOException {
+        int records = Math.min(BATCH_RECORDS, frameTemplate.getMaxBatchRecords());
+        int length = LOGIN.length + frameTemplate.getBatchLength(records);
+        if (batch == null || batch.capacity() < length) {
+            batch = ByteBuffer.allocate(length);
+        }
+        batch.clear();
+        if (index == 0) {
+            batch.put(LOGIN);
+        }
+        int start = frameTemplate.startBatch(batch, unit);
+        for (int i = records - 1; i >= 0; i--) {
+            long time = now - i * BATCH_INTERVAL;
+            if (TRAJECTORY) {
+                if (report == null) {
+                    report = new TrackerReport();
+                }
+                TrajectoryPool.getDefault().fill(report, unit, time);
+                frameTemplate.putRecord(batch, time, report.getLatitude(), report.getLongitude());
+            } else {
+                frameTemplate.putRecord(batch, time, Double.NaN, Double.NaN);
+            }
+        }
+        frameTemplate.endBatch(batch, start, records);
+        os.write(batch.array(), 0, batch.position());
+        os.flush();
+        index++;
+        for (int i = records - 1; i >= 0; i--) {
+            IngestionLagProbe.sent(unit, now - i * BATCH_INTERVAL);
+        }
+        if (log.isDebugEnabled()) {
+            log.debug("Wrote {} records: {}", records,
+                    JOrphanUtils.baToHexString(batch.array(), start, batch.position() - start));
+        }
+    }
+
+    /**
+     * @param demoSignal the hex-encoded demo signal
+     * @return the compiled template, only recompiled when the signal changes
+     */
+    private BceFrameTemplate getTemplate(String demoSignal) {
+        if (template == null || (template.getSignal() != demoSignal && !template.getSignal().equals(demoSignal))) {
+            template = BceFrameTemplate.compile(demoSignal);
+            frame = template.newFrame();
+            if (BATCH_RECORDS > 1 && !template.isBatchable()) {
+                log.warn("Demo signal has no BCE record layout, sending one record per frame");
+            }
+        }
+        return template;
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -150,111 +238,26 @@ public class BCETCPSampler extends AbstractTCPClient {
      */
     @Override
     public String read(InputStream is, SampleResult sampleResult) throws ReadException {
-        ByteArrayOutputStream w = new ByteArrayOutputStream();
-        try {
-            byte[] buffer = new byte[4096];
-            int x = 0;
-            boolean first = true;
-            while ((x = is.read(buffer)) > -1) {
-                if (first) {
-                    sampleResult.latencyEnd();
-                    first = false;
-                }
-                w.write(buffer, 0, x);
-                if (useEolByte && (buffer[x - 1] == eolByte)) {
-                    break;
-                }
-            }
-        } catch (SocketTimeoutException e) {
-            if (useEolByte) {
-                throw new ReadException("Socket timed out while looking for EOM", e,
-                        JOrphanUtils.baToHexString(w.toByteArray()));
-            }
-            log.debug("Ignoring SocketTimeoutException, as we are not looking for EOM", e);
-        } catch (IOException e) {
-            throw new ReadException("Problems while trying to read", e, JOrphanUtils.baToHexString(w.toByteArray()));
-        }
-        final String hexString = JOrphanUtils.baToHexString(w.toByteArray());
-        if(log.isDebugEnabled()) {
-            log.debug("Read: {}\n{}", w.size(), hexString);
-        }
-        return hexString;
-    }
-
-    private static String buildTheSignalMessage(String demoSignal, Long unitImei) {
-        log.info("IMEI----> " + unitImei);
-        String newImei = hexEncodedIMEI(unitImei);
-        String newTime = getCurrTimeMessage();
-        String newMessage = generateNewMessage(demoSignal, newImei, newTime);
-        byte[] bytes = hexStringToByteArray(newMessage);
-        ByteBuffer buffer = ByteBuffer.allocate(bytes.length);
-        buffer.order(ByteOrder.LITTLE_ENDIAN);
-        buffer.put(bytes);
-        buffer.flip();
-        String checkSum = hexEncodedIMEI(checksum(buffer, bytes.length - 2)).substring(0, 2);
-        return newMessage.substring(0, newMessage.length() - 2) + checkSum;
-    }
-
-    private static String generateNewMessage(String rawMessage, String heximei, String hextime) {
-        //String rawMessage = "%s5b01a55344%sffc302a000804000d74f3b4299ddc541001875540200000000d78000009a375100e8481b005a1000000000a401046856f55b002600000000000000000000000044f798b9bfffc302a000804000d74f3b4299ddc541001875540200000000d6800000a2375e00114936005a1000000000a401046856f55b0026000000000000000000000000440799b9bfffc302a000804000d74f3b4299ddc541001975540200000000d6800000bd375e002c4936005a1000000000a401046856f55b0026000000000000000000000000442799b9bfffc302a000804000d74f3b4299ddc541001775540200000000d7800000fa365e00394836005a1000000000a401046856f55b0026000000000000000000000000443799b9bfffc302a000804000d74f3b4299ddc541001875540200000000d7800000533743008a4828005a1000000000a401046856f55b00260000000000000000000000005b";
-        return String.format(rawMessage, heximei, hextime);
-    }
-
-    private static String hexEncodedIMEI(long Imei) {
-        StringBuilder buf = new StringBuilder();
-        ByteBuffer byteBuffer = ByteBuffer.allocate(8);
-        byteBuffer.order(ByteOrder.LITTLE_ENDIAN);
-        byteBuffer.putLong(Imei);
-        int i = 0;
-        for (byte b : byteBuffer.array()) {
-            String hex = Integer.toHexString((int) (0xff & (Imei >> i)));
-            if (hex.length() == 1) {
-                buf.append('0');
-            }
-            buf.append(hex);
-            i += 8;
-        }
-        return buf.toString().toUpperCase();
-    }
-
-    private static String getCurrTimeMessage() {
-        long timeStamp = 1640532005000L;
-        long currUnixTime = timeStamp  / 1000L - 1500;
-        System.out.println(currUnixTime);
-        long unixToTime = (currUnixTime - 0x47798280) / 2;
-        String binaryTime = Long.toBinaryString(unixToTime) + "0111";
-        Long decimalTime = toUnsignedInt(binaryToDecimal(binaryTime));
-        String hexTime = hexEncodedIMEI(decimalTime).substring(0, 8);
-        return hexTime;
+        return JOrphanUtils.baToHexString(readBytes(is, sampleResult));
     }
 
-    private static int checksum(ByteBuffer buf, int end) {
-        byte result = 0;
-        for (int i = 0; i < end; i++) {
-            result += buf.get(i);
+    /**
+     * Reads data until the defined EOM byte is reached.
+     * If there is no EOM byte defined, then reads until
+     * the end of the stream is reached.
+     * @return the bytes read
+     * @throws ReadException when reading fails
+     */
+    @Override
+    public byte[] readBytes(InputStream is, SampleResult sampleResult) throws ReadException {
+        byte[] response = readFrame(is, sampleResult);
+        if (log.isDebugEnabled()) {
+            log.debug("Read: {}\n{}", response.length, JOrphanUtils.baToHexString(response));
         }
-        return result;
+        return response;
     }
 
     public static long toUnsignedInt(int x) {
         return (x & 0xFFFFFFFFL);
     }
-
-    static int binaryToDecimal(String n) {
-        String num = n;
-        int dec_value = 0;
-
-        // Initializing base value to 1,
-        // i.e 2^0
-        int base = 1;
-
-        int len = num.length();
-        for (int i = len - 1; i >= 0; i--) {
-            if (num.charAt(i) == '1')
-                dec_value += base;
-            base = base * 2;
-        }
-
-        return dec_value;
-    }
 }
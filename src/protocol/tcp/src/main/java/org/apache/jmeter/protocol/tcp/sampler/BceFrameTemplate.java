@@ -0,0 +1,509 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.jmeter.protocol.tcp.sampler;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * BCE demo signal compiled to a binary frame.
+ * <p>
+ * The demo signal is a hex string where the first <code>%s</code> stands for the
+ * IMEI (8 bytes, little endian) and the second one for the time (4 bytes, little endian).
+ * The last byte of the frame is a checksum over all bytes but the last two.
+ * The position follows the time as two little endian floats, longitude then latitude,
+ * {@value #POSITION_SHIFT} bytes after the time field; it is only replaced when the
+ * demo signal holds a plausible position there.
+ * <p>
+ * When the IMEI is followed by the BCE block header (data length, message type and
+ * confirmation key) and the records, each one a length byte followed by the time and the
+ * rest of the record, every record of the frame gets the time and position of the report.
+ * Several records can then be packed in one frame: {@link #startBatch(ByteBuffer, long)}, then
+ * {@link #putRecord(ByteBuffer, long, double, double)} for each record and
+ * {@link #endBatch(ByteBuffer, int, int)} repeat the first record of the demo signal
+ * and fix the data length and checksum of the frame.
+ * <p>
+ * The template is compiled once, then {@link #patch(byte[], long, long)} fills
+ * the IMEI, time and checksum of a frame in place without any allocation.
+ * Instances are immutable and can be shared by all threads.
+ */
+public final class BceFrameTemplate {
+
+    private static final String PLACEHOLDER = "%s"; // $NON-NLS-1$
+
+    static final int IMEI_LENGTH = 8;
+
+    static final int TIME_LENGTH = 4;
+
+    /** Distance between the end of the time field and the longitude */
+    static final int POSITION_SHIFT = 8;
+
+    private static final int POSITION_LENGTH = 8;
+
+    /** Data length (2 bytes, little endian), message type, confirmation key and record length */
+    static final int BLOCK_HEADER_LENGTH = 5;
+
+    /** Message type and confirmation key, counted in the data length along with the records */
+    private static final int MESSAGE_HEADER_LENGTH = 2;
+
+    /** Bytes following the records: a reserved byte and the checksum */
+    private static final int TRAILER_LENGTH = 2;
+
+    /** The data length of a frame is an unsigned short */
+    private static final int MAX_DATA_LENGTH = 0xFFFF;
+
+    /** Offset of the BCE time base (2008-01-01) from the unix epoch, in seconds */
+    private static final long BCE_EPOCH = 0x47798280L;
+
+    /** Reports are stamped this many seconds in the past */
+    private static final long TIME_SHIFT = 1500L;
+
+    private final String signal;
+
+    private final byte[] template;
+
+    private final int imeiOffset;
+
+    private final int timeOffset;
+
+    private final int positionOffset;
+
+    /** Time offsets of the records of the frame, only the time placeholder if the records cannot be walked */
+    private final int[] timeOffsets;
+
+    /** Position offsets of the records of the frame, -1 for a record without position */
+    private final int[] positionOffsets;
+
+    /** Start of the first record in the frame, -1 if records cannot be batched */
+    private final int recordOffset;
+
+    /** Length of the first record, length byte included */
+    private final int recordLength;
+
+    private BceFrameTemplate(String signal, byte[] template, int imeiOffset, int timeOffset) {
+        this.signal = signal;
+        this.template = template;
+        this.imeiOffset = imeiOffset;
+        this.timeOffset = timeOffset;
+        this.positionOffset = findPosition(template, timeOffset);
+        int[] records = null;
+        if (imeiOffset >= 0 && timeOffset == imeiOffset + IMEI_LENGTH + BLOCK_HEADER_LENGTH) {
+            records = findRecords(template, imeiOffset);
+        }
+        if (records != null) {
+            this.recordOffset = records[0];
+            this.recordLength = 1 + (template[recordOffset] & 0xFF);
+            this.timeOffsets = new int[records.length];
+            this.positionOffsets = new int[records.length];
+            for (int i = 0; i < records.length; i++) {
+                timeOffsets[i] = records[i] + 1;
+                int position = findPosition(template, timeOffsets[i]);
+                // the position must lie within its record
+                boolean inRecord = position + POSITION_LENGTH <= timeOffsets[i] + (template[records[i]] & 0xFF);
+                positionOffsets[i] = inRecord ? position : -1;
+            }
+        } else {
+            this.recordOffset = -1;
+            this.recordLength = 0;
+            this.timeOffsets = timeOffset >= 0 ? new int[] { timeOffset } : new int[0];
+            this.positionOffsets = new int[] { positionOffset };
+        }
+    }
+
+    /**
+     * Walk the records following the block header: each one is a length byte, then as many bytes
+     * starting with the time. They must end at the trailer and match the data length of the header.
+     *
+     * @return offsets of the records, <code>null</code> if the signal does not hold such records
+     */
+    private static int[] findRecords(byte[] template, int imeiOffset) {
+        int dataLength = (int) getLittleEndian(template, imeiOffset + IMEI_LENGTH, 2);
+        int first = imeiOffset + IMEI_LENGTH + BLOCK_HEADER_LENGTH - 1;
+        int end = template.length - TRAILER_LENGTH;
+        if (dataLength != end - first + MESSAGE_HEADER_LENGTH) {
+            return null;
+        }
+        int[] records = new int[(end - first) / (1 + TIME_LENGTH)];
+        int count = 0;
+        int offset = first;
+        while (offset < end) {
+            int length = template[offset] & 0xFF;
+            if (length < TIME_LENGTH || offset + 1 + length > end) {
+                return null;
+            }
+            records[count++] = offset;
+            offset += 1 + length;
+        }
+        return count == 0 ? null : Arrays.copyOf(records, count);
+    }
+
+    private static int findPosition(byte[] template, int timeOffset) {
+        int offset = timeOffset + TIME_LENGTH + POSITION_SHIFT;
+        if (timeOffset < 0 || offset + POSITION_LENGTH > template.length - 2) {
+            return -1;
+        }
+        float longitude = Float.intBitsToFloat((int) getLittleEndian(template, offset, 4));
+        float latitude = Float.intBitsToFloat((int) getLittleEndian(template, offset + 4, 4));
+        boolean plausible = Math.abs(longitude) <= 180f && Math.abs(latitude) <= 90f
+                && (longitude != 0f || latitude != 0f);
+        return plausible ? offset : -1;
+    }
+
+    /**
+     * Compile a demo signal.
+     *
+     * @param demoSignal hex-encoded demo signal with up to two <code>%s</code> placeholders
+     * @return the compiled template
+     * @throws IllegalArgumentException if the signal is not valid hex or has too many placeholders
+     */
+    public static BceFrameTemplate compile(String demoSignal) {
+        String[] segments = demoSignal.trim().split(PLACEHOLDER, -1);
+        if (segments.length > 3) {
+            throw new IllegalArgumentException("Demo signal contains more than two placeholders");
+        }
+        byte[][] decoded = new byte[segments.length][];
+        int length = 0;
+        for (int i = 0; i < segments.length; i++) {
+            decoded[i] = BCETCPSampler.hexStringToByteArray(segments[i]);
+            length += decoded[i].length;
+        }
+        length += (segments.length > 1 ? IMEI_LENGTH : 0) + (segments.length > 2 ? TIME_LENGTH : 0);
+        if (length < 2) {
+            throw new IllegalArgumentException("Demo signal is too short to hold a checksum");
+        }
+        byte[] template = new byte[length];
+        int imeiOffset = -1;
+        int timeOffset = -1;
+        int position = 0;
+        for (int i = 0; i < decoded.length; i++) {
+            System.arraycopy(decoded[i], 0, template, position, decoded[i].length);
+            position += decoded[i].length;
+            if (i == 0 && decoded.length > 1) {
+                imeiOffset = position;
+                position += IMEI_LENGTH;
+            } else if (i == 1 && decoded.length > 2) {
+                timeOffset = position;
+                position += TIME_LENGTH;
+            }
+        }
+        return new BceFrameTemplate(demoSignal, template, imeiOffset, timeOffset);
+    }
+
+    /**
+     * @return the demo signal this template was compiled from
+     */
+    public String getSignal() {
+        return signal;
+    }
+
+    /**
+     * @return length of the frames built from this template
+     */
+    public int getFrameLength() {
+        return template.length;
+    }
+
+    /**
+     * @return offset of the IMEI field or -1 if the signal has no IMEI placeholder
+     */
+    public int getImeiOffset() {
+        return imeiOffset;
+    }
+
+    /**
+     * @return offset of the time field or -1 if the signal has no time placeholder
+     */
+    public int getTimeOffset() {
+        return timeOffset;
+    }
+
+    /**
+     * @return offset of the position fields or -1 if the signal holds no position
+     */
+    public int getPositionOffset() {
+        return positionOffset;
+    }
+
+    /**
+     * @return number of records of the demo signal whose time is replaced
+     */
+    public int getRecordCount() {
+        return timeOffsets.length;
+    }
+
+    /**
+     * @return <code>true</code> if several records can be packed in one frame
+     */
+    public boolean isBatchable() {
+        return recordOffset >= 0;
+    }
+
+    /**
+     * @return length of one record, length byte included, 0 if records cannot be batched
+     */
+    public int getRecordLength() {
+        return recordLength;
+    }
+
+    /**
+     * @return maximum number of records of a frame, 1 if records cannot be batched
+     */
+    public int getMaxBatchRecords() {
+        if (!isBatchable()) {
+            return 1;
+        }
+        return Math.max(1, (MAX_DATA_LENGTH - MESSAGE_HEADER_LENGTH) / recordLength);
+    }
+
+    /**
+     * @param records number of records, at most {@link #getMaxBatchRecords()}
+     * @return length of a frame holding that many records
+     */
+    public int getBatchLength(int records) {
+        return recordOffset + records * recordLength + TRAILER_LENGTH;
+    }
+
+    /**
+     * @return a new frame buffer initialised from the template, to be reused with
+     * {@link #patch(byte[], long, long)}
+     */
+    public byte[] newFrame() {
+        return Arrays.copyOf(template, template.length);
+    }
+
+    /**
+     * Fill IMEI, time and checksum of a frame created by {@link #newFrame()}.
+     *
+     * @param frame the frame to patch
+     * @param imei IMEI of the unit
+     * @param timeMillis report time in milliseconds since the epoch
+     */
+    public void patch(byte[] frame, long imei, long timeMillis) {
+        patch(frame, imei, timeMillis, Double.NaN, Double.NaN);
+    }
+
+    /**
+     * Fill IMEI, time, position and checksum of a frame created by {@link #newFrame()}.
+     * Every record of the frame gets the time and position.
+     *
+     * @param frame the frame to patch
+     * @param imei IMEI of the unit
+     * @param timeMillis report time in milliseconds since the epoch
+     * @param latitude latitude in degrees, NaN to keep the position of the frame
+     * @param longitude longitude in degrees
+     */
+    public void patch(byte[] frame, long imei, long timeMillis, double latitude, double longitude) {
+        if (!Double.isNaN(latitude)) {
+            int lon = Float.floatToIntBits((float) longitude);
+            int lat = Float.floatToIntBits((float) latitude);
+            for (int offset : positionOffsets) {
+                if (offset >= 0) {
+                    putLittleEndian(frame, offset, lon, 4);
+                    putLittleEndian(frame, offset + 4, lat, 4);
+                }
+            }
+        }
+        if (imeiOffset >= 0) {
+            putLittleEndian(frame, imeiOffset, imei, IMEI_LENGTH);
+        }
+        long time = encodeTime(timeMillis);
+        for (int offset : timeOffsets) {
+            putLittleEndian(frame, offset, time, TIME_LENGTH);
+        }
+        int end = frame.length - 2;
+        byte checksum = 0;
+        for (int i = 0; i < end; i++) {
+            checksum += frame[i];
+        }
+        frame[frame.length - 1] = checksum;
+    }
+
+    /**
+     * Write a complete frame to a buffer, without any allocation.
+     *
+     * @param dst buffer to write to, its position is moved past the frame
+     * @param imei IMEI of the unit
+     * @param timeMillis report time in milliseconds since the epoch
+     */
+    public void encode(ByteBuffer dst, long imei, long timeMillis) {
+        encode(dst, imei, timeMillis, Double.NaN, Double.NaN);
+    }
+
+    /**
+     * Write a complete frame at the given position to a buffer, without any allocation.
+     * Every record of the frame gets the time and position.
+     *
+     * @param dst buffer to write to, its position is moved past the frame
+     * @param imei IMEI of the unit
+     * @param timeMillis report time in milliseconds since the epoch
+     * @param latitude latitude in degrees, NaN to keep the position of the demo signal
+     * @param longitude longitude in degrees
+     */
+    public void encode(ByteBuffer dst, long imei, long timeMillis, double latitude, double longitude) {
+        int start = dst.position();
+        dst.put(template);
+        if (!Double.isNaN(latitude)) {
+            int lon = Float.floatToIntBits((float) longitude);
+            int lat = Float.floatToIntBits((float) latitude);
+            for (int offset : positionOffsets) {
+                if (offset >= 0) {
+                    putLittleEndian(dst, start + offset, lon, 4);
+                    putLittleEndian(dst, start + offset + 4, lat, 4);
+                }
+            }
+        }
+        if (imeiOffset >= 0) {
+            putLittleEndian(dst, start + imeiOffset, imei, IMEI_LENGTH);
+        }
+        long time = encodeTime(timeMillis);
+        for (int offset : timeOffsets) {
+            putLittleEndian(dst, start + offset, time, TIME_LENGTH);
+        }
+        int end = start + template.length - 2;
+        byte checksum = 0;
+        for (int i = start; i < end; i++) {
+            checksum += dst.get(i);
+        }
+        dst.put(start + template.length - 1, checksum);
+    }
+
+    /**
+     * Start a frame holding several records: write the part of the template preceding the records.
+     *
+     * @param dst buffer to write to, its position is moved past the header
+     * @param imei IMEI of the unit
+     * @return the start of the frame, to be passed to {@link #endBatch(ByteBuffer, int, int)}
+     * @throws IllegalStateException if the template is not {@link #isBatchable() batchable}
+     */
+    public int startBatch(ByteBuffer dst, long imei) {
+        if (!isBatchable()) {
+            throw new IllegalStateException("Demo signal has no BCE record to batch");
+        }
+        int start = dst.position();
+        dst.put(template, 0, recordOffset);
+        putLittleEndian(dst, start + imeiOffset, imei, IMEI_LENGTH);
+        return start;
+    }
+
+    /**
+     * Append the first record of the template with its own time and position.
+     *
+     * @param dst buffer to write to, its position is moved past the record
+     * @param timeMillis record time in milliseconds since the epoch
+     * @param latitude latitude in degrees, NaN to keep the position of the demo signal
+     * @param longitude longitude in degrees
+     */
+    public void putRecord(ByteBuffer dst, long timeMillis, double latitude, double longitude) {
+        // offsets of the template are relative to the frame, shift them to this record
+        int start = dst.position() - recordOffset;
+        dst.put(template, recordOffset, recordLength);
+        if (positionOffsets[0] >= 0 && !Double.isNaN(latitude)) {
+            putLittleEndian(dst, start + positionOffsets[0], Float.floatToIntBits((float) longitude), 4);
+            putLittleEndian(dst, start + positionOffsets[0] + 4, Float.floatToIntBits((float) latitude), 4);
+        }
+        putLittleEndian(dst, start + timeOffsets[0], encodeTime(timeMillis), TIME_LENGTH);
+    }
+
+    /**
+     * Complete a frame started by {@link #startBatch(ByteBuffer, long)}: write the trailer,
+     * the data length and the checksum.
+     *
+     * @param dst buffer to write to, its position is moved past the frame
+     * @param start start of the frame
+     * @param records number of records written, at most {@link #getMaxBatchRecords()}
+     */
+    public void endBatch(ByteBuffer dst, int start, int records) {
+        dst.put(template, template.length - TRAILER_LENGTH, TRAILER_LENGTH);
+        putLittleEndian(dst, start + imeiOffset + IMEI_LENGTH,
+                MESSAGE_HEADER_LENGTH + records * (long) recordLength, 2);
+        int end = dst.position() - TRAILER_LENGTH;
+        byte checksum = 0;
+        for (int i = start; i < end; i++) {
+            checksum += dst.get(i);
+        }
+        dst.put(dst.position() - 1, checksum);
+    }
+
+    /**
+     * Get the length of a received frame from its header: the IMEI it starts with, the data
+     * length following the IMEI, the data and the trailer. Frames holding several records,
+     * see {@link #endBatch(ByteBuffer, int, int)}, have the length of their records.
+     *
+     * @param in the received bytes, between position and limit; they are not modified
+     * @return the length of the frame starting at the position, 0 if its header was not received yet
+     */
+    public static int frameLength(ByteBuffer in) {
+        if (in.remaining() < IMEI_LENGTH + 2) {
+            return 0;
+        }
+        int offset = in.position() + IMEI_LENGTH;
+        int dataLength = (in.get(offset) & 0xFF) | (in.get(offset + 1) & 0xFF) << 8;
+        return IMEI_LENGTH + 2 + dataLength + TRAILER_LENGTH;
+    }
+
+    /**
+     * Check the checksum of a received frame, as written by {@link #encode(ByteBuffer, long, long)}.
+     *
+     * @param frame the frame, between position and limit; it is not modified
+     * @return <code>true</code> if the last byte is the checksum of the frame
+     */
+    public static boolean isChecksumValid(ByteBuffer frame) {
+        int start = frame.position();
+        int end = frame.limit() - 2;
+        if (end < start) {
+            return false;
+        }
+        byte checksum = 0;
+        for (int i = start; i < end; i++) {
+            checksum += frame.get(i);
+        }
+        return frame.get(frame.limit() - 1) == checksum;
+    }
+
+    /**
+     * Encode a time the way BCE units do: half-seconds since the BCE epoch,
+     * shifted by 4 bits with the low bits set to <code>0111</code>.
+     *
+     * @param timeMillis time in milliseconds since the epoch
+     * @return the encoded time, to be written as 4 little endian bytes
+     */
+    static long encodeTime(long timeMillis) {
+        long units = (timeMillis / 1000L - TIME_SHIFT - BCE_EPOCH) / 2;
+        return (units << 4) | 0x7;
+    }
+
+    private static long getLittleEndian(byte[] frame, int offset, int length) {
+        long value = 0;
+        for (int i = 0; i < length; i++) {
+            value |= (frame[offset + i] & 0xFFL) << (8 * i);
+        }
+        return value;
+    }
+
+    private static void putLittleEndian(byte[] frame, int offset, long value, int length) {
+        for (int i = 0; i < length; i++) {
+            frame[offset + i] = (byte) (value >>> (8 * i));
+        }
+    }
+
+    private static void putLittleEndian(ByteBuffer frame, int offset, long value, int length) {
+        for (int i = 0; i < length; i++) {
+            frame.put(offset + i, (byte) (value >>> (8 * i)));
+        }
+    }
+}
@@ -17,11 +17,9 @@
 
 package org.apache.jmeter.protocol.tcp.sampler;
 
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
-import java.net.SocketTimeoutException;
 
 import org.apache.jmeter.samplers.SampleResult;
 import org.apache.jmeter.util.JMeterUtils;
@@ -43,6 +41,12 @@ public class BinaryTCPClientImpl extends AbstractTCPClient {
 
     private static final int EOM_INT = JMeterUtils.getPropDefault("tcp.BinaryTCPClient.eomByte", 1000); // $NON_NLS-1$
 
+    /** Largest request decoded into {@link #requestBuffer}, larger ones get their own array */
+    private static final int MAX_BUFFER = 65536;
+
+    /** Decoded request, reused from one sample to the next of the thread */
+    private byte[] requestBuffer = new byte[0];
+
     public BinaryTCPClientImpl() {
         super();
         setEolByte(EOM_INT);
@@ -59,25 +63,7 @@ public class BinaryTCPClientImpl extends AbstractTCPClient {
      * @throws IllegalArgumentException if string is not an even number of hex digits
      */
     public static byte[] hexStringToByteArray(String hexEncodedBinary) {
-        if (hexEncodedBinary.length() % 2 == 0) {
-            char[] sc = hexEncodedBinary.toCharArray();
-            byte[] ba = new byte[sc.length / 2];
-
-            for (int i = 0; i < ba.length; i++) {
-                int nibble0 = Character.digit(sc[i * 2], 16);
-                int nibble1 = Character.digit(sc[i * 2 + 1], 16);
-                if (nibble0 == -1 || nibble1 == -1){
-                    throw new IllegalArgumentException(
-                    "Hex-encoded binary string contains an invalid hex digit in '"+sc[i * 2]+sc[i * 2 + 1]+"'");
-                }
-                ba[i] = (byte) ((nibble0 << 4) | nibble1);
-            }
-
-            return ba;
-        } else {
-            throw new IllegalArgumentException(
-                    "Hex-encoded binary string contains an uneven no. of digits");
-        }
+        return JOrphanUtils.hexToBytes(hexEncodedBinary);
     }
 
     /**
@@ -87,10 +73,33 @@ public class BinaryTCPClientImpl extends AbstractTCPClient {
      */
     @Override
     public void write(OutputStream os, String hexEncodedBinary) throws IOException{
-        os.write(hexStringToByteArray(hexEncodedBinary));
+        int length = hexEncodedBinary.length() / 2;
+        byte[] bytes = requestBuffer;
+        if (bytes.length < length) {
+            bytes = new byte[length];
+            if (length <= MAX_BUFFER) {
+                requestBuffer = bytes;
+            }
+        }
+        JOrphanUtils.decodeHex(hexEncodedBinary, 0, hexEncodedBinary.length(), bytes, 0);
+        write(os, bytes, length);
+    }
+
+    /**
+     * Binary data is written as is to the output stream.
+     * @param os output stream
+     * @param bytes binary data
+     */
+    @Override
+    public void writeBytes(OutputStream os, byte[] bytes) throws IOException {
+        write(os, bytes, bytes.length);
+    }
+
+    private static void write(OutputStream os, byte[] bytes, int length) throws IOException {
+        os.write(bytes, 0, length);
         os.flush();
         if(log.isDebugEnabled()) {
-            log.debug("Wrote: " + hexEncodedBinary);
+            log.debug("Wrote: {}", JOrphanUtils.baToHexString(bytes, 0, length));
         }
     }
 
@@ -124,35 +133,23 @@ public class BinaryTCPClientImpl extends AbstractTCPClient {
      */
     @Override
     public String read(InputStream is, SampleResult sampleResult) throws ReadException {
-        ByteArrayOutputStream w = new ByteArrayOutputStream();
-        try {
-            byte[] buffer = new byte[4096];
-            int x = 0;
-            boolean first = true;
-            while ((x = is.read(buffer)) > -1) {
-                if (first) {
-                    sampleResult.latencyEnd();
-                    first = false;
-                }
-                w.write(buffer, 0, x);
-                if (useEolByte && (buffer[x - 1] == eolByte)) {
-                    break;
-                }
-            }
-        } catch (SocketTimeoutException e) {
-            if (useEolByte) {
-                throw new ReadException("Socket timed out while looking for EOM", e,
-                        JOrphanUtils.baToHexString(w.toByteArray()));
-            }
-            log.debug("Ignoring SocketTimeoutException, as we are not looking for EOM", e);
-        } catch (IOException e) {
-            throw new ReadException("Problems while trying to read", e, JOrphanUtils.baToHexString(w.toByteArray()));
-        }
-        final String hexString = JOrphanUtils.baToHexString(w.toByteArray());
-        if(log.isDebugEnabled()) {
-            log.debug("Read: {}\n{}", w.size(), hexString);
+        return JOrphanUtils.baToHexString(readBytes(is, sampleResult));
+    }
+
+    /**
+     * Reads data until the defined EOM byte is reached.
+     * If there is no EOM byte defined, then reads until
+     * the end of the stream is reached.
+     * @return the bytes read
+     * @throws ReadException when reading fails
+     */
+    @Override
+    public byte[] readBytes(InputStream is, SampleResult sampleResult) throws ReadException {
+        byte[] response = readFrame(is, sampleResult);
+        if (log.isDebugEnabled()) {
+            log.debug("Read: {}\n{}", response.length, JOrphanUtils.baToHexString(response));
         }
-        return hexString;
+        return response;
     }
 
 }
@@ -0,0 +1,169 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.jmeter.protocol.tcp.sampler;
+
+import java.io.InterruptedIOException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.jmeter.samplers.SampleResult;
+import org.apache.jmeter.util.JMeterUtils;
+
+/**
+ * Token bucket limiting the rate of the connections opened to a target host by all threads,
+ * so thousands of threads starting together do not flood the server with SYNs.
+ * <p>
+ * The rate is <code>tcp.connect.rate.&lt;host&gt;</code> connections per second, or
+ * <code>tcp.connect.rate</code> for the hosts without a rate of their own, 0 meaning unlimited.
+ * Up to <code>tcp.connect.burst</code> connections are opened at once after an idle period.
+ * The properties are read when a host is first connected to in a test, see {@link #clear()}.
+ * <p>
+ * The bucket is a single {@link AtomicLong} holding the time at which it is empty again
+ * (generic cell rate algorithm): each connection reserves the next permit with a compare and set,
+ * then waits outside of any lock until the permit is due.
+ */
+public final class ConnectRateLimiter {
+
+    private static final ConcurrentMap<String, ConnectRateLimiter> LIMITERS = new ConcurrentHashMap<>();
+
+    /** Held by {@link #LIMITERS} for the hosts whose connections are not limited */
+    private static final ConnectRateLimiter UNLIMITED = new ConnectRateLimiter(Double.POSITIVE_INFINITY, 1);
+
+    private final double rate;
+
+    private final int burst;
+
+    /** Time between two permits */
+    private final long intervalNanos;
+
+    /** How far ahead of the permits the bucket lets a burst go */
+    private final long toleranceNanos;
+
+    /** {@link System#nanoTime()} at which the bucket is empty again */
+    private final AtomicLong emptyAt;
+
+    /**
+     * @param rate permits per second, must be positive
+     * @param burst maximum number of permits granted at once
+     */
+    ConnectRateLimiter(double rate, int burst) {
+        this.rate = rate;
+        this.burst = Math.max(1, burst);
+        this.intervalNanos = Math.max(1, (long) (TimeUnit.SECONDS.toNanos(1) / rate));
+        this.toleranceNanos = (this.burst - 1) * intervalNanos;
+        this.emptyAt = new AtomicLong(System.nanoTime() - toleranceNanos);
+    }
+
+    /**
+     * Get the limiter of a target host, created on first use with the settings of the properties then.
+     *
+     * @param host the target host as configured in the sampler
+     * @return the limiter, <code>null</code> if the connections to the host are not limited
+     */
+    public static ConnectRateLimiter forHost(String host) {
+        ConnectRateLimiter limiter = LIMITERS.get(host);
+        if (limiter == null) {
+            limiter = LIMITERS.computeIfAbsent(host, ConnectRateLimiter::create);
+        }
+        return limiter == UNLIMITED ? null : limiter;
+    }
+
+    private static ConnectRateLimiter create(String host) {
+        double rate = JMeterUtils.getPropDefault("tcp.connect.rate." + host, //$NON-NLS-1$
+                JMeterUtils.getPropDefault("tcp.connect.rate", 0d)); //$NON-NLS-1$
+        if (rate <= 0) {
+            return UNLIMITED;
+        }
+        int burst = Math.max(1, JMeterUtils.getPropDefault("tcp.connect.burst", 1)); //$NON-NLS-1$
+        return new ConnectRateLimiter(rate, burst);
+    }
+
+    /**
+     * Forget the limiters at the end of a test, the next test reads the properties again.
+     */
+    public static void clear() {
+        LIMITERS.clear();
+    }
+
+    /**
+     * Wait for the permit to connect to a host. The wait is excluded from the time of the sample
+     * and recorded as its idle time, so it is reported apart from the connect time.
+     *
+     * @param host the target host as configured in the sampler
+     * @param res the sample opening the connection, <code>null</code> if it is not sampled
+     * @throws InterruptedIOException if the thread is interrupted while waiting
+     */
+    public static void acquire(String host, SampleResult res) throws InterruptedIOException {
+        ConnectRateLimiter limiter = forHost(host);
+        if (limiter == null) {
+            return;
+        }
+        if (res != null) {
+            res.samplePause();
+        }
+        try {
+            limiter.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted waiting to connect to " + host); //$NON-NLS-1$
+        } finally {
+            if (res != null) {
+                res.sampleResume();
+            }
+        }
+    }
+
+    /**
+     * Reserve the next permit and wait until it is due.
+     *
+     * @return time waited in nanoseconds
+     * @throws InterruptedException if the thread is interrupted while waiting, the permit is lost
+     */
+    long acquire() throws InterruptedException {
+        long wait = reserve(System.nanoTime());
+        if (wait > 0) {
+            TimeUnit.NANOSECONDS.sleep(wait);
+        }
+        return wait;
+    }
+
+    /**
+     * Reserve the next permit.
+     *
+     * @param now {@link System#nanoTime()}
+     * @return time until the permit is due in nanoseconds, 0 or less if it is due already
+     */
+    long reserve(long now) {
+        while (true) {
+            long empty = emptyAt.get();
+            // the permit is due when less than a burst is reserved ahead of now;
+            // an idle bucket is empty now, it does not save permits beyond the burst
+            long due = Math.max(now, empty - toleranceNanos);
+            if (emptyAt.compareAndSet(empty, Math.max(empty, now) + intervalNanos)) {
+                return due - now;
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "ConnectRateLimiter[" + rate + "/s, burst=" + burst + "]"; //$NON-NLS-1$ //$NON-NLS-2$
+    }
+}
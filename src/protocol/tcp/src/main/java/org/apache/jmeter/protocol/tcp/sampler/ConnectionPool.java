@@ -0,0 +1,258 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.apache.jmeter.protocol.tcp.sampler;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.Socket;
+import java.net.SocketException;
+import java.net.SocketTimeoutException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.apache.jmeter.samplers.SampleResult;
+import org.apache.jmeter.util.JMeterUtils;
+import org.apache.jorphan.util.JOrphanUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Connections to an endpoint shared by all threads of the TCP samplers, so thousands of threads
+ * can exchange requests and responses over a few sockets.
+ * <p>
+ * A thread leases a connection for one exchange and returns it, or discards it if the exchange
+ * failed. At most <code>maxSize</code> connections are leased at once; a thread waits up to
+ * <code>tcp.pool.wait.timeout</code> milliseconds for one, the wait being recorded as the idle time
+ * of its sample. The leases are counted by a {@link Semaphore} and the idle connections kept in a
+ * {@link ConcurrentLinkedDeque}, both lock-free until a thread has to wait.
+ * <p>
+ * The most recently returned connection is leased first. A connection idle for
+ * <code>tcp.pool.validate.after</code> milliseconds is checked before its lease: it is discarded
+ * if the server closed it or sent data nobody asked for. Connections idle for
+ * <code>tcp.pool.idle.timeout</code> milliseconds are closed.
+ */
+final class ConnectionPool {
+    private static final Logger log = LoggerFactory.getLogger(ConnectionPool.class);
+
+    private static final long WAIT_TIMEOUT =
+            JMeterUtils.getPropDefault("tcp.pool.wait.timeout", 60000L); //$NON-NLS-1$
+
+    private static final long VALIDATE_AFTER =
+            JMeterUtils.getPropDefault("tcp.pool.validate.after", 1000L); //$NON-NLS-1$
+
+    private static final long IDLE_TIMEOUT =
+            JMeterUtils.getPropDefault("tcp.pool.idle.timeout", 60000L); //$NON-NLS-1$
+
+    private static final ConcurrentMap<String, ConnectionPool> POOLS = new ConcurrentHashMap<>();
+
+    /** Opens a new connection, once a lease is granted */
+    @FunctionalInterface
+    interface Connector {
+        Socket connect() throws IOException;
+    }
+
+    private static final class IdleConnection {
+        private final Socket socket;
+
+        private final long returnedMillis;
+
+        private IdleConnection(Socket socket, long returnedMillis) {
+            this.socket = socket;
+            this.returnedMillis = returnedMillis;
+        }
+    }
+
+    /** Host and port, shown in logs and errors */
+    private final String endpoint;
+
+    private final int maxSize;
+
+    private final Semaphore leases;
+
+    /** Idle connections, the most recently returned first */
+    private final ConcurrentLinkedDeque<IdleConnection> idle = new ConcurrentLinkedDeque<>();
+
+    private final LongAdder opened = new LongAdder();
+
+    private final LongAdder evicted = new LongAdder();
+
+    private final LongAdder waited = new LongAdder();
+
+    ConnectionPool(String endpoint, int maxSize) {
+        this.endpoint = endpoint;
+        this.maxSize = maxSize;
+        this.leases = new Semaphore(maxSize);
+    }
+
+    /**
+     * Get the pool of an endpoint, created on first use with the size requested then.
+     *
+     * @param key identity of the pool, connections are only shared by samplers with the same key;
+     *            it is never logged, as it may be derived from credentials
+     * @param endpoint host and port, shown in logs and errors
+     * @param maxSize maximum number of connections
+     * @return the pool
+     */
+    static ConnectionPool get(String key, String endpoint, int maxSize) {
+        ConnectionPool pool = POOLS.get(key);
+        if (pool == null) {
+            pool = POOLS.computeIfAbsent(key, k -> new ConnectionPool(endpoint, maxSize));
+        }
+        return pool;
+    }
+
+    /**
+     * Close the idle connections of all the pools and forget them, at the end of a test.
+     */
+    static void closeAll() {
+        for (ConnectionPool pool : POOLS.values()) {
+            pool.close();
+        }
+        POOLS.clear();
+    }
+
+    /**
+     * Lease a connection, an idle one if any is still usable, else a new one.
+     *
+     * @param res sample of the exchange, its connect time ends once the connection is leased
+     * @param connector opens a new connection, ending the connect time of <code>res</code>
+     * @return the connection, to be given back to {@link #release(Socket)} or {@link #discard(Socket)}
+     * @throws IOException when no lease is granted in time or the connection cannot be opened
+     */
+    Socket lease(SampleResult res, Connector connector) throws IOException {
+        if (!leases.tryAcquire()) {
+            waited.increment();
+            res.samplePause();
+            try {
+                if (!leases.tryAcquire(WAIT_TIMEOUT, TimeUnit.MILLISECONDS)) {
+                    throw new SocketTimeoutException("No connection to " + endpoint //$NON-NLS-1$
+                            + " released within " + WAIT_TIMEOUT + " ms"); //$NON-NLS-1$ //$NON-NLS-2$
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted waiting for a connection to " + endpoint); //$NON-NLS-1$
+            } finally {
+                res.sampleResume();
+            }
+        }
+        try {
+            long now = System.currentTimeMillis();
+            IdleConnection connection;
+            while ((connection = idle.pollFirst()) != null) {
+                if (isUsable(connection, now)) {
+                    res.connectEnd();
+                    return connection.socket;
+                }
+                evicted.increment();
+                JOrphanUtils.closeQuietly(connection.socket);
+            }
+            Socket socket = connector.connect();
+            opened.increment();
+            return socket;
+        } catch (IOException | RuntimeException e) {
+            leases.release();
+            throw e;
+        }
+    }
+
+    /**
+     * Give back a connection after a successful exchange.
+     *
+     * @param socket the connection
+     */
+    void release(Socket socket) {
+        long now = System.currentTimeMillis();
+        idle.offerFirst(new IdleConnection(socket, now));
+        leases.release();
+        // the least recently used connections are at the end, they are not checked by the leases
+        IdleConnection oldest = idle.peekLast();
+        if (oldest != null && now - oldest.returnedMillis >= IDLE_TIMEOUT && idle.removeLastOccurrence(oldest)) {
+            evicted.increment();
+            JOrphanUtils.closeQuietly(oldest.socket);
+        }
+    }
+
+    /**
+     * Close a connection whose exchange failed, or which is not to be reused.
+     *
+     * @param socket the connection
+     */
+    void discard(Socket socket) {
+        JOrphanUtils.closeQuietly(socket);
+        leases.release();
+    }
+
+    private void close() {
+        IdleConnection connection;
+        while ((connection = idle.pollFirst()) != null) {
+            JOrphanUtils.closeQuietly(connection.socket);
+        }
+        log.info("Connection pool {} of {}: {} connections opened, {} idle ones evicted, {} leases waited for",
+                endpoint, maxSize, opened.sum(), evicted.sum(), waited.sum());
+    }
+
+    /**
+     * @return <code>false</code> if the connection was idle for too long, is closed or has unexpected data
+     */
+    private static boolean isUsable(IdleConnection connection, long now) {
+        Socket socket = connection.socket;
+        if (socket.isClosed() || socket.isInputShutdown() || socket.isOutputShutdown()) {
+            return false;
+        }
+        long idleMillis = now - connection.returnedMillis;
+        if (idleMillis >= IDLE_TIMEOUT) {
+            return false;
+        }
+        if (idleMillis < VALIDATE_AFTER) {
+            return true;
+        }
+        int timeout = -1;
+        try {
+            timeout = socket.getSoTimeout();
+            socket.setSoTimeout(1);
+            // end of stream, or data which would be mistaken for the next response
+            socket.getInputStream().read();
+            return false;
+        } catch (SocketTimeoutException e) {
+            return true;
+        } catch (IOException e) {
+            return false;
+        } finally {
+            if (timeout >= 0) {
+                try {
+                    socket.setSoTimeout(timeout);
+                } catch (SocketException e) {
+                    // the connection is discarded
+                }
+            }
+        }
+    }
+
+    int getIdleCount() {
+        return idle.size();
+    }
+
+    int getAvailableLeases() {
+        return leases.availablePermits();
+    }
+}
@@ -0,0 +1,246 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.jmeter.protocol.tcp.sampler;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.jmeter.protocol.tcp.codec.DeviceSession;
+import org.apache.jmeter.protocol.tcp.codec.FrameReader;
+import org.apache.jmeter.protocol.tcp.codec.TrackerCodec;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Demultiplexes what the server sends on a tracker connection.
+ * <p>
+ * Commands pushed by the server (configuration, reboot, output control...) are told apart
+ * from the ACKs by the {@link TrackerCodec} and answered at once with
+ * {@link #answer(ByteBuffer, long)}. Once {@link #start() started}, a background thread reads
+ * the connection: it answers the commands as soon as they arrive, even between samples, and
+ * queues the other frames with their time of reception for the sampling thread, which waits
+ * for them with {@link #take(int)} instead of reading the socket.
+ * <p>
+ * The frames of the device and the answers to commands are written under the lock of the
+ * connection, which also guards the serial numbers of the session.
+ */
+final class DownlinkReader implements Runnable {
+    private static final Logger log = LoggerFactory.getLogger(DownlinkReader.class);
+
+    /**
+     * Notified of every command answered, from the thread which read it.
+     */
+    @FunctionalInterface
+    interface CommandListener {
+        /**
+         * @param imei IMEI of the device
+         * @param command the command bytes
+         * @param receivedMillis time at which the command was read, in milliseconds since the epoch
+         * @param elapsed time from the reception of the command to the write of the answer in milliseconds
+         * @param sentBytes length of the answer, 0 if the command is not answered
+         * @param failure the failure to write the answer, <code>null</code> if it was written
+         */
+        void commandAnswered(long imei, byte[] command, long receivedMillis, long elapsed, int sentBytes,
+                IOException failure);
+    }
+
+    /**
+     * A frame handed over to the sampling thread, or the end of the connection.
+     */
+    static final class Frame {
+        private final byte[] bytes;
+        private final long receivedNanos;
+        private final IOException failure;
+
+        private Frame(byte[] bytes, long receivedNanos, IOException failure) {
+            this.bytes = bytes;
+            this.receivedNanos = receivedNanos;
+            this.failure = failure;
+        }
+
+        byte[] getBytes() {
+            return bytes;
+        }
+
+        /**
+         * @return {@link System#nanoTime()} at which the frame was read
+         */
+        long getReceivedNanos() {
+            return receivedNanos;
+        }
+    }
+
+    private final Socket socket;
+
+    private final TrackerCodec codec;
+
+    private final DeviceSession session;
+
+    private final FrameReader reader;
+
+    private final Object writeLock;
+
+    private final CommandListener listener;
+
+    private final BlockingQueue<Frame> frames = new LinkedBlockingQueue<>();
+
+    /** Answers to the commands, grown when a command is longer than expected */
+    private ByteBuffer out;
+
+    private Thread thread;
+
+    /**
+     * @param socket the connection
+     * @param codec the protocol codec
+     * @param session the device session, its serial numbers are only used under the write lock
+     * @param reader the reader of the connection, owned by the background thread once started
+     * @param writeLock lock held by all writers of the connection
+     * @param listener notified of the commands answered
+     */
+    DownlinkReader(Socket socket, TrackerCodec codec, DeviceSession session, FrameReader reader,
+            Object writeLock, CommandListener listener) {
+        this.socket = socket;
+        this.codec = codec;
+        this.session = session;
+        this.reader = reader;
+        this.writeLock = writeLock;
+        this.listener = listener;
+        this.out = ByteBuffer.allocate(2 * codec.getMaxFrameLength());
+    }
+
+    /**
+     * Read the connection in the background, once the login is over so the frames are
+     * decoded in the state of a logged in session. The thread stops when the socket is closed.
+     */
+    void start() {
+        if (thread == null) {
+            thread = new Thread(this, "TrackerDownlink-" + session.getImei()); //$NON-NLS-1$
+            thread.setDaemon(true);
+            thread.start();
+        }
+    }
+
+    /**
+     * @return <code>true</code> if the frames are read by the background thread
+     */
+    boolean isStarted() {
+        return thread != null;
+    }
+
+    /**
+     * Answer a command and notify the listener.
+     *
+     * @param command the command frame, between position and limit; the position is moved to the limit
+     * @param receivedNanos {@link System#nanoTime()} at which the command was read
+     */
+    void answer(ByteBuffer command, long receivedNanos) {
+        long receivedMillis = System.currentTimeMillis()
+                - TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - receivedNanos);
+        int sentBytes = 0;
+        IOException failure = null;
+        synchronized (writeLock) {
+            int needed = codec.getMaxFrameLength() + command.remaining();
+            if (out.capacity() < needed) {
+                out = ByteBuffer.allocate(needed);
+            }
+            out.clear();
+            if (codec.encodeCommandResponse(session, command, out)) {
+                try {
+                    OutputStream os = socket.getOutputStream();
+                    os.write(out.array(), 0, out.position());
+                    os.flush();
+                    sentBytes = out.position();
+                } catch (IOException e) {
+                    log.debug("Could not answer command of {}", session, e);
+                    failure = e;
+                }
+            }
+        }
+        byte[] bytes = new byte[command.remaining()];
+        command.get(bytes);
+        listener.commandAnswered(session.getImei(), bytes, receivedMillis,
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - receivedNanos), sentBytes, failure);
+    }
+
+    /**
+     * Wait for the next frame which is not a command.
+     *
+     * @param timeout maximum time to wait in milliseconds, 0 to wait forever
+     * @return the frame
+     * @throws IOException when the connection failed or was closed, or no frame arrived in time
+     */
+    Frame take(int timeout) throws IOException {
+        Frame frame;
+        try {
+            frame = timeout > 0 ? frames.poll(timeout, TimeUnit.MILLISECONDS) : frames.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted waiting for the server"); //$NON-NLS-1$
+        }
+        if (frame == null) {
+            throw new SocketTimeoutException("Read timed out"); //$NON-NLS-1$
+        }
+        if (frame.failure != null) {
+            frames.add(frame); // the connection stays failed
+            throw new IOException(frame.failure.getMessage(), frame.failure);
+        }
+        return frame;
+    }
+
+    @Override
+    public void run() {
+        long receivedNanos = System.nanoTime();
+        try {
+            InputStream is = socket.getInputStream();
+            while (true) {
+                ByteBuffer frame;
+                while ((frame = reader.nextFrame(session)) != null) {
+                    if (codec.isCommand(session, frame)) {
+                        answer(frame, receivedNanos);
+                    } else {
+                        byte[] bytes = new byte[frame.remaining()];
+                        frame.get(bytes);
+                        frames.add(new Frame(bytes, receivedNanos, null));
+                    }
+                }
+                int read;
+                try {
+                    read = reader.read(is);
+                } catch (SocketTimeoutException e) {
+                    continue; // the response timeout is applied by take()
+                }
+                if (read < 0) {
+                    throw new EOFException("Connection closed by server"); //$NON-NLS-1$
+                }
+                receivedNanos = System.nanoTime();
+            }
+        } catch (IOException e) {
+            log.debug("Stopped reading commands of {}: {}", session, e.toString());
+            frames.add(new Frame(null, System.nanoTime(), e));
+        }
+    }
+}
@@ -0,0 +1,257 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.apache.jmeter.protocol.tcp.sampler;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.apache.jmeter.config.ConfigTestElement;
+import org.apache.jmeter.gui.TestElementMetadata;
+import org.apache.jmeter.protocol.tcp.lag.FileRecordVerifier;
+import org.apache.jmeter.protocol.tcp.lag.HttpRecordVerifier;
+import org.apache.jmeter.protocol.tcp.lag.IngestionLagProbe;
+import org.apache.jmeter.protocol.tcp.lag.JdbcRecordVerifier;
+import org.apache.jmeter.protocol.tcp.lag.LagResult;
+import org.apache.jmeter.protocol.tcp.lag.RecordVerifier;
+import org.apache.jmeter.samplers.AbstractSampler;
+import org.apache.jmeter.samplers.Entry;
+import org.apache.jmeter.samplers.SampleResult;
+import org.apache.jmeter.testbeans.TestBean;
+import org.apache.jmeter.testelement.TestElement;
+import org.apache.jmeter.testelement.TestStateListener;
+import org.apache.jmeter.testelement.ThreadListener;
+import org.apache.jmeter.util.JMeterUtils;
+import org.apache.jorphan.util.JOrphanUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Samples how long the records sent by the tracker samplers of the test take to be persisted
+ * by the tracking platform.
+ * <p>
+ * While the test runs, the records sent by the Tracker TCP, BCE TCP, fleet and UDP samplers
+ * are tracked by an {@link IngestionLagProbe}, which the threads of this sampler poll with a
+ * {@link RecordVerifier}: a JDBC query through a JDBC Connection Configuration, or a file or
+ * HTTP stand-in of the platform. Each call to {@link #sample(Entry)} returns the next record
+ * found, with the time from its send to its persistence as elapsed time, so the listeners give
+ * the ingestion lag percentiles; the records not found within the timeout are sampled as
+ * failures under a label of their own, which gives the loss count.
+ */
+@TestElementMetadata(labelResource = "displayName")
+public class IngestionLagSampler extends AbstractSampler implements TestBean, TestStateListener, ThreadListener {
+    private static final long serialVersionUID = 1L;
+
+    private static final Logger log = LoggerFactory.getLogger(IngestionLagSampler.class);
+
+    private static final Set<String> APPLIABLE_CONFIG_CLASSES = new HashSet<>(
+            Arrays.asList("org.apache.jmeter.config.gui.SimpleConfigGui"));
+
+    /** How long a sample waits for a record to be found or lost before giving up (no result), as for the fleet samplers */
+    private static final long POLL_TIMEOUT =
+            JMeterUtils.getPropDefault("tracker.fleet.poll.timeout", 1000L); //$NON-NLS-1$
+
+    static final String JDBC = "JDBC"; //$NON-NLS-1$
+
+    static final String FILE = "File"; //$NON-NLS-1$
+
+    static final String HTTP = "HTTP"; //$NON-NLS-1$
+
+    private String verifier;
+
+    private String dataSource;
+
+    private String query;
+
+    private String file;
+
+    private String url;
+
+    private long pollInterval;
+
+    private long timeout;
+
+    private transient RecordVerifier recordVerifier;
+
+    /**
+     * @return the next record found or lost, or <code>null</code> if none was within
+     * <code>tracker.fleet.poll.timeout</code> milliseconds
+     */
+    @Override
+    public SampleResult sample(Entry e) {
+        IngestionLagProbe probe = IngestionLagProbe.getActive();
+        if (probe == null) {
+            return null;
+        }
+        if (recordVerifier == null) {
+            recordVerifier = createVerifier();
+        }
+        LagResult result;
+        try {
+            result = probe.next(recordVerifier, getPollInterval(), getTimeout(), POLL_TIMEOUT);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            return null;
+        } catch (IOException ex) {
+            log.warn("Failed to look up the records sent", ex);
+            SampleResult res = new SampleResult();
+            res.setSampleLabel(getName() + " error"); //$NON-NLS-1$
+            res.sampleStart();
+            res.sampleEnd();
+            res.setResponseCode("500"); //$NON-NLS-1$
+            res.setResponseMessage(ex.toString());
+            res.setSuccessful(false);
+            return res;
+        }
+        if (result == null) {
+            return null;
+        }
+        return toSampleResult(result);
+    }
+
+    private RecordVerifier createVerifier() {
+        switch (getVerifier()) {
+            case FILE:
+                return new FileRecordVerifier(new File(getFile().trim()));
+            case HTTP:
+                return new HttpRecordVerifier(getUrl().trim());
+            default:
+                return new JdbcRecordVerifier(getDataSource().trim(), getQuery());
+        }
+    }
+
+    private SampleResult toSampleResult(LagResult result) {
+        SampleResult res = new SampleResult();
+        res.setSamplerData("IMEI: " + result.getImei() + "\ntime: " + result.getTimeMillis()); //$NON-NLS-1$ //$NON-NLS-2$
+        res.setDataType(SampleResult.TEXT);
+        if (result.isLost()) {
+            res.setSampleLabel(getName() + " lost"); //$NON-NLS-1$
+            res.setStampAndTime(result.getSentMillis(), 0);
+            res.setResponseCode("404"); //$NON-NLS-1$
+            res.setResponseMessage("Not found within " + getTimeout() + " ms"); //$NON-NLS-1$ //$NON-NLS-2$
+            res.setSuccessful(false);
+            return res;
+        }
+        res.setSampleLabel(getName());
+        long lag = result.getLag();
+        res.setStampAndTime(res.isStampedAtStart() ? result.getSentMillis() : result.getSentMillis() + lag, lag);
+        res.setResponseCodeOK();
+        res.setResponseMessageOK();
+        res.setSuccessful(true);
+        return res;
+    }
+
+    @Override
+    public void threadStarted() {
+        // NOOP, the verifier is created by the first sample
+    }
+
+    @Override
+    public void threadFinished() {
+        JOrphanUtils.closeQuietly(recordVerifier);
+        recordVerifier = null;
+    }
+
+    @Override
+    public void testStarted() {
+        testStarted(""); //$NON-NLS-1$
+    }
+
+    @Override
+    public void testStarted(String host) {
+        IngestionLagProbe.start();
+    }
+
+    @Override
+    public void testEnded() {
+        testEnded(""); //$NON-NLS-1$
+    }
+
+    @Override
+    public void testEnded(String host) {
+        IngestionLagProbe.stop();
+    }
+
+    /**
+     * @see AbstractSampler#applies(ConfigTestElement)
+     */
+    @Override
+    public boolean applies(ConfigTestElement configElement) {
+        String guiClass = configElement.getProperty(TestElement.GUI_CLASS).getStringValue();
+        return APPLIABLE_CONFIG_CLASSES.contains(guiClass);
+    }
+
+    public String getVerifier() {
+        return verifier;
+    }
+
+    public void setVerifier(String verifier) {
+        this.verifier = verifier;
+    }
+
+    public String getDataSource() {
+        return dataSource;
+    }
+
+    public void setDataSource(String dataSource) {
+        this.dataSource = dataSource;
+    }
+
+    public String getQuery() {
+        return query;
+    }
+
+    public void setQuery(String query) {
+        this.query = query;
+    }
+
+    public String getFile() {
+        return file;
+    }
+
+    public void setFile(String file) {
+        this.file = file;
+    }
+
+    public String getUrl() {
+        return url;
+    }
+
+    public void setUrl(String url) {
+        this.url = url;
+    }
+
+    public long getPollInterval() {
+        return pollInterval;
+    }
+
+    public void setPollInterval(long pollInterval) {
+        this.pollInterval = pollInterval;
+    }
+
+    public long getTimeout() {
+        return timeout;
+    }
+
+    public void setTimeout(long timeout) {
+        this.timeout = timeout;
+    }
+}
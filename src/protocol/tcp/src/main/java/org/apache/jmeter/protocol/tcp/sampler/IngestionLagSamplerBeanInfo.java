@@ -0,0 +1,85 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.apache.jmeter.protocol.tcp.sampler;
+
+import java.beans.PropertyDescriptor;
+
+import org.apache.jmeter.testbeans.BeanInfoSupport;
+import org.apache.jmeter.testbeans.gui.TypeEditor;
+
+public class IngestionLagSamplerBeanInfo extends BeanInfoSupport {
+
+    public IngestionLagSamplerBeanInfo() {
+        super(IngestionLagSampler.class);
+
+        createPropertyGroup("verification", // $NON-NLS-1$
+                new String[] {
+                        "verifier", // $NON-NLS-1$
+                        "pollInterval", // $NON-NLS-1$
+                        "timeout", // $NON-NLS-1$
+                });
+
+        createPropertyGroup("jdbc", // $NON-NLS-1$
+                new String[] {
+                        "dataSource", // $NON-NLS-1$
+                        "query", // $NON-NLS-1$
+                });
+
+        createPropertyGroup("standIn", // $NON-NLS-1$
+                new String[] {
+                        "file", // $NON-NLS-1$
+                        "url", // $NON-NLS-1$
+                });
+
+        PropertyDescriptor p = property("verifier"); // $NON-NLS-1$
+        p.setValue(NOT_UNDEFINED, Boolean.TRUE);
+        p.setValue(DEFAULT, IngestionLagSampler.JDBC);
+        p.setValue(NOT_OTHER, Boolean.TRUE);
+        p.setValue(TAGS, new String[] {
+                IngestionLagSampler.JDBC,
+                IngestionLagSampler.FILE,
+                IngestionLagSampler.HTTP,
+        });
+
+        p = property("pollInterval"); // $NON-NLS-1$
+        p.setValue(NOT_UNDEFINED, Boolean.TRUE);
+        p.setValue(DEFAULT, 1000L);
+
+        p = property("timeout"); // $NON-NLS-1$
+        p.setValue(NOT_UNDEFINED, Boolean.TRUE);
+        p.setValue(DEFAULT, 60000L);
+
+        p = property("dataSource"); // $NON-NLS-1$
+        p.setValue(NOT_UNDEFINED, Boolean.TRUE);
+        p.setValue(DEFAULT, ""); // $NON-NLS-1$
+
+        p = property("query", TypeEditor.TextAreaEditor); // $NON-NLS-1$
+        p.setValue(NOT_UNDEFINED, Boolean.TRUE);
+        p.setValue(DEFAULT, ""); // $NON-NLS-1$
+        p.setValue(TEXT_LANGUAGE, "sql"); // $NON-NLS-1$
+
+        p = property("file"); // $NON-NLS-1$
+        p.setValue(NOT_UNDEFINED, Boolean.TRUE);
+        p.setValue(DEFAULT, ""); // $NON-NLS-1$
+
+        p = property("url"); // $NON-NLS-1$
+        p.setValue(NOT_UNDEFINED, Boolean.TRUE);
+        p.setValue(DEFAULT, ""); // $NON-NLS-1$
+    }
+}
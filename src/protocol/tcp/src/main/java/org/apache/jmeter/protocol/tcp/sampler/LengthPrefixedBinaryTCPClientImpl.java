@@ -20,7 +20,10 @@ package org.apache.jmeter.protocol.tcp.sampler;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
 
+import org.apache.jmeter.protocol.tcp.codec.FrameReader;
+import org.apache.jmeter.protocol.tcp.codec.LengthPrefixFrameDecoder;
 import org.apache.jmeter.samplers.SampleResult;
 import org.apache.jmeter.util.JMeterUtils;
 import org.apache.jorphan.util.JOrphanUtils;
@@ -41,6 +44,11 @@ public class LengthPrefixedBinaryTCPClientImpl extends TCPClientDecorator {
 
     private final int lengthPrefixLen = JMeterUtils.getPropDefault("tcp.binarylength.prefix.length", 2); // $NON-NLS-1$
 
+    /** Bytes received and not consumed yet, a message may arrive with the start of the next one */
+    private final FrameReader frameReader = new FrameReader(new LengthPrefixFrameDecoder(lengthPrefixLen), 4096);
+
+    private InputStream frameStream;
+
     public LengthPrefixedBinaryTCPClientImpl() {
         super(new BinaryTCPClientImpl());
         tcpClient.setEolByte(Byte.MAX_VALUE+1);
@@ -59,6 +67,18 @@ public class LengthPrefixedBinaryTCPClientImpl extends TCPClientDecorator {
         this.tcpClient.write(os, s);
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void writeBytes(OutputStream os, byte[] bytes) throws IOException {
+        os.write(intToByteArray(bytes.length, lengthPrefixLen));
+        if(log.isDebugEnabled()) {
+            log.debug("Wrote: " + bytes.length + " bytes");
+        }
+        this.tcpClient.writeBytes(os, bytes);
+    }
+
     @Override
     public void write(OutputStream os, String s, String imei) throws IOException {
 
@@ -83,29 +103,64 @@ public class LengthPrefixedBinaryTCPClientImpl extends TCPClientDecorator {
      */
     @Override
     public String read(InputStream is, SampleResult sampleResult) throws ReadException{
-        byte[] msg = new byte[0];
-        int msgLen = 0;
-        byte[] lengthBuffer = new byte[lengthPrefixLen];
+        return JOrphanUtils.baToHexString(readBytes(is, sampleResult));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean hasPendingInput(InputStream is) {
+        return frameStream == is && frameReader.buffered() > 0;
+    }
+
+    /**
+     * Reads one length-prefixed message, the bytes received after it are kept for the next call.
+     * @return the message without its length prefix
+     * @throws ReadException when reading fails
+     */
+    @Override
+    public byte[] readBytes(InputStream is, SampleResult sampleResult) throws ReadException {
+        if (frameStream != is) {
+            frameReader.clear();
+            frameStream = is;
+        }
+        boolean first = true;
+        ByteBuffer frame;
         try {
-            if (is.read(lengthBuffer, 0, lengthPrefixLen) == lengthPrefixLen) {
-                sampleResult.latencyEnd();
-                msgLen = byteArrayToInt(lengthBuffer);
-                msg = new byte[msgLen];
-                int bytes = JOrphanUtils.read(is, msg, 0, msgLen);
-                if (bytes < msgLen) {
-                    log.warn("Incomplete message read, expected: {} got: {}", msgLen, bytes);
+            while ((frame = frameReader.nextFrame(null)) == null) {
+                if (frameReader.read(is) < 0) {
+                    break;
+                }
+                if (first) {
+                    sampleResult.latencyEnd();
+                    first = false;
                 }
             }
-
-            String buffer = JOrphanUtils.baToHexString(msg);
-            if(log.isDebugEnabled()) {
-                log.debug("Read: " + msgLen + "\n" + buffer);
+        } catch (IOException e) {
+            throw new ReadException("", e, JOrphanUtils.baToHexString(payload(frameReader.drain())));
+        }
+        if (frame == null) {
+            frame = frameReader.drain();
+            if (frame.hasRemaining()) {
+                log.warn("Incomplete message read, got: {} bytes", frame.remaining());
             }
-            return buffer;
+        } else if (first) {
+            // received with the previous message
+            sampleResult.latencyEnd();
         }
-        catch(IOException e) {
-            throw new ReadException("", e, JOrphanUtils.baToHexString(msg));
+        byte[] msg = payload(frame);
+        if (log.isDebugEnabled()) {
+            log.debug("Read: " + msg.length + "\n" + JOrphanUtils.baToHexString(msg));
         }
+        return msg;
+    }
+
+    private byte[] payload(ByteBuffer frame) {
+        frame.position(Math.min(frame.limit(), frame.position() + lengthPrefixLen));
+        byte[] msg = new byte[frame.remaining()];
+        frame.get(msg);
+        return msg;
     }
 
     /**
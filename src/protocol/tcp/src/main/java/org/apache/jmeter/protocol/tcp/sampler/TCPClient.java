@@ -20,6 +20,7 @@ package org.apache.jmeter.protocol.tcp.sampler;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.charset.Charset;
 
 import org.apache.jmeter.samplers.SampleResult;
 
@@ -89,6 +90,55 @@ public interface TCPClient {
      */
     String read(InputStream is, SampleResult sampleResult) throws ReadException;
 
+    /**
+     * Writes a request held as raw bytes, binary clients write the bytes
+     * instead of decoding a hex-encoded string.
+     * The default implementation writes the bytes decoded with the charset of the client
+     * using {@link #write(OutputStream, String)}.
+     *
+     * @param os -
+     *            OutputStream for socket
+     * @param bytes -
+     *            bytes to write
+     * @throws IOException when writing fails
+     */
+    default void writeBytes(OutputStream os, byte[] bytes) throws IOException {
+        String charset = getCharset();
+        write(os, new String(bytes, charset == null ? Charset.defaultCharset() : Charset.forName(charset)));
+    }
+
+    /**
+     * Reads one response as raw bytes, binary clients return the bytes received
+     * instead of their hex encoding.
+     * The default implementation encodes the response of {@link #read(InputStream, SampleResult)}
+     * with the charset of the client.
+     *
+     * @param is -
+     *            InputStream for socket
+     * @param sampleResult {@link SampleResult}
+     * @return bytes read from socket
+     * @throws ReadException exception that can contain partial response
+     */
+    default byte[] readBytes(InputStream is, SampleResult sampleResult) throws ReadException {
+        String response = read(is, sampleResult);
+        String charset = getCharset();
+        return response.getBytes(charset == null ? Charset.defaultCharset() : Charset.forName(charset));
+    }
+
+    /**
+     * Tells whether bytes received after the last response are held by the client, to be returned
+     * by the next read on the same stream. A connection shared with other clients must not be
+     * handed over to them then, as they would not see those bytes.
+     * The default implementation returns <code>false</code>, for clients which do not read ahead.
+     *
+     * @param is -
+     *            InputStream for socket
+     * @return <code>true</code> if bytes read from <code>is</code> are buffered
+     */
+    default boolean hasPendingInput(InputStream is) {
+        return false;
+    }
+
     /**
      * Get the end-of-line/end-of-message byte.
      * @return Returns the eolByte.
@@ -28,6 +28,9 @@ import java.net.Socket;
 import java.net.SocketAddress;
 import java.net.SocketException;
 import java.net.UnknownHostException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -38,13 +41,20 @@ import java.util.Set;
 
 import org.apache.commons.lang3.StringUtils;
 import org.apache.jmeter.config.ConfigTestElement;
+import org.apache.jmeter.protocol.tcp.link.LinkProfile;
+import org.apache.jmeter.protocol.tcp.tls.TlsSessionCache;
+import org.apache.jmeter.protocol.tcp.tls.TlsSocket;
 import org.apache.jmeter.samplers.AbstractSampler;
 import org.apache.jmeter.samplers.Entry;
 import org.apache.jmeter.samplers.Interruptible;
 import org.apache.jmeter.samplers.SampleResult;
 import org.apache.jmeter.testelement.TestElement;
+import org.apache.jmeter.testelement.TestStateListener;
 import org.apache.jmeter.testelement.ThreadListener;
+import org.apache.jmeter.testelement.property.ByteArrayProperty;
+import org.apache.jmeter.testelement.property.JMeterProperty;
 import org.apache.jmeter.util.JMeterUtils;
+import org.apache.jorphan.util.JOrphanUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -52,7 +62,7 @@ import org.slf4j.LoggerFactory;
  * A sampler which understands Tcp requests.
  *
  */
-public class TCPSampler extends AbstractSampler implements ThreadListener, Interruptible {
+public class TCPSampler extends AbstractSampler implements ThreadListener, TestStateListener, Interruptible {
     private static final long serialVersionUID = 280L;
 
     private static final Logger log = LoggerFactory.getLogger(TCPSampler.class);
@@ -90,6 +100,12 @@ public class TCPSampler extends AbstractSampler implements ThreadListener, Inter
 
     public static final String EOL_BYTE = "TCPSampler.EolByte"; //$NON-NLS-1$
 
+    /** When set, connections are secured with TLS, see {@link TlsSocket} */
+    public static final String TLS = "TCPSampler.tls"; //$NON-NLS-1$
+
+    /** Number of connections shared by all threads, see {@link ConnectionPool}; 0 or empty for a connection per thread */
+    public static final String POOL_SIZE = "TCPSampler.poolSize"; //$NON-NLS-1$
+
     private static final String TCPKEY = "TCP"; //$NON-NLS-1$ key for HashMap
 
     private static final String ERRKEY = "ERR"; //$NON-NLS-1$ key for HashMap
@@ -137,6 +153,24 @@ public class TCPSampler extends AbstractSampler implements ThreadListener, Inter
 
     private transient volatile Socket currentSocket; // used for handling interrupt
 
+    // the socket key of the last sample and what it was built from, so it is only built again when they change
+    private transient String cachedSocketKey;
+
+    private transient String keyServer;
+
+    private transient int keyPort;
+
+    private transient String keyUsername;
+
+    private transient String keyPassword;
+
+    // the pool key of the last sample, built again when the socket key or the TLS flag change
+    private transient String cachedPoolKey;
+
+    private transient String poolKeySocketKey;
+
+    private transient boolean poolKeyTls;
+
     public TCPSampler() {
         log.debug("Created {}", this); //$NON-NLS-1$
     }
@@ -146,28 +180,21 @@ public class TCPSampler extends AbstractSampler implements ThreadListener, Inter
         return (String) cp.get(ERRKEY);
     }
 
-    private Socket getSocket(String socketKey) {
+    private Socket getSocket(String socketKey, SampleResult res) {
         Map<String, Object> cp = tp.get();
         Socket con = null;
         if (isReUseConnection()) {
             con = (Socket) cp.get(socketKey);
             if (con != null) {
                 log.debug("{} Reusing connection {}", this, con); //$NON-NLS-1$
+                res.connectEnd();
             }
         }
         if (con == null) {
             // Not in cache, so create new one and cache it
             try {
                 closeSocket(socketKey); // Bug 44910 - close previous socket (if any)
-                SocketAddress sockaddr = new InetSocketAddress(getServer(), getPort());
-                con = new Socket(); // NOSONAR socket is either cache in ThreadLocal for reuse and closed at end of thread or closed here
-                if (getPropertyAsString(SO_LINGER,"").length() > 0){
-                    con.setSoLinger(true, getSoLinger());
-                }
-                con.connect(sockaddr, getConnectTimeout());
-                if(log.isDebugEnabled()) {
-                    log.debug("Created new connection {}", con); //$NON-NLS-1$
-                }
+                con = connect(res, Thread.currentThread().getName()); // NOSONAR socket is either cache in ThreadLocal for reuse and closed at end of thread or closed here
                 cp.put(socketKey, con);
             } catch (UnknownHostException e) {
                 log.warn("Unknown host for {}", getLabel(), e);//$NON-NLS-1$
@@ -179,6 +206,65 @@ public class TCPSampler extends AbstractSampler implements ThreadListener, Inter
                 return null;
             }
         }
+        return configure(con);
+    }
+
+    /**
+     * Lease a connection shared with the other threads.
+     *
+     * @return the connection or <code>null</code> if none could be leased, the error is then recorded
+     */
+    private Socket leaseSocket(ConnectionPool pool, SampleResult res) {
+        Socket con;
+        try {
+            // the socket key holds the password, which would show in the TLS handshake sample
+            con = pool.lease(res, () -> connect(res, getPoolName()));
+        } catch (UnknownHostException e) {
+            log.warn("Unknown host for {}", getLabel(), e);//$NON-NLS-1$
+            tp.get().put(ERRKEY, e.toString());
+            return null;
+        } catch (IOException e) {
+            log.warn("Could not lease socket for {}", getLabel(), e); //$NON-NLS-1$
+            tp.get().put(ERRKEY, e.toString());
+            return null;
+        }
+        return configure(con);
+    }
+
+    /**
+     * Open a new connection.
+     *
+     * @param device identity of the client, whose TLS session is resumed; it is shown in the
+     *            TLS handshake sample, so it must not hold credentials
+     */
+    private Socket connect(SampleResult res, String device) throws IOException {
+        SocketAddress sockaddr = new InetSocketAddress(getServer(), getPort());
+        ConnectRateLimiter.acquire(getServer(), res);
+        Socket con = LinkProfile.newSocket(); // NOSONAR closed by the caller on failure
+        try {
+            if (getPropertyAsString(SO_LINGER,"").length() > 0){
+                con.setSoLinger(true, getSoLinger());
+            }
+            try {
+                con.connect(sockaddr, getConnectTimeout());
+            } finally {
+                res.connectEnd(); // the TLS handshake is a sub-result of its own
+            }
+            if (isTls()) {
+                con = TlsSocket.handshake(con, getServer(), getPort(), device, res);
+            }
+        } catch (IOException e) {
+            JOrphanUtils.closeQuietly(con);
+            throw e;
+        }
+        if(log.isDebugEnabled()) {
+            log.debug("Created new connection {}", con); //$NON-NLS-1$
+        }
+        return con;
+    }
+
+    private Socket configure(Socket con) {
+        Map<String, Object> cp = tp.get();
         // (re-)Define connection params - Bug 50977
         try {
             con.setSoTimeout(getTimeout());
@@ -197,7 +283,58 @@ public class TCPSampler extends AbstractSampler implements ThreadListener, Inter
      * @return String socket key in cache Map
      */
     private String getSocketKey() {
-        return TCPKEY+"#"+getServer()+"#"+getPort()+"#"+getUsername()+"#"+getPassword();
+        String server = getServer();
+        int port = getPort();
+        String username = getUsername();
+        String password = getPassword();
+        if (cachedSocketKey == null || port != keyPort || !server.equals(keyServer)
+                || !username.equals(keyUsername) || !password.equals(keyPassword)) {
+            cachedSocketKey = TCPKEY+"#"+server+"#"+port+"#"+username+"#"+password;
+            keyServer = server;
+            keyPort = port;
+            keyUsername = username;
+            keyPassword = password;
+        }
+        return cachedSocketKey;
+    }
+
+    /**
+     * Key of the {@link ConnectionPool} shared by the samplers which connect the same way to the
+     * same endpoint. The credentials are only included as a digest; the key is not to be logged.
+     *
+     * @param socketKey the socket key of the sample
+     * @return the pool key
+     */
+    private String getPoolKey(String socketKey) {
+        boolean tls = isTls();
+        if (cachedPoolKey == null || socketKey != poolKeySocketKey || tls != poolKeyTls) {
+            cachedPoolKey = getServer() + "#" + getPort() + "#" + (tls ? "tls" : "plain") //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$
+                    + "#" + LinkProfile.getKey() //$NON-NLS-1$
+                    + "#" + digestCredentials(getUsername(), getPassword()); //$NON-NLS-1$
+            poolKeySocketKey = socketKey;
+            poolKeyTls = tls;
+        }
+        return cachedPoolKey;
+    }
+
+    private static String digestCredentials(String username, String password) {
+        if (username.isEmpty() && password.isEmpty()) {
+            return ""; //$NON-NLS-1$
+        }
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256"); //$NON-NLS-1$
+            byte[] hash = digest.digest((username + '\0' + password).getBytes(StandardCharsets.UTF_8));
+            return JOrphanUtils.baToHexString(hash);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e); //$NON-NLS-1$
+        }
+    }
+
+    /**
+     * @return the endpoint of the pool, as shown in logs and errors
+     */
+    private String getPoolName() {
+        return getServer() + ":" + getPort() + (isTls() ? " (TLS)" : ""); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
     }
 
     public String getUsername() {
@@ -244,6 +381,22 @@ public class TCPSampler extends AbstractSampler implements ThreadListener, Inter
         return getPropertyAsInt(EOL_BYTE);
     }
 
+    public void setTls(boolean tls) {
+        setProperty(TLS, tls, false);
+    }
+
+    public boolean isTls() {
+        return getPropertyAsBoolean(TLS);
+    }
+
+    public void setPoolSize(String poolSize) {
+        setProperty(POOL_SIZE, poolSize, "");
+    }
+
+    public int getPoolSize() {
+        return getPropertyAsInt(POOL_SIZE, 0);
+    }
+
 
     public void setPort(String newFilename) {
         this.setProperty(PORT, newFilename);
@@ -311,6 +464,27 @@ public class TCPSampler extends AbstractSampler implements ThreadListener, Inter
         return "tcp://" + this.getServer() + ":" + this.getPort();//$NON-NLS-1$ $NON-NLS-2$
     }
 
+    /**
+     * @param classname the TCPClient classname, empty for the default one
+     * @return <code>true</code> if the client exchanges hex-encoded binary data, its request is then
+     *         held as a {@link ByteArrayProperty}
+     */
+    public static boolean isBinaryClient(String classname) {
+        String clazz = classname == null || classname.isEmpty()
+                ? JMeterUtils.getPropDefault("tcp.handler", "TCPClientImpl") //$NON-NLS-1$ $NON-NLS-2$
+                : classname;
+        for (String name : new String[] { clazz, PROTO_PREFIX + clazz }) {
+            try {
+                Class<?> c = Class.forName(name, false, Thread.currentThread().getContextClassLoader());
+                return BinaryTCPClientImpl.class.isAssignableFrom(c)
+                        || LengthPrefixedBinaryTCPClientImpl.class.isAssignableFrom(c);
+            } catch (ClassNotFoundException e) {
+                // try the next name
+            }
+        }
+        return false;
+    }
+
     private Class<?> getClass(String className) {
         Class<?> c = null;
         try {
@@ -357,7 +531,10 @@ public class TCPSampler extends AbstractSampler implements ThreadListener, Inter
         }
         final boolean reUseConnection = isReUseConnection();
         final boolean closeConnection = isCloseConnection();
+        final int poolSize = getPoolSize();
         String socketKey = getSocketKey();
+        ConnectionPool pool = poolSize > 0
+                ? ConnectionPool.get(getPoolKey(socketKey), getPoolName(), poolSize) : null;
         if (log.isDebugEnabled()){
             log.debug(getLabel() + " " + getFilename() + " " + getUsername() + " " + getPassword());
         }
@@ -371,16 +548,15 @@ public class TCPSampler extends AbstractSampler implements ThreadListener, Inter
                 "SOLINGER: " + getSoLinger() +
                 " EOL: " + getEolByte() +
                 " noDelay: " + getNoDelay() +
+                " pool: " + poolSize +
                 "]";
         res.setSamplerData(sb);
         res.sampleStart();
+        Socket sock = null;
+        InputStream is = null;
+        boolean broken = false;
         try {
-            Socket sock;
-            try {
-                sock = getSocket(socketKey);
-            } finally {
-                res.connectEnd();
-            }
+            sock = pool != null ? leaseSocket(pool, res) : getSocket(socketKey, res);
             if (sock == null) {
                 res.setResponseCode("500"); //$NON-NLS-1$
                 res.setResponseMessage(getError());
@@ -389,23 +565,31 @@ public class TCPSampler extends AbstractSampler implements ThreadListener, Inter
                 res.setResponseMessage("Protocol handler not found");
             } else {
                 currentSocket = sock;
-                InputStream is = sock.getInputStream();
+                is = sock.getInputStream();
                 OutputStream os = sock.getOutputStream();
-                String req = getRequestData();
                 // TODO handle filenames
-                res.setSamplerData(req);
-                protocolHandler.write(os, req);
+                JMeterProperty request = getProperty(REQUEST);
+                if (request instanceof ByteArrayProperty) {
+                    // decoded once, only its variables are evaluated
+                    byte[] bytes = ((ByteArrayProperty) request).getBytes();
+                    res.setSamplerData(JOrphanUtils.baToHexString(bytes));
+                    protocolHandler.writeBytes(os, bytes);
+                } else {
+                    String req = getRequestData();
+                    res.setSamplerData(req);
+                    protocolHandler.write(os, req);
+                }
                 String in = protocolHandler.read(is, res);
                 isSuccessful = setupSampleResult(res, in, null, protocolHandler);
             }
         } catch (ReadException ex) {
             log.error("", ex);
             isSuccessful=setupSampleResult(res, ex.getPartialResponse(), ex,protocolHandler);
-            closeSocket(socketKey);
+            broken = true;
         } catch (Exception ex) {
             log.error("", ex);
             isSuccessful=setupSampleResult(res, "", ex, protocolHandler);
-            closeSocket(socketKey);
+            broken = true;
         } finally {
             currentSocket = null;
             // Calculate response time
@@ -414,8 +598,17 @@ public class TCPSampler extends AbstractSampler implements ThreadListener, Inter
             // Set if we were successful or not
             res.setSuccessful(isSuccessful);
 
-            if (!reUseConnection || closeConnection) {
-                closeSocket(socketKey);
+            if (pool == null) {
+                if (broken || !reUseConnection || closeConnection) {
+                    closeSocket(socketKey);
+                }
+            } else if (sock != null) {
+                // bytes read ahead stay with this thread's client, the next lessee would miss them
+                if (broken || closeConnection || (is != null && protocolHandler.hasPendingInput(is))) {
+                    pool.discard(sock);
+                } else {
+                    pool.release(sock);
+                }
             }
         }
         return res;
@@ -521,6 +714,40 @@ public class TCPSampler extends AbstractSampler implements ThreadListener, Inter
         }
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void testStarted() {
+        // NOOP
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void testStarted(String host) {
+        // NOOP
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void testEnded() {
+        ConnectionPool.closeAll();
+        ConnectRateLimiter.clear();
+        TlsSessionCache.clear();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void testEnded(String host) {
+        testEnded();
+    }
+
     /**
      * Closes all connections, clears Map and remove thread local Map
      */
@@ -0,0 +1,415 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.jmeter.protocol.tcp.sampler;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.apache.commons.lang3.StringUtils;
+import org.apache.jmeter.config.ConfigTestElement;
+import org.apache.jmeter.gui.TestElementMetadata;
+import org.apache.jmeter.protocol.tcp.codec.TrackerCodecs;
+import org.apache.jmeter.protocol.tcp.fleet.ArrivalCurve;
+import org.apache.jmeter.protocol.tcp.fleet.FleetConfig;
+import org.apache.jmeter.protocol.tcp.fleet.FleetEngine;
+import org.apache.jmeter.protocol.tcp.fleet.FrameResult;
+import org.apache.jmeter.samplers.AbstractSampler;
+import org.apache.jmeter.samplers.Entry;
+import org.apache.jmeter.samplers.SampleResult;
+import org.apache.jmeter.testbeans.TestBean;
+import org.apache.jmeter.testelement.TestElement;
+import org.apache.jmeter.testelement.TestStateListener;
+import org.apache.jmeter.util.JMeterUtils;
+import org.apache.jorphan.util.JOrphanUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Simulates a whole fleet of trackers without a thread per device.
+ * <p>
+ * The first sample starts a {@link FleetEngine} which connects the devices and
+ * sends their reports from a few selector threads. Each call to {@link #sample(Entry)}
+ * then returns the next acknowledged (or failed) report as a regular {@link SampleResult},
+ * so a thread group with a handful of threads is enough to drain the results of
+ * tens of thousands of devices.
+ * <p>
+ * With an outage configured, a share of the devices is dropped for a while and
+ * reconnects along an {@link ArrivalCurve}, flushing the reports buffered meanwhile.
+ * Their reconnections and backlog flushes are sampled under their own labels, so connect,
+ * handshake and drain times can be told apart from the report round trips.
+ * Commands pushed by the server are answered by the event loops and sampled under a label of their own too.
+ */
+@TestElementMetadata(labelResource = "displayName")
+public class TrackerFleetSampler extends AbstractSampler implements TestBean, TestStateListener {
+    private static final long serialVersionUID = 1L;
+
+    private static final Logger log = LoggerFactory.getLogger(TrackerFleetSampler.class);
+
+    private static final Set<String> APPLIABLE_CONFIG_CLASSES = new HashSet<>(
+            Arrays.asList("org.apache.jmeter.config.gui.SimpleConfigGui"));
+
+    /** How long a sample waits for a report to complete before giving up (no result) */
+    private static final long POLL_TIMEOUT =
+            JMeterUtils.getPropDefault("tracker.fleet.poll.timeout", 1000L); // $NON-NLS-1$
+
+    /** Store responses as hex strings instead of raw bytes */
+    private static final boolean HEX_RESPONSE = JMeterUtils.getPropDefault("tracker.response.hex", false); //$NON-NLS-1$
+
+    private String server;
+
+    private int port;
+
+    private int connectTimeout;
+
+    private int responseTimeout;
+
+    private boolean noDelay;
+
+    private int devices;
+
+    private long firstImei;
+
+    private long reportInterval;
+
+    private int rampUp;
+
+    private int eventLoops;
+
+    private String registry;
+
+    private boolean trajectories;
+
+    private int outageStart;
+
+    private int outageDuration;
+
+    private int outageShare;
+
+    private int reconnectSpread;
+
+    private String reconnectCurve;
+
+    private int batchSize;
+
+    private String protocol;
+
+    private String signal;
+
+    private String eolByte;
+
+    private transient FleetEngine engine;
+
+    /**
+     * @return the next completed report or <code>null</code> if none completed
+     * within <code>tracker.fleet.poll.timeout</code> milliseconds
+     */
+    @Override
+    public SampleResult sample(Entry e) {
+        if (engine == null) {
+            engine = FleetEngine.acquire(createFleetConfig());
+        }
+        FrameResult frame;
+        try {
+            frame = engine.poll(POLL_TIMEOUT);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+        if (frame == null) {
+            return null;
+        }
+        return toSampleResult(frame);
+    }
+
+    private FleetConfig createFleetConfig() {
+        FleetConfig config = new FleetConfig();
+        config.setServer(getServer());
+        config.setPort(getPort());
+        config.setConnectTimeout(getConnectTimeout());
+        config.setResponseTimeout(getResponseTimeout());
+        config.setNoDelay(isNoDelay());
+        config.setDevices(getDevices());
+        config.setFirstImei(getFirstImei());
+        config.setReportInterval(getReportInterval());
+        config.setRampUp(getRampUp() * 1000L);
+        config.setEventLoops(getEventLoops());
+        config.setTrajectories(isTrajectories());
+        config.setOutageStart(getOutageStart() * 1000L);
+        config.setOutageDuration(getOutageDuration() * 1000L);
+        config.setOutageShare(getOutageShare());
+        config.setReconnectSpread(getReconnectSpread() * 1000L);
+        if (StringUtils.isNotBlank(getReconnectCurve())) {
+            config.setReconnectCurve(ArrivalCurve.valueOf(getReconnectCurve().trim()));
+        }
+        config.setBatchSize(getBatchSize());
+        if (StringUtils.isNotBlank(getRegistry())) {
+            config.setRegistry(getRegistry().trim());
+        }
+        if (StringUtils.isNotBlank(getProtocol())) {
+            config.setProtocol(getProtocol().trim());
+        }
+        config.setSignal(getSignal());
+        if (StringUtils.isNotBlank(getEolByte())) {
+            config.setEolByte(Integer.parseInt(getEolByte().trim()));
+        }
+        return config;
+    }
+
+    private SampleResult toSampleResult(FrameResult frame) {
+        SampleResult res = new SampleResult();
+        switch (frame.getType()) {
+            case RECONNECT:
+                res.setSampleLabel(getName() + " reconnect"); //$NON-NLS-1$
+                break;
+            case DRAIN:
+                res.setSampleLabel(getName() + " backlog drain"); //$NON-NLS-1$
+                break;
+            case COMMAND:
+                res.setSampleLabel(getName() + " command"); //$NON-NLS-1$
+                break;
+            default:
+                res.setSampleLabel(getName());
+                break;
+        }
+        long elapsed = frame.getElapsed();
+        res.setStampAndTime(res.isStampedAtStart() ? frame.getStartTime() : frame.getStartTime() + elapsed,
+                elapsed);
+        res.setConnectTime(frame.getConnectTime());
+        res.setLatency(frame.getLatency());
+        res.setSentBytes(frame.getSentBytes());
+        res.setSamplerData("IMEI: " + frame.getImei()); //$NON-NLS-1$
+        if (HEX_RESPONSE) {
+            res.setResponseData(JOrphanUtils.baToHexString(frame.getResponse()), null);
+            res.setDataType(SampleResult.TEXT);
+        } else {
+            res.setResponseData(frame.getResponse());
+            res.setDataType(SampleResult.BINARY);
+        }
+        if (frame.isSuccessful()) {
+            res.setResponseCodeOK();
+            res.setResponseMessage(frame.getRecords() > 1
+                    ? "OK, " + frame.getRecords() + " reports" //$NON-NLS-1$ //$NON-NLS-2$
+                    : "OK"); //$NON-NLS-1$
+        } else {
+            res.setResponseCode("500"); //$NON-NLS-1$
+            res.setResponseMessage(frame.getError());
+        }
+        res.setSuccessful(frame.isSuccessful());
+        return res;
+    }
+
+    @Override
+    public void testStarted() {
+        testStarted(""); //$NON-NLS-1$
+    }
+
+    @Override
+    public void testStarted(String host) {
+        // NOOP, the fleet is started by the first sample once the variables are available
+    }
+
+    @Override
+    public void testEnded() {
+        testEnded(""); //$NON-NLS-1$
+    }
+
+    @Override
+    public void testEnded(String host) {
+        log.debug("Stopping tracker fleets");
+        FleetEngine.shutdownAll();
+        TrackerCodecs.clear();
+    }
+
+    /**
+     * @see AbstractSampler#applies(ConfigTestElement)
+     */
+    @Override
+    public boolean applies(ConfigTestElement configElement) {
+        String guiClass = configElement.getProperty(TestElement.GUI_CLASS).getStringValue();
+        return APPLIABLE_CONFIG_CLASSES.contains(guiClass);
+    }
+
+    public String getServer() {
+        return server;
+    }
+
+    public void setServer(String server) {
+        this.server = server;
+    }
+
+    public int getPort() {
+        return port;
+    }
+
+    public void setPort(int port) {
+        this.port = port;
+    }
+
+    public int getConnectTimeout() {
+        return connectTimeout;
+    }
+
+    public void setConnectTimeout(int connectTimeout) {
+        this.connectTimeout = connectTimeout;
+    }
+
+    public int getResponseTimeout() {
+        return responseTimeout;
+    }
+
+    public void setResponseTimeout(int responseTimeout) {
+        this.responseTimeout = responseTimeout;
+    }
+
+    public boolean isNoDelay() {
+        return noDelay;
+    }
+
+    public void setNoDelay(boolean noDelay) {
+        this.noDelay = noDelay;
+    }
+
+    public int getDevices() {
+        return devices;
+    }
+
+    public void setDevices(int devices) {
+        this.devices = devices;
+    }
+
+    public long getFirstImei() {
+        return firstImei;
+    }
+
+    public void setFirstImei(long firstImei) {
+        this.firstImei = firstImei;
+    }
+
+    public long getReportInterval() {
+        return reportInterval;
+    }
+
+    public void setReportInterval(long reportInterval) {
+        this.reportInterval = reportInterval;
+    }
+
+    public int getRampUp() {
+        return rampUp;
+    }
+
+    public void setRampUp(int rampUp) {
+        this.rampUp = rampUp;
+    }
+
+    public int getEventLoops() {
+        return eventLoops;
+    }
+
+    public void setEventLoops(int eventLoops) {
+        this.eventLoops = eventLoops;
+    }
+
+    public String getRegistry() {
+        return registry;
+    }
+
+    public void setRegistry(String registry) {
+        this.registry = registry;
+    }
+
+    public boolean isTrajectories() {
+        return trajectories;
+    }
+
+    public void setTrajectories(boolean trajectories) {
+        this.trajectories = trajectories;
+    }
+
+    public int getOutageStart() {
+        return outageStart;
+    }
+
+    public void setOutageStart(int outageStart) {
+        this.outageStart = outageStart;
+    }
+
+    public int getOutageDuration() {
+        return outageDuration;
+    }
+
+    public void setOutageDuration(int outageDuration) {
+        this.outageDuration = outageDuration;
+    }
+
+    public int getOutageShare() {
+        return outageShare;
+    }
+
+    public void setOutageShare(int outageShare) {
+        this.outageShare = outageShare;
+    }
+
+    public int getReconnectSpread() {
+        return reconnectSpread;
+    }
+
+    public void setReconnectSpread(int reconnectSpread) {
+        this.reconnectSpread = reconnectSpread;
+    }
+
+    public String getReconnectCurve() {
+        return reconnectCurve;
+    }
+
+    public void setReconnectCurve(String reconnectCurve) {
+        this.reconnectCurve = reconnectCurve;
+    }
+
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    public void setBatchSize(int batchSize) {
+        this.batchSize = batchSize;
+    }
+
+    public String getProtocol() {
+        return protocol;
+    }
+
+    public void setProtocol(String protocol) {
+        this.protocol = protocol;
+    }
+
+    public String getSignal() {
+        return signal;
+    }
+
+    public void setSignal(String signal) {
+        this.signal = signal;
+    }
+
+    public String getEolByte() {
+        return eolByte;
+    }
+
+    public void setEolByte(String eolByte) {
+        this.eolByte = eolByte;
+    }
+}
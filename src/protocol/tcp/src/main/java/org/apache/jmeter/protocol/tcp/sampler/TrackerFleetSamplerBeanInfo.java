@@ -0,0 +1,162 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.jmeter.protocol.tcp.sampler;
+
+import java.beans.PropertyDescriptor;
+
+import org.apache.jmeter.protocol.tcp.codec.TrackerCodecs;
+import org.apache.jmeter.protocol.tcp.fleet.ArrivalCurve;
+import org.apache.jmeter.testbeans.BeanInfoSupport;
+import org.apache.jmeter.testbeans.gui.TypeEditor;
+
+public class TrackerFleetSamplerBeanInfo extends BeanInfoSupport {
+
+    public TrackerFleetSamplerBeanInfo() {
+        super(TrackerFleetSampler.class);
+
+        createPropertyGroup("target", // $NON-NLS-1$
+                new String[] {
+                        "server", // $NON-NLS-1$
+                        "port", // $NON-NLS-1$
+                        "connectTimeout", // $NON-NLS-1$
+                        "responseTimeout", // $NON-NLS-1$
+                        "noDelay", // $NON-NLS-1$
+                });
+
+        createPropertyGroup("fleet", // $NON-NLS-1$
+                new String[] {
+                        "devices", // $NON-NLS-1$
+                        "firstImei", // $NON-NLS-1$
+                        "reportInterval", // $NON-NLS-1$
+                        "rampUp", // $NON-NLS-1$
+                        "eventLoops", // $NON-NLS-1$
+                        "registry", // $NON-NLS-1$
+                        "trajectories", // $NON-NLS-1$
+                });
+
+        createPropertyGroup("outage", // $NON-NLS-1$
+                new String[] {
+                        "outageStart", // $NON-NLS-1$
+                        "outageDuration", // $NON-NLS-1$
+                        "outageShare", // $NON-NLS-1$
+                        "reconnectSpread", // $NON-NLS-1$
+                        "reconnectCurve", // $NON-NLS-1$
+                        "batchSize", // $NON-NLS-1$
+                });
+
+        createPropertyGroup("payload", // $NON-NLS-1$
+                new String[] {
+                        "protocol", // $NON-NLS-1$
+                        "eolByte", // $NON-NLS-1$
+                        "signal", // $NON-NLS-1$
+                });
+
+        PropertyDescriptor p = property("server"); // $NON-NLS-1$
+        p.setValue(NOT_UNDEFINED, Boolean.TRUE);
+        p.setValue(DEFAULT, ""); // $NON-NLS-1$
+
+        p = property("port"); // $NON-NLS-1$
+        p.setValue(NOT_UNDEFINED, Boolean.TRUE);
+        p.setValue(DEFAULT, 0);
+
+        p = property("connectTimeout"); // $NON-NLS-1$
+        p.setValue(NOT_UNDEFINED, Boolean.TRUE);
+        p.setValue(DEFAULT, 10000);
+
+        p = property("responseTimeout"); // $NON-NLS-1$
+        p.setValue(NOT_UNDEFINED, Boolean.TRUE);
+        p.setValue(DEFAULT, 30000);
+
+        p = property("noDelay"); // $NON-NLS-1$
+        p.setValue(NOT_UNDEFINED, Boolean.TRUE);
+        p.setValue(DEFAULT, Boolean.TRUE);
+
+        p = property("devices"); // $NON-NLS-1$
+        p.setValue(NOT_UNDEFINED, Boolean.TRUE);
+        p.setValue(DEFAULT, 1000);
+
+        p = property("firstImei"); // $NON-NLS-1$
+        p.setValue(NOT_UNDEFINED, Boolean.TRUE);
+        p.setValue(DEFAULT, 100000000000000L);
+
+        p = property("reportInterval"); // $NON-NLS-1$
+        p.setValue(NOT_UNDEFINED, Boolean.TRUE);
+        p.setValue(DEFAULT, 10000L);
+
+        p = property("rampUp"); // $NON-NLS-1$
+        p.setValue(NOT_UNDEFINED, Boolean.TRUE);
+        p.setValue(DEFAULT, 60);
+
+        p = property("eventLoops"); // $NON-NLS-1$
+        p.setValue(NOT_UNDEFINED, Boolean.TRUE);
+        p.setValue(DEFAULT, 0);
+
+        p = property("registry"); // $NON-NLS-1$
+        p.setValue(NOT_UNDEFINED, Boolean.TRUE);
+        p.setValue(DEFAULT, ""); // $NON-NLS-1$
+
+        p = property("trajectories"); // $NON-NLS-1$
+        p.setValue(NOT_UNDEFINED, Boolean.TRUE);
+        p.setValue(DEFAULT, Boolean.FALSE);
+
+        p = property("outageStart"); // $NON-NLS-1$
+        p.setValue(NOT_UNDEFINED, Boolean.TRUE);
+        p.setValue(DEFAULT, 0);
+
+        p = property("outageDuration"); // $NON-NLS-1$
+        p.setValue(NOT_UNDEFINED, Boolean.TRUE);
+        p.setValue(DEFAULT, 300);
+
+        p = property("outageShare"); // $NON-NLS-1$
+        p.setValue(NOT_UNDEFINED, Boolean.TRUE);
+        p.setValue(DEFAULT, 30);
+
+        p = property("reconnectSpread"); // $NON-NLS-1$
+        p.setValue(NOT_UNDEFINED, Boolean.TRUE);
+        p.setValue(DEFAULT, 60);
+
+        String[] curves = new String[ArrivalCurve.values().length];
+        for (int i = 0; i < curves.length; i++) {
+            curves[i] = ArrivalCurve.values()[i].name();
+        }
+        p = property("reconnectCurve"); // $NON-NLS-1$
+        p.setValue(NOT_UNDEFINED, Boolean.TRUE);
+        p.setValue(DEFAULT, ArrivalCurve.UNIFORM.name());
+        p.setValue(NOT_OTHER, Boolean.TRUE);
+        p.setValue(TAGS, curves);
+
+        p = property("batchSize"); // $NON-NLS-1$
+        p.setValue(NOT_UNDEFINED, Boolean.TRUE);
+        p.setValue(DEFAULT, 1);
+
+        p = property("protocol"); // $NON-NLS-1$
+        p.setValue(NOT_UNDEFINED, Boolean.TRUE);
+        p.setValue(DEFAULT, "BCE"); // $NON-NLS-1$
+        p.setValue(NOT_OTHER, Boolean.FALSE);
+        p.setValue(TAGS, TrackerCodecs.getNames().toArray(new String[0]));
+
+        p = property("eolByte"); // $NON-NLS-1$
+        p.setValue(NOT_UNDEFINED, Boolean.TRUE);
+        p.setValue(DEFAULT, ""); // $NON-NLS-1$
+
+        p = property("signal", TypeEditor.TextAreaEditor); // $NON-NLS-1$
+        p.setValue(NOT_UNDEFINED, Boolean.TRUE);
+        p.setValue(DEFAULT, ""); // $NON-NLS-1$
+        p.setValue(TEXT_LANGUAGE, "text"); // $NON-NLS-1$
+    }
+}
@@ -19,17 +19,42 @@ package org.apache.jmeter.protocol.tcp.sampler;
 
 import java.io.*;
 import java.net.*;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 
 import org.apache.commons.lang3.StringUtils;
 import org.apache.jmeter.config.ConfigTestElement;
+import org.apache.jmeter.protocol.tcp.codec.DeviceSession;
+import org.apache.jmeter.protocol.tcp.codec.FrameReader;
+import org.apache.jmeter.protocol.tcp.codec.InFlightWindow;
+import org.apache.jmeter.protocol.tcp.codec.TrackerCodec;
+import org.apache.jmeter.protocol.tcp.codec.TrackerCodecs;
+import org.apache.jmeter.protocol.tcp.codec.TrackerReport;
+import org.apache.jmeter.protocol.tcp.config.TrackerScheduleConfig;
+import org.apache.jmeter.protocol.tcp.lag.IngestionLagProbe;
+import org.apache.jmeter.protocol.tcp.link.LinkProfile;
+import org.apache.jmeter.protocol.tcp.registry.FleetRegistry;
+import org.apache.jmeter.protocol.tcp.schedule.ReportScheduler;
+import org.apache.jmeter.protocol.tcp.schedule.ScheduledDevice;
+import org.apache.jmeter.protocol.tcp.tls.TlsSessionCache;
+import org.apache.jmeter.protocol.tcp.tls.TlsSocket;
+import org.apache.jmeter.protocol.tcp.trajectory.TrajectoryPool;
 import org.apache.jmeter.samplers.AbstractSampler;
 import org.apache.jmeter.samplers.Entry;
 import org.apache.jmeter.samplers.Interruptible;
 import org.apache.jmeter.samplers.SampleResult;
 import org.apache.jmeter.testelement.TestElement;
+import org.apache.jmeter.testelement.TestStateListener;
 import org.apache.jmeter.testelement.ThreadListener;
+import org.apache.jmeter.threads.AbstractThreadGroup;
+import org.apache.jmeter.threads.JMeterContextService;
 import org.apache.jmeter.util.JMeterUtils;
+import org.apache.jorphan.util.JOrphanUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -37,7 +62,7 @@ import org.slf4j.LoggerFactory;
  * A sampler which understands Tcp requests.
  *
  */
-public class TrackerTCPSampler extends AbstractSampler implements ThreadListener, Interruptible {
+public class TrackerTCPSampler extends AbstractSampler implements ThreadListener, TestStateListener, Interruptible {
     private static final long serialVersionUID = 1280L;
 
     private static final Logger log = LoggerFactory.getLogger(TrackerTCPSampler.class);
@@ -57,6 +82,9 @@ public class TrackerTCPSampler extends AbstractSampler implements ThreadListener
 
     public static final String CLASSNAME = "TrackerTCPSampler.classname";//$NON-NLS-1$
 
+    /** Name of the {@link TrackerCodec}, when set it is used instead of the classname */
+    public static final String CODEC = "TrackerTCPSampler.codec";//$NON-NLS-1$
+
     public static final String NODELAY = "TrackerTCPSampler.nodelay"; //$NON-NLS-1$
 
     public static final String TIMEOUT = "TrackerTCPSampler.timeout"; //$NON-NLS-1$
@@ -75,10 +103,38 @@ public class TrackerTCPSampler extends AbstractSampler implements ThreadListener
 
     public static final String EOL_BYTE = "TrackerTCPSampler.EolByte"; //$NON-NLS-1$
 
+    /** Number of reports sent with a codec before waiting for their ACKs */
+    public static final String PIPELINE_WINDOW = "TrackerTCPSampler.pipelineWindow"; //$NON-NLS-1$
+    public static final int PIPELINE_WINDOW_DEFAULT = 1;
+
+    /** Name of a {@link TrackerScheduleConfig}, when set the devices come from the schedule instead of the request */
+    public static final String SCHEDULE = "TrackerTCPSampler.schedule"; //$NON-NLS-1$
+
+    /** When set, codec reports follow the device's trajectory from {@link TrajectoryPool#getDefault()} */
+    public static final String TRAJECTORY = "TrackerTCPSampler.trajectory"; //$NON-NLS-1$
+
+    /** When set, codec connections are read by a {@link DownlinkReader} thread answering server commands at once */
+    public static final String DOWNLINK = "TrackerTCPSampler.downlink"; //$NON-NLS-1$
+
+    /** When set, all threads of the group connect before any of them samples, see {@link #preconnect()} */
+    public static final String PRECONNECT = "TrackerTCPSampler.preconnect"; //$NON-NLS-1$
+
+    /** When set, connections are secured with TLS, see {@link TlsSocket} */
+    public static final String TLS = "TrackerTCPSampler.tls"; //$NON-NLS-1$
+
+    private static final long PRECONNECT_TIMEOUT =
+            JMeterUtils.getPropDefault("tracker.preconnect.timeout", 120000L); //$NON-NLS-1$
+
+    /** Threads of each group yet to connect, by socket key; cleared at the end of the test */
+    private static final Map<AbstractThreadGroup, Map<String, CountDownLatch>> PRECONNECTING =
+            new ConcurrentHashMap<>();
+
     private static final String TCPKEY = "TCP"; //$NON-NLS-1$ key for HashMap
 
     private static final String ERRKEY = "ERR"; //$NON-NLS-1$ key for HashMap
 
+    private static final String SESSIONKEY = "SESSION"; //$NON-NLS-1$ key prefix for HashMap
+
     // the response is scanned for these strings
     private static final String STATUS_PREFIX = JMeterUtils.getPropDefault("tcp.status.prefix", ""); //$NON-NLS-1$
 
@@ -88,6 +144,13 @@ public class TrackerTCPSampler extends AbstractSampler implements ThreadListener
 
     private static final Properties STATUS_PROPS = new Properties();
 
+    /** How long a scheduled sample waits for a device report to be due before giving up (no result) */
+    private static final long SCHEDULE_POLL_TIMEOUT =
+            JMeterUtils.getPropDefault("tracker.schedule.poll.timeout", 1000L); // $NON-NLS-1$
+
+    /** Store responses as hex strings, as done before raw bytes were kept */
+    private static final boolean HEX_RESPONSE = JMeterUtils.getPropDefault("tracker.response.hex", false); //$NON-NLS-1$
+
     private static final String PROTO_PREFIX = "org.apache.jmeter.protocol.tcp.sampler."; //$NON-NLS-1$
 
     private static final boolean HAVE_STATUS_PROPS;
@@ -114,16 +177,23 @@ public class TrackerTCPSampler extends AbstractSampler implements ThreadListener
     }
 
     /** the cache of TCP Connections */
-    // KEY = TCPKEY or ERRKEY, Entry= Socket or String
+    // KEY = TCPKEY, ERRKEY or SESSIONKEY, Entry= Socket, String or CodecConnection
     private static final ThreadLocal<Map<String, Object>> tp =
             ThreadLocal.withInitial(HashMap::new);
 
     private transient TCPClient protocolHandler;
 
+    private transient TrackerCodec codec;
+
+    private transient String codecSignal;
+
     private transient boolean firstSample; // Are we processing the first sample?
 
     private transient volatile Socket currentSocket; // used for handling interrupt
 
+    /** Results of the commands answered on the connections opened by this thread, returned by the next samples */
+    private final transient Queue<SampleResult> commandResults = new ConcurrentLinkedQueue<>();
+
     public TrackerTCPSampler() {
         log.debug("Created {}", this); //$NON-NLS-1$
     }
@@ -133,28 +203,23 @@ public class TrackerTCPSampler extends AbstractSampler implements ThreadListener
         return (String) cp.get(ERRKEY);
     }
 
-    private Socket getSocket(String socketKey) {
+    private Socket getSocket(String socketKey, SampleResult res) {
         Map<String, Object> cp = tp.get();
         Socket con = null;
         if (isReUseConnection()) {
             con = (Socket) cp.get(socketKey);
             if (con != null) {
                 log.debug("{} Reusing connection {}", this, con); //$NON-NLS-1$
+                if (res != null) {
+                    res.connectEnd();
+                }
             }
         }
         if (con == null) {
             // Not in cache, so create new one and cache it
             try {
                 closeSocket(socketKey); // Bug 44910 - close previous socket (if any)
-                SocketAddress sockaddr = new InetSocketAddress(getServer(), getPort());
-                con = new Socket(); // NOSONAR socket is either cache in ThreadLocal for reuse and closed at end of thread or closed here
-                if (getPropertyAsString(SO_LINGER,"").length() > 0){
-                    con.setSoLinger(true, getSoLinger());
-                }
-                con.connect(sockaddr, getConnectTimeout());
-                if(log.isDebugEnabled()) {
-                    log.debug("Created new connection {}", con); //$NON-NLS-1$
-                }
+                con = openSocket(res, Thread.currentThread().getName());
                 cp.put(socketKey, con);
             } catch (UnknownHostException e) {
                 log.warn("Unknown host for {}", getLabel(), e);//$NON-NLS-1$
@@ -180,6 +245,44 @@ public class TrackerTCPSampler extends AbstractSampler implements ThreadListener
         return con;
     }
 
+    /**
+     * Open a connection, ending the connect time of the sample once the TCP connection is
+     * established. The TLS handshake, if any, follows as a sub-result.
+     *
+     * @param res the sample opening the connection, the wait for the connect rate limit is
+     *            recorded as its idle time; <code>null</code> if it is not sampled
+     * @param device the device whose TLS session is resumed
+     * @return a new connection to the server, the caller is responsible for closing it
+     * @throws IOException when the connection cannot be established
+     */
+    private Socket openSocket(SampleResult res, String device) throws IOException {
+        ConnectRateLimiter.acquire(getServer(), res);
+        SocketAddress sockaddr = new InetSocketAddress(getServer(), getPort());
+        Socket con = LinkProfile.newSocket(); // NOSONAR socket is either cached for reuse and closed later or closed by the caller
+        try {
+            if (getPropertyAsString(SO_LINGER,"").length() > 0){
+                con.setSoLinger(true, getSoLinger());
+            }
+            try {
+                con.connect(sockaddr, getConnectTimeout());
+            } finally {
+                if (res != null) {
+                    res.connectEnd();
+                }
+            }
+            if (isTls()) {
+                con = TlsSocket.handshake(con, getServer(), getPort(), device, res);
+            }
+        } catch (IOException e) {
+            JOrphanUtils.closeQuietly(con);
+            throw e;
+        }
+        if(log.isDebugEnabled()) {
+            log.debug("Created new connection {}", con); //$NON-NLS-1$
+        }
+        return con;
+    }
+
     /**
      * @return String socket key in cache Map
      */
@@ -232,6 +335,54 @@ public class TrackerTCPSampler extends AbstractSampler implements ThreadListener
     }
 
 
+    public void setPipelineWindow(String window) {
+        this.setProperty(PIPELINE_WINDOW, window, "");
+    }
+
+    public int getPipelineWindow() {
+        return getPropertyAsInt(PIPELINE_WINDOW, PIPELINE_WINDOW_DEFAULT);
+    }
+
+    public void setSchedule(String schedule) {
+        this.setProperty(SCHEDULE, schedule, "");
+    }
+
+    public String getSchedule() {
+        return getPropertyAsString(SCHEDULE, "");
+    }
+
+    public void setTrajectory(boolean trajectory) {
+        setProperty(TRAJECTORY, trajectory, false);
+    }
+
+    public boolean isTrajectory() {
+        return getPropertyAsBoolean(TRAJECTORY);
+    }
+
+    public void setTls(boolean tls) {
+        setProperty(TLS, tls, false);
+    }
+
+    public boolean isTls() {
+        return getPropertyAsBoolean(TLS);
+    }
+
+    public void setDownlink(boolean downlink) {
+        setProperty(DOWNLINK, downlink, false);
+    }
+
+    public boolean isDownlink() {
+        return getPropertyAsBoolean(DOWNLINK);
+    }
+
+    public void setPreconnect(boolean preconnect) {
+        setProperty(PRECONNECT, preconnect, false);
+    }
+
+    public boolean isPreconnect() {
+        return getPropertyAsBoolean(PRECONNECT);
+    }
+
     public void setPort(String newFilename) {
         this.setProperty(PORT, newFilename);
     }
@@ -288,6 +439,14 @@ public class TrackerTCPSampler extends AbstractSampler implements ThreadListener
         return getPropertyAsString(SIGNAL);
     }
 
+    public void setCodec(String codec) {
+        this.setProperty(CODEC, codec, ""); //$NON-NLS-1$
+    }
+
+    public String getCodec() {
+        return getPropertyAsString(CODEC, "");
+    }
+
     public String getClassname() {
         String clazz = getPropertyAsString(CLASSNAME,"");
         if (clazz==null || clazz.length()==0){
@@ -349,10 +508,23 @@ public class TrackerTCPSampler extends AbstractSampler implements ThreadListener
         if (firstSample) { // Do stuff we cannot do as part of threadStarted()
             initSampling();
             firstSample=false;
+            if (isPreconnect()) {
+                preconnect();
+            }
+        }
+        SampleResult command = commandResults.poll();
+        if (command != null) {
+            return command;
         }
         final boolean reUseConnection = isReUseConnection();
         final boolean closeConnection = isCloseConnection();
         String socketKey = getSocketKey();
+        if (!getSchedule().isEmpty()) {
+            return sampleScheduled(reUseConnection && !closeConnection);
+        }
+        if (!getCodec().isEmpty()) {
+            return sampleWithCodec(socketKey, reUseConnection, closeConnection);
+        }
         if (log.isDebugEnabled()){
             log.debug(getLabel() + " " + getFilename() + " " + getUsername() + " " + getPassword());
         }
@@ -370,12 +542,7 @@ public class TrackerTCPSampler extends AbstractSampler implements ThreadListener
         res.setSamplerData(sb);
         res.sampleStart();
         try {
-            Socket sock;
-            try {
-                sock = getSocket(socketKey);
-            } finally {
-                res.connectEnd();
-            }
+            Socket sock = getSocket(socketKey, res);
             if (sock == null) {
                 res.setResponseCode("500"); //$NON-NLS-1$
                 res.setResponseMessage(getError());
@@ -391,8 +558,13 @@ public class TrackerTCPSampler extends AbstractSampler implements ThreadListener
                 // TODO handle filenames
                 res.setSamplerData(req);
                 protocolHandler.write(os, signal, req);
-                String in = protocolHandler.read(is, res);
-                isSuccessful = setupSampleResult(res, in, null, protocolHandler);
+                if (HEX_RESPONSE) {
+                    String in = protocolHandler.read(is, res);
+                    isSuccessful = setupSampleResult(res, in, null, protocolHandler);
+                } else {
+                    byte[] in = protocolHandler.readBytes(is, res);
+                    isSuccessful = setupSampleResult(res, in, null, protocolHandler);
+                }
             }
         } catch (ReadException ex) {
             log.error("", ex);
@@ -417,6 +589,414 @@ public class TrackerTCPSampler extends AbstractSampler implements ThreadListener
         return res;
     }
 
+    /**
+     * Sample with the configured codec.
+     * <p>
+     * Up to {@link #getPipelineWindow()} reports are kept in flight on the connection:
+     * the window is filled, then ACKs are read until at least one report is acknowledged.
+     * Every report gets its own result, timed from its write to its ACK, so reports
+     * acknowledged together are returned by the following samples.
+     * Commands pushed by the server are answered and returned by the following samples as well,
+     * under the label of the sampler followed by <code>command</code>.
+     *
+     * @param socketKey key of the connection in the cache
+     * @param reUseConnection whether the connection is kept between samples
+     * @param closeConnection whether the connection is closed after the sample
+     * @return the result of the oldest report acknowledged, or of the failure
+     */
+    private SampleResult sampleWithCodec(String socketKey, boolean reUseConnection, boolean closeConnection) {
+        Map<String, Object> cp = tp.get();
+        CodecConnection connection = (CodecConnection) cp.get(SESSIONKEY + socketKey);
+        if (connection != null && !connection.completed.isEmpty()) {
+            return connection.completed.poll();
+        }
+        SampleResult res = new SampleResult();
+        res.setSampleLabel(getName());
+        String req = getRequestData();
+        res.setSamplerData(req);
+        res.sampleStart();
+        long startNanos = System.nanoTime();
+        try {
+            Socket sock = getSocket(socketKey, res);
+            if (sock == null) {
+                res.setResponseCode("500"); //$NON-NLS-1$
+                res.setResponseMessage(getError());
+                res.sampleEnd();
+                return res;
+            }
+            currentSocket = sock;
+            TrackerCodec trackerCodec = getTrackerCodec();
+            long imei = Long.parseLong(req.trim());
+            // reports still in flight would be lost when the connection is closed
+            int window = reUseConnection && !closeConnection ? Math.max(1, getPipelineWindow()) : 1;
+            if (connection == null || connection.socket != sock || connection.codec != trackerCodec
+                    || connection.session.getImei() != imei || connection.window.getCapacity() != window) {
+                connection = new CodecConnection(sock, trackerCodec, new DeviceSession(imei), window,
+                        this::commandAnswered);
+                connection.trajectories = isTrajectory() ? TrajectoryPool.getDefault() : null;
+                connection.startMillis = res.getStartTime();
+                connection.startNanos = startNanos;
+                connection.connectTime = res.getConnectTime();
+                cp.put(SESSIONKEY + socketKey, connection);
+            }
+            exchange(connection);
+            return connection.completed.poll();
+        } catch (Exception ex) {
+            log.error("", ex);
+            setupSampleResult(res, "", ex, null);
+            closeSocket(socketKey);
+            res.sampleEnd();
+            res.setSuccessful(false);
+            if (connection != null && connection.window.size() > 1) {
+                // this result fails the oldest report in flight, the next samples return the others
+                connection.window.complete(-1);
+                failInFlight(connection, ex);
+                cp.put(SESSIONKEY + socketKey, connection);
+            }
+            return res;
+        } finally {
+            currentSocket = null;
+            if (!reUseConnection || closeConnection) {
+                closeSocket(socketKey);
+            }
+        }
+    }
+
+    /**
+     * Send the report of the next device due in the {@link ReportScheduler} named by
+     * {@link #getSchedule()}. The connection of each device is kept with the device,
+     * so any thread can send the report of any device.
+     *
+     * @param keepConnection whether the connection of the device is kept between reports
+     * @return the result of the report, or <code>null</code> if no report became due
+     * within <code>tracker.schedule.poll.timeout</code> milliseconds
+     */
+    private SampleResult sampleScheduled(boolean keepConnection) {
+        ReportScheduler scheduler = TrackerScheduleConfig.getScheduler(getSchedule());
+        if (scheduler == null || getCodec().isEmpty()) {
+            SampleResult res = new SampleResult();
+            res.setSampleLabel(getName());
+            res.sampleStart();
+            res.setResponseCode("500"); //$NON-NLS-1$
+            res.setResponseMessage(scheduler == null
+                    ? "No report schedule named " + getSchedule()
+                    : "Report schedules require a Tracker Protocol codec");
+            res.sampleEnd();
+            return res;
+        }
+        ScheduledDevice device;
+        try {
+            device = scheduler.poll(SCHEDULE_POLL_TIMEOUT);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+        if (device == null) {
+            return null;
+        }
+        SampleResult res = new SampleResult();
+        res.setSampleLabel(getName());
+        res.setSamplerData(Long.toString(device.getImei()));
+        res.sampleStart();
+        long startNanos = System.nanoTime();
+        CodecConnection connection = (CodecConnection) device.getConnection();
+        FleetRegistry registry = scheduler.getRegistry();
+        try {
+            if (connection == null) {
+                Socket sock = openSocket(res, Long.toString(device.getImei()));
+                sock.setSoTimeout(getTimeout());
+                sock.setTcpNoDelay(getNoDelay());
+                DeviceSession session = registry == null
+                        ? new DeviceSession(device.getImei())
+                        : new DeviceSession(device.getImei(), registry.getSequence(device.getSlot()));
+                connection = new CodecConnection(sock, getTrackerCodec(), session, 1, this::commandAnswered);
+                connection.trajectories = isTrajectory() ? TrajectoryPool.getDefault() : null;
+                connection.startMillis = res.getStartTime();
+                connection.startNanos = startNanos;
+                connection.connectTime = res.getConnectTime();
+                device.setConnection(connection);
+            }
+            connection.moving = device.isMoving();
+            currentSocket = connection.socket;
+            exchange(connection);
+            SampleResult result = connection.completed.poll();
+            if (registry != null) {
+                TrackerReport report = connection.report;
+                registry.recordReport(device.getSlot(), connection.session.getSequence(), report.getTimeMillis(),
+                        report.getLatitude(), report.getLongitude());
+            }
+            if (!keepConnection) {
+                closeConnection(device);
+            }
+            return result;
+        } catch (Exception ex) {
+            log.error("", ex);
+            setupSampleResult(res, "", ex, null);
+            closeConnection(device);
+            res.sampleEnd();
+            res.setSuccessful(false);
+            return res;
+        } finally {
+            currentSocket = null;
+            scheduler.reschedule(device);
+        }
+    }
+
+    private static void closeConnection(ScheduledDevice device) {
+        CodecConnection connection = (CodecConnection) device.getConnection();
+        if (connection != null) {
+            connection.close();
+            device.setConnection(null);
+        }
+    }
+
+    /**
+     * Set the time of the next report and its position: the device's trajectory if any,
+     * a parked device does not move and has its ignition off.
+     */
+    private static void fillReport(CodecConnection connection, long timeMillis) {
+        TrackerReport report = connection.report;
+        report.setTimeMillis(timeMillis);
+        if (!connection.moving) {
+            report.setSpeed(0);
+            report.setIgnition(false);
+        } else if (connection.trajectories != null) {
+            connection.trajectories.fill(report, connection.session.getImei(), timeMillis);
+        } else {
+            report.setIgnition(true);
+        }
+    }
+
+    /**
+     * Log in if the connection is new, fill the window with reports and read
+     * ACKs until at least one report is completed.
+     *
+     * @param connection the connection
+     * @throws IOException when the exchange fails, the server rejects a frame or closes the connection
+     */
+    private void exchange(CodecConnection connection) throws IOException {
+        TrackerCodec trackerCodec = connection.codec;
+        DeviceSession session = connection.session;
+        InFlightWindow window = connection.window;
+        ByteBuffer out = connection.out;
+        OutputStream os = connection.socket.getOutputStream();
+        InputStream is = connection.socket.getInputStream();
+        out.clear();
+        if (!session.isLoggedIn()) {
+            // a login which is not acknowledged is sent along with the first report
+            if (trackerCodec.encodeLogin(session, out) && trackerCodec.isLoginAcknowledged()) {
+                connection.loginBytes = writeFrames(os, out);
+                if (awaitAck(is, connection) < 0) {
+                    throw new IOException("Login rejected by server");
+                }
+            }
+            session.setLoggedIn(true);
+        }
+        if (isDownlink()) {
+            connection.downlink.start();
+        }
+        for (int i = window.size(); i < window.getCapacity(); i++) {
+            long sendNanos = System.nanoTime();
+            long sendMillis = System.currentTimeMillis();
+            int sequence;
+            int sentBytes;
+            // the downlink reader may be answering a command meanwhile
+            synchronized (connection) {
+                fillReport(connection, sendMillis);
+                trackerCodec.encodeReport(session, connection.report, out);
+                sequence = session.getSequence();
+                sentBytes = writeFrames(os, out);
+            }
+            IngestionLagProbe.sent(session.getImei(), sendMillis);
+            window.add(sequence, sendNanos, sendMillis, sentBytes + connection.loginBytes);
+            connection.loginBytes = 0;
+            if (!trackerCodec.isReportAcknowledged()) {
+                window.complete(-1);
+                connection.completed.add(newFrameResult(connection, System.nanoTime(), new byte[0]));
+            }
+        }
+        while (connection.completed.isEmpty()) {
+            ByteBuffer frame = nextFrame(is, connection);
+            if (trackerCodec.isCommand(session, frame)) {
+                connection.downlink.answer(frame, connection.frameNanos);
+                continue;
+            }
+            int acknowledged = trackerCodec.acknowledged(session, frame);
+            if (acknowledged < 0) {
+                throw new IOException("Report rejected by server");
+            }
+            if (acknowledged == 0) {
+                log.debug("{} Ignoring {} unsolicited bytes", this, frame.remaining());
+                continue;
+            }
+            long ackNanos = connection.frameNanos;
+            int sequence = trackerCodec.ackSequence(session, frame);
+            byte[] response = new byte[frame.remaining()];
+            frame.get(response);
+            // an ACK echoing a serial number completes one report, a count completes the oldest ones
+            int completed = 0;
+            while (completed < acknowledged && window.complete(sequence)) {
+                connection.completed.add(newFrameResult(connection, ackNanos, response));
+                completed++;
+                if (sequence >= 0) {
+                    break;
+                }
+            }
+            if (completed == 0) {
+                log.debug("{} Ignoring ACK of unknown report {}", this, sequence);
+            }
+        }
+    }
+
+    /**
+     * Build the result of the report just completed in the window of a connection.
+     * The first report of a connection also accounts for the connect and the login.
+     */
+    private SampleResult newFrameResult(CodecConnection connection, long endNanos, byte[] response) {
+        InFlightWindow window = connection.window;
+        SampleResult res = new SampleResult();
+        res.setSampleLabel(getName());
+        res.setSamplerData(getRequestData());
+        long startMillis = window.getCompletedMillis();
+        long startNanos = window.getCompletedNanos();
+        if (connection.firstReport) {
+            startMillis = connection.startMillis;
+            startNanos = connection.startNanos;
+            res.setConnectTime(connection.connectTime);
+            connection.firstReport = false;
+        }
+        long elapsed = TimeUnit.NANOSECONDS.toMillis(endNanos - startNanos);
+        res.setStampAndTime(res.isStampedAtStart() ? startMillis : startMillis + elapsed, elapsed);
+        res.setLatency(elapsed);
+        res.setSentBytes(window.getCompletedBytes());
+        res.setSuccessful(HEX_RESPONSE
+                ? setupSampleResult(res, JOrphanUtils.baToHexString(response), null, null)
+                : setupSampleResult(res, response, null, null));
+        return res;
+    }
+
+    /**
+     * Queue a failed result for each report still in flight on a connection which failed,
+     * oldest first, so every report sent is sampled once.
+     */
+    private void failInFlight(CodecConnection connection, Exception ex) {
+        InFlightWindow window = connection.window;
+        long endNanos = System.nanoTime();
+        while (window.complete(-1)) {
+            SampleResult res = new SampleResult();
+            res.setSampleLabel(getName());
+            res.setSamplerData(getRequestData());
+            long startMillis = window.getCompletedMillis();
+            long elapsed = TimeUnit.NANOSECONDS.toMillis(endNanos - window.getCompletedNanos());
+            res.setStampAndTime(res.isStampedAtStart() ? startMillis : startMillis + elapsed, elapsed);
+            res.setSentBytes(window.getCompletedBytes());
+            setupSampleResult(res, "", ex, null);
+            res.setSuccessful(false);
+            connection.completed.add(res);
+        }
+    }
+
+    private static int writeFrames(OutputStream os, ByteBuffer out) throws IOException {
+        int length = out.position();
+        os.write(out.array(), 0, length);
+        os.flush();
+        out.clear();
+        return length;
+    }
+
+    /**
+     * Read frames until the server acknowledges or rejects the frame sent.
+     *
+     * @return the codec answer, negative if the frame was rejected
+     */
+    private static int awaitAck(InputStream is, CodecConnection connection) throws IOException {
+        while (true) {
+            int acknowledged = connection.codec.acknowledged(connection.session, nextFrame(is, connection));
+            if (acknowledged != 0) {
+                return acknowledged;
+            }
+        }
+    }
+
+    /**
+     * Get the next frame sent by the server, from the downlink reader once it is started.
+     * Its time of reception is kept in {@link CodecConnection#frameNanos}.
+     */
+    private static ByteBuffer nextFrame(InputStream is, CodecConnection connection) throws IOException {
+        if (connection.downlink.isStarted()) {
+            DownlinkReader.Frame frame = connection.downlink.take(connection.socket.getSoTimeout());
+            connection.frameNanos = frame.getReceivedNanos();
+            return ByteBuffer.wrap(frame.getBytes());
+        }
+        ByteBuffer frame;
+        while ((frame = connection.reader.nextFrame(connection.session)) == null) {
+            if (connection.reader.read(is) < 0) {
+                throw new EOFException("Connection closed by server");
+            }
+        }
+        connection.frameNanos = System.nanoTime();
+        return frame;
+    }
+
+    /**
+     * Queue the result of a command answered on a connection of this thread,
+     * called by the thread which read the command.
+     */
+    private void commandAnswered(long imei, byte[] command, long receivedMillis, long elapsed, int sentBytes,
+            IOException failure) {
+        SampleResult res = new SampleResult();
+        res.setSampleLabel(getName() + " command"); //$NON-NLS-1$
+        res.setSamplerData(Long.toString(imei));
+        res.setStampAndTime(res.isStampedAtStart() ? receivedMillis : receivedMillis + elapsed, elapsed);
+        res.setSentBytes(sentBytes);
+        res.setSuccessful(HEX_RESPONSE
+                ? setupSampleResult(res, JOrphanUtils.baToHexString(command), failure, null)
+                : setupSampleResult(res, command, failure, null));
+        commandResults.add(res);
+    }
+
+    /**
+     * @return the codec, resolved on the first sample and again only if the demo signal changes
+     */
+    private TrackerCodec getTrackerCodec() {
+        String signal = getSignalData();
+        if (codec == null || !signal.equals(codecSignal)) {
+            Map<String, String> parameters = new HashMap<>();
+            parameters.put(TrackerCodecs.SIGNAL, signal);
+            if (getPropertyAsString(EOL_BYTE, "").length() > 0) {
+                parameters.put(TrackerCodecs.EOM_BYTE, Integer.toString(getEolByte()));
+            }
+            codec = TrackerCodecs.get(getCodec(), parameters);
+            codecSignal = signal;
+            log.debug("{} Using codec {}", this, codec.getName());
+        }
+        return codec;
+    }
+
+    /**
+     * Fills SampleResult object with the raw bytes of a binary response,
+     * they are rendered as hex by the GUI only when asked to.
+     * @param sampleResult {@link SampleResult}
+     * @param response Response read
+     * @param exception Source exception
+     * @param protocolHandler {@link TCPClient}, <code>null</code> for codecs
+     * @return boolean if sample is considered as successful
+     */
+    private boolean setupSampleResult(SampleResult sampleResult,
+            byte[] response,
+            Exception exception,
+            TCPClient protocolHandler) {
+        String charset = protocolHandler != null ? protocolHandler.getCharset() : null;
+        // the status is only looked for when configured, to avoid decoding every response
+        String statusResponse = STATUS_PREFIX.length() > 0
+                ? new String(response, charset != null ? Charset.forName(charset) : Charset.defaultCharset())
+                : ""; //$NON-NLS-1$
+        boolean isSuccessful = setupSampleResult(sampleResult, statusResponse, exception, protocolHandler);
+        sampleResult.setResponseData(response);
+        sampleResult.setDataType(SampleResult.BINARY);
+        return isSuccessful;
+    }
+
     /**
      * Fills SampleResult object
      * @param sampleResult {@link SampleResult}
@@ -479,6 +1059,10 @@ public class TrackerTCPSampler extends AbstractSampler implements ThreadListener
 
     // Cannot do this as part of threadStarted() because the Config elements have not been processed.
     private void initSampling() {
+        if (!getCodec().isEmpty()) {
+            codec = null;
+            return;
+        }
         protocolHandler = getProtocol();
         if (log.isDebugEnabled()) {
             log.debug("Using Protocol Handler: {}",  //$NON-NLS-1$
@@ -489,11 +1073,46 @@ public class TrackerTCPSampler extends AbstractSampler implements ThreadListener
         }
     }
 
+    /**
+     * Open the connection of this thread, then wait until all the threads of the group have opened theirs,
+     * so the first samples measure the server under its full connection count rather than the connection storm.
+     * The connections are rate limited like the others, but not sampled. Only applies to connections which
+     * are reused and kept open.
+     */
+    private void preconnect() {
+        if (!isReUseConnection() || isCloseConnection() || !getSchedule().isEmpty()) {
+            log.warn("{} Pre-connect ignored, it requires a reused connection kept open and no schedule", //$NON-NLS-1$
+                    getName());
+            return;
+        }
+        String socketKey = getSocketKey();
+        if (getSocket(socketKey, null) == null) {
+            log.warn("{} Pre-connect failed: {}", getName(), getError()); //$NON-NLS-1$
+        }
+        AbstractThreadGroup group = JMeterContextService.getContext().getThreadGroup();
+        if (group == null) {
+            return;
+        }
+        CountDownLatch latch = PRECONNECTING
+                .computeIfAbsent(group, g -> new ConcurrentHashMap<>())
+                .computeIfAbsent(getName() + socketKey, k -> new CountDownLatch(group.getNumThreads()));
+        latch.countDown();
+        try {
+            if (!latch.await(PRECONNECT_TIMEOUT, TimeUnit.MILLISECONDS)) {
+                log.warn("{} Pre-connect timed out, {} threads of {} not connected", //$NON-NLS-1$
+                        getName(), latch.getCount(), group.getName());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
     /**
      * Close socket of current sampler
      */
     private void closeSocket(String socketKey) {
         Map<String, Object> cp = tp.get();
+        cp.remove(SESSIONKEY + socketKey);
         Socket con = (Socket) cp.remove(socketKey);
         if (con != null) {
             log.debug("{} Closing connection {}", this, con); //$NON-NLS-1$
@@ -517,6 +1136,40 @@ public class TrackerTCPSampler extends AbstractSampler implements ThreadListener
         }
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void testStarted() {
+        // NOOP
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void testStarted(String host) {
+        // NOOP
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void testEnded() {
+        PRECONNECTING.clear();
+        ConnectRateLimiter.clear();
+        TlsSessionCache.clear();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void testEnded(String host) {
+        testEnded();
+    }
+
     /**
      * Closes all connections, clears Map and remove thread local Map
      */
@@ -558,4 +1211,50 @@ public class TrackerTCPSampler extends AbstractSampler implements ThreadListener
             return false;
         }
     }
+
+    /**
+     * Protocol state of a connection used with a {@link TrackerCodec}
+     */
+    private static final class CodecConnection implements Closeable {
+        private final Socket socket;
+        private final TrackerCodec codec;
+        private final DeviceSession session;
+        private final FrameReader reader;
+        private final ByteBuffer out;
+        private final TrackerReport report = new TrackerReport();
+        private final InFlightWindow window;
+        /** Results of the reports acknowledged, or failed with the connection, but not returned yet */
+        private final Queue<SampleResult> completed = new ArrayDeque<>();
+        /** Start of the connection, accounted to the first report */
+        private boolean firstReport = true;
+        private long startMillis;
+        private long startNanos;
+        private long connectTime;
+        /** Bytes sent for the login, accounted to the first report */
+        private int loginBytes;
+        /** <code>false</code> while a scheduled device is parked */
+        private boolean moving = true;
+        /** Positions of the reports, <code>null</code> to keep a fixed position */
+        private TrajectoryPool trajectories;
+        /** Answers the commands, and reads the connection in the background when started */
+        private final DownlinkReader downlink;
+        /** {@link System#nanoTime()} at which the last frame was received */
+        private long frameNanos;
+
+        CodecConnection(Socket socket, TrackerCodec codec, DeviceSession session, int window,
+                DownlinkReader.CommandListener listener) {
+            this.socket = socket;
+            this.codec = codec;
+            this.session = session;
+            this.reader = new FrameReader(codec.getFrameDecoder(), 256);
+            this.out = ByteBuffer.allocate(2 * codec.getMaxFrameLength());
+            this.window = new InFlightWindow(window);
+            this.downlink = new DownlinkReader(socket, codec, session, reader, this, listener);
+        }
+
+        @Override
+        public void close() {
+            JOrphanUtils.closeQuietly(socket);
+        }
+    }
 }
@@ -0,0 +1,290 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.jmeter.protocol.tcp.sampler;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.apache.commons.lang3.StringUtils;
+import org.apache.jmeter.config.ConfigTestElement;
+import org.apache.jmeter.gui.TestElementMetadata;
+import org.apache.jmeter.protocol.tcp.codec.TrackerCodecs;
+import org.apache.jmeter.protocol.tcp.fleet.DatagramFleetEngine;
+import org.apache.jmeter.protocol.tcp.fleet.FleetConfig;
+import org.apache.jmeter.protocol.tcp.fleet.FrameResult;
+import org.apache.jmeter.samplers.AbstractSampler;
+import org.apache.jmeter.samplers.Entry;
+import org.apache.jmeter.samplers.SampleResult;
+import org.apache.jmeter.samplers.StatisticalSampleResult;
+import org.apache.jmeter.testbeans.TestBean;
+import org.apache.jmeter.testelement.TestElement;
+import org.apache.jmeter.testelement.TestStateListener;
+import org.apache.jmeter.util.JMeterUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Simulates a fleet of trackers reporting over UDP.
+ * <p>
+ * The first sample starts a {@link DatagramFleetEngine} which sends the reports of all
+ * devices from a few shared datagram channels. Each call to {@link #sample(Entry)} returns
+ * the statistics of one group of devices over the last period as a {@link StatisticalSampleResult}:
+ * the sample count is the number of datagrams acknowledged and the elapsed time the sum of their
+ * ACK times, so listeners show the ACK latency of every group (labelled <code>name #group</code>).
+ * The datagrams whose ACK was lost are counted apart, as failed samples without a time
+ * (labelled <code>name #group lost</code>), so the loss does not skew the latency.
+ */
+@TestElementMetadata(labelResource = "displayName")
+public class TrackerUDPSampler extends AbstractSampler implements TestBean, TestStateListener {
+    private static final long serialVersionUID = 1L;
+
+    private static final Logger log = LoggerFactory.getLogger(TrackerUDPSampler.class);
+
+    private static final Set<String> APPLIABLE_CONFIG_CLASSES = new HashSet<>(
+            Arrays.asList("org.apache.jmeter.config.gui.SimpleConfigGui"));
+
+    /** How long a sample waits for the statistics of a group before giving up (no result) */
+    private static final long POLL_TIMEOUT =
+            JMeterUtils.getPropDefault("tracker.fleet.poll.timeout", 1000L); // $NON-NLS-1$
+
+    /** Period covered by the statistics of a group */
+    private static final long STATS_INTERVAL =
+            JMeterUtils.getPropDefault("tracker.udp.stats.interval", 1000L); // $NON-NLS-1$
+
+    private String server;
+
+    private int port;
+
+    private int responseTimeout;
+
+    private int devices;
+
+    private long firstImei;
+
+    private long reportInterval;
+
+    private int rampUp;
+
+    private int eventLoops;
+
+    private int groupSize;
+
+    private boolean trajectories;
+
+    private String protocol;
+
+    private String signal;
+
+    private transient DatagramFleetEngine engine;
+
+    /**
+     * @return the statistics of the next group or <code>null</code> if none were published
+     * within <code>tracker.fleet.poll.timeout</code> milliseconds
+     */
+    @Override
+    public SampleResult sample(Entry e) {
+        if (engine == null) {
+            engine = DatagramFleetEngine.acquire(createFleetConfig());
+        }
+        FrameResult frame;
+        try {
+            frame = engine.poll(POLL_TIMEOUT);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+        if (frame == null) {
+            return null;
+        }
+        return toSampleResult(frame);
+    }
+
+    private FleetConfig createFleetConfig() {
+        FleetConfig config = new FleetConfig();
+        config.setServer(getServer());
+        config.setPort(getPort());
+        config.setResponseTimeout(getResponseTimeout());
+        config.setDevices(getDevices());
+        config.setFirstImei(getFirstImei());
+        config.setReportInterval(getReportInterval());
+        config.setRampUp(getRampUp() * 1000L);
+        config.setEventLoops(getEventLoops());
+        config.setGroupSize(getGroupSize());
+        config.setTrajectories(isTrajectories());
+        if (StringUtils.isNotBlank(getProtocol())) {
+            config.setProtocol(getProtocol().trim());
+        }
+        config.setSignal(getSignal());
+        return config;
+    }
+
+    private SampleResult toSampleResult(FrameResult frame) {
+        SampleResult datagrams = new SampleResult();
+        datagrams.setSampleLabel(getName() + " #" + frame.getGroup() //$NON-NLS-1$
+                + (frame.getType() == FrameResult.Type.LOSSES ? " lost" : "")); //$NON-NLS-1$ //$NON-NLS-2$
+        datagrams.setStampAndTime(frame.getStartTime(), frame.getElapsed());
+        datagrams.setSampleCount(frame.getRecords());
+        datagrams.setLatency(frame.getLatency());
+        datagrams.setSentBytes(frame.getSentBytes());
+        StatisticalSampleResult res = new StatisticalSampleResult(datagrams);
+        res.add(datagrams);
+        // the elapsed time is a sum, the sample spans the period
+        res.setEndTime(frame.getStartTime() + STATS_INTERVAL);
+        res.setErrorCount(frame.getFailures());
+        res.setSamplerData("First IMEI: " + frame.getImei()); //$NON-NLS-1$
+        res.setResponseData(frame.getResponse());
+        res.setDataType(SampleResult.BINARY);
+        if (frame.isSuccessful()) {
+            res.setResponseCodeOK();
+            res.setResponseMessage(frame.getRecords() + " datagrams"); //$NON-NLS-1$
+        } else {
+            res.setResponseCode("500"); //$NON-NLS-1$
+            res.setResponseMessage(frame.getError());
+        }
+        res.setSuccessful(frame.isSuccessful());
+        return res;
+    }
+
+    @Override
+    public void testStarted() {
+        testStarted(""); //$NON-NLS-1$
+    }
+
+    @Override
+    public void testStarted(String host) {
+        // NOOP, the fleet is started by the first sample once the variables are available
+    }
+
+    @Override
+    public void testEnded() {
+        testEnded(""); //$NON-NLS-1$
+    }
+
+    @Override
+    public void testEnded(String host) {
+        log.debug("Stopping UDP tracker fleets");
+        DatagramFleetEngine.shutdownAll();
+        TrackerCodecs.clear();
+    }
+
+    /**
+     * @see AbstractSampler#applies(ConfigTestElement)
+     */
+    @Override
+    public boolean applies(ConfigTestElement configElement) {
+        String guiClass = configElement.getProperty(TestElement.GUI_CLASS).getStringValue();
+        return APPLIABLE_CONFIG_CLASSES.contains(guiClass);
+    }
+
+    public String getServer() {
+        return server;
+    }
+
+    public void setServer(String server) {
+        this.server = server;
+    }
+
+    public int getPort() {
+        return port;
+    }
+
+    public void setPort(int port) {
+        this.port = port;
+    }
+
+    public int getResponseTimeout() {
+        return responseTimeout;
+    }
+
+    public void setResponseTimeout(int responseTimeout) {
+        this.responseTimeout = responseTimeout;
+    }
+
+    public int getDevices() {
+        return devices;
+    }
+
+    public void setDevices(int devices) {
+        this.devices = devices;
+    }
+
+    public long getFirstImei() {
+        return firstImei;
+    }
+
+    public void setFirstImei(long firstImei) {
+        this.firstImei = firstImei;
+    }
+
+    public long getReportInterval() {
+        return reportInterval;
+    }
+
+    public void setReportInterval(long reportInterval) {
+        this.reportInterval = reportInterval;
+    }
+
+    public int getRampUp() {
+        return rampUp;
+    }
+
+    public void setRampUp(int rampUp) {
+        this.rampUp = rampUp;
+    }
+
+    public int getEventLoops() {
+        return eventLoops;
+    }
+
+    public void setEventLoops(int eventLoops) {
+        this.eventLoops = eventLoops;
+    }
+
+    public int getGroupSize() {
+        return groupSize;
+    }
+
+    public void setGroupSize(int groupSize) {
+        this.groupSize = groupSize;
+    }
+
+    public boolean isTrajectories() {
+        return trajectories;
+    }
+
+    public void setTrajectories(boolean trajectories) {
+        this.trajectories = trajectories;
+    }
+
+    public String getProtocol() {
+        return protocol;
+    }
+
+    public void setProtocol(String protocol) {
+        this.protocol = protocol;
+    }
+
+    public String getSignal() {
+        return signal;
+    }
+
+    public void setSignal(String signal) {
+        this.signal = signal;
+    }
+}
@@ -0,0 +1,106 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.jmeter.protocol.tcp.sampler;
+
+import java.beans.PropertyDescriptor;
+
+import org.apache.jmeter.protocol.tcp.codec.TrackerCodecs;
+import org.apache.jmeter.testbeans.BeanInfoSupport;
+import org.apache.jmeter.testbeans.gui.TypeEditor;
+
+public class TrackerUDPSamplerBeanInfo extends BeanInfoSupport {
+
+    public TrackerUDPSamplerBeanInfo() {
+        super(TrackerUDPSampler.class);
+
+        createPropertyGroup("target", // $NON-NLS-1$
+                new String[] {
+                        "server", // $NON-NLS-1$
+                        "port", // $NON-NLS-1$
+                        "responseTimeout", // $NON-NLS-1$
+                });
+
+        createPropertyGroup("fleet", // $NON-NLS-1$
+                new String[] {
+                        "devices", // $NON-NLS-1$
+                        "firstImei", // $NON-NLS-1$
+                        "reportInterval", // $NON-NLS-1$
+                        "rampUp", // $NON-NLS-1$
+                        "eventLoops", // $NON-NLS-1$
+                        "groupSize", // $NON-NLS-1$
+                        "trajectories", // $NON-NLS-1$
+                });
+
+        createPropertyGroup("payload", // $NON-NLS-1$
+                new String[] {
+                        "protocol", // $NON-NLS-1$
+                        "signal", // $NON-NLS-1$
+                });
+
+        PropertyDescriptor p = property("server"); // $NON-NLS-1$
+        p.setValue(NOT_UNDEFINED, Boolean.TRUE);
+        p.setValue(DEFAULT, ""); // $NON-NLS-1$
+
+        p = property("port"); // $NON-NLS-1$
+        p.setValue(NOT_UNDEFINED, Boolean.TRUE);
+        p.setValue(DEFAULT, 0);
+
+        p = property("responseTimeout"); // $NON-NLS-1$
+        p.setValue(NOT_UNDEFINED, Boolean.TRUE);
+        p.setValue(DEFAULT, 5000);
+
+        p = property("devices"); // $NON-NLS-1$
+        p.setValue(NOT_UNDEFINED, Boolean.TRUE);
+        p.setValue(DEFAULT, 10000);
+
+        p = property("firstImei"); // $NON-NLS-1$
+        p.setValue(NOT_UNDEFINED, Boolean.TRUE);
+        p.setValue(DEFAULT, 100000000000000L);
+
+        p = property("reportInterval"); // $NON-NLS-1$
+        p.setValue(NOT_UNDEFINED, Boolean.TRUE);
+        p.setValue(DEFAULT, 10000L);
+
+        p = property("rampUp"); // $NON-NLS-1$
+        p.setValue(NOT_UNDEFINED, Boolean.TRUE);
+        p.setValue(DEFAULT, 10);
+
+        p = property("eventLoops"); // $NON-NLS-1$
+        p.setValue(NOT_UNDEFINED, Boolean.TRUE);
+        p.setValue(DEFAULT, 0);
+
+        p = property("groupSize"); // $NON-NLS-1$
+        p.setValue(NOT_UNDEFINED, Boolean.TRUE);
+        p.setValue(DEFAULT, 1000);
+
+        p = property("trajectories"); // $NON-NLS-1$
+        p.setValue(NOT_UNDEFINED, Boolean.TRUE);
+        p.setValue(DEFAULT, Boolean.FALSE);
+
+        p = property("protocol"); // $NON-NLS-1$
+        p.setValue(NOT_UNDEFINED, Boolean.TRUE);
+        p.setValue(DEFAULT, "BCE"); // $NON-NLS-1$
+        p.setValue(NOT_OTHER, Boolean.FALSE);
+        p.setValue(TAGS, TrackerCodecs.getNames().toArray(new String[0]));
+
+        p = property("signal", TypeEditor.TextAreaEditor); // $NON-NLS-1$
+        p.setValue(NOT_UNDEFINED, Boolean.TRUE);
+        p.setValue(DEFAULT, ""); // $NON-NLS-1$
+        p.setValue(TEXT_LANGUAGE, "text"); // $NON-NLS-1$
+    }
+}
@@ -0,0 +1,119 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.jmeter.protocol.tcp.schedule;
+
+import java.util.Random;
+
+/**
+ * How often the devices of a {@link ReportScheduler} report.
+ * <p>
+ * Devices alternate between moving and parked. Each state has its own report interval,
+ * randomised by a jitter, and lasts for an exponentially distributed time with the given
+ * mean, so the population settles to the same moving/parked ratio as a real fleet.
+ * Instances are immutable.
+ */
+public final class ReportProfile {
+
+    private final long movingInterval;
+
+    private final long parkedInterval;
+
+    private final double jitter;
+
+    private final long movingDuration;
+
+    private final long parkedDuration;
+
+    /**
+     * @param movingInterval time between reports while moving, in milliseconds
+     * @param parkedInterval time between reports while parked, in milliseconds
+     * @param jitterPercent maximum deviation of an interval, in percent of the interval
+     * @param movingDuration mean time a device keeps moving in milliseconds, 0 to never stop
+     * @param parkedDuration mean time a device stays parked in milliseconds, 0 to never move
+     * @throws IllegalArgumentException if an interval is not positive or the jitter is not between 0 and 100
+     */
+    public ReportProfile(long movingInterval, long parkedInterval, double jitterPercent,
+            long movingDuration, long parkedDuration) {
+        if (movingInterval <= 0 || parkedInterval <= 0) {
+            throw new IllegalArgumentException("Report intervals must be positive: "
+                    + movingInterval + ", " + parkedInterval);
+        }
+        if (jitterPercent < 0 || jitterPercent > 100) {
+            throw new IllegalArgumentException("Jitter must be between 0 and 100%: " + jitterPercent);
+        }
+        this.movingInterval = movingInterval;
+        this.parkedInterval = parkedInterval;
+        this.jitter = jitterPercent / 100;
+        this.movingDuration = movingDuration;
+        this.parkedDuration = parkedDuration;
+    }
+
+    public long getMovingInterval() {
+        return movingInterval;
+    }
+
+    public long getParkedInterval() {
+        return parkedInterval;
+    }
+
+    /**
+     * @param moving state of the device
+     * @param random source of randomness
+     * @return time until the next report, in milliseconds
+     */
+    long nextInterval(boolean moving, Random random) {
+        long interval = moving ? movingInterval : parkedInterval;
+        if (jitter > 0) {
+            interval += (long) (interval * jitter * (2 * random.nextDouble() - 1));
+        }
+        return Math.max(1, interval);
+    }
+
+    /**
+     * @param moving the state entered
+     * @param random source of randomness
+     * @return how long the state lasts in milliseconds, {@link Long#MAX_VALUE} if forever
+     */
+    long nextStateDuration(boolean moving, Random random) {
+        long mean = moving ? movingDuration : parkedDuration;
+        if (mean <= 0) {
+            return Long.MAX_VALUE;
+        }
+        return Math.max(1, (long) (-mean * Math.log(1 - random.nextDouble())));
+    }
+
+    /**
+     * @return the share of the time spent moving, in the long run
+     */
+    double getMovingRatio() {
+        if (movingDuration <= 0) {
+            return 1;
+        }
+        if (parkedDuration <= 0) {
+            return 0;
+        }
+        return (double) movingDuration / (movingDuration + parkedDuration);
+    }
+
+    @Override
+    public String toString() {
+        return "ReportProfile[moving=" + movingInterval + "ms for " + movingDuration //$NON-NLS-1$
+                + "ms, parked=" + parkedInterval + "ms for " + parkedDuration //$NON-NLS-1$
+                + "ms, jitter=" + jitter * 100 + "%]"; //$NON-NLS-1$
+    }
+}
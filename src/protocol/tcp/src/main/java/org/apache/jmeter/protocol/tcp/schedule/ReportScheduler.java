@@ -0,0 +1,230 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.jmeter.protocol.tcp.schedule;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.Queue;
+import java.util.Random;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import org.apache.jmeter.protocol.tcp.registry.FleetRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Drives the reports of a device population from a single thread.
+ * <p>
+ * Every device waits for its next report in a {@link TimingWheel}. On each tick the
+ * devices due are queued, and the sampling threads {@link #poll(long) take} them, send
+ * the report and {@link #reschedule(ScheduledDevice) give them back}. A handful of
+ * sampling threads can thus serve thousands of devices, and the schedule does not drift
+ * when a thread is late since the next report is computed from the previous due time.
+ */
+public final class ReportScheduler implements Runnable {
+    private static final Logger log = LoggerFactory.getLogger(ReportScheduler.class);
+
+    private final String name;
+
+    private final ReportProfile profile;
+
+    private final ScheduledDevice[] devices;
+
+    private final FleetRegistry registry;
+
+    private final long rampUp;
+
+    private final TimingWheel<ScheduledDevice> wheel;
+
+    /** Devices given back by the sampling threads, scheduled again by the wheel thread */
+    private final Queue<ScheduledDevice> rescheduled = new ConcurrentLinkedQueue<>();
+
+    private final BlockingQueue<ScheduledDevice> due = new LinkedBlockingQueue<>();
+
+    /** Only used by the wheel thread */
+    private final Random random = new Random();
+
+    private final Thread thread;
+
+    private volatile boolean running;
+
+    /**
+     * @param name name of the schedule, for the logs
+     * @param profile how often the devices report
+     * @param firstImei IMEI of the first device, the others use consecutive IMEIs
+     * @param deviceCount number of devices
+     * @param rampUp time over which the first reports are spread, in milliseconds
+     * @param tickMillis resolution of the schedule in milliseconds
+     */
+    public ReportScheduler(String name, ReportProfile profile, long firstImei, int deviceCount,
+            long rampUp, long tickMillis) {
+        this(name, profile, null, firstImei, deviceCount, rampUp, tickMillis);
+    }
+
+    /**
+     * @param name name of the schedule, for the logs
+     * @param profile how often the devices report
+     * @param registry the devices, the sampling threads record the state of the device they own there
+     * @param rampUp time over which the first reports are spread, in milliseconds
+     * @param tickMillis resolution of the schedule in milliseconds
+     */
+    public ReportScheduler(String name, ReportProfile profile, FleetRegistry registry,
+            long rampUp, long tickMillis) {
+        this(name, profile, registry, 0L, registry.size(), rampUp, tickMillis);
+    }
+
+    private ReportScheduler(String name, ReportProfile profile, FleetRegistry registry, long firstImei,
+            int deviceCount, long rampUp, long tickMillis) {
+        this.name = name;
+        this.profile = profile;
+        this.registry = registry;
+        this.devices = new ScheduledDevice[deviceCount];
+        for (int i = 0; i < deviceCount; i++) {
+            devices[i] = new ScheduledDevice(i, registry == null ? firstImei + i : registry.getImei(i));
+        }
+        this.rampUp = rampUp;
+        this.wheel = new TimingWheel<>(tickMillis, now());
+        this.thread = new Thread(this, "ReportScheduler-" + name); //$NON-NLS-1$
+        this.thread.setDaemon(true);
+    }
+
+    /**
+     * @return the scheduler time in milliseconds, immune to wall clock changes
+     */
+    private static long now() {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime());
+    }
+
+    /**
+     * Schedule the first report of every device and start the wheel thread.
+     */
+    public void start() {
+        long now = now();
+        for (int i = 0; i < devices.length; i++) {
+            ScheduledDevice device = devices[i];
+            long first = now + (devices.length > 1 ? rampUp * i / devices.length : 0);
+            device.start(now, profile, random);
+            device.setDue(first);
+            wheel.schedule(device, first);
+        }
+        running = true;
+        log.info("Starting report schedule {} of {} devices with {}", name, devices.length, profile);
+        thread.start();
+    }
+
+    /**
+     * Stop the wheel thread and close the connections of the devices.
+     */
+    public void stop() {
+        running = false;
+        LockSupport.unpark(thread);
+        try {
+            thread.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        for (ScheduledDevice device : devices) {
+            Closeable connection = device.getConnection();
+            if (connection != null) {
+                try {
+                    connection.close();
+                } catch (IOException e) {
+                    log.debug("Error closing connection of {}", device, e);
+                }
+                device.setConnection(null);
+            }
+        }
+        log.info("Stopped report schedule {}", name);
+    }
+
+    @Override
+    public void run() {
+        try {
+            while (running) {
+                long now = now();
+                ScheduledDevice device;
+                while ((device = rescheduled.poll()) != null) {
+                    wheel.schedule(device, device.next(now, profile, random));
+                }
+                wheel.advance(now, due::add);
+                long wait = wheel.nextTickMillis() - now();
+                if (wait > 0) {
+                    LockSupport.parkNanos(this, TimeUnit.MILLISECONDS.toNanos(wait));
+                }
+            }
+        } catch (RuntimeException e) {
+            log.error("Report schedule {} failed", name, e);
+        }
+    }
+
+    /**
+     * Take the next device whose report is due, it must then be given back with
+     * {@link #reschedule(ScheduledDevice)}.
+     *
+     * @param timeout maximum time to wait in milliseconds
+     * @return the device, or <code>null</code> if no report became due in time
+     * @throws InterruptedException when the waiting thread is interrupted
+     */
+    public ScheduledDevice poll(long timeout) throws InterruptedException {
+        return due.poll(timeout, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Schedule the next report of a device taken with {@link #poll(long)}.
+     * May be called from any thread.
+     *
+     * @param device the device
+     */
+    public void reschedule(ScheduledDevice device) {
+        rescheduled.add(device);
+    }
+
+    /**
+     * @param device a device taken with {@link #poll(long)}
+     * @return how late its report is, in milliseconds
+     */
+    public long getLag(ScheduledDevice device) {
+        return Math.max(0, now() - device.getDue());
+    }
+
+    /**
+     * @return number of reports due but not taken yet by a sampling thread
+     */
+    public int getBacklog() {
+        return due.size();
+    }
+
+    /**
+     * @return the registry the devices come from, <code>null</code> if they use consecutive IMEIs
+     */
+    public FleetRegistry getRegistry() {
+        return registry;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getDeviceCount() {
+        return devices.length;
+    }
+}
@@ -0,0 +1,129 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.jmeter.protocol.tcp.schedule;
+
+import java.io.Closeable;
+import java.util.Random;
+
+/**
+ * A device driven by a {@link ReportScheduler}.
+ * <p>
+ * Between two reports the device only lives in the timing wheel. When a report is due
+ * it is handed to a single sampling thread which owns it, and its connection, until it is
+ * {@link ReportScheduler#reschedule(ScheduledDevice) rescheduled}.
+ */
+public final class ScheduledDevice extends TimingWheel.Timeout {
+
+    private final int slot;
+
+    private final long imei;
+
+    private boolean moving;
+
+    /** End of the current state, in scheduler time */
+    private long stateEnd;
+
+    /** When the pending report is due, in scheduler time */
+    private long due;
+
+    private Closeable connection;
+
+    ScheduledDevice(int slot, long imei) {
+        this.slot = slot;
+        this.imei = imei;
+    }
+
+    /**
+     * @return index of the device in its schedule, and in the
+     * {@link ReportScheduler#getRegistry() registry} of the schedule if any
+     */
+    public int getSlot() {
+        return slot;
+    }
+
+    public long getImei() {
+        return imei;
+    }
+
+    /**
+     * @return <code>true</code> while the device moves, its ignition is then on
+     */
+    public boolean isMoving() {
+        return moving;
+    }
+
+    /**
+     * @return the time the current report was due, in milliseconds since the epoch
+     * if the scheduler was started with {@link System#currentTimeMillis()}
+     */
+    long getDue() {
+        return due;
+    }
+
+    /**
+     * @return the connection of the device, kept between reports; <code>null</code> if not connected
+     */
+    public Closeable getConnection() {
+        return connection;
+    }
+
+    /**
+     * @param connection the connection of the device, closed when the scheduler stops
+     */
+    public void setConnection(Closeable connection) {
+        this.connection = connection;
+    }
+
+    /**
+     * Enter the first state, moving or parked in proportion of the time spent in each state.
+     */
+    void start(long now, ReportProfile profile, Random random) {
+        enter(random.nextDouble() < profile.getMovingRatio(), now, profile, random);
+    }
+
+    private void enter(boolean moving, long now, ReportProfile profile, Random random) {
+        this.moving = moving;
+        long duration = profile.nextStateDuration(moving, random);
+        stateEnd = duration == Long.MAX_VALUE ? Long.MAX_VALUE : now + duration;
+    }
+
+    /**
+     * Switch state if the current one is over and compute when the next report is due.
+     * It is computed from the previous due time so the time spent sending does not shift
+     * the schedule, but a device which fell behind does not burst to catch up.
+     *
+     * @param now current scheduler time
+     * @return the due time of the next report
+     */
+    long next(long now, ReportProfile profile, Random random) {
+        if (now >= stateEnd) {
+            enter(!moving, now, profile, random);
+        }
+        due = Math.max(due + profile.nextInterval(moving, random), now);
+        return due;
+    }
+
+    void setDue(long due) {
+        this.due = due;
+    }
+
+    @Override
+    public String toString() {
+        return "ScheduledDevice[" + imei + (moving ? ", moving]" : ", parked]"); //$NON-NLS-1$
+    }
+}
@@ -0,0 +1,196 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.jmeter.protocol.tcp.schedule;
+
+import java.util.function.Consumer;
+
+/**
+ * Hierarchical timing wheel, scheduling and expiring a timeout are O(1).
+ * <p>
+ * Time is divided in ticks. The first wheel holds the timeouts due within the next
+ * {@value #SLOTS} ticks, each following wheel covers {@value #SLOTS} times the span of the
+ * previous one and is cascaded down as time advances, so four wheels cover
+ * 2<sup>32</sup> ticks. Timeouts further away are parked in the last wheel until they
+ * come in range. Timeouts are intrusive: they carry their own links and scheduling
+ * does not allocate.
+ * <p>
+ * Not thread safe, a wheel is driven by a single thread.
+ *
+ * @param <T> type of the timeouts
+ */
+public final class TimingWheel<T extends TimingWheel.Timeout> {
+
+    private static final int BITS = 8;
+
+    static final int SLOTS = 1 << BITS;
+
+    private static final int MASK = SLOTS - 1;
+
+    private static final int LEVELS = 4;
+
+    /** Base class of the scheduled items */
+    public abstract static class Timeout {
+        private long dueTick;
+
+        private Timeout next;
+
+        private boolean scheduled;
+
+        /**
+         * @return <code>true</code> if the timeout is waiting in a wheel
+         */
+        public boolean isScheduled() {
+            return scheduled;
+        }
+    }
+
+    private final long tickMillis;
+
+    private final long startMillis;
+
+    private final Timeout[][] wheels = new Timeout[LEVELS][SLOTS];
+
+    /** Last tick processed */
+    private long currentTick;
+
+    private int size;
+
+    /**
+     * @param tickMillis duration of a tick in milliseconds, the resolution of the wheel
+     * @param startMillis time of tick 0, in the same time base as the due times
+     */
+    public TimingWheel(long tickMillis, long startMillis) {
+        if (tickMillis < 1) {
+            throw new IllegalArgumentException("Tick must be at least 1ms: " + tickMillis);
+        }
+        this.tickMillis = tickMillis;
+        this.startMillis = startMillis;
+    }
+
+    public long getTickMillis() {
+        return tickMillis;
+    }
+
+    /**
+     * @return number of timeouts waiting
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Schedule a timeout, it expires on the first tick ending at or after the due time.
+     * Timeouts already due expire on the next tick.
+     *
+     * @param scheduled the timeout, must not be scheduled already
+     * @param dueMillis due time in milliseconds
+     * @throws IllegalStateException if the timeout is already scheduled
+     */
+    public void schedule(T scheduled, long dueMillis) {
+        Timeout timeout = scheduled;
+        if (timeout.scheduled) {
+            throw new IllegalStateException("Timeout is already scheduled");
+        }
+        long elapsed = dueMillis - startMillis;
+        // round up, a timeout never expires early
+        timeout.dueTick = elapsed <= 0 ? 0 : (elapsed + tickMillis - 1) / tickMillis;
+        timeout.scheduled = true;
+        insert(timeout, currentTick + 1);
+        size++;
+    }
+
+    /**
+     * Link a timeout in the wheel covering its due tick, relative to the current tick.
+     *
+     * @param earliest first tick on which the timeout may expire
+     */
+    private void insert(Timeout timeout, long earliest) {
+        long due = Math.max(timeout.dueTick, earliest);
+        long delta = due - currentTick;
+        int level = 0;
+        while (level < LEVELS - 1 && delta >= 1L << (BITS * (level + 1))) {
+            level++;
+        }
+        if (delta >= 1L << (BITS * LEVELS)) {
+            // beyond the last wheel, parked until it comes in range
+            due = currentTick + (1L << (BITS * LEVELS)) - 1;
+        }
+        int slot = (int) (due >>> (BITS * level)) & MASK;
+        timeout.next = wheels[level][slot];
+        wheels[level][slot] = timeout;
+    }
+
+    /**
+     * Process all ticks ended at the given time and expire their timeouts.
+     *
+     * @param nowMillis current time in milliseconds
+     * @param expired called for every timeout expiring, which may schedule timeouts again
+     * @return number of expired timeouts
+     */
+    @SuppressWarnings("unchecked")
+    public int advance(long nowMillis, Consumer<? super T> expired) {
+        long targetTick = (nowMillis - startMillis) / tickMillis;
+        int count = 0;
+        while (currentTick < targetTick) {
+            long tick = currentTick + 1;
+            currentTick = tick;
+            cascade(tick);
+            int slot = (int) tick & MASK;
+            Timeout timeout = wheels[0][slot];
+            wheels[0][slot] = null;
+            while (timeout != null) {
+                Timeout next = timeout.next;
+                timeout.next = null;
+                if (timeout.dueTick > tick) {
+                    insert(timeout, tick + 1); // parked beyond the last wheel
+                } else {
+                    timeout.scheduled = false;
+                    size--;
+                    count++;
+                    expired.accept((T) timeout);
+                }
+                timeout = next;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Move the timeouts of the upper wheels due in the next ticks down, when the lower wheel wraps.
+     */
+    private void cascade(long tick) {
+        for (int level = 1; level < LEVELS && (tick & ((1L << (BITS * level)) - 1)) == 0; level++) {
+            int slot = (int) (tick >>> (BITS * level)) & MASK;
+            Timeout timeout = wheels[level][slot];
+            wheels[level][slot] = null;
+            while (timeout != null) {
+                Timeout next = timeout.next;
+                timeout.next = null;
+                insert(timeout, tick);
+                timeout = next;
+            }
+        }
+    }
+
+    /**
+     * @return the time at which the next tick ends
+     */
+    public long nextTickMillis() {
+        return startMillis + (currentTick + 1) * tickMillis;
+    }
+}
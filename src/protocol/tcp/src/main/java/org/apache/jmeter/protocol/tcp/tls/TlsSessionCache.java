@@ -0,0 +1,145 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.jmeter.protocol.tcp.tls;
+
+import java.security.GeneralSecurityException;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.net.ssl.SSLContext;
+
+import org.apache.jmeter.util.JMeterUtils;
+import org.apache.jmeter.util.JsseSSLManager;
+import org.apache.jmeter.util.SSLManager;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * TLS sessions of the simulated devices, shared by all threads of the TCP samplers.
+ * <p>
+ * Every device gets its own {@link SSLContext}, created once from the key and trust stores of
+ * the {@link SSLManager} (e.g. loaded by a Keystore Configuration), which caches the sessions
+ * of the device. A device reconnecting, from any thread, resumes its own session, never the one
+ * of another device. Its client certificate is chosen once, by the hash of the device over the
+ * aliases of the key store: a device always presents the same certificate, which other devices
+ * share when there are fewer aliases than devices.
+ * At most <code>tcp.tls.session.cache.size</code> devices are cached.
+ */
+public final class TlsSessionCache {
+    private static final Logger log = LoggerFactory.getLogger(TlsSessionCache.class);
+
+    private static final int MAX_DEVICES =
+            JMeterUtils.getPropDefault("tcp.tls.session.cache.size", 100000); //$NON-NLS-1$
+
+    private static final ConcurrentMap<String, SSLContext> CONTEXTS = new ConcurrentHashMap<>();
+
+    private static final LongAdder HITS = new LongAdder();
+
+    private static final LongAdder MISSES = new LongAdder();
+
+    private static volatile ContextFactory contextFactory =
+            device -> ((JsseSSLManager) SSLManager.getInstance()).newContext(device);
+
+    private TlsSessionCache() {
+    }
+
+    /**
+     * Creates the context of a new device.
+     */
+    @FunctionalInterface
+    interface ContextFactory {
+        SSLContext newContext(String device) throws GeneralSecurityException;
+    }
+
+    /**
+     * @param factory creates the contexts instead of the {@link SSLManager}, for the tests
+     */
+    static void setContextFactory(ContextFactory factory) {
+        contextFactory = factory;
+    }
+
+    /**
+     * Get the context holding the sessions of a device, creating it on first use.
+     *
+     * @param device identity of the device, e.g. its IMEI
+     * @return the context of the device
+     * @throws GeneralSecurityException when the context cannot be created
+     */
+    static SSLContext getContext(String device) throws GeneralSecurityException {
+        SSLContext context = CONTEXTS.get(device);
+        if (context != null) {
+            return context;
+        }
+        context = contextFactory.newContext(device);
+        SSLContext previous = CONTEXTS.putIfAbsent(device, context);
+        if (previous != null) {
+            return previous;
+        }
+        if (CONTEXTS.size() > MAX_DEVICES) {
+            // drop another device, it will do a full handshake next time
+            Iterator<String> devices = CONTEXTS.keySet().iterator();
+            while (devices.hasNext()) {
+                if (!devices.next().equals(device)) {
+                    devices.remove();
+                    break;
+                }
+            }
+        }
+        return context;
+    }
+
+    /**
+     * @param resumed <code>true</code> if the handshake resumed a cached session
+     */
+    static void handshakeCompleted(boolean resumed) {
+        if (resumed) {
+            HITS.increment();
+        } else {
+            MISSES.increment();
+        }
+    }
+
+    /**
+     * @return number of handshakes which resumed a cached session
+     */
+    public static long getHits() {
+        return HITS.sum();
+    }
+
+    /**
+     * @return number of full handshakes
+     */
+    public static long getMisses() {
+        return MISSES.sum();
+    }
+
+    /**
+     * Drop all sessions and log the hits and misses since the last call, at the end of a test.
+     */
+    public static void clear() {
+        long hits = HITS.sumThenReset();
+        long misses = MISSES.sumThenReset();
+        if (hits + misses > 0) {
+            log.info("TLS session cache of {} devices: {} resumed, {} full handshakes",
+                    CONTEXTS.size(), hits, misses);
+        }
+        CONTEXTS.clear();
+    }
+}
@@ -0,0 +1,472 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.jmeter.protocol.tcp.tls;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.net.SocketAddress;
+import java.net.SocketException;
+import java.nio.ByteBuffer;
+import java.security.GeneralSecurityException;
+
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLEngine;
+import javax.net.ssl.SSLEngineResult;
+import javax.net.ssl.SSLEngineResult.HandshakeStatus;
+import javax.net.ssl.SSLException;
+import javax.net.ssl.SSLSession;
+
+import org.apache.jmeter.samplers.SampleResult;
+import org.apache.jorphan.util.JOrphanUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * TLS client connection running an {@link SSLEngine} over a connected socket, which may be
+ * emulating a slow link.
+ * <p>
+ * The engine works on buffers, the socket streams only move the TLS records: the same
+ * engine can run over a non-blocking channel. Reading and writing may happen from two
+ * threads at once, as the engine allows, e.g. with a background reader of server commands.
+ * <p>
+ * The sessions come from the {@link TlsSessionCache}: a device reconnecting resumes its session.
+ */
+public final class TlsSocket extends Socket {
+    private static final Logger log = LoggerFactory.getLogger(TlsSocket.class);
+
+    private static final ByteBuffer EMPTY = ByteBuffer.allocate(0);
+
+    private final Socket socket;
+
+    private final SSLEngine engine;
+
+    private final InputStream in;
+
+    private final OutputStream out;
+
+    private final Object readLock = new Object();
+
+    private final Object writeLock = new Object();
+
+    /** Records read and not unwrapped yet, in write mode */
+    private ByteBuffer netIn;
+
+    /** Application bytes unwrapped and not read yet, in read mode */
+    private ByteBuffer appIn;
+
+    /** Records wrapped, written at once */
+    private ByteBuffer netOut;
+
+    private final InputStream input = new TlsInputStream();
+
+    private final OutputStream output = new TlsOutputStream();
+
+    private boolean resumed;
+
+    private long sentBytes;
+
+    private long receivedBytes;
+
+    private TlsSocket(Socket socket, SSLEngine engine) throws IOException {
+        this.socket = socket;
+        this.engine = engine;
+        this.in = socket.getInputStream();
+        this.out = socket.getOutputStream();
+        SSLSession session = engine.getSession();
+        this.netIn = ByteBuffer.allocate(session.getPacketBufferSize());
+        this.appIn = ByteBuffer.allocate(session.getApplicationBufferSize());
+        this.appIn.limit(0);
+        this.netOut = ByteBuffer.allocate(session.getPacketBufferSize());
+    }
+
+    /**
+     * Secure a connected socket. The handshake is recorded as a sub-result of the sample,
+     * so its time is reported apart from the connect time. The sample is not ended by it:
+     * its end and bytes are left to the sampler.
+     *
+     * @param socket the connected socket, closed if the handshake fails
+     * @param host the server host, for the server name indication and the session cache
+     * @param port the server port
+     * @param device identity of the device in the {@link TlsSessionCache}
+     * @param res the sample opening the connection, <code>null</code> if it is not sampled
+     * @return the secure connection
+     * @throws IOException when the handshake fails
+     */
+    public static TlsSocket handshake(Socket socket, String host, int port, String device, SampleResult res)
+            throws IOException {
+        SampleResult handshake = new SampleResult();
+        handshake.setSampleLabel("TLS handshake"); //$NON-NLS-1$
+        handshake.setSamplerData(host + ":" + port + " " + device); //$NON-NLS-1$ //$NON-NLS-2$
+        handshake.sampleStart();
+        TlsSocket tls = null;
+        try {
+            SSLContext context = TlsSessionCache.getContext(device);
+            SSLEngine engine = context.createSSLEngine(host, port);
+            engine.setUseClientMode(true);
+            tls = new TlsSocket(socket, engine);
+            tls.startHandshake(System.currentTimeMillis());
+            handshake.sampleEnd();
+            SSLSession session = engine.getSession();
+            handshake.setResponseCodeOK();
+            handshake.setResponseMessage(session.getProtocol() + " " + session.getCipherSuite()
+                    + (tls.resumed ? " resumed" : " new session")); //$NON-NLS-1$ //$NON-NLS-2$
+            handshake.setSuccessful(true);
+            TlsSessionCache.handshakeCompleted(tls.resumed);
+            return tls;
+        } catch (IOException | GeneralSecurityException | RuntimeException e) {
+            if (handshake.getEndTime() == 0) {
+                handshake.sampleEnd();
+            }
+            handshake.setResponseCode("500"); //$NON-NLS-1$
+            handshake.setResponseMessage(e.toString());
+            JOrphanUtils.closeQuietly(socket);
+            if (e instanceof IOException) {
+                throw (IOException) e;
+            }
+            throw new SSLException("Could not start TLS with " + host + ":" + port, e); //$NON-NLS-1$ //$NON-NLS-2$
+        } finally {
+            if (tls != null) {
+                handshake.setSentBytes(tls.sentBytes);
+                handshake.setBytes(tls.receivedBytes);
+            }
+            if (res != null) {
+                // not addSubResult, which would end the sample with the handshake
+                handshake.setThreadName(Thread.currentThread().getName());
+                res.addRawSubResult(handshake);
+            }
+        }
+    }
+
+    /**
+     * @param startMillis time at which the handshake started, a session created before was resumed
+     */
+    private void startHandshake(long startMillis) throws IOException {
+        synchronized (readLock) {
+            synchronized (writeLock) {
+                engine.beginHandshake();
+                HandshakeStatus status = engine.getHandshakeStatus();
+                while (status != HandshakeStatus.FINISHED && status != HandshakeStatus.NOT_HANDSHAKING) {
+                    switch (status) {
+                        case NEED_WRAP:
+                            status = wrap(EMPTY);
+                            break;
+                        case NEED_UNWRAP:
+                            appIn.compact();
+                            try {
+                                status = unwrap();
+                            } finally {
+                                appIn.flip();
+                            }
+                            if (status == null) {
+                                throw new EOFException("Connection closed during TLS handshake"); //$NON-NLS-1$
+                            }
+                            break;
+                        case NEED_TASK:
+                            status = runTasks();
+                            break;
+                        default:
+                            throw new SSLException("Unexpected handshake status " + status); //$NON-NLS-1$
+                    }
+                }
+                resumed = engine.getSession().getCreationTime() < startMillis;
+            }
+        }
+    }
+
+    private HandshakeStatus runTasks() {
+        Runnable task;
+        while ((task = engine.getDelegatedTask()) != null) {
+            task.run();
+        }
+        return engine.getHandshakeStatus();
+    }
+
+    /**
+     * Wrap bytes in records and write them, must hold the write lock.
+     *
+     * @param src the bytes, some may be left if they do not fit in a record
+     * @return the handshake status
+     */
+    private HandshakeStatus wrap(ByteBuffer src) throws IOException {
+        while (true) {
+            netOut.clear();
+            SSLEngineResult result = engine.wrap(src, netOut);
+            if (result.getStatus() == SSLEngineResult.Status.BUFFER_OVERFLOW) {
+                netOut = ByteBuffer.allocate(Math.max(2 * netOut.capacity(),
+                        engine.getSession().getPacketBufferSize()));
+                continue;
+            }
+            if (result.getStatus() == SSLEngineResult.Status.CLOSED && result.bytesProduced() == 0) {
+                throw new SocketException("Socket is closed"); //$NON-NLS-1$
+            }
+            if (netOut.position() > 0) {
+                out.write(netOut.array(), 0, netOut.position());
+                out.flush();
+                sentBytes += netOut.position();
+            }
+            HandshakeStatus status = result.getHandshakeStatus();
+            return status == HandshakeStatus.NEED_TASK ? runTasks() : status;
+        }
+    }
+
+    /**
+     * Unwrap the next record into the application buffer, reading it if needed.
+     * Must hold the read lock, the application buffer is in write mode.
+     *
+     * @return the handshake status, <code>null</code> at the end of the stream
+     */
+    private HandshakeStatus unwrap() throws IOException {
+        while (true) {
+            netIn.flip();
+            SSLEngineResult result;
+            try {
+                result = engine.unwrap(netIn, appIn);
+            } finally {
+                netIn.compact();
+            }
+            switch (result.getStatus()) {
+                case BUFFER_UNDERFLOW:
+                    if (!netIn.hasRemaining()) {
+                        netIn = grow(netIn, engine.getSession().getPacketBufferSize());
+                    }
+                    int read = in.read(netIn.array(), netIn.arrayOffset() + netIn.position(), netIn.remaining());
+                    if (read < 0) {
+                        return null;
+                    }
+                    netIn.position(netIn.position() + read);
+                    receivedBytes += read;
+                    continue;
+                case BUFFER_OVERFLOW:
+                    appIn = grow(appIn, engine.getSession().getApplicationBufferSize());
+                    continue;
+                case CLOSED:
+                    return null;
+                default:
+                    break;
+            }
+            HandshakeStatus status = result.getHandshakeStatus();
+            if (status == HandshakeStatus.NEED_TASK) {
+                status = runTasks();
+            }
+            if (status == HandshakeStatus.NEED_WRAP && !engine.isOutboundDone()) {
+                // a post-handshake message to answer, e.g. a key update
+                synchronized (writeLock) {
+                    status = wrap(EMPTY);
+                }
+            }
+            return status;
+        }
+    }
+
+    /**
+     * @param buffer a buffer in write mode
+     * @param minCapacity capacity required by the engine
+     * @return a larger buffer holding the same bytes, in write mode
+     */
+    private static ByteBuffer grow(ByteBuffer buffer, int minCapacity) {
+        ByteBuffer larger = ByteBuffer.allocate(Math.max(2 * buffer.capacity(), minCapacity));
+        buffer.flip();
+        larger.put(buffer);
+        return larger;
+    }
+
+    /**
+     * @return <code>true</code> if the handshake resumed a session of the device
+     */
+    public boolean isResumed() {
+        return resumed;
+    }
+
+    /**
+     * @return the TLS session
+     */
+    public SSLSession getSession() {
+        return engine.getSession();
+    }
+
+    @Override
+    public InputStream getInputStream() {
+        return input;
+    }
+
+    @Override
+    public OutputStream getOutputStream() {
+        return output;
+    }
+
+    /**
+     * Send a close_notify alert, if possible, and close the socket.
+     */
+    @Override
+    public void close() throws IOException {
+        if (socket.isClosed()) {
+            return;
+        }
+        engine.closeOutbound();
+        try {
+            synchronized (writeLock) {
+                wrap(EMPTY);
+            }
+        } catch (IOException e) {
+            log.debug("Could not send close_notify on {}", socket, e);
+        } finally {
+            socket.close();
+        }
+    }
+
+    @Override
+    public void connect(SocketAddress endpoint, int timeout) throws IOException {
+        throw new SocketException("Already connected"); //$NON-NLS-1$
+    }
+
+    @Override
+    public boolean isClosed() {
+        return socket.isClosed();
+    }
+
+    @Override
+    public boolean isConnected() {
+        return socket.isConnected();
+    }
+
+    @Override
+    public InetAddress getInetAddress() {
+        return socket.getInetAddress();
+    }
+
+    @Override
+    public int getPort() {
+        return socket.getPort();
+    }
+
+    @Override
+    public int getLocalPort() {
+        return socket.getLocalPort();
+    }
+
+    @Override
+    public void setSoTimeout(int timeout) throws SocketException {
+        socket.setSoTimeout(timeout);
+    }
+
+    @Override
+    public int getSoTimeout() throws SocketException {
+        return socket.getSoTimeout();
+    }
+
+    @Override
+    public void setTcpNoDelay(boolean on) throws SocketException {
+        socket.setTcpNoDelay(on);
+    }
+
+    @Override
+    public boolean getTcpNoDelay() throws SocketException {
+        return socket.getTcpNoDelay();
+    }
+
+    @Override
+    public void setSoLinger(boolean on, int linger) throws SocketException {
+        socket.setSoLinger(on, linger);
+    }
+
+    @Override
+    public int getSoLinger() throws SocketException {
+        return socket.getSoLinger();
+    }
+
+    @Override
+    public String toString() {
+        return "TlsSocket[" + socket + "]"; //$NON-NLS-1$ //$NON-NLS-2$
+    }
+
+    private final class TlsInputStream extends InputStream {
+
+        @Override
+        public int read() throws IOException {
+            byte[] b = new byte[1];
+            return read(b, 0, 1) < 0 ? -1 : b[0] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+            synchronized (readLock) {
+                while (!appIn.hasRemaining()) {
+                    appIn.compact();
+                    HandshakeStatus status;
+                    try {
+                        status = unwrap();
+                    } finally {
+                        appIn.flip();
+                    }
+                    if (status == null && !appIn.hasRemaining()) {
+                        return -1;
+                    }
+                }
+                int count = Math.min(len, appIn.remaining());
+                appIn.get(b, off, count);
+                return count;
+            }
+        }
+
+        @Override
+        public int available() {
+            synchronized (readLock) {
+                return appIn.remaining();
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            TlsSocket.this.close();
+        }
+    }
+
+    private final class TlsOutputStream extends OutputStream {
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[] { (byte) b }, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            ByteBuffer src = ByteBuffer.wrap(b, off, len);
+            synchronized (writeLock) {
+                while (src.hasRemaining()) {
+                    int remaining = src.remaining();
+                    HandshakeStatus status = wrap(src);
+                    if (src.remaining() == remaining && status == HandshakeStatus.NEED_UNWRAP) {
+                        throw new SSLException("TLS renegotiation is not supported"); //$NON-NLS-1$
+                    }
+                }
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            TlsSocket.this.close();
+        }
+    }
+}
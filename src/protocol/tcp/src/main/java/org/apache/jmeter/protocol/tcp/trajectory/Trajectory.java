@@ -0,0 +1,127 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.jmeter.protocol.tcp.trajectory;
+
+import org.apache.jmeter.protocol.tcp.codec.TrackerReport;
+
+/**
+ * A precomputed looping trip: one fix per step, stored in primitive arrays.
+ * <p>
+ * Looking a fix up is an array access, so trajectories can be replayed inline by the
+ * senders. Instances are immutable and shared by all the devices driving the same route
+ * at different times.
+ */
+public final class Trajectory {
+
+    /** Ignition off, not moving */
+    public static final byte PARKED = 0;
+
+    /** Ignition on, not moving */
+    public static final byte IDLE = 1;
+
+    /** Ignition on, moving */
+    public static final byte MOVING = 2;
+
+    private static final double SCALE = 1e7;
+
+    private final long stepMillis;
+
+    /** Coordinates in 1e-7 degrees */
+    private final int[] latitudes;
+
+    private final int[] longitudes;
+
+    /** Speeds in km/h */
+    private final short[] speeds;
+
+    /** Headings in degrees */
+    private final short[] headings;
+
+    private final byte[] states;
+
+    Trajectory(long stepMillis, int[] latitudes, int[] longitudes, short[] speeds, short[] headings, byte[] states) {
+        this.stepMillis = stepMillis;
+        this.latitudes = latitudes;
+        this.longitudes = longitudes;
+        this.speeds = speeds;
+        this.headings = headings;
+        this.states = states;
+    }
+
+    /**
+     * @return number of fixes of one loop
+     */
+    public int size() {
+        return states.length;
+    }
+
+    /**
+     * @return time between two fixes in milliseconds
+     */
+    public long getStepMillis() {
+        return stepMillis;
+    }
+
+    /**
+     * @param timeMillis time since the start of the trajectory, it loops forever
+     * @return index of the fix at this time
+     */
+    public int indexAt(long timeMillis) {
+        long step = Math.floorDiv(timeMillis, stepMillis);
+        return (int) Math.floorMod(step, (long) states.length);
+    }
+
+    public double getLatitude(int index) {
+        return latitudes[index] / SCALE;
+    }
+
+    public double getLongitude(int index) {
+        return longitudes[index] / SCALE;
+    }
+
+    public int getSpeed(int index) {
+        return speeds[index];
+    }
+
+    public int getHeading(int index) {
+        return headings[index];
+    }
+
+    /**
+     * @param index index of the fix
+     * @return {@link #PARKED}, {@link #IDLE} or {@link #MOVING}
+     */
+    public byte getState(int index) {
+        return states[index];
+    }
+
+    /**
+     * Copy a fix to a report, the time of the report is not changed.
+     *
+     * @param report the report to fill
+     * @param timeMillis time since the start of the trajectory
+     */
+    public void fill(TrackerReport report, long timeMillis) {
+        int index = indexAt(timeMillis);
+        report.setLatitude(latitudes[index] / SCALE);
+        report.setLongitude(longitudes[index] / SCALE);
+        report.setSpeed(speeds[index]);
+        report.setHeading(headings[index]);
+        report.setIgnition(states[index] != PARKED);
+    }
+}
@@ -0,0 +1,232 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.jmeter.protocol.tcp.trajectory;
+
+import java.util.Random;
+
+/**
+ * Generates road-like {@link Trajectory trajectories} around an origin.
+ * <p>
+ * A vehicle drives straight segments on a grid of streets, turning by 90 or 45 degrees
+ * at their ends. Each segment is a city street, an arterial road or a highway with its own
+ * speed; the vehicle accelerates, brakes before turns, stops at traffic lights with the
+ * ignition on and sometimes parks with the ignition off. It turns back towards the origin
+ * when it leaves the area. The trip is driven for half of the duration and then backwards,
+ * so the trajectory loops without jumping.
+ */
+public final class TrajectoryGenerator {
+
+    private static final double METERS_PER_DEGREE = 111320.0;
+
+    /** m/s^2 */
+    private static final double ACCELERATION = 1.5;
+
+    private static final double DECELERATION = 2.5;
+
+    /** Speed when turning, m/s */
+    private static final double TURN_SPEED = 4.0;
+
+    /** Standard deviation of the GPS noise in meters */
+    private static final double GPS_NOISE = 1.5;
+
+    private static final int[] TURNS = { 0, 0, 0, 0, 0, 0, 0, 0, 90, -90, 90, -90, 90, -90, 90, -90, 45, -45 };
+
+    private final double originLatitude;
+
+    private final double originLongitude;
+
+    private final double radius;
+
+    private final long durationMillis;
+
+    private final long stepMillis;
+
+    /**
+     * @param originLatitude latitude of the center of the area in degrees
+     * @param originLongitude longitude of the center of the area in degrees
+     * @param radius radius of the area in meters
+     * @param durationMillis duration of one loop in milliseconds
+     * @param stepMillis time between two fixes in milliseconds
+     */
+    public TrajectoryGenerator(double originLatitude, double originLongitude, double radius,
+            long durationMillis, long stepMillis) {
+        if (stepMillis <= 0 || durationMillis < 2 * stepMillis) {
+            throw new IllegalArgumentException("Trajectory duration must hold at least two steps of " + stepMillis
+                    + "ms: " + durationMillis);
+        }
+        this.originLatitude = originLatitude;
+        this.originLongitude = originLongitude;
+        this.radius = radius;
+        this.durationMillis = durationMillis;
+        this.stepMillis = stepMillis;
+    }
+
+    public long getDurationMillis() {
+        return durationMillis;
+    }
+
+    /**
+     * @param random source of the trip, the same seed gives the same trajectory
+     * @return a new trajectory
+     */
+    public Trajectory generate(Random random) {
+        int size = (int) Math.min(Integer.MAX_VALUE - 1, durationMillis / stepMillis) & ~1;
+        int half = size / 2;
+        int[] latitudes = new int[size];
+        int[] longitudes = new int[size];
+        short[] speeds = new short[size];
+        short[] headings = new short[size];
+        byte[] states = new byte[size];
+        double metersPerLongitude = METERS_PER_DEGREE * Math.cos(Math.toRadians(originLatitude));
+        double dt = stepMillis / 1000.0;
+
+        Vehicle vehicle = new Vehicle(random);
+        for (int i = 0; i < half; i++) {
+            vehicle.step(dt);
+            double x = vehicle.x + random.nextGaussian() * GPS_NOISE;
+            double y = vehicle.y + random.nextGaussian() * GPS_NOISE;
+            latitudes[i] = (int) Math.round((originLatitude + y / METERS_PER_DEGREE) * 1e7);
+            longitudes[i] = (int) Math.round((originLongitude + x / metersPerLongitude) * 1e7);
+            speeds[i] = (short) Math.round(vehicle.speed * 3.6);
+            headings[i] = (short) vehicle.heading;
+            states[i] = vehicle.state;
+        }
+        // drive back the same way
+        for (int i = 0; i < half; i++) {
+            int from = half - 1 - i;
+            latitudes[half + i] = latitudes[from];
+            longitudes[half + i] = longitudes[from];
+            speeds[half + i] = speeds[from];
+            headings[half + i] = (short) ((headings[from] + 180) % 360);
+            states[half + i] = states[from];
+        }
+        return new Trajectory(stepMillis, latitudes, longitudes, speeds, headings, states);
+    }
+
+    /**
+     * Kinematic state of the simulated vehicle, in meters from the origin.
+     */
+    private final class Vehicle {
+        private final Random random;
+        private double x;
+        private double y;
+        /** Degrees clockwise from north, multiple of 45 */
+        private int heading;
+        /** m/s */
+        private double speed;
+        private double targetSpeed;
+        private double segmentRemaining;
+        private byte state = Trajectory.MOVING;
+        private double stopRemaining;
+
+        Vehicle(Random random) {
+            this.random = random;
+            double distance = radius * 0.5 * Math.sqrt(random.nextDouble());
+            double angle = random.nextDouble() * 2 * Math.PI;
+            x = distance * Math.sin(angle);
+            y = distance * Math.cos(angle);
+            heading = 90 * random.nextInt(4);
+            newSegment();
+        }
+
+        void step(double dt) {
+            if (state != Trajectory.MOVING) {
+                stopRemaining -= dt;
+                if (stopRemaining <= 0) {
+                    state = Trajectory.MOVING;
+                }
+                return;
+            }
+            double braking = (speed * speed - TURN_SPEED * TURN_SPEED) / (2 * DECELERATION);
+            if (segmentRemaining <= braking) {
+                speed = Math.max(TURN_SPEED, speed - DECELERATION * dt);
+            } else if (speed < targetSpeed) {
+                speed = Math.min(targetSpeed, speed + ACCELERATION * dt);
+            } else {
+                speed = Math.max(targetSpeed, speed - DECELERATION * dt);
+            }
+            double distance = speed * dt;
+            while (distance > 0) {
+                double move = Math.min(distance, segmentRemaining);
+                x += Math.sin(Math.toRadians(heading)) * move;
+                y += Math.cos(Math.toRadians(heading)) * move;
+                distance -= move;
+                segmentRemaining -= move;
+                if (segmentRemaining <= 0 && !endSegment()) {
+                    return;
+                }
+            }
+        }
+
+        /**
+         * @return <code>true</code> if the vehicle goes on, <code>false</code> if it stops
+         */
+        private boolean endSegment() {
+            turn();
+            newSegment();
+            double stop = random.nextDouble();
+            if (stop < 0.02) {
+                state = Trajectory.PARKED;
+                stopRemaining = 300 + random.nextInt(1500);
+            } else if (stop < 0.2) {
+                state = Trajectory.IDLE;
+                stopRemaining = 10 + random.nextInt(80);
+            } else {
+                return true;
+            }
+            speed = 0;
+            return false;
+        }
+
+        private void turn() {
+            if (x * x + y * y > radius * radius) {
+                // pick the direction closest to the way back to the origin
+                double back = Math.toDegrees(Math.atan2(-x, -y));
+                int best = heading;
+                double bestAngle = Double.MAX_VALUE;
+                for (int candidate = 0; candidate < 360; candidate += 45) {
+                    double angle = Math.abs(((candidate - back) % 360 + 540) % 360 - 180);
+                    if (angle < bestAngle) {
+                        bestAngle = angle;
+                        best = candidate;
+                    }
+                }
+                heading = best;
+            } else {
+                heading = (heading + TURNS[random.nextInt(TURNS.length)] + 360) % 360;
+            }
+        }
+
+        private void newSegment() {
+            double road = random.nextDouble();
+            if (road < 0.6) {
+                // city street
+                targetSpeed = (30 + random.nextInt(31)) / 3.6;
+                segmentRemaining = 150 + random.nextInt(650);
+            } else if (road < 0.9) {
+                // arterial road
+                targetSpeed = (60 + random.nextInt(31)) / 3.6;
+                segmentRemaining = 500 + random.nextInt(1500);
+            } else {
+                // highway
+                targetSpeed = (90 + random.nextInt(31)) / 3.6;
+                segmentRemaining = 2000 + random.nextInt(4000);
+            }
+        }
+    }
+}
@@ -0,0 +1,121 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.jmeter.protocol.tcp.trajectory;
+
+import java.util.Random;
+
+import org.apache.jmeter.protocol.tcp.codec.TrackerReport;
+import org.apache.jmeter.util.JMeterUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A fixed set of trajectories shared by a whole fleet.
+ * <p>
+ * Every device drives one of the trajectories, chosen and shifted in time from its IMEI,
+ * so thousands of devices report distinct positions from a few megabytes of fixes and
+ * a device always follows the same route across runs. Immutable and thread safe.
+ */
+public final class TrajectoryPool {
+    private static final Logger log = LoggerFactory.getLogger(TrajectoryPool.class);
+
+    private final Trajectory[] trajectories;
+
+    private final long durationMillis;
+
+    /**
+     * @param generator generator of the trajectories
+     * @param routes number of trajectories
+     * @param seed seed of the trajectories, the same seed gives the same pool
+     */
+    public TrajectoryPool(TrajectoryGenerator generator, int routes, long seed) {
+        Random random = new Random(seed);
+        this.trajectories = new Trajectory[Math.max(1, routes)];
+        for (int i = 0; i < trajectories.length; i++) {
+            trajectories[i] = generator.generate(random);
+        }
+        this.durationMillis = generator.getDurationMillis();
+    }
+
+    /**
+     * @return the pool configured by the <code>tracker.trajectory.*</code> properties, generated on first use
+     */
+    public static TrajectoryPool getDefault() {
+        return DefaultHolder.POOL;
+    }
+
+    /**
+     * @return number of trajectories
+     */
+    public int size() {
+        return trajectories.length;
+    }
+
+    /**
+     * @param imei IMEI of the device
+     * @return the trajectory driven by the device
+     */
+    public Trajectory forDevice(long imei) {
+        return trajectories[(int) Math.floorMod(mix(imei), (long) trajectories.length)];
+    }
+
+    /**
+     * @param imei IMEI of the device
+     * @return where the device starts on its trajectory, in milliseconds
+     */
+    public long offsetOf(long imei) {
+        return Math.floorMod(mix(~imei), durationMillis);
+    }
+
+    /**
+     * Fill the position, speed, heading and ignition of a report with the fix of a device.
+     *
+     * @param report the report to fill
+     * @param imei IMEI of the device
+     * @param timeMillis report time in milliseconds since the epoch
+     */
+    public void fill(TrackerReport report, long imei, long timeMillis) {
+        forDevice(imei).fill(report, timeMillis + offsetOf(imei));
+    }
+
+    private static long mix(long value) {
+        long h = value * 0x9E3779B97F4A7C15L;
+        h ^= h >>> 32;
+        h *= 0xD6E8FEB86659FD93L;
+        return h ^ (h >>> 32);
+    }
+
+    private static final class DefaultHolder {
+        private static final TrajectoryPool POOL = createDefault();
+
+        private static TrajectoryPool createDefault() {
+            String[] origin = JMeterUtils.getPropDefault("tracker.trajectory.origin", "24.7136,46.6753").split(","); //$NON-NLS-1$
+            double radius = JMeterUtils.getPropDefault("tracker.trajectory.radius", 20000); //$NON-NLS-1$
+            long duration = JMeterUtils.getPropDefault("tracker.trajectory.duration", 3600L) * 1000L; //$NON-NLS-1$
+            long step = JMeterUtils.getPropDefault("tracker.trajectory.step", 1000L); //$NON-NLS-1$
+            int routes = JMeterUtils.getPropDefault("tracker.trajectory.routes", 128); //$NON-NLS-1$
+            long seed = JMeterUtils.getPropDefault("tracker.trajectory.seed", 1L); //$NON-NLS-1$
+            long start = System.nanoTime();
+            TrajectoryPool pool = new TrajectoryPool(new TrajectoryGenerator(Double.parseDouble(origin[0].trim()),
+                    Double.parseDouble(origin[1].trim()), radius, duration, step), routes, seed);
+            log.info("Generated {} trajectories of {}s in {}ms", routes, duration / 1000,
+                    (System.nanoTime() - start) / 1000000);
+            return pool;
+        }
+    }
+}
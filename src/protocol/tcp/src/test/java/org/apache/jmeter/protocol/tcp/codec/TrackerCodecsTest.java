@@ -0,0 +1,299 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.jmeter.protocol.tcp.codec;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.apache.jmeter.protocol.tcp.sampler.BCETCPSampler;
+import org.apache.jmeter.protocol.tcp.sampler.BceFrameTemplate;
+import org.apache.jorphan.util.JOrphanUtils;
+import org.junit.jupiter.api.Test;
+
+public class TrackerCodecsTest {
+
+    private static final String RECORD_TAIL = "001875540200000000d78000009a375100e8481b005a1000"
+            + "0000000000000000000000000000000000000000000000ff";
+
+    // 5 records of 0x44 bytes following their length byte, data length 0x015b = 5 * 69 + 2
+    private static final String BCE_SIGNAL = "%s5b01a553"
+            + "44%sffc302a000804000d74f3b4299ddc541" + RECORD_TAIL
+            + "4487fa77d2ffc302a0008040003e503b4235dec541" + RECORD_TAIL
+            + "4477fb77d2ffc302a000804000a6503b42d3dec541" + RECORD_TAIL
+            + "4467fc77d2ffc302a0008040000f513b4270dfc541" + RECORD_TAIL
+            + "4457fd77d2ffc302a00080400078513b420de0c541" + RECORD_TAIL
+            + "005b";
+
+    private static ByteBuffer wrap(String hex) {
+        return ByteBuffer.wrap(BCETCPSampler.hexStringToByteArray(hex));
+    }
+
+    private static String hex(ByteBuffer buffer, int from) {
+        byte[] bytes = new byte[buffer.position() - from];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = buffer.get(from + i);
+        }
+        return JOrphanUtils.baToHexString(bytes);
+    }
+
+    @Test
+    public void testDiscovery() {
+        assertTrue(TrackerCodecs.getNames().containsAll(Arrays.asList("BCE", "GT06", "QUECLINK", "TELTONIKA")));
+        TrackerCodec codec = TrackerCodecs.get("gt06", Collections.emptyMap());
+        assertEquals("GT06", codec.getName());
+        assertSame(codec, TrackerCodecs.get("GT06", Collections.emptyMap()));
+        try {
+            TrackerCodecs.get("unknown", Collections.emptyMap());
+            fail("Expected IllegalArgumentException");
+        } catch (IllegalArgumentException expected) {
+            // OK
+        }
+    }
+
+    @Test
+    public void testBceRequiresSignal() {
+        try {
+            TrackerCodecs.get("BCE", Collections.emptyMap());
+            fail("Expected IllegalArgumentException");
+        } catch (IllegalArgumentException expected) {
+            // OK
+        }
+    }
+
+    @Test
+    public void testCrc16Ibm() {
+        // AVL data of the Codec 8 example of the Teltonika documentation
+        ByteBuffer data = wrap("08010000016B40D8EA30010000000000000000000000000000000105021503010101425E0F01F10000601A014E000000000000000001");
+        assertEquals(0xC7CF, CodecSupport.crc16Ibm(data, 0, data.limit()));
+    }
+
+    @Test
+    public void testGt06Login() {
+        // login example of the GT06 protocol documentation
+        TrackerCodec codec = new Gt06Codec();
+        DeviceSession session = new DeviceSession(123456789012345L);
+        ByteBuffer out = ByteBuffer.allocate(codec.getMaxFrameLength());
+        assertTrue(codec.encodeLogin(session, out));
+        assertEquals("78780d01012345678901234500018cdd0d0a", hex(out, 0));
+
+        ByteBuffer response = wrap("787805010001d9dc0d0a");
+        assertEquals(response.remaining(), codec.getFrameDecoder().frameLength(response, session));
+        assertEquals(1, codec.acknowledged(session, response));
+        assertEquals(1, codec.ackSequence(session, response));
+    }
+
+    @Test
+    public void testGt06Location() {
+        TrackerCodec codec = new Gt06Codec();
+        DeviceSession session = new DeviceSession(123456789012345L);
+        TrackerReport report = new TrackerReport();
+        report.setTimeMillis(1640532005000L); // 2021-12-26 15:20:05 UTC
+        ByteBuffer out = ByteBuffer.allocate(codec.getMaxFrameLength());
+        codec.encodeReport(session, report, out);
+        assertEquals(codec.getMaxFrameLength(), out.position());
+        assertEquals("78781f12150c1a0f1405", hex(out, 0).substring(0, 20));
+        out.flip();
+        assertEquals(out.remaining(), codec.getFrameDecoder().frameLength(out, session));
+        assertEquals(CodecSupport.crc16X25(out, 2, out.limit() - 4), out.getShort(out.limit() - 4) & 0xFFFF);
+    }
+
+    @Test
+    public void testTeltonikaExchange() {
+        TrackerCodec codec = new TeltonikaCodec8();
+        DeviceSession session = new DeviceSession(356307042441013L);
+        ByteBuffer out = ByteBuffer.allocate(codec.getMaxFrameLength());
+        assertTrue(codec.encodeLogin(session, out));
+        assertEquals("000f333536333037303432343431303133", hex(out, 0));
+        assertEquals(1, codec.acknowledged(session, wrap("01")));
+        assertEquals(-1, codec.acknowledged(session, wrap("00")));
+        session.setLoggedIn(true);
+
+        out.clear();
+        TrackerReport report = new TrackerReport();
+        report.setTimeMillis(1560161086000L);
+        codec.encodeReport(session, report, out);
+        assertEquals(codec.getMaxFrameLength(), out.position());
+        assertEquals(out.position() - 12, out.getInt(4));
+        assertEquals(CodecSupport.crc16Ibm(out, 8, out.position() - 4), out.getInt(out.position() - 4));
+
+        ByteBuffer ack = wrap("00000001");
+        assertEquals(4, codec.getFrameDecoder().frameLength(ack, session));
+        assertEquals(1, codec.acknowledged(session, ack));
+    }
+
+    @Test
+    public void testTeltonikaBatch() {
+        TrackerCodec codec = new TeltonikaCodec8();
+        DeviceSession session = new DeviceSession(356307042441013L);
+        session.setLoggedIn(true);
+        int count = TeltonikaCodec8.MAX_RECORDS + 5;
+        TrackerReport[] reports = new TrackerReport[count];
+        for (int i = 0; i < count; i++) {
+            reports[i] = new TrackerReport();
+            reports[i].setTimeMillis(1560161086000L + i * 1000L);
+        }
+        ByteBuffer out = ByteBuffer.allocate(codec.getMaxBatchLength(count));
+        codec.encodeBatch(session, reports, count, out);
+        assertEquals(out.capacity(), out.position());
+
+        // a full packet followed by the remaining records
+        int second = out.getInt(4) + 12;
+        assertEquals(TeltonikaCodec8.MAX_RECORDS, out.get(9) & 0xff);
+        assertEquals(TeltonikaCodec8.MAX_RECORDS, out.get(second - 5) & 0xff);
+        assertEquals(CodecSupport.crc16Ibm(out, 8, second - 4), out.getInt(second - 4));
+        assertEquals(1560161086000L, out.getLong(10));
+        assertEquals(5, out.get(second + 9));
+        assertEquals(out.position() - second - 12, out.getInt(second + 4));
+        assertEquals(1560161086000L + TeltonikaCodec8.MAX_RECORDS * 1000L, out.getLong(second + 10));
+
+        assertEquals(5, codec.acknowledged(session, wrap("00000005")));
+    }
+
+    @Test
+    public void testBceBatch() {
+        TrackerCodec codec = TrackerCodecs.get("BCE", Collections.singletonMap(TrackerCodecs.SIGNAL, BCE_SIGNAL));
+        DeviceSession session = new DeviceSession(352093081234567L);
+        TrackerReport[] reports = new TrackerReport[4];
+        for (int i = 0; i < reports.length; i++) {
+            reports[i] = new TrackerReport();
+            reports[i].setTimeMillis(1640532005000L + i * 2000L);
+        }
+        ByteBuffer out = ByteBuffer.allocate(codec.getMaxBatchLength(reports.length));
+        assertEquals(1, codec.encodeBatch(session, reports, reports.length, out));
+        assertEquals(out.capacity(), out.position());
+        out.flip();
+        assertTrue(BceFrameTemplate.isChecksumValid(out));
+        // one record per report, not the 5 records of the demo signal
+        assertEquals(2 + 4 * 69, out.order(ByteOrder.LITTLE_ENDIAN).getShort(8) & 0xffff);
+    }
+
+    @Test
+    public void testQueclinkExchange() {
+        TrackerCodec codec = new QueclinkCodec();
+        DeviceSession session = new DeviceSession(135790246811220L);
+        TrackerReport report = new TrackerReport();
+        report.setTimeMillis(1640532005000L);
+        report.setLongitude(-0.5);
+        ByteBuffer out = ByteBuffer.allocate(codec.getMaxFrameLength());
+        assertFalse(codec.encodeLogin(session, out));
+        codec.encodeReport(session, report, out);
+        String frame = new String(out.array(), 0, out.position(), StandardCharsets.US_ASCII);
+        assertEquals("+RESP:GTFRI,300400,135790246811220,,,10,1,1,1,0.0,0,600.0,-0.500000,24.713600,"
+                + "20211226152005,0420,0001,2A4B,5C1E,,100,20211226152005,0001$", frame);
+
+        ByteBuffer ack = ByteBuffer.wrap("+SACK:001A$".getBytes(StandardCharsets.US_ASCII));
+        assertEquals(1, codec.acknowledged(session, ack));
+        assertEquals(0x1A, codec.ackSequence(session, ack));
+        assertEquals(0, codec.acknowledged(session, ByteBuffer.wrap("+SACK:GTHBD$".getBytes(StandardCharsets.US_ASCII))));
+    }
+
+    @Test
+    public void testServerCommands() {
+        // online command example of the GT06 protocol documentation, answered with the server flag and text
+        TrackerCodec gt06 = new Gt06Codec();
+        DeviceSession session = new DeviceSession(123456789012345L);
+        ByteBuffer command = wrap("78780e800800000000736f732300016d6a0d0a");
+        assertEquals(command.remaining(), gt06.getFrameDecoder().frameLength(command, session));
+        assertTrue(gt06.isCommand(session, command));
+        assertEquals(0, gt06.acknowledged(session, command));
+        assertFalse(gt06.isCommand(session, wrap("787805010001d9dc0d0a")));
+        ByteBuffer out = ByteBuffer.allocate(gt06.getMaxFrameLength() + command.remaining());
+        assertTrue(gt06.encodeCommandResponse(session, command, out));
+        assertEquals("78780e150800000000736f73230001", hex(out, 0).substring(0, 30));
+        assertEquals(CodecSupport.crc16X25(out, 2, out.position() - 4), out.getShort(out.position() - 4) & 0xFFFF);
+
+        // Codec 12 example of the Teltonika documentation
+        TrackerCodec teltonika = new TeltonikaCodec8();
+        session = new DeviceSession(356307042441013L);
+        session.setLoggedIn(true);
+        command = wrap("000000000000000f0c010500000007676574696e666f0100004312");
+        assertEquals(command.remaining(), teltonika.getFrameDecoder().frameLength(command, session));
+        assertTrue(teltonika.isCommand(session, command));
+        assertEquals(0, teltonika.acknowledged(session, command));
+        out = ByteBuffer.allocate(teltonika.getMaxFrameLength() + command.remaining());
+        assertTrue(teltonika.encodeCommandResponse(session, command, out));
+        assertEquals("000000000000000f0c010600000007676574696e666f01", hex(out, 0).substring(0, 46));
+        assertEquals(CodecSupport.crc16Ibm(out, 8, out.position() - 4), out.getInt(out.position() - 4));
+
+        TrackerCodec queclink = new QueclinkCodec();
+        session = new DeviceSession(135790246811220L);
+        command = ByteBuffer.wrap("AT+GTOUT=gv300,1,0,0,0,0,0,0,0,0,0,0,,,,,FFFF$".getBytes(StandardCharsets.US_ASCII));
+        assertTrue(queclink.isCommand(session, command));
+        assertEquals(0, queclink.acknowledged(session, command));
+        out = ByteBuffer.allocate(queclink.getMaxFrameLength() + command.remaining());
+        assertTrue(queclink.encodeCommandResponse(session, command, out));
+        String answer = new String(out.array(), 0, out.position(), StandardCharsets.US_ASCII);
+        assertTrue(answer, answer.matches("\\+ACK:GTOUT,300400,135790246811220,,FFFF,\\d{14},0001\\$"));
+        assertEquals(0, command.position());
+    }
+
+    @Test
+    public void testInFlightWindow() {
+        InFlightWindow window = new InFlightWindow(3);
+        assertTrue(window.isEmpty());
+        window.add(1, 100L, 10L, 20);
+        window.add(2, 200L, 20L, 21);
+        window.add(3, 300L, 30L, 22);
+        assertTrue(window.isFull());
+
+        // serial numbers are matched even out of order
+        assertTrue(window.complete(2));
+        assertEquals(2, window.getCompletedSequence());
+        assertEquals(200L, window.getCompletedNanos());
+        assertEquals(20L, window.getCompletedMillis());
+        assertEquals(21, window.getCompletedBytes());
+        assertFalse(window.complete(2));
+
+        // counted ACKs complete the oldest frames
+        window.add(4, 400L, 40L, 23);
+        assertTrue(window.complete(-1));
+        assertEquals(1, window.getCompletedSequence());
+        assertTrue(window.complete(-1));
+        assertEquals(3, window.getCompletedSequence());
+        assertTrue(window.complete(4));
+        assertTrue(window.isEmpty());
+        assertFalse(window.complete(-1));
+    }
+
+    @Test
+    public void testFrameReaderSplitAndCoalescedFrames() {
+        FrameReader reader = new FrameReader(new EomFrameDecoder((byte) '$'), 4);
+        reader.append(ByteBuffer.wrap("+SA".getBytes(StandardCharsets.US_ASCII)));
+        assertNull(reader.nextFrame(null));
+        reader.append(ByteBuffer.wrap("CK:0001$+SACK:0002$+S".getBytes(StandardCharsets.US_ASCII)));
+        ByteBuffer frame = reader.nextFrame(null);
+        assertNotNull(frame);
+        assertEquals("+SACK:0001$", StandardCharsets.US_ASCII.decode(frame).toString());
+        frame = reader.nextFrame(null);
+        assertNotNull(frame);
+        assertEquals("+SACK:0002$", StandardCharsets.US_ASCII.decode(frame).toString());
+        assertNull(reader.nextFrame(null));
+        assertEquals(2, reader.buffered());
+    }
+}
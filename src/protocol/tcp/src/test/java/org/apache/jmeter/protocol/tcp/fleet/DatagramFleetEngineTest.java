@@ -0,0 +1,117 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.jmeter.protocol.tcp.fleet;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetAddress;
+import java.util.Arrays;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class DatagramFleetEngineTest {
+
+    private static final String SIGNAL = "%s5b01a55344%sffc302a000804000d74f3b4299ddc541001875540200000000d78000009a375100e8481b005a10000000005b";
+
+    private DatagramSocket server;
+
+    @BeforeEach
+    public void startServer() throws IOException {
+        server = new DatagramSocket(0, InetAddress.getLoopbackAddress());
+        Thread responder = new Thread(() -> {
+            byte[] buffer = new byte[2048];
+            int received = 0;
+            try {
+                while (!server.isClosed()) {
+                    DatagramPacket packet = new DatagramPacket(buffer, buffer.length);
+                    server.receive(packet);
+                    // BCE stack confirmation: IMEI, length, type and key; every 10th one is lost
+                    if (++received % 10 != 0) {
+                        byte[] ack = Arrays.copyOf(buffer, 12);
+                        ack[8] = 0x03;
+                        ack[9] = 0x00;
+                        ack[10] = 0x19;
+                        ack[11] = 0x53;
+                        server.send(new DatagramPacket(ack, ack.length, packet.getSocketAddress()));
+                    }
+                }
+            } catch (IOException e) {
+                // Server closed
+            }
+        });
+        responder.setDaemon(true);
+        responder.start();
+    }
+
+    @AfterEach
+    public void stop() {
+        DatagramFleetEngine.shutdownAll();
+        server.close();
+    }
+
+    @Test
+    public void testGroupsReportAckTimesAndLosses() throws Exception {
+        FleetConfig config = new FleetConfig();
+        config.setServer("127.0.0.1");
+        config.setPort(server.getLocalPort());
+        config.setDevices(200);
+        config.setFirstImei(352093081234567L);
+        config.setReportInterval(100);
+        config.setGroupSize(50);
+        config.setEventLoops(2);
+        config.setResponseTimeout(200);
+        config.setSignal(SIGNAL);
+
+        DatagramFleetEngine engine = DatagramFleetEngine.acquire(config);
+        int[] records = new int[4];
+        int datagrams = 0;
+        int lost = 0;
+        while (datagrams < 4000) {
+            FrameResult result = engine.poll(5000);
+            assertNotNull("No statistics in time", result);
+            assertTrue(result.getGroup() >= 0 && result.getGroup() < 4);
+            assertEquals(352093081234567L + 50 * result.getGroup(), result.getImei());
+            assertTrue(result.getRecords() > 0);
+            if (result.getType() == FrameResult.Type.LOSSES) {
+                // a lost ACK is only counted, it does not weigh on the ACK times
+                assertEquals(result.getRecords(), result.getFailures());
+                assertEquals(0, result.getElapsed());
+                lost += result.getFailures();
+            } else {
+                assertEquals(FrameResult.Type.DATAGRAMS, result.getType());
+                assertEquals(0, result.getFailures());
+                assertTrue(result.getSentBytes() > 0);
+                assertTrue(result.getElapsed() < 200L * result.getRecords());
+            }
+            records[result.getGroup()] += result.getRecords();
+            datagrams += result.getRecords();
+        }
+        for (int group = 0; group < records.length; group++) {
+            assertTrue("Group " + group + " only completed " + records[group], records[group] > 500);
+        }
+        assertTrue("Lost " + lost + " of " + datagrams, lost > datagrams / 20 && lost < datagrams / 5);
+        assertTrue(engine.getDatagramsSent() >= datagrams);
+    }
+}
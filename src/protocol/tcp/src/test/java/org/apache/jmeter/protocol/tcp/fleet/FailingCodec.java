@@ -0,0 +1,121 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.apache.jmeter.protocol.tcp.fleet;
+
+import java.nio.ByteBuffer;
+import java.util.Map;
+
+import org.apache.jmeter.protocol.tcp.codec.DeviceSession;
+import org.apache.jmeter.protocol.tcp.codec.FrameDecoder;
+import org.apache.jmeter.protocol.tcp.codec.TrackerCodec;
+import org.apache.jmeter.protocol.tcp.codec.TrackerCodecs;
+import org.apache.jmeter.protocol.tcp.codec.TrackerReport;
+
+/**
+ * The BCE codec, whose frame decoder throws when a frame starts with {@link #CORRUPT}.
+ */
+public class FailingCodec implements TrackerCodec {
+
+    static final String NAME = "FAILING"; //$NON-NLS-1$
+
+    static final byte CORRUPT = 0x7f;
+
+    private final TrackerCodec codec;
+
+    private final FrameDecoder decoder;
+
+    public FailingCodec() {
+        this(null);
+    }
+
+    private FailingCodec(TrackerCodec codec) {
+        this.codec = codec;
+        this.decoder = codec == null ? null : (in, session) -> {
+            if (in.hasRemaining() && in.get(in.position()) == CORRUPT) {
+                throw new IllegalStateException("Corrupt frame");
+            }
+            return codec.getFrameDecoder().frameLength(in, session);
+        };
+    }
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public TrackerCodec configure(Map<String, String> parameters) {
+        return new FailingCodec(TrackerCodecs.get("BCE", parameters)); //$NON-NLS-1$
+    }
+
+    @Override
+    public int getMaxFrameLength() {
+        return codec.getMaxFrameLength();
+    }
+
+    @Override
+    public boolean encodeLogin(DeviceSession session, ByteBuffer dst) {
+        return codec.encodeLogin(session, dst);
+    }
+
+    @Override
+    public boolean isLoginAcknowledged() {
+        return codec.isLoginAcknowledged();
+    }
+
+    @Override
+    public void encodeReport(DeviceSession session, TrackerReport report, ByteBuffer dst) {
+        codec.encodeReport(session, report, dst);
+    }
+
+    @Override
+    public int getMaxBatchLength(int reports) {
+        return codec.getMaxBatchLength(reports);
+    }
+
+    @Override
+    public int encodeBatch(DeviceSession session, TrackerReport[] reports, int count, ByteBuffer dst) {
+        return codec.encodeBatch(session, reports, count, dst);
+    }
+
+    @Override
+    public boolean isReportAcknowledged() {
+        return codec.isReportAcknowledged();
+    }
+
+    @Override
+    public FrameDecoder getFrameDecoder() {
+        return decoder;
+    }
+
+    @Override
+    public int acknowledged(DeviceSession session, ByteBuffer frame) {
+        return codec.acknowledged(session, frame);
+    }
+
+    @Override
+    public long ackImei(ByteBuffer frame) {
+        return codec.ackImei(frame);
+    }
+
+    @Override
+    public int ackSequence(DeviceSession session, ByteBuffer frame) {
+        return codec.ackSequence(session, frame);
+    }
+}
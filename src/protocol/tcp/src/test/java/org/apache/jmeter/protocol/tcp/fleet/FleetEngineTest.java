@@ -0,0 +1,268 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.jmeter.protocol.tcp.fleet;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class FleetEngineTest {
+
+    private static final String SIGNAL = "%s5b01a55344%sffc302a000804000d74f3b4299ddc541001875540200000000d78000009a375100e8481b005a10000000005b";
+
+    private ServerSocket server;
+
+    /** The next accepted connection is answered with corrupt frames */
+    private final AtomicBoolean corruptNext = new AtomicBoolean();
+
+    @BeforeEach
+    public void startServer() throws IOException {
+        server = new ServerSocket(0);
+        Thread acceptor = new Thread(() -> {
+            try {
+                while (!server.isClosed()) {
+                    Socket socket = server.accept();
+                    boolean corrupt = corruptNext.getAndSet(false);
+                    Thread handler = new Thread(() -> ack(socket, corrupt));
+                    handler.setDaemon(true);
+                    handler.start();
+                }
+            } catch (IOException e) {
+                // Server closed
+            }
+        });
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    private static void ack(Socket socket, boolean corrupt) {
+        try (Socket s = socket) {
+            InputStream in = s.getInputStream();
+            OutputStream out = s.getOutputStream();
+            byte[] buffer = new byte[4096];
+            while (in.read(buffer) > 0) {
+                out.write(corrupt ? new byte[] { FailingCodec.CORRUPT, 0x0a } : new byte[] { 0x01, 0x02, 0x0a });
+                out.flush();
+            }
+        } catch (IOException e) {
+            // Connection closed
+        }
+    }
+
+    @AfterEach
+    public void stop() throws IOException {
+        FleetEngine.shutdownAll();
+        server.close();
+    }
+
+    private FleetConfig createConfig() {
+        FleetConfig config = new FleetConfig();
+        config.setServer("127.0.0.1");
+        config.setPort(server.getLocalPort());
+        config.setDevices(20);
+        config.setFirstImei(352093081234567L);
+        config.setReportInterval(100);
+        config.setEventLoops(2);
+        config.setConnectTimeout(5000);
+        config.setResponseTimeout(5000);
+        config.setEolByte(0x0a);
+        config.setSignal(SIGNAL);
+        return config;
+    }
+
+    @Test
+    public void testDevicesReportOverSharedLoops() throws Exception {
+        FleetConfig config = createConfig();
+        FleetEngine engine = FleetEngine.acquire(config);
+        for (int i = 0; i < 40; i++) {
+            FrameResult result = engine.poll(5000);
+            assertNotNull("No report acknowledged in time", result);
+            assertTrue(result.getError(), result.isSuccessful());
+            assertEquals(3, result.getResponse().length);
+            assertTrue(result.getImei() >= 352093081234567L && result.getImei() < 352093081234587L);
+        }
+        assertEquals(20, engine.getConnectedDevices());
+    }
+
+    @Test
+    public void testDecoderFailureOnlyFailsItsDevice() throws Exception {
+        corruptNext.set(true);
+        FleetConfig config = createConfig();
+        config.setEventLoops(1);
+        config.setProtocol(FailingCodec.NAME);
+        FleetEngine engine = FleetEngine.acquire(config);
+        String error = null;
+        Set<Long> reportedAfterFailure = new HashSet<>();
+        while (reportedAfterFailure.size() < 19) {
+            FrameResult result = engine.poll(5000);
+            assertNotNull("No report acknowledged in time", result);
+            if (!result.isSuccessful()) {
+                assertNull("Failed again: " + result.getError(), error);
+                error = result.getError();
+            } else if (error != null) {
+                reportedAfterFailure.add(result.getImei());
+            }
+        }
+        assertTrue(error, error.contains("Corrupt frame"));
+    }
+
+    @Test
+    public void testOutageBacklogIsFlushedAfterReconnecting() throws Exception {
+        FleetConfig config = createConfig();
+        config.setOutageStart(300);
+        config.setOutageDuration(500);
+        config.setOutageShare(50);
+        config.setReconnectSpread(200);
+        config.setReconnectCurve(ArrivalCurve.UNIFORM);
+
+        FleetEngine engine = FleetEngine.acquire(config);
+        Set<Long> reconnected = new HashSet<>();
+        Set<Long> drained = new HashSet<>();
+        long deadline = System.currentTimeMillis() + 10000;
+        while (drained.size() < 10 && System.currentTimeMillis() < deadline) {
+            FrameResult result = engine.poll(5000);
+            assertNotNull("No report acknowledged in time", result);
+            assertTrue(result.getError(), result.isSuccessful());
+            if (result.getType() == FrameResult.Type.RECONNECT) {
+                assertTrue(reconnected.add(result.getImei()));
+                assertEquals(0, result.getRecords());
+            } else if (result.getType() == FrameResult.Type.DRAIN) {
+                assertTrue("Drained before reconnecting", reconnected.contains(result.getImei()));
+                assertTrue(drained.add(result.getImei()));
+                // at least the reports of the outage, plus those falling due while reconnecting and flushing
+                assertTrue("Only " + result.getRecords() + " buffered reports", result.getRecords() >= 4);
+                assertTrue(result.getSentBytes() > 0);
+            }
+        }
+        assertEquals(10, reconnected.size());
+        assertEquals(10, drained.size());
+        assertEquals(20, engine.getConnectedDevices());
+    }
+
+    @Test
+    public void testServerCommandsAreAnswered() throws Exception {
+        AtomicInteger answers = new AtomicInteger();
+        try (ServerSocket queclinkServer = new ServerSocket(0)) {
+            Thread acceptor = new Thread(() -> {
+                try {
+                    while (!queclinkServer.isClosed()) {
+                        Socket socket = queclinkServer.accept();
+                        Thread handler = new Thread(() -> pushCommands(socket, answers));
+                        handler.setDaemon(true);
+                        handler.start();
+                    }
+                } catch (IOException e) {
+                    // Server closed
+                }
+            });
+            acceptor.setDaemon(true);
+            acceptor.start();
+
+            FleetConfig config = createConfig();
+            config.setPort(queclinkServer.getLocalPort());
+            config.setDevices(4);
+            config.setProtocol("QUECLINK");
+            FleetEngine engine = FleetEngine.acquire(config);
+            int reports = 0;
+            int commands = 0;
+            while (commands < 10 || reports < 10) {
+                FrameResult result = engine.poll(5000);
+                assertNotNull("No result in time", result);
+                assertTrue(result.getError(), result.isSuccessful());
+                if (result.getType() == FrameResult.Type.COMMAND) {
+                    assertTrue(new String(result.getResponse(), StandardCharsets.US_ASCII).startsWith("AT+GTOUT="));
+                    assertTrue(result.getSentBytes() > 0);
+                    commands++;
+                } else {
+                    // the commands are not mistaken for ACKs
+                    assertTrue(new String(result.getResponse(), StandardCharsets.US_ASCII).startsWith("+SACK:"));
+                    reports++;
+                }
+            }
+            long deadline = System.currentTimeMillis() + 5000;
+            while (answers.get() < commands && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            assertTrue("Only " + answers.get() + " answers", answers.get() >= commands);
+        }
+    }
+
+    /**
+     * Acknowledge the Queclink reports and push an output command after each ACK.
+     */
+    private static void pushCommands(Socket socket, AtomicInteger answers) {
+        try (Socket s = socket) {
+            InputStream in = s.getInputStream();
+            OutputStream out = s.getOutputStream();
+            StringBuilder message = new StringBuilder();
+            int serial = 0;
+            int c;
+            while ((c = in.read()) >= 0) {
+                message.append((char) c);
+                if (c != '$') {
+                    continue;
+                }
+                String received = message.toString();
+                message.setLength(0);
+                if (received.startsWith("+RESP:")) {
+                    String count = received.substring(received.length() - 5, received.length() - 1);
+                    String command = String.format("AT+GTOUT=gv300,1,0,0,0,0,0,0,0,0,0,0,,,,,%04X$", ++serial);
+                    out.write(("+SACK:" + count + "$" + command).getBytes(StandardCharsets.US_ASCII));
+                    out.flush();
+                } else if (received.startsWith("+ACK:GTOUT,")) {
+                    answers.incrementAndGet();
+                }
+            }
+        } catch (IOException e) {
+            // Connection closed
+        }
+    }
+
+    @Test
+    public void testArrivalCurvesStayWithinSpread() {
+        for (ArrivalCurve curve : ArrivalCurve.values()) {
+            long previous = 0;
+            for (int k = 0; k < 100; k++) {
+                long delay = curve.delay((k + 0.5) / 100, 60000);
+                assertTrue(curve + " " + delay, delay >= previous && delay <= 60000);
+                previous = delay;
+            }
+        }
+        assertEquals(0, ArrivalCurve.INSTANT.delay(0.99, 60000));
+        assertEquals(30000, ArrivalCurve.UNIFORM.delay(0.5, 60000));
+        // most reconnections are at the start of the spread
+        assertTrue(ArrivalCurve.EXPONENTIAL.delay(0.5, 60000) < 10000);
+        assertTrue(ArrivalCurve.RAMP.delay(0.5, 60000) > 30000);
+    }
+}
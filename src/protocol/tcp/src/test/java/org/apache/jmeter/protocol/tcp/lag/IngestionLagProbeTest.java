@@ -0,0 +1,69 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.apache.jmeter.protocol.tcp.lag;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+public class IngestionLagProbeTest {
+
+    @AfterEach
+    public void tearDown() {
+        IngestionLagProbe.stop();
+    }
+
+    @Test
+    public void testLandedAndLost() throws Exception {
+        IngestionLagProbe.sent(1, 1000); // not started, ignored
+        IngestionLagProbe probe = IngestionLagProbe.start();
+        long sent = System.currentTimeMillis();
+        IngestionLagProbe.sent(1, 1000);
+        IngestionLagProbe.sent(2, 1000);
+        IngestionLagProbe.sent(2, 2000);
+        assertEquals(3, probe.getPending());
+        Set<Long> persisted = new HashSet<>();
+        persisted.add(2L);
+        RecordVerifier verifier = (imeis, times, count, landed) -> {
+            for (int i = 0; i < count; i++) {
+                landed[i] = persisted.contains(imeis[i]) && times[i] == 1000 ? sent + 50 : RecordVerifier.NOT_FOUND;
+            }
+        };
+        LagResult result = probe.next(verifier, 0, 60000, 100);
+        assertEquals(2, result.getImei());
+        assertEquals(1000, result.getTimeMillis());
+        assertFalse(result.isLost());
+        assertTrue(result.getLag() <= 50);
+        assertNull(probe.next(verifier, 0, 60000, 10));
+        assertEquals(2, probe.getPending());
+
+        // all pending records time out
+        result = probe.next(verifier, 0, 0, 100);
+        assertTrue(result.isLost());
+        assertTrue(probe.next(verifier, 0, 0, 100).isLost());
+        assertEquals(0, probe.getPending());
+    }
+}
@@ -0,0 +1,90 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.apache.jmeter.protocol.tcp.lag;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+public class LagIndexTest {
+
+    @Test
+    public void testMatchesMapUnderRandomChurn() {
+        LagIndex index = new LagIndex(1000);
+        Map<List<Long>, Long> expected = new HashMap<>();
+        List<List<Long>> keys = new ArrayList<>();
+        Random random = new Random(42);
+        for (int i = 0; i < 100000; i++) {
+            if (keys.isEmpty() || (expected.size() < 1000 && random.nextBoolean())) {
+                // few IMEIs and close times, to collide
+                long imei = 350000000000000L + random.nextInt(50);
+                long time = 1_600_000_000_000L + random.nextInt(1000);
+                List<Long> key = Arrays.asList(imei, time);
+                assertTrue(index.put(imei, time, i + 1));
+                if (expected.putIfAbsent(key, (long) i + 1) == null) {
+                    keys.add(key);
+                }
+            } else {
+                List<Long> key = keys.remove(random.nextInt(keys.size()));
+                assertEquals((long) expected.remove(key), index.remove(key.get(0), key.get(1)));
+                assertEquals(0, index.remove(key.get(0), key.get(1)));
+            }
+            assertEquals(expected.size(), index.size());
+        }
+        for (List<Long> key : keys) {
+            assertEquals((long) expected.get(key), index.remove(key.get(0), key.get(1)));
+        }
+        assertEquals(0, index.size());
+    }
+
+    @Test
+    public void testFullAndCopy() {
+        LagIndex index = new LagIndex(12);
+        assertEquals(16, index.capacity());
+        for (int i = 0; i < 12; i++) {
+            assertTrue(index.put(1, i, 100 + i));
+        }
+        assertFalse(index.put(2, 0, 1));
+        // already known, keeps its first send time
+        assertTrue(index.put(1, 0, 1));
+        long[] imeis = new long[16];
+        long[] times = new long[16];
+        long[] sent = new long[16];
+        assertEquals(12, index.copy(0, 16, imeis, times, sent));
+        long sum = 0;
+        for (int i = 0; i < 12; i++) {
+            assertEquals(1, imeis[i]);
+            assertEquals(100 + times[i], sent[i]);
+            sum += times[i];
+        }
+        assertEquals(66, sum);
+        index.clear();
+        assertEquals(0, index.size());
+        assertEquals(0, index.copy(0, 16, imeis, times, sent));
+    }
+}
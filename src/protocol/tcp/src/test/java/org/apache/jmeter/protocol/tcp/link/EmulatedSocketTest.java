@@ -0,0 +1,154 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.jmeter.protocol.tcp.link;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class EmulatedSocketTest {
+
+    private ServerSocket server;
+
+    @BeforeEach
+    public void startEchoServer() throws IOException {
+        server = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+        Thread acceptor = new Thread(() -> {
+            try {
+                while (!server.isClosed()) {
+                    Socket client = server.accept();
+                    Thread echo = new Thread(() -> {
+                        byte[] buffer = new byte[4096];
+                        try (Socket s = client) {
+                            InputStream is = s.getInputStream();
+                            OutputStream os = s.getOutputStream();
+                            int read;
+                            while ((read = is.read(buffer)) > 0) {
+                                os.write(buffer, 0, read);
+                            }
+                        } catch (IOException e) {
+                            // Connection closed
+                        }
+                    });
+                    echo.setDaemon(true);
+                    echo.start();
+                }
+            } catch (IOException e) {
+                // Server closed
+            }
+        });
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    @AfterEach
+    public void stopEchoServer() throws IOException {
+        server.close();
+    }
+
+    private Socket connect(LinkConditions conditions) throws IOException {
+        Socket socket = new EmulatedSocket(conditions);
+        socket.connect(new InetSocketAddress(server.getInetAddress(), server.getLocalPort()), 1000);
+        socket.setSoTimeout(5000);
+        return socket;
+    }
+
+    private static byte[] readFully(InputStream is, int length) throws IOException {
+        byte[] bytes = new byte[length];
+        int count = 0;
+        while (count < length) {
+            int read = is.read(bytes, count, length - count);
+            if (read < 0) {
+                throw new IOException("Closed after " + count + " bytes");
+            }
+            count += read;
+        }
+        return bytes;
+    }
+
+    @Test
+    public void testLatencyInBothDirections() throws Exception {
+        try (Socket socket = connect(new LinkConditions(100, 0, 0, 0, 0, 65536))) {
+            byte[] request = "ping".getBytes("US-ASCII");
+            long start = System.nanoTime();
+            socket.getOutputStream().write(request);
+            long written = System.nanoTime();
+            byte[] response = readFully(socket.getInputStream(), request.length);
+            long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+            assertArrayEquals(request, response);
+            assertTrue("Write waited for the link", TimeUnit.NANOSECONDS.toMillis(written - start) < 50);
+            assertTrue("Round trip took " + elapsed + "ms", elapsed >= 200 && elapsed < 1000);
+        }
+    }
+
+    @Test
+    public void testBandwidth() throws Exception {
+        // 10 kB/s, 2 kB take 200ms, the echo streams back while the request is transmitted
+        try (Socket socket = connect(new LinkConditions(0, 10000, 0, 0, 0, 65536))) {
+            byte[] request = new byte[2000];
+            for (int i = 0; i < request.length; i++) {
+                request[i] = (byte) i;
+            }
+            long start = System.nanoTime();
+            OutputStream os = socket.getOutputStream();
+            for (int i = 0; i < request.length; i += 100) {
+                os.write(request, i, 100);
+            }
+            byte[] response = readFully(socket.getInputStream(), request.length);
+            long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+            assertArrayEquals(request, response);
+            assertTrue("Round trip took " + elapsed + "ms", elapsed >= 200 && elapsed < 2000);
+        }
+    }
+
+    @Test
+    public void testReset() throws Exception {
+        try (Socket socket = connect(new LinkConditions(0, 0, 0, 0, 1, 65536))) {
+            try {
+                socket.getOutputStream().write(1);
+                fail("Expected the connection to be reset");
+            } catch (SocketException e) {
+                assertTrue(socket.isClosed());
+            }
+        }
+    }
+
+    @Test
+    public void testDisabledProfileCreatesPlainSockets() {
+        LinkProfile profile = new LinkProfile(0, 50, 0, 1000, 0, 1000, 0, 65536);
+        assertFalse(profile.isEnabled());
+        assertTrue(new LinkProfile(300, 50, 0, 0, 0, 1000, 0, 65536).isEnabled());
+        assertEquals(Socket.class, LinkProfile.newSocket().getClass());
+    }
+}
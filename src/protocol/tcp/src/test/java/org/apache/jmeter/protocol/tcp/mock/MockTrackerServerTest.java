@@ -0,0 +1,187 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.jmeter.protocol.tcp.mock;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
+
+import org.apache.jmeter.protocol.tcp.sampler.BCETCPSampler;
+import org.apache.jmeter.protocol.tcp.sampler.BceFrameTemplate;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class MockTrackerServerTest {
+
+    private static final String RECORD_TAIL = "001875540200000000d78000009a375100e8481b005a1000"
+            + "0000000000000000000000000000000000000000000000ff";
+
+    /** Demo signal of a unit sending 5 records per report */
+    private static final String SIGNAL = "%s5b01a553"
+            + "44%sffc302a000804000d74f3b4299ddc541" + RECORD_TAIL
+            + "4487fa77d2ffc302a0008040003e503b4235dec541" + RECORD_TAIL
+            + "4477fb77d2ffc302a000804000a6503b42d3dec541" + RECORD_TAIL
+            + "4467fc77d2ffc302a0008040000f513b4270dfc541" + RECORD_TAIL
+            + "4457fd77d2ffc302a00080400078513b420de0c541" + RECORD_TAIL
+            + "005b";
+
+    private static final long IMEI = 352093081234567L;
+
+    private MockTrackerServer server;
+
+    @BeforeEach
+    public void startServer() throws InterruptedException {
+        server = new MockTrackerServer(0);
+        server.setSignal(SIGNAL);
+        server.setAck("0102");
+        server.setThreads(2);
+        server.setStatisticsInterval(0);
+        server.start();
+        for (int i = 0; i < 100 && server.getLocalPort() == 0; i++) {
+            Thread.sleep(50);
+        }
+        assertTrue("Server did not start", server.getLocalPort() > 0);
+    }
+
+    @AfterEach
+    public void stopServer() throws InterruptedException {
+        server.stopServer();
+        server.join(5000);
+    }
+
+    private static byte[] reports(int count) {
+        BceFrameTemplate template = BceFrameTemplate.compile(SIGNAL);
+        byte[] login = BCETCPSampler.hexStringToByteArray(BCETCPSampler.LOGIN_PREFIX);
+        byte[] frame = template.newFrame();
+        byte[] data = new byte[login.length + count * frame.length];
+        System.arraycopy(login, 0, data, 0, login.length);
+        for (int i = 0; i < count; i++) {
+            template.patch(frame, IMEI, 1640532005000L + i * 1000L);
+            System.arraycopy(frame, 0, data, login.length + i * frame.length, frame.length);
+        }
+        return data;
+    }
+
+    private static byte[] readFully(InputStream in, int length) throws IOException {
+        byte[] data = new byte[length];
+        int read = 0;
+        while (read < length) {
+            int n = in.read(data, read, length - read);
+            if (n < 0) {
+                break;
+            }
+            read += n;
+        }
+        assertEquals(length, read);
+        return data;
+    }
+
+    @Test
+    public void testReportsSplitAndAcknowledged() throws Exception {
+        byte[] data = reports(3);
+        try (Socket socket = new Socket("127.0.0.1", server.getLocalPort())) {
+            socket.setSoTimeout(5000);
+            OutputStream out = socket.getOutputStream();
+            // split in the middle of the second report
+            out.write(data, 0, 60);
+            out.flush();
+            Thread.sleep(50);
+            out.write(data, 60, data.length - 60);
+            out.flush();
+            assertArrayEquals(new byte[] { 1, 2, 1, 2, 1, 2 }, readFully(socket.getInputStream(), 6));
+        }
+        assertEquals(1, server.getLogins());
+        assertEquals(3, server.getFramesReceived());
+        assertEquals(3, server.getAcksSent());
+        assertEquals(0, server.getBadFrames());
+    }
+
+    @Test
+    public void testBatchedRecordsAreOneReport() throws Exception {
+        BceFrameTemplate template = BceFrameTemplate.compile(SIGNAL);
+        byte[] login = BCETCPSampler.hexStringToByteArray(BCETCPSampler.LOGIN_PREFIX);
+        // a report, 7 records batched in one report and a report, sent at once
+        ByteBuffer data = ByteBuffer.allocate(login.length + template.getBatchLength(7)
+                + 2 * template.getFrameLength());
+        data.put(login);
+        template.encode(data, IMEI, 1640532005000L);
+        int start = template.startBatch(data, IMEI);
+        for (int i = 0; i < 7; i++) {
+            template.putRecord(data, 1640532006000L + i * 1000L, Double.NaN, Double.NaN);
+        }
+        template.endBatch(data, start, 7);
+        template.encode(data, IMEI, 1640532013000L);
+        try (Socket socket = new Socket("127.0.0.1", server.getLocalPort())) {
+            socket.setSoTimeout(5000);
+            socket.getOutputStream().write(data.array(), 0, data.position());
+            assertArrayEquals(new byte[] { 1, 2, 1, 2, 1, 2 }, readFully(socket.getInputStream(), 6));
+        }
+        assertEquals(3, server.getFramesReceived());
+        assertEquals(0, server.getBadFrames());
+    }
+
+    @Test
+    public void testBadChecksumNotAcknowledged() throws Exception {
+        byte[] data = reports(2);
+        data[data.length - 1]++;
+        try (Socket socket = new Socket("127.0.0.1", server.getLocalPort())) {
+            socket.setSoTimeout(500);
+            socket.getOutputStream().write(data);
+            InputStream in = socket.getInputStream();
+            assertArrayEquals(new byte[] { 1, 2 }, readFully(in, 2));
+            try {
+                in.read();
+            } catch (SocketTimeoutException expected) {
+                // NOOP
+            }
+        }
+        assertEquals(1, server.getFramesReceived());
+        assertEquals(1, server.getBadFrames());
+    }
+
+    @Test
+    public void testDroppedAndDelayedAcks() throws Exception {
+        server.setDropPercent(100);
+        try (Socket socket = new Socket("127.0.0.1", server.getLocalPort())) {
+            socket.getOutputStream().write(reports(2));
+            for (int i = 0; i < 100 && server.getAcksDropped() < 2; i++) {
+                Thread.sleep(50);
+            }
+        }
+        assertEquals(2, server.getAcksDropped());
+        assertEquals(0, server.getAcksSent());
+
+        server.setDropPercent(0);
+        server.setAckDelay(200, 50);
+        try (Socket socket = new Socket("127.0.0.1", server.getLocalPort())) {
+            socket.setSoTimeout(5000);
+            long start = System.nanoTime();
+            socket.getOutputStream().write(reports(1));
+            readFully(socket.getInputStream(), 2);
+            assertTrue((System.nanoTime() - start) / 1000000 >= 200);
+        }
+    }
+}
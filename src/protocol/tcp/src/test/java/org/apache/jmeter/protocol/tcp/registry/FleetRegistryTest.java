@@ -0,0 +1,112 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.jmeter.protocol.tcp.registry;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class FleetRegistryTest {
+
+    @TempDir
+    File tempDir;
+
+    @Test
+    public void testStatePersistsAcrossRuns() throws Exception {
+        File file = new File(tempDir, "fleet.reg");
+        try (FleetRegistry registry = FleetRegistry.openOrCreate(file, 350000000000000L, 10)) {
+            assertEquals(10, registry.size());
+            assertEquals(350000000000009L, registry.getImei(9));
+            assertEquals(0, registry.getSequence(3));
+            assertEquals(0, registry.getReports(3));
+            registry.recordReport(3, 41, 1000L, 24.0, 46.0);
+            registry.recordReport(3, 42, 2000L, 24.0, 46.01);
+        }
+        assertEquals(FleetRegistry.HEADER_SIZE + 10 * FleetRegistry.RECORD_SIZE, file.length());
+        // an existing registry is not overwritten
+        try (FleetRegistry registry = FleetRegistry.openOrCreate(file, 1L, 5)) {
+            assertEquals(10, registry.size());
+            assertEquals(350000000000003L, registry.getImei(3));
+            assertEquals(42, registry.getSequence(3));
+            assertEquals(2, registry.getReports(3));
+            assertEquals(2000L, registry.getLastReportTime(3));
+            assertEquals(46.01, registry.getLongitude(3), 0);
+            // 0.01 degree of longitude at 24 degrees of latitude
+            assertEquals(1015.8, registry.getOdometer(3), 1.0);
+            assertEquals(0, registry.getReports(4));
+        }
+    }
+
+    @Test
+    public void testCreateFromImeiList() throws Exception {
+        File list = new File(tempDir, "imeis.csv");
+        Files.write(list.toPath(), Arrays.asList("imei,name", "861234567890123,truck 1", "", "861234567890456"),
+                StandardCharsets.UTF_8);
+        File file = new File(tempDir, "fleet.reg");
+        assertEquals(2, FleetRegistry.create(file, list));
+        try (FleetRegistry registry = FleetRegistry.open(file)) {
+            assertEquals(2, registry.size());
+            assertEquals(861234567890123L, registry.getImei(0));
+            assertEquals(861234567890456L, registry.getImei(1));
+        }
+    }
+
+    @Test
+    public void testSlotsSpanSegments() throws Exception {
+        File file = new File(tempDir, "fleet.reg");
+        FleetRegistry.create(file, 1000L, 11);
+        try (FleetRegistry registry = FleetRegistry.open(file, 2)) {
+            for (int i = 0; i < 11; i++) {
+                assertEquals(1000L + i, registry.getImei(i));
+                registry.setSequence(i, i * 10);
+            }
+        }
+        try (FleetRegistry registry = FleetRegistry.open(file)) {
+            for (int i = 0; i < 11; i++) {
+                assertEquals(i * 10, registry.getSequence(i));
+            }
+            try {
+                registry.getImei(11);
+                fail("Slot 11 is out of the registry");
+            } catch (IndexOutOfBoundsException e) {
+                assertTrue(e.getMessage().contains("11"));
+            }
+        }
+    }
+
+    @Test
+    public void testRejectsOtherFiles() throws Exception {
+        File file = new File(tempDir, "other.csv");
+        Files.write(file.toPath(), "861234567890123\n".getBytes(StandardCharsets.UTF_8));
+        try {
+            FleetRegistry.open(file);
+            fail("Not a registry");
+        } catch (IOException e) {
+            assertTrue(e.getMessage().startsWith("Not a fleet registry"));
+        }
+    }
+}
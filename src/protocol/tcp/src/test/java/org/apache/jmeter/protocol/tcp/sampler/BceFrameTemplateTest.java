@@ -0,0 +1,181 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.jmeter.protocol.tcp.sampler;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+import org.apache.jorphan.util.JOrphanUtils;
+import org.junit.jupiter.api.Test;
+
+public class BceFrameTemplateTest {
+
+    /** Bytes following the position in each record of the demo signal */
+    private static final String RECORD_TAIL = "001875540200000000d78000009a375100e8481b005a1000"
+            + "0000000000000000000000000000000000000000000000ff";
+
+    // 5 records of 0x44 bytes following their length byte, so the data length is 0x015b = 5 * 69 + 2
+    private static final String SIGNAL = "%s5b01a553"
+            + "44%sffc302a000804000d74f3b4299ddc541" + RECORD_TAIL
+            + "4487fa77d2ffc302a0008040003e503b4235dec541" + RECORD_TAIL
+            + "4477fb77d2ffc302a000804000a6503b42d3dec541" + RECORD_TAIL
+            + "4467fc77d2ffc302a0008040000f513b4270dfc541" + RECORD_TAIL
+            + "4457fd77d2ffc302a00080400078513b420de0c541" + RECORD_TAIL
+            + "005b";
+
+    private static final long IMEI = 352093081234567L;
+
+    private static final long TIME = 1640532005000L;
+
+    // Frame for IMEI and TIME, every record stamped with TIME
+    private static final String EXPECTED = "87ec080f3a4001005b01a553"
+            + "4447fe77d2ffc302a000804000d74f3b4299ddc541" + RECORD_TAIL
+            + "4447fe77d2ffc302a0008040003e503b4235dec541" + RECORD_TAIL
+            + "4447fe77d2ffc302a000804000a6503b42d3dec541" + RECORD_TAIL
+            + "4447fe77d2ffc302a0008040000f513b4270dfc541" + RECORD_TAIL
+            + "4447fe77d2ffc302a00080400078513b420de0c541" + RECORD_TAIL
+            + "004f";
+
+    private static final int RECORD = 69;
+
+    @Test
+    public void testPatchStampsEveryRecord() {
+        BceFrameTemplate template = BceFrameTemplate.compile(SIGNAL);
+        assertEquals(0, template.getImeiOffset());
+        assertEquals(13, template.getTimeOffset());
+        assertEquals(5, template.getRecordCount());
+        byte[] frame = template.newFrame();
+        template.patch(frame, IMEI, TIME);
+        assertEquals(EXPECTED, JOrphanUtils.baToHexString(frame));
+    }
+
+    @Test
+    public void testFrameIsReused() {
+        BceFrameTemplate template = BceFrameTemplate.compile(SIGNAL);
+        byte[] frame = template.newFrame();
+        template.patch(frame, IMEI + 1, TIME + 60000L);
+        template.patch(frame, IMEI, TIME);
+        assertEquals(EXPECTED, JOrphanUtils.baToHexString(frame));
+    }
+
+    @Test
+    public void testRecordsAreBatched() {
+        BceFrameTemplate template = BceFrameTemplate.compile(SIGNAL);
+        assertTrue(template.isBatchable());
+        assertEquals(RECORD, template.getRecordLength());
+        ByteBuffer buffer = ByteBuffer.allocate(template.getBatchLength(3));
+        int start = template.startBatch(buffer, IMEI);
+        template.putRecord(buffer, TIME, Double.NaN, Double.NaN);
+        template.endBatch(buffer, start, 1);
+        // a single record batch is the first record of the demo signal
+        ByteBuffer oneRecord = ByteBuffer.wrap(Arrays.copyOf(buffer.array(), buffer.position()))
+                .order(ByteOrder.LITTLE_ENDIAN);
+        assertEquals(template.getBatchLength(1), oneRecord.limit());
+        assertEquals(2 + RECORD, oneRecord.getShort(8) & 0xffff);
+        assertEquals(EXPECTED.substring(24, 24 + 2 * RECORD),
+                JOrphanUtils.baToHexString(oneRecord.array(), 12, RECORD));
+        assertTrue(BceFrameTemplate.isChecksumValid(oneRecord));
+
+        buffer.clear();
+        start = template.startBatch(buffer, IMEI);
+        template.putRecord(buffer, TIME - 2000L, Double.NaN, Double.NaN);
+        template.putRecord(buffer, TIME, 21.5, 39.25);
+        template.putRecord(buffer, TIME + 2000L, Double.NaN, Double.NaN);
+        template.endBatch(buffer, start, 3);
+        assertEquals(buffer.capacity(), buffer.position());
+        ByteBuffer frame = ByteBuffer.wrap(buffer.array()).order(ByteOrder.LITTLE_ENDIAN);
+        assertTrue(BceFrameTemplate.isChecksumValid(frame));
+        assertEquals(2 + 3 * RECORD, frame.getShort(8) & 0xffff);
+        assertEquals(BceFrameTemplate.encodeTime(TIME - 2000L), frame.getInt(13) & 0xffffffffL);
+        assertEquals(BceFrameTemplate.encodeTime(TIME), frame.getInt(13 + RECORD) & 0xffffffffL);
+        assertEquals(BceFrameTemplate.encodeTime(TIME + 2000L), frame.getInt(13 + 2 * RECORD) & 0xffffffffL);
+        assertEquals(39.25f, frame.getFloat(25 + RECORD), 0f);
+        assertEquals(frame.getFloat(25), frame.getFloat(25 + 2 * RECORD), 0f);
+        assertEquals((0xffff - 2) / RECORD, template.getMaxBatchRecords());
+
+        // the data length does not match the records
+        BceFrameTemplate truncated = BceFrameTemplate.compile(
+                "%s5b01a55344%sffc302a000804000d74f3b4299ddc541001875540200000000d78000009a375100e8481b005a10000000005b");
+        assertFalse(truncated.isBatchable());
+        assertEquals(1, truncated.getRecordCount());
+
+        BceFrameTemplate single = BceFrameTemplate.compile("%s00%s0000");
+        assertFalse(single.isBatchable());
+        assertEquals(1, single.getMaxBatchRecords());
+    }
+
+    @Test
+    public void testPositionIsReplaced() {
+        BceFrameTemplate template = BceFrameTemplate.compile(SIGNAL);
+        assertEquals(25, template.getPositionOffset());
+        ByteBuffer buffer = ByteBuffer.allocate(template.getFrameLength());
+        template.encode(buffer, IMEI, TIME, Double.NaN, Double.NaN);
+        assertEquals(EXPECTED, JOrphanUtils.baToHexString(buffer.array()));
+
+        byte[] frame = template.newFrame();
+        template.patch(frame, IMEI, TIME, 21.5, 39.25);
+        ByteBuffer patched = ByteBuffer.wrap(frame).order(ByteOrder.LITTLE_ENDIAN);
+        for (int i = 0; i < 5; i++) {
+            assertEquals(39.25f, patched.getFloat(25 + i * RECORD), 0f);
+            assertEquals(21.5f, patched.getFloat(29 + i * RECORD), 0f);
+            assertEquals(BceFrameTemplate.encodeTime(TIME), patched.getInt(13 + i * RECORD) & 0xffffffffL);
+        }
+        assertTrue(BceFrameTemplate.isChecksumValid(patched));
+        buffer.clear();
+        template.encode(buffer, IMEI, TIME, 21.5, 39.25);
+        assertEquals(JOrphanUtils.baToHexString(frame), JOrphanUtils.baToHexString(buffer.array()));
+        // no position 8 bytes after the time
+        assertEquals(-1, BceFrameTemplate.compile("%s00%s0000").getPositionOffset());
+    }
+
+    @Test
+    public void testInvalidSignal() {
+        try {
+            BceFrameTemplate.compile("%s%s%s00");
+            fail("Expected IllegalArgumentException");
+        } catch (IllegalArgumentException expected) {
+            // ignored
+        }
+        try {
+            BceFrameTemplate.compile("%s5x%s00");
+            fail("Expected IllegalArgumentException");
+        } catch (IllegalArgumentException expected) {
+            // ignored
+        }
+    }
+
+    @Test
+    public void testClientWritesLoginOnce() throws Exception {
+        BCETCPSampler client = new BCETCPSampler();
+        ByteArrayOutputStream os = new ByteArrayOutputStream();
+        client.write(os, SIGNAL, Long.toString(IMEI));
+        int length = BceFrameTemplate.compile(SIGNAL).getFrameLength();
+        assertEquals(7 + length, os.size());
+        assertEquals(BCETCPSampler.LOGIN_PREFIX, JOrphanUtils.baToHexString(os.toByteArray()).substring(0, 14));
+        os.reset();
+        client.write(os, SIGNAL, Long.toString(IMEI));
+        assertEquals(length, os.size());
+    }
+}
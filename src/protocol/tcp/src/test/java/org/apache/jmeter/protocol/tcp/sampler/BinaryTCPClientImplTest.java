@@ -84,4 +84,15 @@ public class BinaryTCPClientImplTest {
         ByteArrayInputStream bis = new ByteArrayInputStream(os.toByteArray());
         assertEquals("3132333435",bi.read(bis, new SampleResult()));
     }
+
+    @Test
+    public void testCoalescedFrames() throws Exception {
+        BinaryTCPClientImpl bi = new BinaryTCPClientImpl();
+        bi.setEolByte(0x0a);
+        // two ACKs received in one segment, the second one is split
+        ByteArrayInputStream bis = new ByteArrayInputStream(BinaryTCPClientImpl.hexStringToByteArray("01020a03040a05"));
+        assertEquals("01020a", bi.read(bis, new SampleResult()));
+        assertEquals("03040a", bi.read(bis, new SampleResult()));
+        assertEquals("05", bi.read(bis, new SampleResult()));
+    }
 }
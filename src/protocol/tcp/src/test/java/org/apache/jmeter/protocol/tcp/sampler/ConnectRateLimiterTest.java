@@ -0,0 +1,71 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.jmeter.protocol.tcp.sampler;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.Test;
+
+public class ConnectRateLimiterTest {
+
+    private static final long MS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    @Test
+    public void testBurstThenRate() {
+        ConnectRateLimiter limiter = new ConnectRateLimiter(100, 3);
+        long now = System.nanoTime() + TimeUnit.SECONDS.toNanos(1);
+        assertEquals(0, limiter.reserve(now));
+        assertEquals(0, limiter.reserve(now));
+        assertEquals(0, limiter.reserve(now));
+        assertEquals(10 * MS, limiter.reserve(now));
+        assertEquals(20 * MS, limiter.reserve(now));
+        // waiting refills the bucket up to the burst only
+        now += 1000 * MS;
+        assertEquals(0, limiter.reserve(now));
+        assertEquals(0, limiter.reserve(now));
+        assertEquals(0, limiter.reserve(now));
+        assertEquals(10 * MS, limiter.reserve(now));
+    }
+
+    @Test
+    public void testConcurrentPermitsAreSpaced() throws Exception {
+        ConnectRateLimiter limiter = new ConnectRateLimiter(1000, 1);
+        int threads = 8;
+        int permits = 100;
+        long now = System.nanoTime() + TimeUnit.SECONDS.toNanos(1);
+        AtomicLong maxWait = new AtomicLong();
+        CountDownLatch done = new CountDownLatch(threads);
+        for (int i = 0; i < threads; i++) {
+            new Thread(() -> {
+                for (int j = 0; j < permits; j++) {
+                    long wait = limiter.reserve(now);
+                    maxWait.accumulateAndGet(wait, Math::max);
+                }
+                done.countDown();
+            }).start();
+        }
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        // every permit got its own slot, one millisecond apart
+        assertEquals((threads * permits - 1) * MS, maxWait.get());
+    }
+}
@@ -0,0 +1,146 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.apache.jmeter.protocol.tcp.sampler;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.jmeter.samplers.SampleResult;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class ConnectionPoolTest {
+
+    private ServerSocket server;
+
+    private final List<Socket> accepted = new ArrayList<>();
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        server = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+        Thread acceptor = new Thread(() -> {
+            try {
+                while (true) {
+                    Socket socket = server.accept();
+                    synchronized (accepted) {
+                        accepted.add(socket);
+                    }
+                }
+            } catch (Exception e) {
+                // closed
+            }
+        });
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    @AfterEach
+    public void tearDown() throws Exception {
+        server.close();
+        synchronized (accepted) {
+            for (Socket socket : accepted) {
+                socket.close();
+            }
+        }
+    }
+
+    private Socket connect(AtomicInteger opened) throws IOException {
+        opened.incrementAndGet();
+        return new Socket(server.getInetAddress(), server.getLocalPort());
+    }
+
+    @Test
+    public void testReleasedConnectionIsLeasedAgain() throws Exception {
+        ConnectionPool pool = new ConnectionPool("test", 2);
+        AtomicInteger opened = new AtomicInteger();
+        Socket first = pool.lease(new SampleResult(), () -> connect(opened));
+        Socket second = pool.lease(new SampleResult(), () -> connect(opened));
+        assertNotSame(first, second);
+        assertEquals(0, pool.getAvailableLeases());
+        pool.release(first);
+        pool.discard(second);
+        assertTrue(second.isClosed());
+        assertEquals(2, pool.getAvailableLeases());
+        assertSame(first, pool.lease(new SampleResult(), () -> connect(opened)));
+        assertEquals(2, opened.get());
+
+        // closed while idle, replaced by a new connection
+        pool.release(first);
+        first.close();
+        assertNotSame(first, pool.lease(new SampleResult(), () -> connect(opened)));
+        assertEquals(3, opened.get());
+        assertEquals(0, pool.getIdleCount());
+    }
+
+    @Test
+    public void testPoolsByKey() {
+        try {
+            ConnectionPool plain = ConnectionPool.get("host#1#plain", "host:1", 2);
+            assertSame(plain, ConnectionPool.get("host#1#plain", "host:1", 5));
+            assertNotSame(plain, ConnectionPool.get("host#1#tls", "host:1 (TLS)", 2));
+            assertEquals(2, plain.getAvailableLeases());
+        } finally {
+            ConnectionPool.closeAll();
+        }
+    }
+
+    @Test
+    public void testThreadsShareBoundedConnections() throws Exception {
+        ConnectionPool pool = new ConnectionPool("test", 3);
+        AtomicInteger opened = new AtomicInteger();
+        AtomicInteger leased = new AtomicInteger();
+        AtomicInteger maxLeased = new AtomicInteger();
+        AtomicInteger failures = new AtomicInteger();
+        int threads = 20;
+        CountDownLatch done = new CountDownLatch(threads);
+        for (int i = 0; i < threads; i++) {
+            new Thread(() -> {
+                try {
+                    for (int j = 0; j < 200; j++) {
+                        Socket socket = pool.lease(new SampleResult(), () -> connect(opened));
+                        maxLeased.accumulateAndGet(leased.incrementAndGet(), Math::max);
+                        leased.decrementAndGet();
+                        pool.release(socket);
+                    }
+                } catch (Exception e) {
+                    failures.incrementAndGet();
+                }
+                done.countDown();
+            }).start();
+        }
+        assertTrue(done.await(30, TimeUnit.SECONDS));
+        assertEquals(0, failures.get());
+        assertTrue(maxLeased.get() <= 3);
+        assertTrue(opened.get() <= 3);
+        assertEquals(3, pool.getAvailableLeases());
+    }
+}
@@ -17,6 +17,7 @@
 
 package org.apache.jmeter.protocol.tcp.sampler;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.fail;
 
@@ -53,4 +54,16 @@ public class LengthPrefixedBinaryTCPClientImplTest {
         assertEquals(DATA, lp.read(is, new SampleResult()));
     }
 
+    @Test
+    public void testConsecutiveMessages() throws Exception {
+        ByteArrayOutputStream os = new ByteArrayOutputStream();
+        LengthPrefixedBinaryTCPClientImpl lp = new LengthPrefixedBinaryTCPClientImpl();
+        lp.write(os, "3132");
+        lp.write(os, "333435");
+        os.close();
+        ByteArrayInputStream is = new ByteArrayInputStream(os.toByteArray());
+        SampleResult result = new SampleResult();
+        assertArrayEquals(new byte[] {0x31, 0x32}, lp.readBytes(is, result));
+        assertEquals("333435", lp.read(is, result));
+    }
 }
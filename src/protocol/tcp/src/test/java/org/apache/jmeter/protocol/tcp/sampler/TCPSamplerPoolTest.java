@@ -0,0 +1,168 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.apache.jmeter.protocol.tcp.sampler;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.jorphan.util.JOrphanUtils;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class TCPSamplerPoolTest {
+
+    private ServerSocket server;
+
+    private final List<Socket> accepted = new ArrayList<>();
+
+    private final AtomicInteger connections = new AtomicInteger();
+
+    /** Sent after each reply in the same write, when set */
+    private volatile String push;
+
+    private final List<ExecutorService> threads = new ArrayList<>();
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        server = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+        Thread acceptor = new Thread(() -> {
+            try {
+                while (true) {
+                    Socket socket = server.accept();
+                    synchronized (accepted) {
+                        accepted.add(socket);
+                    }
+                    connections.incrementAndGet();
+                    Thread handler = new Thread(() -> reply(socket));
+                    handler.setDaemon(true);
+                    handler.start();
+                }
+            } catch (Exception e) {
+                // closed
+            }
+        });
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    @AfterEach
+    public void tearDown() throws Exception {
+        for (ExecutorService thread : threads) {
+            thread.shutdownNow();
+        }
+        new TCPSampler().testEnded();
+        server.close();
+        synchronized (accepted) {
+            for (Socket socket : accepted) {
+                socket.close();
+            }
+        }
+    }
+
+    /**
+     * Answers each line with "reply:" and the line, followed by {@link #push} in the same segment.
+     */
+    private void reply(Socket socket) {
+        try {
+            InputStream in = socket.getInputStream();
+            OutputStream out = socket.getOutputStream();
+            StringBuilder line = new StringBuilder();
+            int b;
+            while ((b = in.read()) >= 0) {
+                if (b != '\n') {
+                    line.append((char) b);
+                    continue;
+                }
+                String extra = push;
+                out.write(("reply:" + line + "\n" + (extra == null ? "" : extra + "\n"))
+                        .getBytes(StandardCharsets.US_ASCII));
+                out.flush();
+                line.setLength(0);
+            }
+        } catch (Exception e) {
+            // closed
+        }
+    }
+
+    /**
+     * Creates the sampler of a JMeter thread, which uses the connection pool.
+     */
+    private ExecutorService startThread(List<TCPSampler> samplers) throws Exception {
+        TCPSampler sampler = new TCPSampler();
+        sampler.setClassname("BinaryTCPClientImpl"); //$NON-NLS-1$
+        sampler.setServer(server.getInetAddress().getHostAddress());
+        sampler.setPort(Integer.toString(server.getLocalPort()));
+        sampler.setEolByte("10"); //$NON-NLS-1$
+        sampler.setTimeout("5000"); //$NON-NLS-1$
+        sampler.setPoolSize("1"); //$NON-NLS-1$
+        ExecutorService thread = Executors.newSingleThreadExecutor();
+        threads.add(thread);
+        thread.submit(sampler::threadStarted).get();
+        samplers.add(sampler);
+        return thread;
+    }
+
+    private static String hex(String text) {
+        return JOrphanUtils.baToHexString(text.getBytes(StandardCharsets.US_ASCII));
+    }
+
+    private static String sample(ExecutorService thread, TCPSampler sampler, String request) throws Exception {
+        return thread.submit(() -> {
+            sampler.setRequestData(hex(request + "\n"));
+            return sampler.sample(null).getResponseDataAsString();
+        }).get();
+    }
+
+    @Test
+    public void testConnectionIsSharedBetweenThreads() throws Exception {
+        List<TCPSampler> samplers = new ArrayList<>();
+        ExecutorService first = startThread(samplers);
+        ExecutorService second = startThread(samplers);
+        assertEquals(hex("reply:one\n"), sample(first, samplers.get(0), "one"));
+        assertEquals(hex("reply:two\n"), sample(second, samplers.get(1), "two"));
+        assertEquals(hex("reply:three\n"), sample(first, samplers.get(0), "three"));
+        assertEquals(1, connections.get());
+    }
+
+    @Test
+    public void testCoalescedResponsesAreNotLeftToTheNextThread() throws Exception {
+        push = "push";
+        List<TCPSampler> samplers = new ArrayList<>();
+        ExecutorService first = startThread(samplers);
+        ExecutorService second = startThread(samplers);
+        // each reply arrives with a pushed message, read ahead by the thread which got the reply
+        assertEquals(hex("reply:one\n"), sample(first, samplers.get(0), "one"));
+        assertEquals(hex("reply:two\n"), sample(second, samplers.get(1), "two"));
+        assertEquals(hex("reply:three\n"), sample(first, samplers.get(0), "three"));
+        assertEquals(hex("reply:four\n"), sample(second, samplers.get(1), "four"));
+        assertEquals(4, connections.get());
+    }
+}
@@ -0,0 +1,91 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.jmeter.protocol.tcp.schedule;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.Closeable;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.jupiter.api.Test;
+
+public class ReportSchedulerTest {
+
+    @Test
+    public void testDevicesReportOnTheirInterval() throws Exception {
+        ReportScheduler scheduler = new ReportScheduler("test", new ReportProfile(100, 100, 0, 0, 0),
+                1000L, 50, 0, 5);
+        scheduler.start();
+        Map<Long, Integer> reports = new HashMap<>();
+        AtomicBoolean closed = new AtomicBoolean();
+        try {
+            long end = System.currentTimeMillis() + 550;
+            while (System.currentTimeMillis() < end) {
+                ScheduledDevice device = scheduler.poll(200);
+                assertNotNull(device);
+                assertTrue(device.isMoving());
+                if (device.getConnection() == null) {
+                    device.setConnection((Closeable) () -> closed.set(true));
+                }
+                reports.merge(device.getImei(), 1, Integer::sum);
+                scheduler.reschedule(device);
+            }
+        } finally {
+            scheduler.stop();
+        }
+        assertEquals(50, reports.size());
+        for (Map.Entry<Long, Integer> entry : reports.entrySet()) {
+            assertTrue(entry.getKey() >= 1000L && entry.getKey() < 1050L);
+            // at 0, 100, ... 500ms
+            assertTrue("Device " + entry.getKey() + " reported " + entry.getValue() + " times",
+                    entry.getValue() >= 5 && entry.getValue() <= 7);
+        }
+        assertTrue(closed.get());
+    }
+
+    @Test
+    public void testProfileStates() {
+        Random random = new Random(1);
+        ReportProfile profile = new ReportProfile(10000, 300000, 10, 1800000, 3600000);
+        assertEquals(1.0 / 3, profile.getMovingRatio(), 1e-9);
+        for (int i = 0; i < 1000; i++) {
+            long interval = profile.nextInterval(true, random);
+            assertTrue(interval >= 9000 && interval <= 11000);
+        }
+        ScheduledDevice device = new ScheduledDevice(0, 1L);
+        device.start(0, profile, random);
+        long now = 0;
+        int moving = 0;
+        int reports = 0;
+        while (now < 1000L * 3600000) {
+            now = device.next(now, profile, random);
+            reports++;
+            if (device.isMoving()) {
+                moving++;
+            }
+        }
+        // a third of the time moving, reporting 30 times as often as parked
+        double expected = 30.0 / 32;
+        assertEquals(expected, (double) moving / reports, 0.05);
+    }
+}
@@ -0,0 +1,104 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.jmeter.protocol.tcp.schedule;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+
+public class TimingWheelTest {
+
+    private static final class Task extends TimingWheel.Timeout {
+        private final long due;
+        private long expiredAt = -1;
+
+        private Task(long due) {
+            this.due = due;
+        }
+    }
+
+    @Test
+    public void testExpiresOnDueTickAcrossLevels() {
+        TimingWheel<Task> wheel = new TimingWheel<>(1, 0);
+        Random random = new Random(42);
+        List<Task> tasks = new ArrayList<>();
+        for (int i = 0; i < 2000; i++) {
+            // spread over the first three wheels and into the fourth one
+            long due = 1 + (long) (Math.pow(random.nextDouble(), 3) * (1 << 25));
+            Task task = new Task(due);
+            tasks.add(task);
+            wheel.schedule(task, due);
+        }
+        assertEquals(tasks.size(), wheel.size());
+        long now = 0;
+        while (wheel.size() > 0) {
+            now += 1 + random.nextInt(5000);
+            long time = now;
+            wheel.advance(now, task -> task.expiredAt = time);
+        }
+        for (Task task : tasks) {
+            assertFalse(task.isScheduled());
+            assertTrue("Expired early: " + task.due + " at " + task.expiredAt, task.expiredAt >= task.due);
+            assertTrue("Expired late: " + task.due + " at " + task.expiredAt, task.expiredAt - task.due < 5000);
+        }
+    }
+
+    @Test
+    public void testTickResolutionAndReschedule() {
+        TimingWheel<Task> wheel = new TimingWheel<>(10, 1000);
+        Task task = new Task(1025);
+        wheel.schedule(task, 1025);
+        Set<Task> expired = new HashSet<>();
+        assertEquals(0, wheel.advance(1029, expired::add));
+        assertEquals(1030, wheel.nextTickMillis());
+        // rounded up to the end of its tick, never early
+        assertEquals(1, wheel.advance(1030, expired::add));
+        assertTrue(expired.contains(task));
+
+        // already due: next tick
+        wheel.schedule(task, 0);
+        assertTrue(task.isScheduled());
+        assertEquals(1, wheel.advance(1040, t -> wheel.schedule(t, 1040 + 300000)));
+        assertTrue(task.isScheduled());
+        assertEquals(0, wheel.advance(1040 + 299990, t -> { }));
+        assertEquals(1, wheel.advance(1040 + 300000, t -> { }));
+        assertEquals(0, wheel.size());
+    }
+
+    @Test
+    public void testDoubleScheduleRejected() {
+        TimingWheel<Task> wheel = new TimingWheel<>(1, 0);
+        Task task = new Task(10);
+        wheel.schedule(task, 10);
+        try {
+            wheel.schedule(task, 20);
+            throw new AssertionError("Expected IllegalStateException");
+        } catch (IllegalStateException expected) {
+            assertNotNull(expected.getMessage());
+        }
+    }
+}
@@ -0,0 +1,174 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.apache.jmeter.protocol.tcp.tls;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.KeyStore;
+
+import javax.net.ssl.KeyManagerFactory;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLServerSocket;
+import javax.net.ssl.SSLSocket;
+import javax.net.ssl.TrustManagerFactory;
+
+import org.apache.jmeter.samplers.SampleResult;
+import org.apache.jorphan.exec.KeyToolUtils;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class TlsSocketTest {
+
+    private static final String PASSWORD = "changeit";
+
+    private static SSLServerSocket server;
+
+    private static TrustManagerFactory trustManagers;
+
+    @BeforeAll
+    public static void startServer(@TempDir Path dir) throws Exception {
+        File keystore = dir.resolve("server.jks").toFile();
+        KeyToolUtils.genkeypair(keystore, "server", PASSWORD, 1, "cn=localhost", null);
+        KeyStore keys = KeyStore.getInstance(KeyStore.getDefaultType());
+        try (InputStream in = Files.newInputStream(keystore.toPath())) {
+            keys.load(in, PASSWORD.toCharArray());
+        }
+        KeyManagerFactory keyManagers = KeyManagerFactory.getInstance(KeyManagerFactory.getDefaultAlgorithm());
+        keyManagers.init(keys, PASSWORD.toCharArray());
+        SSLContext serverContext = SSLContext.getInstance("TLS");
+        serverContext.init(keyManagers.getKeyManagers(), null, null);
+        server = (SSLServerSocket) serverContext.getServerSocketFactory().createServerSocket(0);
+        Thread acceptor = new Thread(TlsSocketTest::echo, "TLS echo");
+        acceptor.setDaemon(true);
+        acceptor.start();
+
+        trustManagers = TrustManagerFactory.getInstance(TrustManagerFactory.getDefaultAlgorithm());
+        trustManagers.init(keys);
+    }
+
+    @AfterAll
+    public static void stopServer() throws IOException {
+        server.close();
+        TlsSessionCache.clear();
+    }
+
+    @BeforeEach
+    public void trustServer() {
+        TlsSessionCache.clear();
+        TlsSessionCache.setContextFactory(device -> {
+            SSLContext context = SSLContext.getInstance("TLS");
+            context.init(null, trustManagers.getTrustManagers(), null);
+            return context;
+        });
+    }
+
+    /** Echo the bytes of every connection until it is closed */
+    private static void echo() {
+        while (!server.isClosed()) {
+            try (SSLSocket socket = (SSLSocket) server.accept()) {
+                InputStream in = socket.getInputStream();
+                OutputStream out = socket.getOutputStream();
+                int b;
+                while ((b = in.read()) >= 0) {
+                    out.write(b);
+                    out.flush();
+                }
+            } catch (IOException e) {
+                // next connection, or the server is closed
+            }
+        }
+    }
+
+    private static TlsSocket connect(String device, SampleResult res) throws IOException {
+        Socket socket = new Socket("localhost", server.getLocalPort());
+        socket.setSoTimeout(5000);
+        TlsSocket tls = TlsSocket.handshake(socket, "localhost", server.getLocalPort(), device, res);
+        // read the answer, and the session tickets sent after the handshake
+        tls.getOutputStream().write(42);
+        assertEquals(42, tls.getInputStream().read());
+        return tls;
+    }
+
+    @Test
+    public void testHandshakeDoesNotEndSample() throws Exception {
+        SampleResult res = new SampleResult();
+        res.sampleStart();
+        try (TlsSocket tls = connect("352093081234567", res)) {
+            assertEquals("Handshake ended the sample", 0, res.getEndTime());
+            res.sampleEnd();
+            assertEquals(1, res.getSubResults().length);
+            SampleResult handshake = res.getSubResults()[0];
+            assertEquals("TLS handshake", handshake.getSampleLabel());
+            assertTrue(handshake.getResponseMessage(), handshake.isSuccessful());
+            assertTrue(handshake.getSentBytes() > 0);
+            assertTrue(handshake.getBytesAsLong() > 0);
+            assertTrue(handshake.getEndTime() <= res.getEndTime());
+            assertEquals(Thread.currentThread().getName(), handshake.getThreadName());
+        }
+    }
+
+    @Test
+    public void testDeviceResumesItsSession() throws Exception {
+        try (TlsSocket tls = connect("352093081234567", null)) {
+            assertFalse(tls.isResumed());
+        }
+        Thread.sleep(10);
+        try (TlsSocket tls = connect("352093081234567", null)) {
+            assertTrue("Session was not resumed", tls.isResumed());
+        }
+        try (TlsSocket tls = connect("352093087654321", null)) {
+            assertFalse("Session of another device was resumed", tls.isResumed());
+        }
+        assertEquals(1, TlsSessionCache.getHits());
+        assertEquals(2, TlsSessionCache.getMisses());
+    }
+
+    @Test
+    public void testFailedHandshakeIsReported() throws Exception {
+        SampleResult res = new SampleResult();
+        res.sampleStart();
+        // the default trust store does not know the server certificate
+        TlsSessionCache.setContextFactory(device -> SSLContext.getDefault());
+        Socket socket = new Socket("localhost", server.getLocalPort());
+        socket.setSoTimeout(5000);
+        try {
+            TlsSocket.handshake(socket, "localhost", server.getLocalPort(), "352093081234567", res);
+            fail("Untrusted server was accepted");
+        } catch (IOException e) {
+            // expected
+        }
+        assertTrue(socket.isClosed());
+        assertEquals(1, res.getSubResults().length);
+        assertFalse(res.getSubResults()[0].isSuccessful());
+        assertEquals(0, res.getEndTime());
+    }
+}
@@ -0,0 +1,93 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.jmeter.protocol.tcp.trajectory;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.apache.jmeter.protocol.tcp.codec.TrackerReport;
+import org.junit.jupiter.api.Test;
+
+public class TrajectoryTest {
+
+    private static final double LATITUDE = 24.7136;
+
+    private static final double LONGITUDE = 46.6753;
+
+    /** Longest distance between two fixes one second apart: 120km/h plus the GPS noise */
+    private static final double MAX_STEP = 33.4 + 15;
+
+    private static double distance(Trajectory trajectory, int from, int to) {
+        double dy = (trajectory.getLatitude(to) - trajectory.getLatitude(from)) * 111320.0;
+        double dx = (trajectory.getLongitude(to) - trajectory.getLongitude(from)) * 111320.0
+                * Math.cos(Math.toRadians(LATITUDE));
+        return Math.sqrt(dx * dx + dy * dy);
+    }
+
+    @Test
+    public void testTrajectoryIsContinuousAndLoops() {
+        TrajectoryGenerator generator = new TrajectoryGenerator(LATITUDE, LONGITUDE, 5000, 7200000L, 1000L);
+        Trajectory trajectory = generator.generate(new Random(7));
+        assertEquals(7200, trajectory.size());
+        int moving = 0;
+        int idle = 0;
+        for (int i = 0; i < trajectory.size(); i++) {
+            int next = (i + 1) % trajectory.size();
+            assertTrue("Jump at " + i, distance(trajectory, i, next) < MAX_STEP);
+            assertTrue(trajectory.getSpeed(i) >= 0 && trajectory.getSpeed(i) <= 120);
+            assertTrue(trajectory.getHeading(i) >= 0 && trajectory.getHeading(i) < 360);
+            assertEquals(0, trajectory.getHeading(i) % 45);
+            // back towards the origin once out of the area, with the room to turn at most one highway later
+            assertTrue(distance(trajectory, 0, i) < 2 * 5000 + 6000 * 2);
+            if (trajectory.getState(i) == Trajectory.MOVING) {
+                moving++;
+            } else {
+                assertEquals(0, trajectory.getSpeed(i));
+                if (trajectory.getState(i) == Trajectory.IDLE) {
+                    idle++;
+                }
+            }
+        }
+        assertTrue(moving > trajectory.size() / 2);
+        assertTrue(idle > 0);
+        assertEquals(0, trajectory.indexAt(7200000L));
+        assertEquals(7199, trajectory.indexAt(-1000L));
+    }
+
+    @Test
+    public void testDevicesDriveDistinctReproducibleTrips() {
+        TrajectoryGenerator generator = new TrajectoryGenerator(LATITUDE, LONGITUDE, 20000, 600000L, 1000L);
+        TrajectoryPool pool = new TrajectoryPool(generator, 16, 1L);
+        TrajectoryPool same = new TrajectoryPool(generator, 16, 1L);
+        TrackerReport first = new TrackerReport();
+        TrackerReport second = new TrackerReport();
+        long now = 1700000000000L;
+        pool.fill(first, 350000000000001L, now);
+        same.fill(second, 350000000000001L, now);
+        assertEquals(first.getLatitude(), second.getLatitude(), 0);
+        assertEquals(first.getLongitude(), second.getLongitude(), 0);
+        pool.fill(second, 350000000000002L, now);
+        assertNotEquals(first.getLatitude(), second.getLatitude(), 0);
+        assertTrue(Math.abs(first.getLatitude() - LATITUDE) < 0.5);
+        assertTrue(Math.abs(first.getLongitude() - LONGITUDE) < 0.5);
+        assertTrue(pool.offsetOf(350000000000001L) >= 0 && pool.offsetOf(350000000000001L) < 600000L);
+    }
+}